@@ -0,0 +1,31 @@
+package org.rococo.artists.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.rococo.common.loader.BatchLoaders;
+import org.rococo.common.loader.RequestScopeInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class BatchLoaderConfig {
+
+    @Bean(destroyMethod = "close")
+    public BatchLoaders batchLoaders(MeterRegistry meterRegistry,
+                                     @Value("${rococo-artists.loader.window:2ms}") Duration window,
+                                     @Value("${rococo-artists.loader.max-batch-size:200}") int maxBatchSize,
+                                     @Value("${rococo-artists.loader.timeout:5s}") Duration timeout,
+                                     @Value("${rococo-artists.loader.threads:16}") int threads) {
+        return new BatchLoaders(meterRegistry, window, maxBatchSize, timeout, threads);
+    }
+
+    @Bean
+    @GrpcGlobalServerInterceptor
+    public RequestScopeInterceptor requestScopeInterceptor() {
+        return new RequestScopeInterceptor();
+    }
+
+}
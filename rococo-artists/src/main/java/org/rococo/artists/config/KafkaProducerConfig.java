@@ -0,0 +1,51 @@
+package org.rococo.artists.config;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.rococo.artists.model.ArtistEventDTO;
+import org.rococo.artists.service.ArtistEventPublisher;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.kafka.clients.producer.ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG;
+
+@Configuration
+@RequiredArgsConstructor
+public class KafkaProducerConfig {
+
+    private final KafkaProperties kafkaProperties;
+
+    @Bean
+    public ProducerFactory<String, ArtistEventDTO> artistEventsProducerFactory(SslBundles sslBundles) {
+        Map<String, Object> properties = new HashMap<>(kafkaProperties.buildProducerProperties(sslBundles));
+        properties.put(KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        properties.put(VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        return new DefaultKafkaProducerFactory<>(properties);
+    }
+
+    @Bean
+    public KafkaTemplate<String, ArtistEventDTO> artistEventsKafkaTemplate(SslBundles sslBundles) {
+        return new KafkaTemplate<>(artistEventsProducerFactory(sslBundles));
+    }
+
+    @Bean
+    public NewTopic artistEventsTopic() {
+        return TopicBuilder.name(ArtistEventPublisher.TOPIC)
+                .partitions(10)
+                .replicas(1)
+                .build();
+    }
+
+}
@@ -0,0 +1,21 @@
+package org.rococo.artists.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.rococo.common.budget.LatencyBudgets;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Configuration
+public class LatencyBudgetConfig {
+
+    @Bean(destroyMethod = "close")
+    public LatencyBudgets latencyBudgets(MeterRegistry meterRegistry,
+                                         @Value("${rococo-artists.budget.files:1s}") Duration files) {
+        return new LatencyBudgets(meterRegistry, Map.of("files", files));
+    }
+
+}
@@ -1,9 +1,11 @@
 package org.rococo.artists.data;
 
 import jakarta.annotation.Nonnull;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.List;
@@ -23,4 +25,11 @@ public interface ArtistRepository extends JpaRepository<ArtistEntity, UUID>, Jpa
     @Query("SELECT a FROM ArtistEntity a WHERE a.name IN (:names)")
     List<ArtistEntity> findAllByNames(List<String> names);
 
+    /**
+     * Next page of ids in ascending order, keyset pagination does not slow down with offset.
+     */
+    @Nonnull
+    @Query("SELECT a.id FROM ArtistEntity a WHERE a.id > :after ORDER BY a.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Limit limit);
+
 }
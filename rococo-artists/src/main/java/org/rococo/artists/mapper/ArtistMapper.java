@@ -1,19 +1,26 @@
 package org.rococo.artists.mapper;
 
+import com.google.protobuf.ByteString;
 import org.rococo.artists.data.ArtistEntity;
+import org.rococo.artists.model.ArtistEventDTO;
 import org.rococo.artists.model.ArtistFilter;
+import org.rococo.artists.model.EventType;
 import org.rococo.grpc.artists.*;
+import org.rococo.grpc.files.ImageGrpcResponse;
 import org.springframework.data.domain.Page;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Base64;
 import java.util.Map;
 import java.util.UUID;
 
 @ParametersAreNonnullByDefault
 public class ArtistMapper {
 
+    private static final String DATA_URI_PREFIX = "data:image/%s;base64,";
+
     private ArtistMapper() {
     }
 
@@ -43,20 +50,45 @@ public class ArtistMapper {
                 .build();
     }
 
+    /**
+     * @param photo       raw image with its format, or data-URI without format sent by old client
+     * @param legacyPhoto raw photo is also set as data-URI for clients not reading photo_content yet
+     */
     @Nonnull
-    public static ArtistGrpcResponse toGrpcResponse(ArtistEntity entity, @Nullable String photo) {
-        return ArtistGrpcResponse.newBuilder()
+    public static ArtistGrpcResponse toGrpcResponse(ArtistEntity entity, @Nullable ImageGrpcResponse photo, boolean legacyPhoto) {
+        final var response = ArtistGrpcResponse.newBuilder()
                 .setId(entity.getId().toString())
                 .setName(entity.getName() == null
                         ? ""
                         : entity.getName())
                 .setBiography(entity.getBiography() == null
                         ? ""
-                        : entity.getBiography())
-                .setPhoto(photo == null
-                        ? ""
-                        : photo)
-                .build();
+                        : entity.getBiography());
+
+        if (photo == null || photo.getContent().isEmpty())
+            return response.build();
+        if (photo.getFormat().isEmpty())
+            return response.setPhoto(photo.getContent().toStringUtf8()).build();
+
+        response.setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat());
+        if (legacyPhoto)
+            response.setPhoto(toDataUri(photo));
+        return response.build();
+    }
+
+    /**
+     * Photo of request as it is sent to rococo-files: raw image with its format,
+     * or data-URI without format if client does not use photo_content yet.
+     */
+    @Nonnull
+    public static ImageGrpcResponse toPhoto(AddArtistGrpcRequest request) {
+        return toPhoto(request.getPhotoContent(), request.getPhotoFormat(), request.getPhoto());
+    }
+
+    @Nonnull
+    public static ImageGrpcResponse toPhoto(UpdateArtistGrpcRequest request) {
+        return toPhoto(request.getPhotoContent(), request.getPhotoFormat(), request.getPhoto());
     }
 
     @Nonnull
@@ -67,16 +99,52 @@ public class ArtistMapper {
     }
 
     @Nonnull
-    public static ArtistsGrpcResponse toPageGrpc(Page<ArtistEntity> page, Map<UUID, String> photos) {
+    public static ArtistsGrpcResponse toPageGrpc(Page<ArtistEntity> page, Map<UUID, ImageGrpcResponse> photos, boolean legacyPhoto) {
         return ArtistsGrpcResponse.newBuilder()
                 .setCurrentPage(page.getPageable().getPageNumber())
                 .setItemsPerPage(page.getSize())
                 .setTotalItems(page.getTotalElements())
                 .setTotalPages(page.getTotalPages())
                 .addAllData(page.getContent().stream()
-                        .map(artist -> ArtistMapper.toGrpcResponse(artist, photos.get(artist.getId())))
+                        .map(artist -> ArtistMapper.toGrpcResponse(artist, photos.get(artist.getId()), legacyPhoto))
                         .toList())
                 .build();
     }
 
+    @Nonnull
+    public static ArtistEventDTO toEvent(EventType type, ArtistEntity entity) {
+        return ArtistEventDTO.builder()
+                .type(type)
+                .id(entity.getId())
+                .name(entity.getName())
+                .biography(entity.getBiography())
+                .build();
+    }
+
+    @Nonnull
+    public static ArtistEventDTO toDeletedEvent(UUID id) {
+        return ArtistEventDTO.builder()
+                .type(EventType.DELETED)
+                .id(id)
+                .build();
+    }
+
+    @Nonnull
+    private static String toDataUri(ImageGrpcResponse photo) {
+        return DATA_URI_PREFIX.formatted(photo.getFormat())
+                + Base64.getEncoder().encodeToString(photo.getContent().toByteArray());
+    }
+
+    @Nonnull
+    private static ImageGrpcResponse toPhoto(ByteString content, String format, String dataUri) {
+        return content.isEmpty()
+                ? ImageGrpcResponse.newBuilder()
+                .setContent(ByteString.copyFromUtf8(dataUri))
+                .build()
+                : ImageGrpcResponse.newBuilder()
+                .setContent(content)
+                .setFormat(format)
+                .build();
+    }
+
 }
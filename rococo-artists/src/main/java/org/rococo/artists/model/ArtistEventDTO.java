@@ -0,0 +1,31 @@
+package org.rococo.artists.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Published to topic {@code artists} after artist is added, updated or deleted, with artist id as key.
+ * Event of deleted artist has id only.
+ */
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ArtistEventDTO(
+
+        @JsonProperty("type")
+        EventType type,
+
+        @JsonProperty("id")
+        UUID id,
+
+        @JsonProperty("name")
+        String name,
+
+        @JsonProperty("biography")
+        String biography
+
+) implements Serializable {
+}
@@ -0,0 +1,14 @@
+package org.rococo.artists.model;
+
+/**
+ * Change of artist published to Kafka
+ */
+public enum EventType {
+
+    ADDED,
+
+    UPDATED,
+
+    DELETED
+
+}
@@ -0,0 +1,33 @@
+package org.rococo.artists.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.artists.model.ArtistEventDTO;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Sends artist events to Kafka once transaction which changed the artist is committed, so rolled back changes
+ * are never published. Events are keyed by artist id: events of one artist are read in order they were sent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ArtistEventPublisher {
+
+    public static final String TOPIC = "artists";
+
+    private final KafkaTemplate<String, ArtistEventDTO> kafkaTemplate;
+
+    @TransactionalEventListener
+    public void publish(ArtistEventDTO event) {
+        log.info("Publish artist event: {}", event);
+        kafkaTemplate.send(TOPIC, event.id().toString(), event)
+                .whenComplete((result, ex) -> {
+                    if (ex != null)
+                        log.error("Artist event is not published: {}", event, ex);
+                });
+    }
+
+}
@@ -12,17 +12,29 @@ import org.rococo.artists.ex.ArtistAlreadyExistsException;
 import org.rococo.artists.ex.ArtistNotFoundException;
 import org.rococo.artists.mapper.ArtistMapper;
 import org.rococo.artists.mapper.PageableMapper;
+import org.rococo.artists.model.EventType;
 import org.rococo.artists.specs.ArtistSpecs;
+import org.rococo.common.budget.LatencyBudgets;
 import org.rococo.grpc.artists.*;
+import org.rococo.grpc.common.page.IdsPageGrpcRequest;
 import org.rococo.grpc.common.type.IdType;
+import org.rococo.grpc.common.type.IdsType;
 import org.rococo.grpc.common.type.NameType;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.files.ImageGrpcResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static org.rococo.common.tx.Compensations.runOrCompensate;
+
 @Slf4j
 @GrpcService
 @RequiredArgsConstructor
@@ -31,45 +43,67 @@ public class ArtistGrpcService extends ArtistsServiceGrpc.ArtistsServiceImplBase
     private final ArtistRepository artistRepository;
     private final ArtistSpecs artistSpecs;
     private final FilesGrpcClient filesClient;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final LatencyBudgets latencyBudgets;
+
+    @Value("${rococo-artists.legacy-photo:false}")
+    private boolean legacyPhoto;
 
+    /**
+     * Artist is saved by short transaction, photo is sent to rococo-files after commit.
+     * Artist is removed if photo is not saved.
+     */
     @Override
-    @Transactional
     public void add(AddArtistGrpcRequest request, StreamObserver<ArtistGrpcResponse> responseObserver) {
 
         log.info("Add new artist: {}", request.toString());
         artistRepository.findByName(request.getName())
-                .ifPresentOrElse(
-                        artist -> {
-                            throw new ArtistAlreadyExistsException(request.getName());
-                        },
-                        () -> {
-                            var savedArtist = artistRepository.save(
-                                    ArtistMapper.fromGrpcRequest(request)
-                                            .setCreatedDate(LocalDateTime.now()));
-                            filesClient.add(savedArtist.getId(), request.getPhoto());
-                            responseObserver.onNext(
-                                    ArtistMapper.toGrpcResponse(savedArtist, request.getPhoto()));
-                        }
-                );
+                .ifPresent(artist -> {
+                    throw new ArtistAlreadyExistsException(request.getName());
+                });
+
+        var savedArtist = transactionTemplate.execute(status -> {
+            var artist = artistRepository.save(
+                    ArtistMapper.fromGrpcRequest(request)
+                            .setCreatedDate(LocalDateTime.now()));
+            eventPublisher.publishEvent(ArtistMapper.toEvent(EventType.ADDED, artist));
+            return artist;
+        });
+
+        var photo = ArtistMapper.toPhoto(request);
+        runOrCompensate(
+                () -> filesClient.add(savedArtist.getId(), photo.getContent(), photo.getFormat()),
+                () -> delete(savedArtist.getId()));
 
+        responseObserver.onNext(
+                ArtistMapper.toGrpcResponse(savedArtist, photo, legacyPhoto));
         responseObserver.onCompleted();
 
     }
 
     @Override
     @Transactional(readOnly = true)
+    public void existsById(IdType request, StreamObserver<StatusType> responseObserver) {
+
+        log.info("Check artist exists by id: {}", request.getId());
+
+        responseObserver.onNext(StatusType.newBuilder()
+                .setStatus(artistRepository.existsById(UUID.fromString(request.getId())))
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    @Override
     public void findById(IdType request, StreamObserver<ArtistGrpcResponse> responseObserver) {
 
         log.info("Get artist by id: {}", request.getId());
 
         artistRepository.findById(UUID.fromString(request.getId()))
                 .ifPresentOrElse(
-                        artist -> {
-                            var photo = filesClient.findImage(artist.getId())
-                                    .orElse(ImageGrpcResponse.getDefaultInstance());
-                            responseObserver.onNext(
-                                    ArtistMapper.toGrpcResponse(artist, photo.getContent().toStringUtf8()));
-                        },
+                        artist -> responseObserver.onNext(
+                                ArtistMapper.toGrpcResponse(artist, filesClient.findImage(artist.getId()).orElse(null), legacyPhoto)),
                         () -> {
                             throw new ArtistNotFoundException(UUID.fromString(request.getId()));
                         }
@@ -80,7 +114,6 @@ public class ArtistGrpcService extends ArtistsServiceGrpc.ArtistsServiceImplBase
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void findByName(NameType request, StreamObserver<ArtistGrpcResponse> responseObserver) {
 
         var name = request.getName();
@@ -91,12 +124,8 @@ public class ArtistGrpcService extends ArtistsServiceGrpc.ArtistsServiceImplBase
 
         artistRepository.findByName(request.getName())
                 .ifPresentOrElse(
-                        artist -> {
-                            var photo = filesClient.findImage(artist.getId())
-                                    .orElse(ImageGrpcResponse.getDefaultInstance());
-                            responseObserver.onNext(
-                                    ArtistMapper.toGrpcResponse(artist, photo.getContent().toStringUtf8()));
-                        },
+                        artist -> responseObserver.onNext(
+                                ArtistMapper.toGrpcResponse(artist, filesClient.findImage(artist.getId()).orElse(null), legacyPhoto)),
                         () -> {
                             throw new ArtistNotFoundException(name);
                         }
@@ -131,10 +160,7 @@ public class ArtistGrpcService extends ArtistsServiceGrpc.ArtistsServiceImplBase
                         photo -> photo));
 
         var grpcArtists = artistEntities.stream()
-                .map(artist ->
-                        ArtistMapper.toGrpcResponse(
-                                artist,
-                                photoMap.getOrDefault(artist.getId(), ImageGrpcResponse.getDefaultInstance()).getContent().toStringUtf8()))
+                .map(artist -> ArtistMapper.toGrpcResponse(artist, photoMap.get(artist.getId()), legacyPhoto))
                 .toList();
 
         responseObserver.onNext(ArtistListGrpcResponse.newBuilder()
@@ -144,13 +170,15 @@ public class ArtistGrpcService extends ArtistsServiceGrpc.ArtistsServiceImplBase
         responseObserver.onCompleted();
     }
 
+    /**
+     * Photos are waited for within budget of rococo-files, page is returned without them if it is spent.
+     */
     @Override
-    @Transactional(readOnly = true)
     public void findAll(ArtistsFilterGrpcRequest request, StreamObserver<ArtistsGrpcResponse> responseObserver) {
 
-        var isOriginalText = request.getOriginalPhoto()
-                ? "original"
-                : "thumbnail";
+        var isOriginalText = request.getPlaceholderPhoto()
+                ? "placeholder"
+                : request.getOriginalPhoto() ? "original" : "thumbnail";
         log.info("Find all artists with {} photos by params: {}", isOriginalText, request);
 
         var artistsEntities = artistRepository.findAll(
@@ -163,70 +191,124 @@ public class ArtistGrpcService extends ArtistsServiceGrpc.ArtistsServiceImplBase
                 .distinct()
                 .toList();
 
-        var photoMap = filesClient.findAllByIds(artistIds, request.getOriginalPhoto()).stream()
+        var budget = latencyBudgets.start();
+        var photoMap = budget.call(
+                        "files",
+                        () -> request.getPlaceholderPhoto()
+                                ? filesClient.findAllPlaceholders(artistIds)
+                                : filesClient.findAllByIds(artistIds, request.getOriginalPhoto()),
+                        List.<ImageGrpcResponse>of()).stream()
                 .collect(Collectors.toMap(
                         photo -> UUID.fromString(photo.getEntityId()),
-                        photo -> photo.getContent().toStringUtf8()));
+                        photo -> photo));
 
         responseObserver.onNext(
-                ArtistMapper.toPageGrpc(artistsEntities, photoMap));
+                ArtistMapper.toPageGrpc(artistsEntities, photoMap, legacyPhoto).toBuilder()
+                        .setDegraded(budget.finish())
+                        .build());
 
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Remote lookups are done before short transaction, photo is sent to rococo-files after commit.
+     * Previous artist data is restored if photo is not saved.
+     */
     @Override
-    @Transactional
     public void update(UpdateArtistGrpcRequest request, StreamObserver<ArtistGrpcResponse> responseObserver) {
 
         log.info("Update artist: {}", request);
 
-        artistRepository.findById(UUID.fromString(request.getId()))
-                .ifPresentOrElse(
-                        artist -> {
-                            artistRepository.findByName(request.getName())
-                                    .ifPresent(artistWithSameName -> {
-                                        if (!artistWithSameName.getId().equals(artist.getId()))
-                                            throw new ArtistAlreadyExistsException(artist.getName());
-                                    });
-
-                            var existPhoto = filesClient.findImage(artist.getId());
-                            if (existPhoto.isPresent() && !request.getPhoto().isEmpty()) {
-                                filesClient.update(artist.getId(), request.getPhoto());
-                            } else if (existPhoto.isPresent() && request.getPhoto().isEmpty()) {
-                                filesClient.delete(artist.getId());
-                            } else if (existPhoto.isEmpty() && !request.getPhoto().isEmpty()) {
-                                filesClient.add(artist.getId(), request.getPhoto());
-                            }
-
-                            responseObserver.onNext(
-                                    ArtistMapper.toGrpcResponse(
-                                            artistRepository.save(
-                                                    ArtistMapper.updateFromGrpcRequest(artist, request)),
-                                            request.getPhoto()));
-                        },
-                        () -> {
-                            throw new ArtistNotFoundException(UUID.fromString(request.getId()));
-                        }
-                );
+        var id = UUID.fromString(request.getId());
+        var artist = artistRepository.findById(id)
+                .orElseThrow(() -> new ArtistNotFoundException(id));
+        artistRepository.findByName(request.getName())
+                .ifPresent(artistWithSameName -> {
+                    if (!artistWithSameName.getId().equals(artist.getId()))
+                        throw new ArtistAlreadyExistsException(artist.getName());
+                });
+
+        var photo = ArtistMapper.toPhoto(request);
+        var hasPhoto = filesClient.exists(artist.getId());
+
+        var updatedArtist = save(ArtistMapper.updateFromGrpcRequest(artist, request));
+        runOrCompensate(
+                () -> {
+                    if (hasPhoto && !photo.getContent().isEmpty()) {
+                        filesClient.update(artist.getId(), photo.getContent(), photo.getFormat());
+                    } else if (hasPhoto && photo.getContent().isEmpty()) {
+                        filesClient.delete(artist.getId());
+                    } else if (!hasPhoto && !photo.getContent().isEmpty()) {
+                        filesClient.add(artist.getId(), photo.getContent(), photo.getFormat());
+                    }
+                },
+                () -> save(artist));
 
+        responseObserver.onNext(
+                ArtistMapper.toGrpcResponse(updatedArtist, photo, legacyPhoto));
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Photo is deleted after commit. Photo left by failed call is collected by rococo-files later.
+     */
     @Override
-    @Transactional
     public void removeById(IdType request, StreamObserver<Empty> responseObserver) {
 
         log.info("Delete artist by id: {}", request.getId());
 
         var id = UUID.fromString(request.getId());
-        artistRepository.deleteById(id);
-        filesClient.delete(id);
+        delete(id);
+        try {
+            filesClient.delete(id);
+        } catch (RuntimeException ex) {
+            log.warn("Photo of deleted artist [{}] is not deleted, it is left for collector", id, ex);
+        }
 
         responseObserver.onNext(Empty.newBuilder().build());
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Ids of all artists page by page, images of entities missing here are collected by rococo-files.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void findIdsPage(IdsPageGrpcRequest request, StreamObserver<IdsType> responseObserver) {
+
+        log.info("Find artist ids after: [{}]", request.getAfter());
+
+        var after = request.getAfter().isEmpty()
+                ? new UUID(0, 0)
+                : UUID.fromString(request.getAfter());
+        var ids = artistRepository.findIdsAfter(after, Limit.of(Math.max(request.getSize(), 1))).stream()
+                .map(UUID::toString)
+                .toList();
+
+        responseObserver.onNext(IdsType.newBuilder()
+                .addAllId(ids)
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    private ArtistEntity save(ArtistEntity artist) {
+        return transactionTemplate.execute(status -> {
+            var savedArtist = artistRepository.save(artist);
+            eventPublisher.publishEvent(ArtistMapper.toEvent(EventType.UPDATED, savedArtist));
+            return savedArtist;
+        });
+    }
+
+    private void delete(UUID id) {
+        transactionTemplate.execute(status -> {
+            artistRepository.deleteById(id);
+            eventPublisher.publishEvent(ArtistMapper.toDeletedEvent(id));
+            return null;
+        });
+    }
+
 }
@@ -2,7 +2,10 @@ package org.rococo.artists.service;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
+import io.grpc.Context;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,33 +13,51 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.rococo.artists.client.FilesGrpcClient;
 import org.rococo.artists.data.ArtistEntity;
 import org.rococo.artists.data.ArtistRepository;
 import org.rococo.artists.ex.ArtistAlreadyExistsException;
 import org.rococo.artists.ex.ArtistNotFoundException;
+import org.rococo.artists.model.ArtistEventDTO;
+import org.rococo.artists.model.EventType;
 import org.rococo.artists.specs.ArtistSpecs;
+import org.rococo.common.budget.LatencyBudgets;
 import org.rococo.grpc.artists.*;
 import org.rococo.grpc.common.page.DirectionGrpc;
+import org.rococo.grpc.common.page.IdsPageGrpcRequest;
 import org.rococo.grpc.common.page.PageableGrpc;
 import org.rococo.grpc.common.page.SortGrpc;
 import org.rococo.grpc.common.type.IdType;
 import org.rococo.grpc.common.type.IdsType;
 import org.rococo.grpc.common.type.NameType;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.files.ImageGrpcResponse;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -53,6 +74,15 @@ class ArtistGrpcServiceTests {
     @Mock
     private FilesGrpcClient filesClient;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private LatencyBudgets latencyBudgets = new LatencyBudgets(new SimpleMeterRegistry(), Map.of("files", Duration.ofSeconds(1)));
+
     @Mock
     private StreamObserver<ArtistGrpcResponse> artistResponseObserver;
 
@@ -65,6 +95,12 @@ class ArtistGrpcServiceTests {
     @Mock
     private StreamObserver<Empty> emptyResponseObserver;
 
+    @Mock
+    private StreamObserver<StatusType> statusResponseObserver;
+
+    @Mock
+    private StreamObserver<IdsType> idsResponseObserver;
+
     @InjectMocks
     private ArtistGrpcService artistGrpcService;
 
@@ -81,6 +117,10 @@ class ArtistGrpcServiceTests {
     @BeforeEach
     void setUp() {
 
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(new SimpleTransactionStatus()));
+
         artistId = UUID.randomUUID();
 
         artistEntity = ArtistEntity.builder()
@@ -93,6 +133,7 @@ class ArtistGrpcServiceTests {
         image = ImageGrpcResponse.newBuilder()
                 .setEntityId(artistId.toString())
                 .setContent(ByteString.copyFromUtf8("image-data"))
+                .setFormat("png")
                 .build();
 
         addRequest = AddArtistGrpcRequest.newBuilder()
@@ -150,12 +191,69 @@ class ArtistGrpcServiceTests {
 
         // Assertions
         verify(artistRepository).save(any(ArtistEntity.class));
-        verify(filesClient).add(artistId, "image-data");
+        verify(filesClient).add(artistId, ByteString.copyFromUtf8("image-data"), "");
+        verify(eventPublisher).publishEvent(argThat((ArtistEventDTO event) ->
+                event.type() == EventType.ADDED && event.id().equals(artistId)));
         verify(artistResponseObserver).onNext(any(ArtistGrpcResponse.class));
         verify(artistResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("Add: removes saved artist when rococo-files did not save photo")
+    void add_RemovesArtist_IfPhotoNotSaved() {
+
+        // Stubs
+        when(artistRepository.findByName("Leonardo da Vinci"))
+                .thenReturn(Optional.empty());
+        when(artistRepository.save(any(ArtistEntity.class)))
+                .thenReturn(artistEntity);
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).add(any(), any(), any());
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () ->
+                artistGrpcService.add(addRequest, artistResponseObserver));
+
+        final var inOrder = inOrder(artistRepository, filesClient);
+        inOrder.verify(artistRepository).save(any(ArtistEntity.class));
+        inOrder.verify(filesClient).add(any(), any(), any());
+        inOrder.verify(artistRepository).deleteById(artistId);
+        verify(eventPublisher).publishEvent(new ArtistEventDTO(EventType.DELETED, artistId, null, null));
+        verify(artistResponseObserver, never()).onNext(any());
+
+    }
+
+    @Test
+    @DisplayName("Add: passes raw photo to rococo-files and back unchanged")
+    void add_PassesRawPhotoUnchanged() {
+
+        // Data
+        final var content = ByteString.copyFrom(new byte[]{1, 2, 3});
+        final var rawPhotoRequest = addRequest.toBuilder()
+                .clearPhoto()
+                .setPhotoContent(content)
+                .setPhotoFormat("png")
+                .build();
+
+        // Stubs
+        when(artistRepository.findByName("Leonardo da Vinci"))
+                .thenReturn(Optional.empty());
+        when(artistRepository.save(any(ArtistEntity.class)))
+                .thenReturn(artistEntity);
+
+        // Steps
+        artistGrpcService.add(rawPhotoRequest, artistResponseObserver);
+
+        // Assertions
+        verify(filesClient).add(artistId, content, "png");
+        verify(artistResponseObserver).onNext(argThat(response ->
+                response.getPhotoContent() == content
+                        && response.getPhotoFormat().equals("png")
+                        && response.getPhoto().isEmpty()));
+
+    }
+
     @Test
     @DisplayName("Add: add artist throws ArtistAlreadyExistsException when name is already taken")
     void add_ThrowsArtistAlreadyExistsException_IfArtistWithSameNameExists() {
@@ -169,12 +267,30 @@ class ArtistGrpcServiceTests {
                 artistGrpcService.add(addRequest, artistResponseObserver));
 
         verify(artistRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(artistResponseObserver, never()).onNext(any());
         verify(artistResponseObserver, never()).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("ExistsById: returns whether artist exists without loading photo")
+    void existsById_ReturnsStatus() {
+
+        // Stubs
+        when(artistRepository.existsById(artistId))
+                .thenReturn(true);
+
+        // Steps
+        artistGrpcService.existsById(idRequest, statusResponseObserver);
+
+        // Assertions
+        verify(statusResponseObserver).onNext(StatusType.newBuilder().setStatus(true).build());
+        verify(statusResponseObserver).onCompleted();
+        verifyNoInteractions(filesClient);
+
+    }
+
     @Test
     @DisplayName("FindById: returns artist")
     void findById_Success() {
@@ -194,6 +310,30 @@ class ArtistGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("FindById: returns photo also as data-URI when legacy photo is enabled")
+    void findById_ReturnsDataUriPhoto_IfLegacyPhotoEnabled() {
+
+        // Data
+        ReflectionTestUtils.setField(artistGrpcService, "legacyPhoto", true);
+
+        // Stubs
+        when(artistRepository.findById(artistId))
+                .thenReturn(Optional.of(artistEntity));
+        when(filesClient.findImage(artistId))
+                .thenReturn(Optional.of(image));
+
+        // Steps
+        artistGrpcService.findById(idRequest, artistResponseObserver);
+
+        // Assertions
+        verify(artistResponseObserver).onNext(argThat(response ->
+                response.getPhotoContent().equals(image.getContent())
+                        && response.getPhoto().equals("data:image/png;base64,"
+                        + Base64.getEncoder().encodeToString(image.getContent().toByteArray()))));
+
+    }
+
     @Test
     @DisplayName("FindById: throws ArtistNotFoundException when artist not exists")
     void findById_ThrowsArtistNotFoundException_IfArtistDoesNotExist() {
@@ -305,6 +445,62 @@ class ArtistGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("FindAll: returns degraded page without photos when rococo-files did not answer within budget")
+    void findAll_ReturnsDegradedPage_IfFilesBudgetSpent() {
+
+        // Data
+        Page<ArtistEntity> page = new PageImpl<>(List.of(artistEntity), PageRequest.of(0, 10), 1);
+
+        // Stubs
+        when(artistRepository.findAll(ArgumentMatchers.<Specification<ArtistEntity>>any(), any(Pageable.class)))
+                .thenReturn(page);
+        when(filesClient.findAllByIds(List.of(artistId), true))
+                .thenAnswer(invocation -> {
+                    final var cancelled = new CountDownLatch(1);
+                    Context.current().addListener(context -> cancelled.countDown(), Runnable::run);
+                    assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+                    throw Status.DEADLINE_EXCEEDED.asRuntimeException();
+                });
+
+        // Steps
+        artistGrpcService.findAll(filterRequest, artistsResponseObserver);
+
+        // Assertions
+        verify(artistsResponseObserver).onNext(argThat(response ->
+                response.getDegraded()
+                        && response.getDataCount() == 1
+                        && response.getData(0).getPhotoContent().isEmpty()));
+        verify(artistsResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindAll: returns artists with placeholder photos if requested")
+    void findAll_ReturnsPlaceholders_IfPlaceholderRequested() {
+
+        // Data
+        final Page<ArtistEntity> page = new PageImpl<>(List.of(artistEntity), PageRequest.of(0, 10), 1);
+        final var placeholderRequest = filterRequest.toBuilder()
+                .setPlaceholderPhoto(true)
+                .build();
+
+        // Stubs
+        when(artistRepository.findAll(ArgumentMatchers.<Specification<ArtistEntity>>any(), any(Pageable.class)))
+                .thenReturn(page);
+        when(filesClient.findAllPlaceholders(List.of(artistId)))
+                .thenReturn(List.of(image));
+
+        // Steps
+        artistGrpcService.findAll(placeholderRequest, artistsResponseObserver);
+
+        // Assertions
+        verify(artistsResponseObserver).onNext(any(ArtistsGrpcResponse.class));
+        verify(artistsResponseObserver).onCompleted();
+        verify(filesClient, never()).findAllByIds(anyList(), anyBoolean());
+
+    }
+
     @Test
     @DisplayName("Update: update artist data with same name and send request to update photo")
     void update_Success_IfArtistNameUnchanged() {
@@ -357,6 +553,33 @@ class ArtistGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("Update: restores previous artist data when rococo-files did not save photo")
+    void update_RestoresArtist_IfPhotoNotSaved() {
+
+        // Stubs
+        when(artistRepository.findById(artistId))
+                .thenReturn(Optional.of(artistEntity));
+        when(artistRepository.findByName("Michelangelo"))
+                .thenReturn(Optional.empty());
+        when(artistRepository.save(any(ArtistEntity.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(filesClient.exists(artistId))
+                .thenReturn(true);
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).update(any(), any(), any());
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () ->
+                artistGrpcService.update(updateRequest, artistResponseObserver));
+
+        final var inOrder = inOrder(artistRepository);
+        inOrder.verify(artistRepository).save(argThat((ArtistEntity artist) -> artist.getName().equals("Michelangelo")));
+        inOrder.verify(artistRepository).save(argThat((ArtistEntity artist) -> artist.getName().equals("Leonardo da Vinci")));
+        verify(artistResponseObserver, never()).onNext(any());
+
+    }
+
     @Test
     @DisplayName("Update: update artist and send request to add photo when request contains photo and rococo-files doesn't have photo")
     void update_Success_IfArtistPhotoNotExists_AndRequestContainsPhoto() {
@@ -376,15 +599,15 @@ class ArtistGrpcServiceTests {
                 .thenReturn(Optional.empty());
         when(artistRepository.save(any(ArtistEntity.class)))
                 .thenReturn(artistEntity);
-        when(filesClient.findImage(artistId))
-                .thenReturn(Optional.empty());
+        when(filesClient.exists(artistId))
+                .thenReturn(false);
 
         // Steps
         artistGrpcService.update(newPhotoRequest, artistResponseObserver);
 
         // Assertions
         verify(artistRepository).save(any(ArtistEntity.class));
-        verify(filesClient).add(artistId, "new-image");
+        verify(filesClient).add(artistId, ByteString.copyFromUtf8("new-image"), "");
         verify(artistResponseObserver).onNext(any(ArtistGrpcResponse.class));
         verify(artistResponseObserver).onCompleted();
 
@@ -409,8 +632,8 @@ class ArtistGrpcServiceTests {
                 .thenReturn(Optional.empty());
         when(artistRepository.save(any(ArtistEntity.class)))
                 .thenReturn(artistEntity);
-        when(filesClient.findImage(artistId))
-                .thenReturn(Optional.of(image));
+        when(filesClient.exists(artistId))
+                .thenReturn(true);
 
         // Steps
         artistGrpcService.update(newPhotoRequest, artistResponseObserver);
@@ -475,10 +698,73 @@ class ArtistGrpcServiceTests {
         // Assertions
         verify(artistRepository).deleteById(artistId);
         verify(filesClient).delete(artistId);
+        verify(eventPublisher).publishEvent(new ArtistEventDTO(EventType.DELETED, artistId, null, null));
+        verify(emptyResponseObserver).onNext(Empty.newBuilder().build());
+        verify(emptyResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("RemoveById: deletes artist when rococo-files did not delete photo")
+    void removeById_Success_IfPhotoNotDeleted() {
+
+        // Stubs
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).delete(artistId);
+
+        // Steps
+        artistGrpcService.removeById(idRequest, emptyResponseObserver);
+
+        // Assertions
+        verify(artistRepository).deleteById(artistId);
+        verify(artistRepository, never()).save(any());
         verify(emptyResponseObserver).onNext(Empty.newBuilder().build());
         verify(emptyResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("FindIdsPage: returns ids after given id")
+    void findIdsPage_ReturnsIdsAfterGivenId() {
+
+        // Data
+        final var after = UUID.randomUUID();
+        final var nextId = UUID.randomUUID();
+        final var request = IdsPageGrpcRequest.newBuilder()
+                .setAfter(after.toString())
+                .setSize(100)
+                .build();
+
+        // Stubs
+        when(artistRepository.findIdsAfter(after, Limit.of(100)))
+                .thenReturn(List.of(nextId));
+
+        // Steps
+        artistGrpcService.findIdsPage(request, idsResponseObserver);
+
+        // Assertions
+        verify(idsResponseObserver).onNext(IdsType.newBuilder()
+                .addId(nextId.toString())
+                .build());
+        verify(idsResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindIdsPage: returns first ids when after is empty")
+    void findIdsPage_ReturnsFirstIds_IfAfterIsEmpty() {
+
+        // Stubs
+        when(artistRepository.findIdsAfter(new UUID(0, 0), Limit.of(100)))
+                .thenReturn(List.of());
+
+        // Steps
+        artistGrpcService.findIdsPage(IdsPageGrpcRequest.newBuilder().setSize(100).build(), idsResponseObserver);
+
+        // Assertions
+        verify(idsResponseObserver).onNext(IdsType.getDefaultInstance());
+        verify(idsResponseObserver).onCompleted();
+
+    }
 
 }
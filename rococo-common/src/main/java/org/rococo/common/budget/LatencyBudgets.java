@@ -0,0 +1,62 @@
+package org.rococo.common.budget;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.rococo.common.loader.RequestScope;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Time budgets of downstream services of a service, by dependency name ({@code files}, {@code countries}, ...).
+ * Every aggregate response starts its own {@link ResponseBudget}.
+ */
+@ParametersAreNonnullByDefault
+public class LatencyBudgets implements AutoCloseable {
+
+    private static final String NO_RPC = "none";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Duration> budgets;
+
+    private final ScheduledExecutorService deadlineScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final var thread = new Thread(runnable, "latency-budget-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param budgets time dependency is waited for, by dependency name
+     */
+    public LatencyBudgets(MeterRegistry meterRegistry, Map<String, Duration> budgets) {
+        budgets.forEach((dependency, budget) -> {
+            if (budget.isNegative() || budget.isZero())
+                throw new IllegalArgumentException("Budget of [%s] must be positive, but was [%s]".formatted(dependency, budget));
+        });
+        this.meterRegistry = meterRegistry;
+        this.budgets = Map.copyOf(budgets);
+    }
+
+    /**
+     * Starts budget of response of current gRPC call
+     */
+    @Nonnull
+    public ResponseBudget start() {
+        final var scope = RequestScope.current();
+        return new ResponseBudget(
+                scope == null ? NO_RPC : scope.rpc(),
+                budgets,
+                deadlineScheduler,
+                meterRegistry);
+    }
+
+    @Override
+    public void close() {
+        deadlineScheduler.shutdownNow();
+    }
+
+}
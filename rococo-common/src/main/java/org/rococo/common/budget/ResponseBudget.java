@@ -0,0 +1,102 @@
+package org.rococo.common.budget;
+
+import io.grpc.Context;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Budget of one aggregate response. Each dependency call runs in gRPC context with deadline of its budget, so
+ * call not answered in time is cancelled; its fields are left empty and response is marked degraded.
+ * Deadline of the caller is kept if it is shorter. Calls may run concurrently.
+ * <p>
+ * {@code rococo.aggregate.responses} counts finished responses by {@code degraded} tag,
+ * {@code rococo.aggregate.budget.exceeded} counts calls cut by budget of {@code dependency}.
+ * Created by {@link LatencyBudgets}.
+ */
+@ParametersAreNonnullByDefault
+public class ResponseBudget {
+
+    private final String rpc;
+
+    private final Map<String, Duration> budgets;
+
+    private final ScheduledExecutorService deadlineScheduler;
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicBoolean degraded = new AtomicBoolean();
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    ResponseBudget(String rpc,
+                   Map<String, Duration> budgets,
+                   ScheduledExecutorService deadlineScheduler,
+                   MeterRegistry meterRegistry
+    ) {
+        this.rpc = rpc;
+        this.budgets = budgets;
+        this.deadlineScheduler = deadlineScheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Calls dependency within its budget
+     *
+     * @param fallback returned in place of data when budget is spent
+     */
+    public <T> T call(String dependency, Supplier<T> call, T fallback) {
+
+        final var budget = budgets.get(dependency);
+        if (budget == null)
+            throw new IllegalArgumentException("Budget of [%s] is not configured".formatted(dependency));
+
+        final var context = Context.current()
+                .withDeadlineAfter(budget.toNanos(), TimeUnit.NANOSECONDS, deadlineScheduler);
+        final var previous = context.attach();
+        try {
+            return call.get();
+        } catch (RuntimeException ex) {
+            if (!(context.cancellationCause() instanceof TimeoutException) && !context.getDeadline().isExpired())
+                throw ex;
+            degraded.set(true);
+            Counter.builder("rococo.aggregate.budget.exceeded")
+                    .description("Dependency calls cancelled as their budget is spent")
+                    .tag("rpc", rpc)
+                    .tag("dependency", dependency)
+                    .register(meterRegistry)
+                    .increment();
+            return fallback;
+        } finally {
+            context.detach(previous);
+            context.cancel(null);
+        }
+
+    }
+
+    /**
+     * Finishes response, it is counted once
+     *
+     * @return true if response lacks data of a dependency which did not answer in time
+     */
+    public boolean finish() {
+        final var isDegraded = degraded.get();
+        if (finished.compareAndSet(false, true))
+            Counter.builder("rococo.aggregate.responses")
+                    .description("Aggregate responses, degraded ones lack data of dependencies not answered in time")
+                    .tag("rpc", rpc)
+                    .tag("degraded", String.valueOf(isDegraded))
+                    .register(meterRegistry)
+                    .increment();
+        return isDegraded;
+    }
+
+}
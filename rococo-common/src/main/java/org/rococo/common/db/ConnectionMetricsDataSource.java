@@ -0,0 +1,128 @@
+package org.rococo.common.db;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.rococo.common.loader.RequestScope;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Measures connections of pool per gRPC method: {@code rococo.db.connection.acquire} is time of waiting for
+ * connection, {@code rococo.db.connection.hold} is time connection is used before it is returned to pool.
+ * Connections taken outside of gRPC calls (Kafka listeners, scheduled jobs) are tagged with {@code rpc=none}.
+ */
+@ParametersAreNonnullByDefault
+public class ConnectionMetricsDataSource implements DataSource {
+
+    private static final String NO_RPC = "none";
+
+    private final DataSource delegate;
+
+    private final MeterRegistry meterRegistry;
+
+    public ConnectionMetricsDataSource(DataSource delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        final var started = System.nanoTime();
+        return measured(delegate.getConnection(), started);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        final var started = System.nanoTime();
+        return measured(delegate.getConnection(username, password), started);
+    }
+
+    private Connection measured(Connection connection, long started) {
+
+        final var rpc = currentRpc();
+        final var acquired = System.nanoTime();
+        timer("rococo.db.connection.acquire", "Time of waiting for connection from pool", rpc)
+                .record(acquired - started, TimeUnit.NANOSECONDS);
+
+        final var hold = timer("rococo.db.connection.hold", "Time connection is held before it is returned to pool", rpc);
+        final var closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && closed.compareAndSet(false, true))
+                        hold.record(System.nanoTime() - acquired, TimeUnit.NANOSECONDS);
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+
+    }
+
+    private Timer timer(String name, String description, String rpc) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("rpc", rpc)
+                .register(meterRegistry);
+    }
+
+    private static String currentRpc() {
+        final var scope = RequestScope.current();
+        return scope == null
+                ? NO_RPC
+                : scope.rpc();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    /**
+     * Unwraps to pool too, so its own metrics and health checks still find it
+     */
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this)
+                ? iface.cast(this)
+                : delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.rococo.common.db;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps data sources of service into {@link ConnectionMetricsDataSource}, imported by application class of service.
+ * Data sources of contexts without meter registry, e.g. repository tests, are left as is.
+ */
+@Configuration
+public class DataSourceMetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionMetricsDataSource)
+                    return bean;
+                final var registry = meterRegistry.getIfAvailable();
+                return registry == null
+                        ? bean
+                        : new ConnectionMetricsDataSource(dataSource, registry);
+            }
+        };
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.rococo.common.files;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.rococo.grpc.files.ImageGrpcResponse;
+import org.rococo.grpc.files.RenditionGrpc;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Local copy of images received from rococo-files by key of their entity and rendition, bounded by total size in bytes.
+ * Content hashes of kept images are sent with find requests, so unchanged images come back as not modified
+ * without bytes and are taken from here.
+ *
+ * @param <K> key of entity whose image is kept, e.g. its id, or its type and id if images of several types are kept
+ */
+@ParametersAreNonnullByDefault
+public final class ImageCache<K> {
+
+    private final Cache<Key<K>, ImageGrpcResponse> cache;
+
+    public ImageCache(long maxSizeBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeBytes)
+                .weigher((Key<K> key, ImageGrpcResponse image) -> image.getContent().size())
+                .build();
+    }
+
+    @Nonnull
+    public Optional<ImageGrpcResponse> get(K entityKey, RenditionGrpc rendition) {
+        return Optional.ofNullable(cache.getIfPresent(new Key<>(entityKey, rendition)));
+    }
+
+    /**
+     * @return entity id -> content hash of kept images, as expected by {@code known_hashes} of find request
+     */
+    @Nonnull
+    public Map<String, String> knownHashes(Collection<K> entityKeys, RenditionGrpc rendition) {
+        final Map<String, String> knownHashes = new HashMap<>();
+        entityKeys.forEach(entityKey -> get(entityKey, rendition)
+                .ifPresent(image -> knownHashes.put(image.getEntityId(), image.getContentHash())));
+        return knownHashes;
+    }
+
+    /**
+     * Keeps image with content and content hash, images without them are not cached.
+     *
+     * @return the same image
+     */
+    @Nonnull
+    public ImageGrpcResponse put(K entityKey, ImageGrpcResponse image, RenditionGrpc rendition) {
+        if (!image.getContentHash().isEmpty() && !image.getContent().isEmpty())
+            cache.put(new Key<>(entityKey, rendition), image);
+        return image;
+    }
+
+    private record Key<K>(K entityKey, RenditionGrpc rendition) {
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.rococo.common.files;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import org.rococo.grpc.files.FilesServiceGrpc;
+import org.rococo.grpc.files.ImageChunk;
+import org.rococo.grpc.files.ImageUploadHeader;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams image to rococo-files in chunks, so neither side has to hold it in one message.
+ * Chunks are views of content, not copies. They are sent only while transport is ready for more,
+ * so image is not queued whole in the channel when rococo-files reads it slower than it is sent.
+ */
+@ParametersAreNonnullByDefault
+public final class ImageUploader {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private ImageUploader() {
+    }
+
+    /**
+     * Blocks until rococo-files stores the image, but no longer than {@code timeout}
+     *
+     * @throws io.grpc.StatusRuntimeException if image is not stored, {@code DEADLINE_EXCEEDED} if timeout is passed
+     */
+    public static void upload(FilesServiceGrpc.FilesServiceStub stub,
+                              ImageUploadHeader header,
+                              ByteString content,
+                              Duration timeout
+    ) {
+
+        final var result = new CompletableFuture<Empty>();
+        stub.withDeadlineAfter(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .uploadImage(new ChunkSender(header, content, result));
+
+        try {
+            result.join();
+        } catch (CompletionException ex) {
+            throw Status.fromThrowable(ex.getCause()).asRuntimeException();
+        }
+
+    }
+
+    /**
+     * Sends header, then data chunks from on-ready handler. Handler and response callbacks are run
+     * one at a time by the call, so position in content needs no synchronization.
+     */
+    private static final class ChunkSender implements ClientResponseObserver<ImageChunk, Empty> {
+
+        private final ImageUploadHeader header;
+
+        private final ByteString content;
+
+        private final CompletableFuture<Empty> result;
+
+        private ClientCallStreamObserver<ImageChunk> requestObserver;
+
+        private boolean headerSent;
+
+        private int offset;
+
+        private boolean done;
+
+        private ChunkSender(ImageUploadHeader header, ByteString content, CompletableFuture<Empty> result) {
+            this.header = header;
+            this.content = content;
+            this.result = result;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ImageChunk> requestObserver) {
+            this.requestObserver = requestObserver;
+            requestObserver.setOnReadyHandler(this::sendWhileReady);
+        }
+
+        private void sendWhileReady() {
+            while (!done && requestObserver.isReady()) {
+                if (!headerSent) {
+                    requestObserver.onNext(ImageChunk.newBuilder().setHeader(header).build());
+                    headerSent = true;
+                } else if (offset < content.size()) {
+                    final int end = Math.min(offset + CHUNK_SIZE, content.size());
+                    requestObserver.onNext(ImageChunk.newBuilder().setData(content.substring(offset, end)).build());
+                    offset = end;
+                } else {
+                    done = true;
+                    requestObserver.onCompleted();
+                }
+            }
+        }
+
+        @Override
+        public void onNext(Empty value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            done = true;
+            result.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            result.complete(Empty.getDefaultInstance());
+        }
+
+    }
+
+}
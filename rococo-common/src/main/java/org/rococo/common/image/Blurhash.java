@@ -0,0 +1,164 @@
+package org.rococo.common.image;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * <a href="https://github.com/woltapp/blurhash">BlurHash</a> of image: its colors as a few cosine components,
+ * encoded in a short base 83 string. Placeholder of {@code X x Y} components is {@code 4 + 2 * X * Y} characters.
+ * Pixels are ARGB ints in rows, as in {@link java.awt.image.BufferedImage#getRGB}; alpha is ignored.
+ */
+@ParametersAreNonnullByDefault
+public final class Blurhash {
+
+    /**
+     * Format of image content which is a blurhash string
+     */
+    public static final String FORMAT = "blurhash";
+
+    private static final String ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    private Blurhash() {
+    }
+
+    @Nonnull
+    public static String encode(int[] pixels, int width, int height, int componentsX, int componentsY) {
+
+        if (componentsX < 1 || componentsX > 9 || componentsY < 1 || componentsY > 9)
+            throw new IllegalArgumentException("Components must be from 1 to 9, but were [%dx%d]".formatted(componentsX, componentsY));
+        if (pixels.length != width * height)
+            throw new IllegalArgumentException("Expected [%d] pixels, but were [%d]".formatted(width * height, pixels.length));
+
+        final var factors = new double[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++)
+            for (int i = 0; i < componentsX; i++)
+                factors[j * componentsX + i] = factor(pixels, width, height, i, j);
+
+        final var hash = new StringBuilder(4 + 2 * factors.length);
+        encode83(hash, componentsX - 1 + (componentsY - 1) * 9, 1);
+
+        double maximum = 1;
+        if (factors.length > 1) {
+            double actualMaximum = 0;
+            for (int k = 1; k < factors.length; k++)
+                for (double value : factors[k])
+                    actualMaximum = Math.max(actualMaximum, Math.abs(value));
+            final int quantisedMaximum = (int) Math.max(0, Math.min(82, Math.floor(actualMaximum * 166 - 0.5)));
+            maximum = (quantisedMaximum + 1) / 166.0;
+            encode83(hash, quantisedMaximum, 1);
+        } else {
+            encode83(hash, 0, 1);
+        }
+
+        final var dc = factors[0];
+        encode83(hash, (toSrgb(dc[0]) << 16) + (toSrgb(dc[1]) << 8) + toSrgb(dc[2]), 4);
+        for (int k = 1; k < factors.length; k++)
+            encode83(hash, quantise(factors[k][0], maximum) * 19 * 19
+                    + quantise(factors[k][1], maximum) * 19
+                    + quantise(factors[k][2], maximum), 2);
+        return hash.toString();
+
+    }
+
+    /**
+     * @return ARGB pixels of opaque image of given size
+     * @throws IllegalArgumentException if hash is malformed
+     */
+    @Nonnull
+    public static int[] decode(String hash, int width, int height) {
+
+        if (hash.length() < 6)
+            throw new IllegalArgumentException("Blurhash must have at least 6 characters");
+        final int sizeFlag = decode83(hash, 0, 1);
+        final int componentsX = sizeFlag % 9 + 1;
+        final int componentsY = sizeFlag / 9 + 1;
+        if (hash.length() != 4 + 2 * componentsX * componentsY)
+            throw new IllegalArgumentException("Blurhash of [%dx%d] components must have [%d] characters, but has [%d]"
+                    .formatted(componentsX, componentsY, 4 + 2 * componentsX * componentsY, hash.length()));
+
+        final double maximum = (decode83(hash, 1, 1) + 1) / 166.0;
+        final var colors = new double[componentsX * componentsY][];
+        final int dc = decode83(hash, 2, 4);
+        colors[0] = new double[]{toLinear(dc >> 16), toLinear(dc >> 8 & 0xFF), toLinear(dc & 0xFF)};
+        for (int k = 1; k < colors.length; k++) {
+            final int ac = decode83(hash, 4 + k * 2, 2);
+            colors[k] = new double[]{
+                    unquantise(ac / (19 * 19), maximum),
+                    unquantise(ac / 19 % 19, maximum),
+                    unquantise(ac % 19, maximum)};
+        }
+
+        final var pixels = new int[width * height];
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++) {
+                double r = 0, g = 0, b = 0;
+                for (int j = 0; j < componentsY; j++)
+                    for (int i = 0; i < componentsX; i++) {
+                        final double basis = Math.cos(Math.PI * x * i / width) * Math.cos(Math.PI * y * j / height);
+                        final var color = colors[j * componentsX + i];
+                        r += color[0] * basis;
+                        g += color[1] * basis;
+                        b += color[2] * basis;
+                    }
+                pixels[y * width + x] = 0xFF << 24 | toSrgb(r) << 16 | toSrgb(g) << 8 | toSrgb(b);
+            }
+        return pixels;
+
+    }
+
+    private static double[] factor(int[] pixels, int width, int height, int i, int j) {
+        double r = 0, g = 0, b = 0;
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++) {
+                final double basis = Math.cos(Math.PI * i * x / width) * Math.cos(Math.PI * j * y / height);
+                final int pixel = pixels[y * width + x];
+                r += basis * toLinear(pixel >> 16 & 0xFF);
+                g += basis * toLinear(pixel >> 8 & 0xFF);
+                b += basis * toLinear(pixel & 0xFF);
+            }
+        final double scale = (i == 0 && j == 0 ? 1.0 : 2.0) / (width * height);
+        return new double[]{r * scale, g * scale, b * scale};
+    }
+
+    private static int quantise(double value, double maximum) {
+        return (int) Math.max(0, Math.min(18, Math.floor(signPow(value / maximum, 0.5) * 9 + 9.5)));
+    }
+
+    private static double unquantise(int value, double maximum) {
+        return signPow((value - 9) / 9.0, 2) * maximum;
+    }
+
+    private static double toLinear(int value) {
+        final double v = value / 255.0;
+        return v <= 0.04045 ? v / 12.92 : Math.pow((v + 0.055) / 1.055, 2.4);
+    }
+
+    private static int toSrgb(double value) {
+        final double v = Math.max(0, Math.min(1, value));
+        return v <= 0.0031308
+                ? (int) (v * 12.92 * 255 + 0.5)
+                : (int) ((1.055 * Math.pow(v, 1 / 2.4) - 0.055) * 255 + 0.5);
+    }
+
+    private static double signPow(double value, double exponent) {
+        return Math.copySign(Math.pow(Math.abs(value), exponent), value);
+    }
+
+    private static void encode83(StringBuilder hash, int value, int length) {
+        for (int k = 1; k <= length; k++)
+            hash.append(ALPHABET.charAt(value / (int) Math.pow(83, length - k) % 83));
+    }
+
+    private static int decode83(String hash, int offset, int length) {
+        int value = 0;
+        for (int k = offset; k < offset + length; k++) {
+            final int digit = ALPHABET.indexOf(hash.charAt(k));
+            if (digit < 0)
+                throw new IllegalArgumentException("Blurhash has invalid character [%s]".formatted(hash.charAt(k)));
+            value = value * 83 + digit;
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,231 @@
+package org.rococo.common.loader;
+
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Loads entities of a remote service by keys in batches. Keys requested within {@code window} by any requests are
+ * collected, deduplicated and sent as one {@code findAllByIds} call; batch is sent at once when it reaches
+ * {@code maxBatchSize}. Loaded values are kept in {@link RequestScope} of the call, so one request loads key once.
+ * <p>
+ * Batch is shared by requests with different deadlines, so it runs with deadline of its latest caller, but not later
+ * than {@code timeout}: batch is cancelled as soon as every its caller has given up on it.
+ * Every caller waits for it no longer than deadline of its own gRPC context, then {@code DEADLINE_EXCEEDED}
+ * is thrown. Exception thrown by batch function is rethrown to every caller of the batch.
+ * Created by {@link BatchLoaders}.
+ */
+@ParametersAreNonnullByDefault
+public class BatchLoader<K, V> {
+
+    private final String name;
+
+    private final Function<List<K>, Map<K, V>> batchFunction;
+
+    private final Duration window;
+
+    private final int maxBatchSize;
+
+    private final Duration timeout;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ExecutorService dispatcher;
+
+    private final DistributionSummary batchSizes;
+
+    private final Counter scopeHits;
+
+    private Batch<K, V> pending = new Batch<>();
+
+    BatchLoader(String name,
+                Function<List<K>, Map<K, V>> batchFunction,
+                Duration window,
+                int maxBatchSize,
+                Duration timeout,
+                ScheduledExecutorService scheduler,
+                ExecutorService dispatcher,
+                MeterRegistry meterRegistry
+    ) {
+        this.name = name;
+        this.batchFunction = batchFunction;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.timeout = timeout;
+        this.scheduler = scheduler;
+        this.dispatcher = dispatcher;
+        this.batchSizes = DistributionSummary.builder("rococo.loader.batch.size")
+                .description("Keys sent to remote service in one batch")
+                .tag("loader", name)
+                .register(meterRegistry);
+        this.scopeHits = Counter.builder("rococo.loader.scope.hits")
+                .description("Keys already loaded by the same request")
+                .tag("loader", name)
+                .register(meterRegistry);
+    }
+
+    @Nonnull
+    public CompletableFuture<Optional<V>> load(K key) {
+
+        final var scope = RequestScope.current();
+        if (scope == null)
+            return enqueue(key);
+
+        final var scopeKey = new ScopeKey(this, key);
+        final CompletableFuture<Optional<V>> loaded = scope.get(scopeKey);
+        if (loaded != null) {
+            scopeHits.increment();
+            return loaded;
+        }
+        return scope.putIfAbsent(scopeKey, enqueue(key));
+
+    }
+
+    /**
+     * Waits for value of key
+     *
+     * @return empty if remote service has no entity with the key
+     */
+    @Nonnull
+    public Optional<V> get(K key) {
+        return await(load(key));
+    }
+
+    /**
+     * Waits for values of keys
+     *
+     * @return found values in order of keys
+     */
+    @Nonnull
+    public Map<K, V> getAll(Collection<K> keys) {
+        final Map<K, CompletableFuture<Optional<V>>> loading = new LinkedHashMap<>();
+        keys.forEach(key -> loading.computeIfAbsent(key, this::load));
+
+        final Map<K, V> result = new LinkedHashMap<>();
+        loading.forEach((key, value) -> await(value).ifPresent(found -> result.put(key, found)));
+        return result;
+    }
+
+    private CompletableFuture<Optional<V>> enqueue(K key) {
+
+        final var callerDeadline = Context.current().getDeadline();
+        final Batch<K, V> full;
+        final CompletableFuture<Optional<V>> result;
+        synchronized (this) {
+            pending.addCaller(callerDeadline);
+            final var waiting = pending.values.get(key);
+            if (waiting != null)
+                return waiting;
+
+            result = new CompletableFuture<>();
+            pending.values.put(key, result);
+            if (pending.values.size() == 1) {
+                final var batch = pending;
+                scheduler.schedule(() -> dispatchIfPending(batch), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            if (pending.values.size() < maxBatchSize)
+                return result;
+
+            full = pending;
+            pending = new Batch<>();
+        }
+        dispatcher.execute(() -> run(full));
+        return result;
+
+    }
+
+    private void dispatchIfPending(Batch<K, V> batch) {
+        synchronized (this) {
+            if (pending != batch)
+                return;
+            pending = new Batch<>();
+        }
+        dispatcher.execute(() -> run(batch));
+    }
+
+    private void run(Batch<K, V> batch) {
+
+        batchSizes.record(batch.values.size());
+        var deadline = Deadline.after(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (batch.latestCallerDeadline != null)
+            deadline = deadline.minimum(batch.latestCallerDeadline);
+        final var context = Context.ROOT.withDeadline(deadline, scheduler);
+        try {
+            final var values = context.call(() -> batchFunction.apply(List.copyOf(batch.values.keySet())));
+            batch.values.forEach((key, value) -> value.complete(Optional.ofNullable(values.get(key))));
+        } catch (Throwable ex) {
+            batch.values.values().forEach(value -> value.completeExceptionally(ex));
+        } finally {
+            context.cancel(null);
+        }
+
+    }
+
+    private Optional<V> await(CompletableFuture<Optional<V>> value) {
+
+        final var deadline = Context.current().getDeadline();
+        try {
+            return deadline == null
+                    ? value.join()
+                    : value.copy()
+                    .orTimeout(Math.max(deadline.timeRemaining(TimeUnit.MILLISECONDS), 0), TimeUnit.MILLISECONDS)
+                    .join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof TimeoutException)
+                throw Status.DEADLINE_EXCEEDED
+                        .withDescription("Loader [%s] did not load value in time".formatted(name))
+                        .asRuntimeException();
+            if (ex.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw ex;
+        }
+
+    }
+
+    private record ScopeKey(BatchLoader<?, ?> loader, Object key) {
+    }
+
+    private static final class Batch<K, V> {
+
+        private final Map<K, CompletableFuture<Optional<V>>> values = new LinkedHashMap<>();
+
+        // null while batch has a caller without deadline
+        private Deadline latestCallerDeadline;
+
+        private boolean hasCallers;
+
+        void addCaller(@Nullable Deadline callerDeadline) {
+            if (!hasCallers)
+                latestCallerDeadline = callerDeadline;
+            else if (latestCallerDeadline != null)
+                latestCallerDeadline = callerDeadline == null ? null : max(latestCallerDeadline, callerDeadline);
+            hasCallers = true;
+        }
+
+        private static Deadline max(Deadline first, Deadline second) {
+            return first.isBefore(second) ? second : first;
+        }
+
+    }
+
+}
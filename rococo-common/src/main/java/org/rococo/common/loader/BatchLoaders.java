@@ -0,0 +1,76 @@
+package org.rococo.common.loader;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Creates {@link BatchLoader}s of a service, they share its settings and threads
+ */
+@ParametersAreNonnullByDefault
+public class BatchLoaders implements AutoCloseable {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Duration window;
+
+    private final int maxBatchSize;
+
+    private final Duration timeout;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            threadFactory("batch-loader-scheduler-"));
+
+    private final ExecutorService dispatcher;
+
+    /**
+     * @param window       time keys are collected for before batch is sent
+     * @param maxBatchSize batch is sent at once when it has so many keys
+     * @param timeout      deadline of batch call
+     * @param threads      batches sent concurrently
+     */
+    public BatchLoaders(MeterRegistry meterRegistry, Duration window, int maxBatchSize, Duration timeout, int threads) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("Max batch size must be positive, but was [%d]".formatted(maxBatchSize));
+        this.meterRegistry = meterRegistry;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.timeout = timeout;
+        this.dispatcher = Executors.newFixedThreadPool(threads, threadFactory("batch-loader-"));
+    }
+
+    /**
+     * @param name          loader name, tag of its metrics
+     * @param batchFunction finds values by keys, keys not found are missing in its result
+     */
+    @Nonnull
+    public <K, V> BatchLoader<K, V> create(String name, Function<List<K>, Map<K, V>> batchFunction) {
+        return new BatchLoader<>(name, batchFunction, window, maxBatchSize, timeout, scheduler, dispatcher, meterRegistry);
+    }
+
+    @Override
+    public void close() {
+        dispatcher.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        final var counter = new AtomicInteger();
+        return runnable -> {
+            final var thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
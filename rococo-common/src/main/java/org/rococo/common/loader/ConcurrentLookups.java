@@ -0,0 +1,106 @@
+package org.rococo.common.loader;
+
+import io.grpc.Context;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs downstream lookups of one request concurrently, so request waits for the slowest service
+ * and not for the sum of them.
+ * <p>
+ * Lookups of a request share gRPC context with deadline of {@code budget}, blocking stubs called by them
+ * fail with {@code DEADLINE_EXCEEDED} when budget is spent. Deadline of the caller is kept if it is shorter.
+ * Lookups still running when request is finished are cancelled.
+ */
+@ParametersAreNonnullByDefault
+public class ConcurrentLookups implements AutoCloseable {
+
+    private final Duration budget;
+
+    private final ExecutorService executor;
+
+    private final ScheduledExecutorService deadlineScheduler = Executors.newSingleThreadScheduledExecutor(
+            threadFactory("lookups-deadline-"));
+
+    /**
+     * @param budget  deadline of lookups of one request
+     * @param threads lookups run concurrently, by all requests
+     */
+    public ConcurrentLookups(Duration budget, int threads) {
+        this.budget = budget;
+        this.executor = Executors.newFixedThreadPool(threads, threadFactory("lookups-"));
+    }
+
+    @Nonnull
+    public Batch start() {
+        return new Batch(Context.current()
+                .withDeadlineAfter(budget.toMillis(), TimeUnit.MILLISECONDS, deadlineScheduler));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        deadlineScheduler.shutdownNow();
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        final var counter = new AtomicInteger();
+        return runnable -> {
+            final var thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public class Batch implements AutoCloseable {
+
+        private final Context.CancellableContext context;
+
+        private Batch(Context.CancellableContext context) {
+            this.context = context;
+        }
+
+        @Nonnull
+        public <T> CompletableFuture<T> submit(Supplier<T> lookup) {
+            return CompletableFuture.supplyAsync(() -> {
+                final var previous = context.attach();
+                try {
+                    return lookup.get();
+                } finally {
+                    context.detach(previous);
+                }
+            }, executor);
+        }
+
+        /**
+         * Waits for lookup, its exception is thrown as is to be handled by gRPC advices
+         */
+        public <T> T join(CompletableFuture<T> lookup) {
+            try {
+                return lookup.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause)
+                    throw cause;
+                throw ex;
+            }
+        }
+
+        @Override
+        public void close() {
+            context.cancel(null);
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.rococo.common.loader;
+
+import io.grpc.Context;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Values loaded while one gRPC call is handled, kept in its {@link Context}. Opened for every incoming call by
+ * {@link RequestScopeInterceptor}; lookups running in child contexts of the call see the same scope.
+ */
+@ParametersAreNonnullByDefault
+public final class RequestScope {
+
+    public static final Context.Key<RequestScope> KEY = Context.key("rococo-request-scope");
+
+    private final String rpc;
+
+    private final Map<Object, CompletableFuture<?>> values = new ConcurrentHashMap<>();
+
+    /**
+     * @param rpc full name of called method
+     */
+    public RequestScope(String rpc) {
+        this.rpc = rpc;
+    }
+
+    /**
+     * @return scope of current call, or null outside of gRPC calls (Kafka listeners, scheduled jobs)
+     */
+    @Nullable
+    public static RequestScope current() {
+        return KEY.get();
+    }
+
+    /**
+     * @return full name of called method, e.g. {@code org.rococo.grpc.artists.ArtistsService/Update}
+     */
+    public String rpc() {
+        return rpc;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> get(Object key) {
+        return (CompletableFuture<T>) values.get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> putIfAbsent(Object key, CompletableFuture<T> value) {
+        final var previous = values.putIfAbsent(key, value);
+        return previous == null
+                ? value
+                : (CompletableFuture<T>) previous;
+    }
+
+}
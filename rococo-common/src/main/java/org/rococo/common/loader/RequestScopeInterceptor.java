@@ -0,0 +1,30 @@
+package org.rococo.common.loader;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Opens new {@link RequestScope} for every incoming call
+ */
+@ParametersAreNonnullByDefault
+public class RequestScopeInterceptor implements ServerInterceptor {
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next
+    ) {
+        return Contexts.interceptCall(
+                Context.current().withValue(RequestScope.KEY, new RequestScope(call.getMethodDescriptor().getFullMethodName())),
+                call,
+                headers,
+                next);
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.rococo.common.tx;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Remote side effects of committed changes. Change is committed by short transaction before remote call,
+ * so connection is not held while remote service answers, and is undone by compensation if the call failed.
+ */
+@ParametersAreNonnullByDefault
+public final class Compensations {
+
+    private static final Logger log = LoggerFactory.getLogger(Compensations.class);
+
+    private Compensations() {
+    }
+
+    /**
+     * Runs remote side effect of committed change, committed change is undone by compensation if side effect failed
+     *
+     * @throws RuntimeException of side effect, with exception of failed compensation suppressed
+     */
+    public static void runOrCompensate(Runnable sideEffect, Runnable compensation) {
+        try {
+            sideEffect.run();
+        } catch (RuntimeException ex) {
+            log.error("Remote call failed, committed change is compensated", ex);
+            try {
+                compensation.run();
+            } catch (RuntimeException compensationEx) {
+                ex.addSuppressed(compensationEx);
+            }
+            throw ex;
+        }
+    }
+
+}
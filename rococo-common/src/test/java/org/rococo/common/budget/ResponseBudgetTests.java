@@ -0,0 +1,154 @@
+package org.rococo.common.budget;
+
+import io.grpc.Context;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.rococo.common.loader.BatchLoader;
+import org.rococo.common.loader.BatchLoaders;
+import org.rococo.common.loader.RequestScope;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ResponseBudget: Module tests")
+class ResponseBudgetTests {
+
+    private static final String RPC = "org.rococo.grpc.artists.ArtistsService/FindAll";
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private LatencyBudgets budgets;
+
+    private Context call;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        budgets = new LatencyBudgets(meterRegistry, Map.of("files", Duration.ofMillis(50)));
+        call = Context.current().withValue(RequestScope.KEY, new RequestScope(RPC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        budgets.close();
+    }
+
+    @Test
+    @DisplayName("Call: returns data of dependency answered in time")
+    void call_ReturnsData_IfDependencyAnsweredInTime() throws Exception {
+
+        // Steps
+        final var budget = call.call(budgets::start);
+        final var photos = call.call(() -> budget.call("files", () -> List.of("photo"), List.<String>of()));
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(List.of("photo"), photos),
+                () -> assertFalse(budget.finish()),
+                () -> assertEquals(1.0, meterRegistry.get("rococo.aggregate.responses")
+                        .tag("rpc", RPC).tag("degraded", "false").counter().count())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Call: cancels call and returns fallback when budget is spent")
+    void call_CancelsCallAndReturnsFallback_IfBudgetSpent() throws Exception {
+
+        // Data
+        final var cancelled = new CountDownLatch(1);
+
+        // Steps
+        final var budget = call.call(budgets::start);
+        final var photos = call.call(() -> budget.call("files", () -> {
+            Context.current().addListener(context -> cancelled.countDown(), Runnable::run);
+            try {
+                if (!cancelled.await(5, TimeUnit.SECONDS))
+                    return List.of("photo");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Call is cancelled");
+        }, List.<String>of()));
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(List.of(), photos),
+                () -> assertTrue(budget.finish()),
+                () -> assertEquals(1.0, meterRegistry.get("rococo.aggregate.budget.exceeded")
+                        .tag("rpc", RPC).tag("dependency", "files").counter().count()),
+                () -> assertEquals(1.0, meterRegistry.get("rococo.aggregate.responses")
+                        .tag("rpc", RPC).tag("degraded", "true").counter().count())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Call: cancels batch of loader when budget is spent")
+    void call_CancelsLoaderBatch_IfBudgetSpent() throws Exception {
+
+        // Data
+        final var cancelled = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        try (var loaders = new BatchLoaders(meterRegistry, Duration.ZERO, 100, Duration.ofSeconds(5), 2)) {
+            final BatchLoader<String, String> loader = loaders.create("photos", keys -> {
+                Context.current().addListener(context -> cancelled.countDown(), Runnable::run);
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return Map.of();
+            });
+
+            // Steps
+            final var budget = call.call(budgets::start);
+            final var photos = call.call(() -> budget.call("files", () -> loader.getAll(List.of("photo")), Map.<String, String>of()));
+
+            // Assertions
+            assertAll(
+                    () -> assertEquals(Map.of(), photos),
+                    () -> assertTrue(cancelled.await(1, TimeUnit.SECONDS)),
+                    () -> assertTrue(budget.finish())
+            );
+            release.countDown();
+        }
+
+    }
+
+    @Test
+    @DisplayName("Call: rethrows failure of dependency not caused by budget")
+    void call_RethrowsFailure_IfBudgetNotSpent() {
+
+        // Data
+        final var budget = budgets.start();
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () -> budget.call("files", () -> {
+            throw new IllegalStateException("Service is not available");
+        }, List.of()));
+        assertFalse(budget.finish());
+
+    }
+
+    @Test
+    @DisplayName("Call: throws IllegalArgumentException if budget of dependency is not configured")
+    void call_ThrowsIllegalArgumentException_IfBudgetNotConfigured() {
+
+        // Data
+        final var budget = budgets.start();
+
+        // Steps & Assertions
+        assertThrows(IllegalArgumentException.class, () -> budget.call("countries", () -> List.of(), List.of()));
+
+    }
+
+}
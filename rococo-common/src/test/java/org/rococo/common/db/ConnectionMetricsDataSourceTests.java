@@ -0,0 +1,82 @@
+package org.rococo.common.db;
+
+import io.grpc.Context;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.rococo.common.loader.RequestScope;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ConnectionMetricsDataSource: Module tests")
+class ConnectionMetricsDataSourceTests {
+
+    private final AtomicInteger closed = new AtomicInteger();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ConnectionMetricsDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        final var connection = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close"))
+                        closed.incrementAndGet();
+                    return method.getName().equals("isClosed") ? closed.get() > 0 : null;
+                });
+        final var pool = (DataSource) Proxy.newProxyInstance(
+                DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> method.getName().equals("getConnection") ? connection : null);
+        dataSource = new ConnectionMetricsDataSource(pool, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("GetConnection: records wait and hold time of connection with rpc tag")
+    void getConnection_RecordsWaitAndHoldTime_WithRpcTag() throws Exception {
+
+        // Data
+        final var rpc = "org.rococo.grpc.artists.ArtistsService/Update";
+        final var call = Context.current().withValue(RequestScope.KEY, new RequestScope(rpc));
+
+        // Steps
+        call.call(() -> {
+            try (var connection = dataSource.getConnection()) {
+                return connection.isClosed();
+            }
+        });
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(1, closed.get()),
+                () -> assertEquals(1, meterRegistry.get("rococo.db.connection.acquire").tag("rpc", rpc).timer().count()),
+                () -> assertEquals(1, meterRegistry.get("rococo.db.connection.hold").tag("rpc", rpc).timer().count())
+        );
+
+    }
+
+    @Test
+    @DisplayName("GetConnection: records hold time once if connection is closed twice")
+    void getConnection_RecordsHoldTimeOnce_IfConnectionClosedTwice() throws Exception {
+
+        // Steps
+        final var connection = dataSource.getConnection();
+        connection.close();
+        connection.close();
+
+        // Assertions
+        assertEquals(1, meterRegistry.get("rococo.db.connection.hold").tag("rpc", "none").timer().count());
+
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.rococo.common.files;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.rococo.grpc.files.ImageGrpcResponse;
+import org.rococo.grpc.files.RenditionGrpc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ImageCache: Module tests")
+class ImageCacheTests {
+
+    private final ImageCache<UUID> imageCache = new ImageCache<>(1024);
+
+    @Test
+    @DisplayName("KnownHashes: returns hashes of kept images of given rendition by entity id")
+    void knownHashes_ReturnsHashesOfKeptImages() {
+
+        // Data
+        final var kept = image(UUID.randomUUID(), "hash", 10);
+        final var otherRendition = image(UUID.randomUUID(), "other", 10);
+        final var missingId = UUID.randomUUID();
+
+        // Steps
+        imageCache.put(UUID.fromString(kept.getEntityId()), kept, RenditionGrpc.THUMBNAIL);
+        imageCache.put(UUID.fromString(otherRendition.getEntityId()), otherRendition, RenditionGrpc.ORIGINAL);
+        final var result = imageCache.knownHashes(
+                List.of(UUID.fromString(kept.getEntityId()), UUID.fromString(otherRendition.getEntityId()), missingId),
+                RenditionGrpc.THUMBNAIL);
+
+        // Assertions
+        assertEquals(Map.of(kept.getEntityId(), "hash"), result);
+
+    }
+
+    @Test
+    @DisplayName("Put: does not keep image without content or content hash")
+    void put_SkipsImage_IfNoContentOrHash() {
+
+        // Data
+        final var withoutContent = image(UUID.randomUUID(), "hash", 0);
+        final var withoutHash = image(UUID.randomUUID(), "", 10);
+
+        // Steps
+        final var result = imageCache.put(UUID.fromString(withoutContent.getEntityId()), withoutContent, RenditionGrpc.THUMBNAIL);
+        imageCache.put(UUID.fromString(withoutHash.getEntityId()), withoutHash, RenditionGrpc.THUMBNAIL);
+
+        // Assertions
+        assertAll(
+                () -> assertSame(withoutContent, result),
+                () -> assertTrue(imageCache.get(UUID.fromString(withoutContent.getEntityId()), RenditionGrpc.THUMBNAIL).isEmpty()),
+                () -> assertTrue(imageCache.get(UUID.fromString(withoutHash.getEntityId()), RenditionGrpc.THUMBNAIL).isEmpty())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Put: keeps images under different keys of the same entity id apart")
+    void put_KeepsImagesByKey() {
+
+        // Data
+        final var cache = new ImageCache<Map.Entry<String, UUID>>(1024);
+        final var entityId = UUID.randomUUID();
+        final var artist = image(entityId, "artist", 10);
+        final var museum = image(entityId, "museum", 10);
+
+        // Steps
+        cache.put(Map.entry("artist", entityId), artist, RenditionGrpc.THUMBNAIL);
+        cache.put(Map.entry("museum", entityId), museum, RenditionGrpc.THUMBNAIL);
+
+        // Assertions
+        assertAll(
+                () -> assertSame(artist, cache.get(Map.entry("artist", entityId), RenditionGrpc.THUMBNAIL).orElseThrow()),
+                () -> assertSame(museum, cache.get(Map.entry("museum", entityId), RenditionGrpc.THUMBNAIL).orElseThrow())
+        );
+
+    }
+
+    private static ImageGrpcResponse image(UUID entityId, String contentHash, int size) {
+        return ImageGrpcResponse.newBuilder()
+                .setEntityId(entityId.toString())
+                .setContentHash(contentHash)
+                .setContent(ByteString.copyFrom(new byte[size]))
+                .build();
+    }
+
+}
@@ -0,0 +1,152 @@
+package org.rococo.common.files;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.rococo.grpc.files.EntityTypeGrpc;
+import org.rococo.grpc.files.FilesServiceGrpc;
+import org.rococo.grpc.files.ImageChunk;
+import org.rococo.grpc.files.ImageUploadHeader;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ImageUploader: Module tests")
+class ImageUploaderTests {
+
+    private static final ImageUploadHeader HEADER = ImageUploadHeader.newBuilder()
+            .setEntityType(EntityTypeGrpc.ARTIST)
+            .setEntityId(UUID.randomUUID().toString())
+            .setFormat("png")
+            .build();
+
+    private final List<ImageChunk> received = new CopyOnWriteArrayList<>();
+
+    private Server server;
+
+    private ManagedChannel channel;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Upload: sends header and content in chunks")
+    void upload_SendsHeaderAndChunks() throws IOException {
+
+        // Data
+        final var data = new byte[3 * ImageUploader.CHUNK_SIZE + 10];
+        new Random(42).nextBytes(data);
+        final var stub = start(new FilesServiceGrpc.FilesServiceImplBase() {
+            @Override
+            public StreamObserver<ImageChunk> uploadImage(StreamObserver<Empty> responseObserver) {
+                return receiver(responseObserver, true);
+            }
+        });
+
+        // Steps
+        ImageUploader.upload(stub, HEADER, ByteString.copyFrom(data), Duration.ofSeconds(5));
+
+        // Assertions
+        var content = ByteString.empty();
+        for (var chunk : received.subList(1, received.size()))
+            content = content.concat(chunk.getData());
+        final var result = content;
+        assertAll(
+                () -> assertEquals(HEADER, received.getFirst().getHeader()),
+                () -> assertEquals(5, received.size()),
+                () -> assertEquals(ByteString.copyFrom(data), result)
+        );
+
+    }
+
+    @Test
+    @DisplayName("Upload: rethrows status of failed upload")
+    void upload_RethrowsStatus_IfUploadFailed() throws IOException {
+
+        // Data
+        final var stub = start(new FilesServiceGrpc.FilesServiceImplBase() {
+            @Override
+            public StreamObserver<ImageChunk> uploadImage(StreamObserver<Empty> responseObserver) {
+                responseObserver.onError(Status.NOT_FOUND.asRuntimeException());
+                return receiver(responseObserver, false);
+            }
+        });
+
+        // Steps
+        final var ex = assertThrows(StatusRuntimeException.class, () ->
+                ImageUploader.upload(stub, HEADER, ByteString.copyFromUtf8("image"), Duration.ofSeconds(5)));
+
+        // Assertions
+        assertEquals(Status.Code.NOT_FOUND, ex.getStatus().getCode());
+
+    }
+
+    @Test
+    @DisplayName("Upload: throws DEADLINE_EXCEEDED when rococo-files does not answer in time")
+    void upload_ThrowsDeadlineExceeded_IfNotAnsweredInTime() throws IOException {
+
+        // Data
+        final var stub = start(new FilesServiceGrpc.FilesServiceImplBase() {
+            @Override
+            public StreamObserver<ImageChunk> uploadImage(StreamObserver<Empty> responseObserver) {
+                return receiver(responseObserver, false);
+            }
+        });
+
+        // Steps
+        final var ex = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(StatusRuntimeException.class, () ->
+                ImageUploader.upload(stub, HEADER, ByteString.copyFromUtf8("image"), Duration.ofMillis(100))));
+
+        // Assertions
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, ex.getStatus().getCode());
+
+    }
+
+    private FilesServiceGrpc.FilesServiceStub start(FilesServiceGrpc.FilesServiceImplBase service) throws IOException {
+        final var name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).addService(service).build().start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        return FilesServiceGrpc.newStub(channel);
+    }
+
+    private StreamObserver<ImageChunk> receiver(StreamObserver<Empty> responseObserver, boolean answer) {
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(ImageChunk chunk) {
+                received.add(chunk);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+                if (!answer)
+                    return;
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+}
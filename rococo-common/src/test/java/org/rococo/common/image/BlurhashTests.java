@@ -0,0 +1,67 @@
+package org.rococo.common.image;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Blurhash: Module tests")
+class BlurhashTests {
+
+    @Test
+    @DisplayName("Encode: encodes image into a few dozen characters")
+    void encode_ReturnsShortHash() {
+
+        // Data
+        final var pixels = gradient(64, 48);
+
+        // Steps
+        final var hash = Blurhash.encode(pixels, 64, 48, 4, 3);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(28, hash.length()),
+                () -> assertEquals('L', hash.charAt(0))
+        );
+
+    }
+
+    @Test
+    @DisplayName("Decode: restores colors of image corners approximately")
+    void decode_RestoresColors() {
+
+        // Data
+        final var hash = Blurhash.encode(new int[]{
+                0xFFFF0000, 0xFFFF0000, 0xFF0000FF, 0xFF0000FF,
+                0xFFFF0000, 0xFFFF0000, 0xFF0000FF, 0xFF0000FF}, 4, 2, 4, 3);
+
+        // Steps
+        final var pixels = Blurhash.decode(hash, 4, 2);
+
+        // Assertions
+        assertAll(
+                () -> assertTrue((pixels[0] >> 16 & 0xFF) > (pixels[0] & 0xFF)),
+                () -> assertTrue((pixels[3] & 0xFF) > (pixels[3] >> 16 & 0xFF)),
+                () -> assertEquals(0xFF, pixels[0] >>> 24)
+        );
+
+    }
+
+    @Test
+    @DisplayName("Decode: throws IllegalArgumentException when hash is malformed")
+    void decode_ThrowsIllegalArgumentException_IfHashMalformed() {
+        assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> Blurhash.decode("LxH27k", 4, 4)),
+                () -> assertThrows(IllegalArgumentException.class, () -> Blurhash.decode("LxH27k2swxX8mHWWjtf7gJfjfQf!", 4, 4))
+        );
+    }
+
+    private static int[] gradient(int width, int height) {
+        final var pixels = new int[width * height];
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                pixels[y * width + x] = 0xFF << 24 | x * 4 << 16 | y * 5 << 8 | 0x80;
+        return pixels;
+    }
+
+}
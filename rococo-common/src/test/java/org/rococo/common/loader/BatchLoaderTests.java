@@ -0,0 +1,177 @@
+package org.rococo.common.loader;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BatchLoader: Module tests")
+class BatchLoaderTests {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    private final Function<List<String>, Map<String, String>> upperCase = keys -> {
+        batches.add(keys);
+        return keys.stream()
+                .filter(key -> !key.equals("missing"))
+                .collect(Collectors.toMap(key -> key, String::toUpperCase));
+    };
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ScheduledExecutorService deadlineScheduler;
+
+    private BatchLoaders loaders;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        deadlineScheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loaders.close();
+        deadlineScheduler.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("GetAll: sends keys of concurrent requests in one deduplicated batch")
+    void getAll_SendsOneBatch_ForConcurrentRequests() throws Exception {
+
+        // Data
+        loaders = new BatchLoaders(meterRegistry, Duration.ofMillis(200), 100, Duration.ofSeconds(5), 2);
+        final var loader = loaders.create("letters", upperCase);
+
+        final var requests = Executors.newFixedThreadPool(2);
+
+        // Steps
+        final var first = requests.submit(() -> loader.getAll(List.of("a", "b")));
+        final var second = requests.submit(() -> loader.getAll(List.of("b", "c", "missing")));
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(Map.of("a", "A", "b", "B"), first.get(5, TimeUnit.SECONDS)),
+                () -> assertEquals(Map.of("b", "B", "c", "C"), second.get(5, TimeUnit.SECONDS)),
+                () -> assertEquals(1, batches.size()),
+                () -> assertEquals(List.of("a", "b", "c", "missing"), batches.getFirst().stream().sorted().toList()),
+                () -> assertEquals(4.0, meterRegistry.get("rococo.loader.batch.size").tag("loader", "letters").summary().max())
+        );
+        requests.shutdown();
+
+    }
+
+    @Test
+    @DisplayName("GetAll: sends full batch without waiting for window")
+    void getAll_SendsFullBatch_WithoutWaitingForWindow() {
+
+        // Data
+        loaders = new BatchLoaders(meterRegistry, Duration.ofHours(1), 2, Duration.ofSeconds(5), 2);
+        final var loader = loaders.create("letters", upperCase);
+
+        // Steps
+        final var letters = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> loader.getAll(List.of("a", "b")));
+
+        // Assertions
+        assertEquals(Map.of("a", "A", "b", "B"), letters);
+
+    }
+
+    @Test
+    @DisplayName("Get: loads key once per request")
+    void get_LoadsKeyOncePerRequest() throws Exception {
+
+        // Data
+        loaders = new BatchLoaders(meterRegistry, Duration.ZERO, 100, Duration.ofSeconds(5), 2);
+        final var loader = loaders.create("letters", upperCase);
+        final var request = Context.current().withValue(RequestScope.KEY, new RequestScope("rococo.LettersService/Get"));
+
+        // Steps
+        final var first = request.call(() -> loader.get("a"));
+        final var second = request.call(() -> loader.get("a"));
+        final var outsideOfRequest = loader.get("a");
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(Optional.of("A"), first),
+                () -> assertEquals(Optional.of("A"), second),
+                () -> assertEquals(Optional.of("A"), outsideOfRequest),
+                () -> assertEquals(2, batches.size()),
+                () -> assertEquals(1.0, meterRegistry.get("rococo.loader.scope.hits").tag("loader", "letters").counter().count())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Get: returns empty if remote service has no entity with the key")
+    void get_ReturnsEmpty_IfKeyNotFound() {
+
+        // Data
+        loaders = new BatchLoaders(meterRegistry, Duration.ZERO, 100, Duration.ofSeconds(5), 2);
+        final var loader = loaders.create("letters", upperCase);
+
+        // Steps & Assertions
+        assertEquals(Optional.empty(), loader.get("missing"));
+
+    }
+
+    @Test
+    @DisplayName("Get: rethrows exception of batch function")
+    void get_RethrowsBatchFunctionException() {
+
+        // Data
+        loaders = new BatchLoaders(meterRegistry, Duration.ZERO, 100, Duration.ofSeconds(5), 2);
+        final BatchLoader<String, String> loader = loaders.create("letters", keys -> {
+            throw new IllegalStateException("Service is not available");
+        });
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () -> loader.get("a"));
+
+    }
+
+    @Test
+    @DisplayName("Get: throws DEADLINE_EXCEEDED when deadline of caller is passed")
+    void get_ThrowsDeadlineExceeded_IfCallerDeadlinePassed() throws Exception {
+
+        // Data
+        final var release = new CountDownLatch(1);
+        loaders = new BatchLoaders(meterRegistry, Duration.ZERO, 100, Duration.ofSeconds(5), 2);
+        final BatchLoader<String, String> loader = loaders.create("letters", keys -> {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return Map.of();
+        });
+        final var caller = Context.current().withDeadlineAfter(50, TimeUnit.MILLISECONDS, deadlineScheduler);
+
+        // Steps
+        final var ex = assertThrows(StatusRuntimeException.class, () -> caller.call(() -> loader.get("a")));
+        release.countDown();
+
+        // Assertions
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, ex.getStatus().getCode());
+
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.rococo.common.loader;
+
+import io.grpc.Context;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ConcurrentLookups: Module tests")
+class ConcurrentLookupsTests {
+
+    private final ConcurrentLookups lookups = new ConcurrentLookups(Duration.ofSeconds(5), 2);
+
+    @AfterEach
+    void tearDown() {
+        lookups.close();
+    }
+
+    @Test
+    @DisplayName("Submit: runs lookup in context with deadline of budget")
+    void submit_RunsLookupWithBudgetDeadline() {
+
+        // Steps
+        final long remainingMillis;
+        try (var batch = lookups.start()) {
+            remainingMillis = batch.join(batch.submit(() ->
+                    Context.current().getDeadline().timeRemaining(TimeUnit.MILLISECONDS)));
+        }
+
+        // Assertions
+        assertAll(
+                () -> assertTrue(remainingMillis > 0),
+                () -> assertTrue(remainingMillis <= 5000)
+        );
+
+    }
+
+    @Test
+    @DisplayName("Join: throws exception of lookup as is")
+    void join_ThrowsLookupException() {
+
+        // Data
+        final var expected = new IllegalStateException("lookup failed");
+
+        // Steps
+        final IllegalStateException ex;
+        try (var batch = lookups.start()) {
+            ex = assertThrows(IllegalStateException.class, () -> batch.join(batch.submit(() -> {
+                throw expected;
+            })));
+        }
+
+        // Assertions
+        assertSame(expected, ex);
+
+    }
+
+    @Test
+    @DisplayName("Close: cancels lookups still running")
+    void close_CancelsRunningLookups() throws InterruptedException {
+
+        // Data
+        final var cancelled = new CountDownLatch(1);
+        final var started = new CountDownLatch(1);
+
+        // Steps
+        try (var batch = lookups.start()) {
+            batch.submit(() -> {
+                Context.current().addListener(context -> cancelled.countDown(), Runnable::run);
+                started.countDown();
+                return null;
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+        }
+
+        // Assertions
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.rococo.common.tx;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Compensations: Module tests")
+class CompensationsTests {
+
+    @Test
+    @DisplayName("RunOrCompensate: does not compensate when side effect succeeded")
+    void runOrCompensate_DoesNotCompensate_IfSideEffectSucceeded() {
+
+        // Data
+        final var compensated = new AtomicBoolean();
+
+        // Steps
+        Compensations.runOrCompensate(() -> {
+        }, () -> compensated.set(true));
+
+        // Assertions
+        assertFalse(compensated.get());
+
+    }
+
+    @Test
+    @DisplayName("RunOrCompensate: compensates and rethrows when side effect failed")
+    void runOrCompensate_CompensatesAndRethrows_IfSideEffectFailed() {
+
+        // Data
+        final var compensated = new AtomicBoolean();
+        final var failure = new IllegalStateException("remote call failed");
+
+        // Steps
+        final var ex = assertThrows(IllegalStateException.class, () -> Compensations.runOrCompensate(
+                () -> {
+                    throw failure;
+                },
+                () -> compensated.set(true)));
+
+        // Assertions
+        assertAll(
+                () -> assertSame(failure, ex),
+                () -> assertTrue(compensated.get())
+        );
+
+    }
+
+    @Test
+    @DisplayName("RunOrCompensate: keeps failure of compensation as suppressed")
+    void runOrCompensate_SuppressesCompensationFailure() {
+
+        // Data
+        final var compensationFailure = new IllegalStateException("compensation failed");
+
+        // Steps
+        final var ex = assertThrows(IllegalArgumentException.class, () -> Compensations.runOrCompensate(
+                () -> {
+                    throw new IllegalArgumentException("remote call failed");
+                },
+                () -> {
+                    throw compensationFailure;
+                }));
+
+        // Assertions
+        assertArrayEquals(new Throwable[]{compensationFailure}, ex.getSuppressed());
+
+    }
+
+}
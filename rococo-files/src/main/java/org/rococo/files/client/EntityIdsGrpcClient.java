@@ -0,0 +1,63 @@
+package org.rococo.files.client;
+
+import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.rococo.files.data.entity.EntityType;
+import org.rococo.grpc.artists.ArtistsServiceGrpc;
+import org.rococo.grpc.common.page.IdsPageGrpcRequest;
+import org.rococo.grpc.common.type.IdsType;
+import org.rococo.grpc.museums.MuseumsServiceGrpc;
+import org.rococo.grpc.paintings.PaintingsServiceGrpc;
+import org.rococo.grpc.users.UsersServiceGrpc;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads ids of entities from the services which own them, page by page in ascending order of database uuid.
+ */
+@Service
+@ParametersAreNonnullByDefault
+public class EntityIdsGrpcClient {
+
+    @GrpcClient("grpcArtistsClient")
+    private ArtistsServiceGrpc.ArtistsServiceBlockingStub artistsServiceStub;
+
+    @GrpcClient("grpcMuseumsClient")
+    private MuseumsServiceGrpc.MuseumsServiceBlockingStub museumsServiceStub;
+
+    @GrpcClient("grpcPaintingsClient")
+    private PaintingsServiceGrpc.PaintingsServiceBlockingStub paintingsServiceStub;
+
+    @GrpcClient("grpcUsersClient")
+    private UsersServiceGrpc.UsersServiceBlockingStub usersServiceStub;
+
+    /**
+     * @param after last id of previous page, {@code null} for the first page
+     * @throws io.grpc.StatusRuntimeException if owning service is unavailable
+     */
+    @Nonnull
+    public List<UUID> findIdsPage(EntityType entityType, @Nullable UUID after, int size) {
+
+        final var request = IdsPageGrpcRequest.newBuilder()
+                .setAfter(after == null ? "" : after.toString())
+                .setSize(size)
+                .build();
+
+        final IdsType response = switch (entityType) {
+            case ARTIST -> artistsServiceStub.findIdsPage(request);
+            case MUSEUM -> museumsServiceStub.findIdsPage(request);
+            case PAINTING -> paintingsServiceStub.findIdsPage(request);
+            case USER -> usersServiceStub.findIdsPage(request);
+        };
+
+        return response.getIdList().stream()
+                .map(UUID::fromString)
+                .toList();
+
+    }
+
+}
@@ -5,9 +5,11 @@ public class AppProperty {
     private AppProperty() {
     }
 
-    public static final int MIN_IMAGE_WIDTH = 100;
-    public static final int MIN_IMAGE_HEIGHT = 100;
-    public static final double QUALITY = 1.0;
-    public static final String IMAGE_PATTERN = "^data:image\\/[a-z]{3,4};base64,[A-Za-z0-9+/]+={0,2}$";
+    public static final long THUMBNAIL_POLL_DELAY_MS = 500;
+    public static final int THUMBNAIL_LEASE_SECONDS = 60;
+    public static final int THUMBNAIL_MAX_ATTEMPTS = 3;
+    public static final long CONTENT_MIGRATION_DELAY_MS = 1000;
+    public static final int CONTENT_MIGRATION_BATCH_SIZE = 20;
+    public static final int MAX_IMAGE_SIZE = 10 * 1024 * 1024;
 
 }
@@ -0,0 +1,9 @@
+package org.rococo.files.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RenditionProperties.class)
+public class RenditionConfig {
+}
@@ -0,0 +1,64 @@
+package org.rococo.files.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.rococo.files.data.entity.Rendition;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Boxes and quality of generated renditions, set as {@code rococo-files.renditions.<rendition>.width|height|quality}
+ * by name of {@link Rendition}. Quality of placeholder is not used, as it is blurhash.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("rococo-files.renditions")
+public class RenditionProperties {
+
+    private Box thumbnail = new Box(100, 100, 1.0);
+
+    private Box small = new Box(320, 320, 0.85);
+
+    private Box medium = new Box(800, 800, 0.85);
+
+    private Box large = new Box(1600, 1600, 0.9);
+
+    private Box placeholder = new Box(32, 32, 0.0);
+
+    @Nonnull
+    public Box of(Rendition rendition) {
+        return switch (rendition) {
+            case THUMBNAIL -> thumbnail;
+            case SMALL -> small;
+            case MEDIUM -> medium;
+            case LARGE -> large;
+            case PLACEHOLDER -> placeholder;
+            case ORIGINAL -> throw new IllegalArgumentException("Original is not resized");
+        };
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Box {
+
+        private int width;
+
+        private int height;
+
+        private double quality;
+
+        /**
+         * Rendition is generated only if it is smaller than original, otherwise original is served instead
+         */
+        public boolean isSmallerThan(int imageWidth, int imageHeight) {
+            return imageWidth > width || imageHeight > height;
+        }
+
+    }
+
+}
@@ -0,0 +1,8 @@
+package org.rococo.files.data.entity;
+
+/**
+ * State of {@link ThumbnailBackfillEntity}: only running backfill is resumed after restart.
+ */
+public enum BackfillStatus {
+    RUNNING, STOPPED, COMPLETED
+}
@@ -0,0 +1,9 @@
+package org.rococo.files.data.entity;
+
+/**
+ * Where original bytes of {@link ImageContentEntity} are stored,
+ * see {@link org.rococo.files.data.store.ImageContentStore}.
+ */
+public enum ContentStorage {
+    DATABASE, FILE_SYSTEM, SHARDED_DATABASE
+}
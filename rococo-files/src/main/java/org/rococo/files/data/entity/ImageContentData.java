@@ -0,0 +1,15 @@
+package org.rococo.files.data.entity;
+
+import java.util.UUID;
+
+/**
+ * Bytes of one image content column, read without loading the whole {@link ImageContentEntity}.
+ */
+public record ImageContentData(
+
+        UUID contentId,
+
+        byte[] data
+
+) {
+}
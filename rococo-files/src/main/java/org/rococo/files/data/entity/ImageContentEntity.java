@@ -24,12 +24,25 @@ public class ImageContentEntity {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
 
-    @Column(name = "data", nullable = false)
+    @Column(name = "content_hash", nullable = false, unique = true, updatable = false)
+    private String contentHash;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "data")
     private byte[] data;
 
-    @Column(name = "thumbnail_data", nullable = false)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "storage")
+    private ContentStorage storage;
+
+    @Column(name = "thumbnail_data")
     private byte[] thumbnailData;
 
+    @Column(name = "placeholder")
+    private byte[] placeholder;
+
     @Override
     public final boolean equals(Object o) {
         if (this == o) return true;
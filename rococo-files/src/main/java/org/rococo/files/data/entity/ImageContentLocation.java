@@ -0,0 +1,17 @@
+package org.rococo.files.data.entity;
+
+import java.util.UUID;
+
+/**
+ * Content row without image bytes: enough to find the bytes in {@link ContentStorage}.
+ */
+public record ImageContentLocation(
+
+        UUID contentId,
+
+        String contentHash,
+
+        ContentStorage storage
+
+) {
+}
@@ -38,8 +38,17 @@ public class ImageMetadataEntity {
     @Column(name = "content_hash", nullable = false)
     private String contentHash;
 
-    @OneToOne(cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    @JoinColumn(name = "content_id", referencedColumnName = "id")
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    @Column(name = "byte_size")
+    private Long byteSize;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "content_id", referencedColumnName = "id", nullable = false)
     private ImageContentEntity content;
 
     @ToString.Include
@@ -0,0 +1,56 @@
+package org.rococo.files.data.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.util.Objects;
+import java.util.UUID;
+
+@Entity
+@Table(schema = "rococo", name = "image_rendition")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+@ToString(onlyExplicitlyIncluded = true)
+public class ImageRenditionEntity {
+
+    @ToString.Include
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(name = "id")
+    private UUID id;
+
+    @ToString.Include
+    @Column(name = "content_id", nullable = false)
+    private UUID contentId;
+
+    @ToString.Include
+    @Enumerated(EnumType.STRING)
+    @Column(name = "rendition", nullable = false)
+    private Rendition rendition;
+
+    @Column(name = "data", nullable = false)
+    private byte[] data;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        ImageRenditionEntity that = (ImageRenditionEntity) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.rococo.files.data.entity;
+
+import java.util.List;
+
+/**
+ * Image renditions: original and copies fitted into boxes of {@link org.rococo.files.config.RenditionProperties},
+ * generated by thumbnail worker. Thumbnail is stored in {@code image_content.thumbnail_data}, placeholder
+ * in {@code image_content.placeholder}, the others in {@code image_rendition}.
+ * Placeholder is not an image but blurhash of image fitted into its box.
+ */
+public enum Rendition {
+
+    ORIGINAL,
+    THUMBNAIL,
+    SMALL,
+    MEDIUM,
+    LARGE,
+    PLACEHOLDER;
+
+    public static final List<Rendition> STORED_SEPARATELY = List.of(SMALL, MEDIUM, LARGE);
+
+}
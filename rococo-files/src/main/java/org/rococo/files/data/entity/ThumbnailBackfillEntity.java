@@ -0,0 +1,67 @@
+package org.rococo.files.data.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+@Entity
+@Table(schema = "rococo", name = "thumbnail_backfill")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+@ToString(onlyExplicitlyIncluded = true)
+public class ThumbnailBackfillEntity {
+
+    @ToString.Include
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    @ToString.Include
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private BackfillStatus status;
+
+    @ToString.Include
+    @Column(name = "last_content_id", nullable = false)
+    private UUID lastContentId;
+
+    @ToString.Include
+    @Column(name = "processed", nullable = false)
+    private long processed;
+
+    @ToString.Include
+    @Column(name = "failed", nullable = false)
+    private long failed;
+
+    @Column(name = "started_date", nullable = false)
+    private LocalDateTime startedDate;
+
+    @Column(name = "updated_date", nullable = false)
+    private LocalDateTime updatedDate;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        ThumbnailBackfillEntity that = (ThumbnailBackfillEntity) o;
+        return getName() != null && Objects.equals(getName(), that.getName());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+
+}
@@ -0,0 +1,15 @@
+package org.rococo.files.data.entity;
+
+import java.util.UUID;
+
+/**
+ * Stored content with format of images which refer to it: enough to generate its thumbnail and renditions.
+ */
+public record ThumbnailSource(
+
+        UUID contentId,
+
+        String format
+
+) {
+}
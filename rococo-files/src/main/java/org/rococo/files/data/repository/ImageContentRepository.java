@@ -1,9 +1,138 @@
 package org.rococo.files.data.repository;
 
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentData;
 import org.rococo.files.data.entity.ImageContentEntity;
+import org.rococo.files.data.entity.ImageContentLocation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+@ParametersAreNonnullByDefault
 public interface ImageContentRepository extends JpaRepository<ImageContentEntity, UUID> {
+
+    @Nonnull
+    @Query("select c.id from ImageContentEntity c where c.contentHash = :contentHash")
+    Optional<UUID> findIdByContentHash(@Param("contentHash") String contentHash);
+
+    /**
+     * Inserts new content without bytes and storage or, if content with the same hash was stored concurrently,
+     * takes one more reference on it. Bytes are written by the transaction which claims the storage of the new row,
+     * see {@link #claimStorage(UUID, ContentStorage)}.
+     */
+    @Nonnull
+    @Query(value = """
+            insert into rococo.image_content as c (content_hash, ref_count, data, thumbnail_data, storage)
+            values (:contentHash, 1, null, null, null)
+            on conflict (content_hash) do update set ref_count = c.ref_count + 1
+            returning id""",
+            nativeQuery = true)
+    UUID insertOrAcquire(@Param("contentHash") String contentHash);
+
+    @Modifying
+    @Query("update ImageContentEntity c set c.storage = :storage where c.id = :id and c.storage is null")
+    int claimStorage(@Param("id") UUID id, @Param("storage") ContentStorage storage);
+
+    @Nonnull
+    @Query("""
+            select new org.rococo.files.data.entity.ImageContentLocation(c.id, c.contentHash, c.storage)
+            from ImageContentEntity c
+            where c.id = :id""")
+    Optional<ImageContentLocation> findLocationById(@Param("id") UUID id);
+
+    @Nonnull
+    @Query("""
+            select new org.rococo.files.data.entity.ImageContentLocation(c.id, c.contentHash, c.storage)
+            from ImageContentEntity c
+            where c.id in :ids""")
+    List<ImageContentLocation> findAllLocationsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Locks contents which are stored in the given storage, in order of their ids after the given one.
+     * Contents locked by concurrent transaction are skipped.
+     */
+    @Nonnull
+    @Query(value = """
+            select id
+            from rococo.image_content
+            where storage = :storage
+              and id > :after
+            order by id
+            limit :limit
+            for update skip locked""",
+            nativeQuery = true)
+    List<UUID> findIdsByStorageForUpdate(@Param("storage") String storage,
+                                         @Param("after") UUID after,
+                                         @Param("limit") int limit);
+
+    /**
+     * Points content to another storage. Bytes kept in the row are cleared, unless the row itself is the new storage.
+     */
+    @Modifying
+    @Query(value = """
+            update rococo.image_content
+            set storage = :target,
+                data    = case when :target = 'DATABASE' then data end
+            where id = :id
+              and storage = :source""",
+            nativeQuery = true)
+    int moveStorage(@Param("id") UUID id, @Param("source") String source, @Param("target") String target);
+
+    @Modifying
+    @Query("update ImageContentEntity c set c.data = :data where c.id = :id")
+    void updateData(@Param("id") UUID id, @Param("data") byte[] data);
+
+    @Nonnull
+    @Query("select c.data from ImageContentEntity c where c.id = :id")
+    Optional<byte[]> findDataById(@Param("id") UUID id);
+
+    @Nonnull
+    @Query("""
+            select new org.rococo.files.data.entity.ImageContentData(c.id, c.data)
+            from ImageContentEntity c
+            where c.id in :ids""")
+    List<ImageContentData> findAllDataByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Nonnull
+    @Query("""
+            select new org.rococo.files.data.entity.ImageContentData(c.id, c.thumbnailData)
+            from ImageContentEntity c
+            where c.id in :ids and c.thumbnailData is not null""")
+    List<ImageContentData> findAllThumbnailsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Nonnull
+    @Query("""
+            select new org.rococo.files.data.entity.ImageContentData(c.id, c.placeholder)
+            from ImageContentEntity c
+            where c.id in :ids and c.placeholder is not null""")
+    List<ImageContentData> findAllPlaceholdersByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query("update ImageContentEntity c set c.thumbnailData = :thumbnailData where c.id = :id")
+    void updateThumbnail(@Param("id") UUID id, @Param("thumbnailData") byte[] thumbnailData);
+
+    @Modifying
+    @Query("update ImageContentEntity c set c.placeholder = :placeholder where c.id = :id")
+    void updatePlaceholder(@Param("id") UUID id, @Param("placeholder") byte[] placeholder);
+
+    @Modifying
+    @Query("update ImageContentEntity c set c.refCount = c.refCount + 1 where c.id = :id")
+    int incrementRefCount(@Param("id") UUID id);
+
+    @Modifying
+    @Query("update ImageContentEntity c set c.refCount = c.refCount - 1 where c.id = :id")
+    void decrementRefCount(@Param("id") UUID id);
+
+    @Modifying
+    @Query("delete from ImageContentEntity c where c.id = :id and c.refCount <= 0")
+    int deleteIfUnreferenced(@Param("id") UUID id);
+
 }
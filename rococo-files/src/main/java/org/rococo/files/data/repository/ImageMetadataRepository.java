@@ -2,15 +2,17 @@ package org.rococo.files.data.repository;
 
 import org.rococo.files.data.entity.EntityType;
 import org.rococo.files.data.entity.ImageMetadataEntity;
-import org.springframework.data.jpa.domain.Specification;
-import org.springframework.data.jpa.repository.EntityGraph;
-import org.springframework.data.jpa.repository.EntityGraph.EntityGraphType;
+import org.rococo.files.data.entity.ThumbnailSource;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -18,12 +20,44 @@ import java.util.UUID;
 @ParametersAreNonnullByDefault
 public interface ImageMetadataRepository extends JpaRepository<ImageMetadataEntity, UUID>, JpaSpecificationExecutor<ImageMetadataEntity> {
 
+    /**
+     * Content is not fetched: image bytes are read separately, only in the rendition which is needed,
+     * see {@link org.rococo.files.service.ImageContentService#findData}.
+     */
     @Nonnull
-    @EntityGraph(type = EntityGraphType.LOAD, attributePaths = "content")
     Optional<ImageMetadataEntity> findByEntityTypeAndEntityId(EntityType type, UUID entityId);
 
+    boolean existsByEntityTypeAndEntityId(EntityType type, UUID entityId);
+
+    @Nonnull
+    List<ImageMetadataEntity> findAllByEntityTypeAndEntityIdIn(EntityType type, Collection<UUID> entityIds);
+
+    /**
+     * Next page of referenced contents in order of their ids, keyset pagination does not slow down with offset.
+     */
+    @Nonnull
+    @Query("""
+            select new org.rococo.files.data.entity.ThumbnailSource(m.content.id, min(m.format))
+            from ImageMetadataEntity m
+            where m.content.id > :after
+            group by m.content.id
+            order by m.content.id""")
+    List<ThumbnailSource> findThumbnailSourcesAfter(@Param("after") UUID after, Limit limit);
+
+    /**
+     * Next page of entity ids of images created before given date, in order of entity ids.
+     */
     @Nonnull
-    @EntityGraph(type = EntityGraphType.LOAD, attributePaths = "content")
-    List<ImageMetadataEntity> findAll(@Nullable Specification<ImageMetadataEntity> spec);
+    @Query("""
+            select m.entityId
+            from ImageMetadataEntity m
+            where m.entityType = :type
+              and m.entityId > :after
+              and m.createdDate < :createdBefore
+            order by m.entityId""")
+    List<UUID> findEntityIdsAfter(@Param("type") EntityType type,
+                                  @Param("after") UUID after,
+                                  @Param("createdBefore") LocalDateTime createdBefore,
+                                  Limit limit);
 
 }
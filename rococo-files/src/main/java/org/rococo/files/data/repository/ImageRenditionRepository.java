@@ -0,0 +1,30 @@
+package org.rococo.files.data.repository;
+
+import org.rococo.files.data.entity.ImageRenditionEntity;
+import org.rococo.files.data.entity.Rendition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@ParametersAreNonnullByDefault
+public interface ImageRenditionRepository extends JpaRepository<ImageRenditionEntity, UUID> {
+
+    @Nonnull
+    Optional<ImageRenditionEntity> findByContentIdAndRendition(UUID contentId, Rendition rendition);
+
+    @Nonnull
+    List<ImageRenditionEntity> findAllByContentIdInAndRendition(Collection<UUID> contentIds, Rendition rendition);
+
+    @Modifying
+    @Query("delete from ImageRenditionEntity r where r.contentId = :contentId")
+    void deleteAllByContentId(@Param("contentId") UUID contentId);
+
+}
@@ -0,0 +1,45 @@
+package org.rococo.files.data.repository;
+
+import org.rococo.files.data.entity.BackfillStatus;
+import org.rococo.files.data.entity.ThumbnailBackfillEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.UUID;
+
+@ParametersAreNonnullByDefault
+public interface ThumbnailBackfillRepository extends JpaRepository<ThumbnailBackfillEntity, String> {
+
+    /**
+     * Moves checkpoint of running backfill only if it was not moved since it was read,
+     * so backfill which was stopped, restarted or taken over by another instance is not advanced.
+     */
+    @Modifying
+    @Query("""
+            update ThumbnailBackfillEntity b
+            set b.lastContentId = :next,
+                b.processed     = b.processed + :processed,
+                b.failed        = b.failed + :failed,
+                b.updatedDate   = current_timestamp
+            where b.name = :name
+              and b.status = org.rococo.files.data.entity.BackfillStatus.RUNNING
+              and b.lastContentId = :previous""")
+    int advance(@Param("name") String name,
+                @Param("previous") UUID previous,
+                @Param("next") UUID next,
+                @Param("processed") long processed,
+                @Param("failed") long failed);
+
+    @Modifying
+    @Query("""
+            update ThumbnailBackfillEntity b
+            set b.status      = :status,
+                b.updatedDate = current_timestamp
+            where b.name = :name
+              and b.status = org.rococo.files.data.entity.BackfillStatus.RUNNING""")
+    int finishRunning(@Param("name") String name, @Param("status") BackfillStatus status);
+
+}
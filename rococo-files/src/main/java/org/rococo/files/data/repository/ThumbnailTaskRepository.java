@@ -0,0 +1,54 @@
+package org.rococo.files.data.repository;
+
+import org.rococo.files.data.entity.ThumbnailTaskEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@ParametersAreNonnullByDefault
+public interface ThumbnailTaskRepository extends JpaRepository<ThumbnailTaskEntity, UUID> {
+
+    @Modifying
+    @Query(value = """
+            insert into rococo.thumbnail_task (content_id, format)
+            values (:contentId, :format)
+            on conflict (content_id) do nothing""",
+            nativeQuery = true)
+    void enqueue(@Param("contentId") UUID contentId, @Param("format") String format);
+
+    /**
+     * Locks oldest tasks which are not leased by another worker, tasks locked by concurrent transaction are skipped.
+     */
+    @Nonnull
+    @Query(value = """
+            select *
+            from rococo.thumbnail_task
+            where attempts < :maxAttempts
+              and (locked_until is null or locked_until < now())
+            order by created_date
+            limit :limit
+            for update skip locked""",
+            nativeQuery = true)
+    List<ThumbnailTaskEntity> findAvailableForUpdate(@Param("maxAttempts") int maxAttempts,
+                                                     @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = """
+            update rococo.thumbnail_task
+            set locked_until = now() + make_interval(secs => :leaseSeconds),
+                attempts     = attempts + 1
+            where content_id in (:contentIds)""",
+            nativeQuery = true)
+    void lease(@Param("contentIds") Collection<UUID> contentIds, @Param("leaseSeconds") int leaseSeconds);
+
+    @Query("select count(t) from ThumbnailTaskEntity t where t.attempts < :maxAttempts")
+    long countPending(@Param("maxAttempts") int maxAttempts);
+
+}
@@ -0,0 +1,105 @@
+package org.rococo.files.data.store;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * One database of {@link ShardedDatabaseImageContentStore}: bytes of contents in {@code rococo.image_content_shard}.
+ */
+@ParametersAreNonnullByDefault
+class ContentShard {
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    ContentShard(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
+    @Nonnull
+    String name() {
+        return name;
+    }
+
+    void write(ImageContentLocation location, byte[] data) {
+        jdbcTemplate.update("""
+                        insert into rococo.image_content_shard (content_id, content_hash, data)
+                        values (:id, :hash, :data)
+                        on conflict (content_id) do update set data = excluded.data""",
+                Map.of("id", location.contentId(),
+                        "hash", location.contentHash(),
+                        "data", data));
+    }
+
+    @Nonnull
+    Optional<byte[]> read(UUID contentId) {
+        return jdbcTemplate.query(
+                        "select data from rococo.image_content_shard where content_id = :id",
+                        Map.of("id", contentId),
+                        (rs, rowNum) -> rs.getBytes("data"))
+                .stream()
+                .findFirst();
+    }
+
+    @Nonnull
+    Map<UUID, byte[]> readAll(Collection<UUID> contentIds) {
+        final Map<UUID, byte[]> result = new HashMap<>();
+        if (contentIds.isEmpty())
+            return result;
+
+        jdbcTemplate.query(
+                "select content_id, data from rococo.image_content_shard where content_id in (:ids)",
+                Map.of("ids", contentIds),
+                rs -> {
+                    result.put(rs.getObject("content_id", UUID.class), rs.getBytes("data"));
+                });
+        return result;
+    }
+
+    void delete(UUID contentId) {
+        jdbcTemplate.update(
+                "delete from rococo.image_content_shard where content_id = :id",
+                Map.of("id", contentId));
+    }
+
+    /**
+     * Next page of contents on this shard in order of their ids.
+     */
+    @Nonnull
+    List<ImageContentLocation> findLocationsAfter(UUID after, int limit) {
+        return jdbcTemplate.query("""
+                        select content_id, content_hash
+                        from rococo.image_content_shard
+                        where content_id > :after
+                        order by content_id
+                        limit :limit""",
+                Map.of("after", after, "limit", limit),
+                (rs, rowNum) -> new ImageContentLocation(
+                        rs.getObject("content_id", UUID.class),
+                        rs.getString("content_hash"),
+                        ContentStorage.SHARDED_DATABASE));
+    }
+
+    void close() {
+        if (dataSource instanceof HikariDataSource hikari)
+            hikari.close();
+    }
+
+}
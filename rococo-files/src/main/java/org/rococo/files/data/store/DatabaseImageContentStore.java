@@ -0,0 +1,73 @@
+package org.rococo.files.data.store;
+
+import lombok.RequiredArgsConstructor;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentData;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps image bytes in {@code rococo.image_content.data} of the content row itself.
+ */
+@Component
+@RequiredArgsConstructor
+@ParametersAreNonnullByDefault
+public class DatabaseImageContentStore implements ImageContentStore {
+
+    private final ImageContentRepository contentRepository;
+
+    @Nonnull
+    @Override
+    public ContentStorage storage() {
+        return ContentStorage.DATABASE;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void write(ImageContentLocation location, byte[] data) {
+        contentRepository.updateData(location.contentId(), data);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<ByteBuffer> read(ImageContentLocation location) {
+        return contentRepository.findDataById(location.contentId())
+                .map(data -> ByteBuffer.wrap(data).asReadOnlyBuffer());
+    }
+
+    @Nonnull
+    @Override
+    public Map<UUID, ByteBuffer> readAll(Collection<ImageContentLocation> locations) {
+        if (locations.isEmpty())
+            return Map.of();
+
+        return contentRepository.findAllDataByIdIn(locations.stream()
+                        .map(ImageContentLocation::contentId)
+                        .toList())
+                .stream()
+                .filter(content -> content.data() != null)
+                .collect(Collectors.toMap(
+                        ImageContentData::contentId,
+                        content -> ByteBuffer.wrap(content.data()).asReadOnlyBuffer()));
+    }
+
+    /**
+     * Bytes go away with the row, or are cleared by {@link ImageContentRepository#moveStorage} when the row is moved.
+     */
+    @Override
+    public void delete(ImageContentLocation location) {
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.rococo.files.data.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.ex.InternalException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Keeps image bytes in immutable files on local disk, in directory tree sharded by content hash:
+ * {@code <root>/<2 hash chars>/<2 hash chars>/<hash>_<content id>}.
+ * Content id is part of the name, so bytes of deleted content never clash with the same image stored again.
+ * Files are written to a temporary file and moved in place, reads are memory-mapped.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+public class FileSystemImageContentStore implements ImageContentStore {
+
+    private final Path root;
+
+    public FileSystemImageContentStore(@Value("${rococo-files.storage.path}") Path root) {
+        this.root = root.toAbsolutePath();
+    }
+
+    @Nonnull
+    @Override
+    public ContentStorage storage() {
+        return ContentStorage.FILE_SYSTEM;
+    }
+
+    @Override
+    public void write(ImageContentLocation location, byte[] data) {
+        final var path = pathOf(location);
+        try {
+            Files.createDirectories(path.getParent());
+            final var tempPath = Files.createTempFile(path.getParent(), ".", ".tmp");
+            try (var channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                final var buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            throw new InternalException("Failed to write image content with id = [%s]".formatted(location.contentId()), ex);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Optional<ByteBuffer> read(ImageContentLocation location) {
+        try (var channel = FileChannel.open(pathOf(location), StandardOpenOption.READ)) {
+            // mapping stays valid after the channel is closed
+            return Optional.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw new InternalException("Failed to read image content with id = [%s]".formatted(location.contentId()), ex);
+        }
+    }
+
+    @Override
+    public void delete(ImageContentLocation location) {
+        try {
+            Files.deleteIfExists(pathOf(location));
+        } catch (IOException ex) {
+            log.warn("Failed to delete image content file with id = [{}]", location.contentId(), ex);
+        }
+    }
+
+    Path pathOf(ImageContentLocation location) {
+        // content hash is base64, '/' and '+' are replaced to get file name
+        final var hash = location.contentHash()
+                .replace('/', '_')
+                .replace('+', '-');
+        return root.resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(hash + "_" + location.contentId());
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.rococo.files.data.store;
+
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Storage of original image bytes. Stored bytes are immutable: content with other bytes has other hash and row.
+ * Row of {@code rococo.image_content} tells in which {@link ContentStorage} its bytes are.
+ */
+@ParametersAreNonnullByDefault
+public interface ImageContentStore {
+
+    @Nonnull
+    ContentStorage storage();
+
+    void write(ImageContentLocation location, byte[] data);
+
+    /**
+     * @return read-only buffer with image bytes or empty, if the bytes are not in this storage (anymore)
+     */
+    @Nonnull
+    Optional<ByteBuffer> read(ImageContentLocation location);
+
+    /**
+     * @return read-only buffers by content id, contents which are not in this storage are absent
+     */
+    @Nonnull
+    default Map<UUID, ByteBuffer> readAll(Collection<ImageContentLocation> locations) {
+        final Map<UUID, ByteBuffer> result = new HashMap<>();
+        locations.forEach(location -> read(location)
+                .ifPresent(data -> result.put(location.contentId(), data)));
+        return result;
+    }
+
+    /**
+     * Deletes bytes of content which was deleted or moved to another storage.
+     * Called after commit of the transaction which changed the content row.
+     */
+    void delete(ImageContentLocation location);
+
+}
@@ -0,0 +1,155 @@
+package org.rococo.files.data.store;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * All {@link ImageContentStore}s by {@link ContentStorage}: new content is written to the configured one,
+ * stored content is read from the one its row points to.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+public class ImageContentStores {
+
+    private final Map<ContentStorage, ImageContentStore> stores = new EnumMap<>(ContentStorage.class);
+
+    private final ImageContentStore writeStore;
+
+    private final ImageContentRepository contentRepository;
+
+    public ImageContentStores(List<ImageContentStore> stores,
+                              ImageContentRepository contentRepository,
+                              @Value("${rococo-files.storage.type:DATABASE}") ContentStorage writeStorage
+    ) {
+        stores.forEach(store -> this.stores.put(store.storage(), store));
+        this.writeStore = get(writeStorage);
+        this.contentRepository = contentRepository;
+        log.info("New image content is stored in [{}]", writeStorage);
+    }
+
+    @Nonnull
+    public ImageContentStore get(ContentStorage storage) {
+        final var store = stores.get(storage);
+        if (store == null)
+            throw new IllegalStateException("No image content store for storage = [%s]".formatted(storage));
+        return store;
+    }
+
+    @Nonnull
+    public ImageContentStore writeStore() {
+        return writeStore;
+    }
+
+    /**
+     * Reads original bytes of content. Content can be moved to another storage between reading of its row
+     * and its bytes (see {@link org.rococo.files.service.ImageContentMigrator}), then the row is read once more.
+     */
+    @Nonnull
+    public Optional<ByteBuffer> read(UUID contentId) {
+        return contentRepository.findLocationById(contentId)
+                .filter(location -> location.storage() != null)
+                .flatMap(location -> get(location.storage()).read(location)
+                        .or(() -> contentRepository.findLocationById(contentId)
+                                .filter(moved -> moved.storage() != null && moved.storage() != location.storage())
+                                .flatMap(moved -> get(moved.storage()).read(moved))));
+    }
+
+    /**
+     * Reads original bytes of contents, grouped by storage. Contents moved meanwhile are read once more.
+     */
+    @Nonnull
+    public Map<UUID, ByteBuffer> readAll(Collection<UUID> contentIds) {
+
+        if (contentIds.isEmpty())
+            return Map.of();
+
+        final var locations = contentRepository.findAllLocationsByIdIn(contentIds);
+        final Map<UUID, ByteBuffer> result = new HashMap<>(readAllFromStores(locations));
+
+        final var movedIds = locations.stream()
+                .map(ImageContentLocation::contentId)
+                .filter(id -> !result.containsKey(id))
+                .toList();
+        if (!movedIds.isEmpty())
+            result.putAll(readAllFromStores(contentRepository.findAllLocationsByIdIn(movedIds)));
+
+        return result;
+
+    }
+
+    /**
+     * Writes bytes of new or moved content to store of its location. Bytes are deleted again when
+     * the current transaction rolls back, file or shard is not part of it and would keep bytes
+     * of content row which does not exist.
+     */
+    public void write(ImageContentLocation location, byte[] data) {
+        final var store = get(location.storage());
+        store.write(location, data);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            return;
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK)
+                    return;
+                try {
+                    store.delete(location);
+                } catch (RuntimeException ex) {
+                    log.warn("Image content bytes with id = [{}] not deleted after rollback", location.contentId(), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes bytes of deleted or moved content when the current transaction commits,
+     * so rolled back changes still find their bytes.
+     */
+    public void deleteAfterCommit(ImageContentLocation location) {
+        if (location.storage() == null)
+            return;
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            get(location.storage()).delete(location);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                get(location.storage()).delete(location);
+            }
+        });
+    }
+
+    private Map<UUID, ByteBuffer> readAllFromStores(List<ImageContentLocation> locations) {
+        final Map<UUID, ByteBuffer> result = new HashMap<>();
+        locations.stream()
+                .filter(location -> location.storage() != null)
+                .collect(Collectors.groupingBy(ImageContentLocation::storage))
+                .forEach((storage, storageLocations) -> result.putAll(get(storage).readAll(storageLocations)));
+        return result;
+    }
+
+}
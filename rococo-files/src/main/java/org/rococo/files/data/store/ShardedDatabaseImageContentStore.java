@@ -0,0 +1,221 @@
+package org.rococo.files.data.store;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.util.ConsistentHashRing;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps image bytes in {@code rococo.image_content_shard} of several databases, shard of content is chosen by
+ * consistent hashing of content hash. Every shard has its own connection pool and schema migrations
+ * ({@code db/shard/rococo-files}). Enabled by {@code rococo-files.storage.shards=<name>=<jdbc url>,...}.
+ * <p>
+ * Batch reads query shards in parallel. Content which is not on its shard was stored before the shard
+ * was added and is not moved yet by {@link org.rococo.files.service.ContentShardRebalancer},
+ * it is looked up on the other shards.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+@ConditionalOnProperty(name = "rococo-files.storage.shards")
+public class ShardedDatabaseImageContentStore implements ImageContentStore {
+
+    private static final int POINTS_PER_SHARD = 128;
+
+    private final Map<String, ContentShard> shards = new LinkedHashMap<>();
+
+    private final ConsistentHashRing ring;
+
+    private final ExecutorService executor;
+
+    private final Counter misses;
+
+    @Autowired
+    public ShardedDatabaseImageContentStore(@Value("${rococo-files.storage.shards}") List<String> shards,
+                                            @Value("${rococo-files.storage.shard-username:${spring.datasource.username:}}") String username,
+                                            @Value("${rococo-files.storage.shard-password:${spring.datasource.password:}}") String password,
+                                            @Value("${rococo-files.storage.shard-pool-size:10}") int poolSize,
+                                            MeterRegistry meterRegistry
+    ) {
+        this(shards.stream()
+                        .map(shard -> {
+                            final int separator = shard.indexOf('=');
+                            if (separator < 1)
+                                throw new IllegalArgumentException("Shard must be set as <name>=<jdbc url>, but was [%s]".formatted(shard));
+                            return connect(shard.substring(0, separator).trim(), shard.substring(separator + 1).trim(),
+                                    username, password, poolSize);
+                        })
+                        .toList(),
+                meterRegistry);
+    }
+
+    ShardedDatabaseImageContentStore(List<ContentShard> shards, MeterRegistry meterRegistry) {
+        shards.forEach(shard -> this.shards.put(shard.name(), shard));
+        this.ring = new ConsistentHashRing(this.shards.keySet(), POINTS_PER_SHARD);
+        this.executor = Executors.newFixedThreadPool(this.shards.size(), new CustomizableThreadFactory("content-shard-"));
+        this.misses = Counter.builder("rococo.files.shards.misses")
+                .description("Contents not found on their shard and looked up on the other shards")
+                .register(meterRegistry);
+        log.info("Image content is sharded over {}", this.shards.keySet());
+    }
+
+    @Nonnull
+    @Override
+    public ContentStorage storage() {
+        return ContentStorage.SHARDED_DATABASE;
+    }
+
+    @Override
+    public void write(ImageContentLocation location, byte[] data) {
+        shards.get(shardOf(location)).write(location, data);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<ByteBuffer> read(ImageContentLocation location) {
+        return readAll(List.of(location)).values().stream().findFirst();
+    }
+
+    @Nonnull
+    @Override
+    public Map<UUID, ByteBuffer> readAll(Collection<ImageContentLocation> locations) {
+
+        if (locations.isEmpty())
+            return Map.of();
+
+        final Map<String, List<UUID>> idsByShard = locations.stream()
+                .collect(Collectors.groupingBy(this::shardOf,
+                        Collectors.mapping(ImageContentLocation::contentId, Collectors.toList())));
+        final Map<UUID, byte[]> result = readAll(idsByShard);
+
+        final Map<String, List<UUID>> missingIdsByShard = new HashMap<>();
+        locations.stream()
+                .filter(location -> !result.containsKey(location.contentId()))
+                .forEach(location -> {
+                    misses.increment();
+                    final var owner = shardOf(location);
+                    shards.keySet().stream()
+                            .filter(shard -> !shard.equals(owner))
+                            .forEach(shard -> missingIdsByShard.computeIfAbsent(shard, key -> new ArrayList<>())
+                                    .add(location.contentId()));
+                });
+        if (!missingIdsByShard.isEmpty())
+            readAll(missingIdsByShard).forEach(result::putIfAbsent);
+
+        return result.entrySet().stream()
+                .collect(Collectors.toMap(
+                        Map.Entry::getKey,
+                        entry -> ByteBuffer.wrap(entry.getValue()).asReadOnlyBuffer()));
+
+    }
+
+    /**
+     * Deletes bytes from every shard: content may be moved between shards meanwhile.
+     */
+    @Override
+    public void delete(ImageContentLocation location) {
+        shards.values().forEach(shard -> shard.delete(location.contentId()));
+    }
+
+    @Nonnull
+    public Set<String> shards() {
+        return shards.keySet();
+    }
+
+    @Nonnull
+    public String shardOf(ImageContentLocation location) {
+        return ring.nodeOf(location.contentHash());
+    }
+
+    /**
+     * Next page of contents stored on the shard in order of their ids.
+     */
+    @Nonnull
+    public List<ImageContentLocation> findLocationsAfter(String shard, UUID after, int limit) {
+        return shards.get(shard).findLocationsAfter(after, limit);
+    }
+
+    /**
+     * Copies bytes of content to the shard it belongs to and deletes them from the given shard.
+     * Readers find bytes on one of them at any moment.
+     *
+     * @return false if bytes are not on the given shard (anymore)
+     */
+    public boolean move(ImageContentLocation location, String from) {
+        final var source = shards.get(from);
+        final var data = source.read(location.contentId());
+        if (data.isEmpty())
+            return false;
+
+        shards.get(shardOf(location)).write(location, data.get());
+        source.delete(location.contentId());
+        return true;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        shards.values().forEach(ContentShard::close);
+    }
+
+    private Map<UUID, byte[]> readAll(Map<String, List<UUID>> idsByShard) {
+        final var futures = idsByShard.entrySet().stream()
+                .map(entry -> CompletableFuture.supplyAsync(
+                        () -> shards.get(entry.getKey()).readAll(entry.getValue()), executor))
+                .toList();
+        final Map<UUID, byte[]> result = new HashMap<>();
+        futures.stream()
+                .map(CompletableFuture::join)
+                .forEach(result::putAll);
+        return result;
+    }
+
+    private static ContentShard connect(String name, String url, String username, String password, int poolSize) {
+        final var dataSource = new HikariDataSource();
+        dataSource.setPoolName("content-shard-" + name);
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(poolSize);
+
+        final var flyway = Flyway.configure()
+                .dataSource(dataSource)
+                .schemas("flyway")
+                .locations("classpath:db/shard/rococo-files")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load();
+        flyway.repair();
+        flyway.migrate();
+
+        return new ContentShard(name, dataSource);
+    }
+
+}
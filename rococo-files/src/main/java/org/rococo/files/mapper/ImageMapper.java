@@ -1,26 +1,31 @@
 package org.rococo.files.mapper;
 
 import com.google.protobuf.ByteString;
-import org.rococo.files.config.AppProperty;
+import com.google.protobuf.UnsafeByteOperations;
+import org.rococo.common.image.Blurhash;
 import org.rococo.files.data.entity.EntityType;
 import org.rococo.files.data.entity.ImageContentEntity;
 import org.rococo.files.data.entity.ImageFilter;
 import org.rococo.files.data.entity.ImageMetadataEntity;
-import org.rococo.files.ex.BadRequestException;
-import org.rococo.files.util.HashUtil;
+import org.rococo.files.data.entity.Rendition;
+import org.rococo.files.util.DataUriDecoder.DecodedImage;
 import org.rococo.files.util.ImageUtil;
 import org.rococo.grpc.common.page.PageableGrpc;
 import org.rococo.grpc.files.EntityTypeGrpc;
 import org.rococo.grpc.files.FindImagesGrpcRequest;
+import org.rococo.grpc.files.ImageDownloadHeader;
 import org.rococo.grpc.files.ImageGrpcRequest;
 import org.rococo.grpc.files.ImageGrpcResponse;
+import org.rococo.grpc.files.ImageMetadataGrpcResponse;
+import org.rococo.grpc.files.ImageUploadHeader;
+import org.rococo.grpc.files.RenditionGrpc;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 
-import javax.annotation.Nonnull;
-import java.nio.charset.Charset;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 public class ImageMapper {
@@ -28,54 +33,67 @@ public class ImageMapper {
     private ImageMapper() {
     }
 
-    public static ImageMetadataEntity fromGrpcRequest(ImageGrpcRequest request) {
-
-        final var originalImage = request.getContent().toString(Charset.defaultCharset());
-        final var format = ImageUtil.getFormatName(originalImage);
-
-        final var content = ImageContentEntity.builder()
-                .data(request.getContent().toByteArray())
-                .thumbnailData(
-                        ImageUtil.resizeImage(
-                                        originalImage,
-                                        format,
-                                        AppProperty.MIN_IMAGE_WIDTH,
-                                        AppProperty.MIN_IMAGE_HEIGHT,
-                                        AppProperty.QUALITY)
-                                .orElseThrow(() -> new BadRequestException("Can not resize image"))
-                )
-                .build();
-
+    /**
+     * Maps request to metadata with not yet stored content: thumbnail is generated only if the content is new,
+     * see {@link org.rococo.files.service.ImageContentService#acquire(ImageMetadataEntity)}.
+     */
+    public static ImageMetadataEntity fromGrpcRequest(ImageGrpcRequest request, DecodedImage image) {
+        final var dimensions = ImageUtil.readDimensions(image.data());
         return ImageMetadataEntity.builder()
-                .format(format)
+                .format(image.format())
                 .entityType(request.getEntityType() == EntityTypeGrpc.UNDEFINED
                         ? null
                         : EntityType.valueOf(request.getEntityType().name()))
                 .entityId(request.getEntityId().isEmpty()
                         ? null
                         : UUID.fromString(request.getEntityId()))
-                .content(content)
-                .contentHash(HashUtil.getHash(originalImage))
+                .width(dimensions.map(dimension -> dimension.width).orElse(null))
+                .height(dimensions.map(dimension -> dimension.height).orElse(null))
+                .byteSize((long) image.data().length)
+                .content(ImageContentEntity.builder()
+                        .contentHash(image.contentHash())
+                        .data(image.data())
+                        .build())
+                .contentHash(image.contentHash())
                 .build();
     }
 
-    @Nonnull
-    public static ImageMetadataEntity updateFromGrpcRequest(ImageMetadataEntity entity, ImageGrpcRequest request) {
-        final var metadata = fromGrpcRequest(request);
-        entity.setFormat(metadata.getFormat())
-                .setContentHash(metadata.getContentHash())
-                .getContent()
-                .setData(metadata.getContent().getData())
-                .setThumbnailData(metadata.getContent().getData());
-        return metadata;
+    public static ImageMetadataEntity fromUpload(ImageUploadHeader header, DecodedImage image) {
+        final var dimensions = ImageUtil.readDimensions(image.data());
+        return ImageMetadataEntity.builder()
+                .format(image.format())
+                .entityType(EntityType.valueOf(header.getEntityType().name()))
+                .entityId(UUID.fromString(header.getEntityId()))
+                .width(dimensions.map(dimension -> dimension.width).orElse(null))
+                .height(dimensions.map(dimension -> dimension.height).orElse(null))
+                .byteSize((long) image.data().length)
+                .content(ImageContentEntity.builder()
+                        .contentHash(image.contentHash())
+                        .data(image.data())
+                        .build())
+                .contentHash(image.contentHash())
+                .build();
     }
 
-    public static ImageGrpcResponse toGrpcResponse(ImageMetadataEntity entity, boolean isOriginal) {
-
-        final var content = isOriginal
-                ? entity.getContent().getData()
-                : entity.getContent().getThumbnailData();
-
+    /**
+     * Placeholder is always sent as it is, in {@link Blurhash#FORMAT}.
+     *
+     * @param content    image bytes in requested rendition, see {@link org.rococo.files.service.ImageContentService#findData}
+     * @param rawContent content is sent as it is (wrapped, not copied) instead of data-URI
+     */
+    public static ImageGrpcResponse toGrpcResponse(ImageMetadataEntity entity,
+                                                   @Nullable ByteBuffer content,
+                                                   Rendition rendition,
+                                                   boolean rawContent) {
+        if (rendition == Rendition.PLACEHOLDER)
+            return ImageGrpcResponse.newBuilder()
+                    .setEntityId(entity.getEntityId().toString())
+                    .setContent(content == null
+                            ? ByteString.empty()
+                            : UnsafeByteOperations.unsafeWrap(content.duplicate()))
+                    .setContentHash(entity.getContentHash())
+                    .setFormat(Blurhash.FORMAT)
+                    .build();
         return ImageGrpcResponse.newBuilder()
                 .setEntityId(
                         entity.getEntityId() == null
@@ -84,10 +102,67 @@ public class ImageMapper {
                 .setContent(
                         content == null
                                 ? ByteString.empty()
-                                : ByteString.copyFrom(content))
+                                : rawContent
+                                ? UnsafeByteOperations.unsafeWrap(content.duplicate())
+                                : ImageUtil.toDataUri(entity.getFormat(), content))
+                .setContentHash(entity.getContentHash())
+                .setFormat(entity.getFormat() == null
+                        ? ""
+                        : entity.getFormat())
                 .build();
     }
 
+    /**
+     * Response for client which already holds current image: content hash only, no bytes.
+     */
+    public static ImageGrpcResponse toNotModifiedGrpcResponse(ImageMetadataEntity entity) {
+        return ImageGrpcResponse.newBuilder()
+                .setEntityId(entity.getEntityId().toString())
+                .setContentHash(entity.getContentHash())
+                .setNotModified(true)
+                .build();
+    }
+
+    public static ImageDownloadHeader toDownloadHeader(ImageMetadataEntity entity, int size, int offset, int length) {
+        return ImageDownloadHeader.newBuilder()
+                .setEntityId(entity.getEntityId().toString())
+                .setFormat(entity.getFormat())
+                .setSize(size)
+                .setOffset(offset)
+                .setLength(length)
+                .setContentHash(entity.getContentHash())
+                .build();
+    }
+
+    /**
+     * Dimensions and size of images stored before they were recorded are 0.
+     */
+    public static ImageMetadataGrpcResponse toMetadataGrpcResponse(ImageMetadataEntity entity) {
+        return ImageMetadataGrpcResponse.newBuilder()
+                .setEntityId(entity.getEntityId().toString())
+                .setContentHash(entity.getContentHash())
+                .setFormat(entity.getFormat())
+                .setSize(entity.getByteSize() == null ? 0 : entity.getByteSize())
+                .setWidth(entity.getWidth() == null ? 0 : entity.getWidth())
+                .setHeight(entity.getHeight() == null ? 0 : entity.getHeight())
+                .build();
+    }
+
+    public static ImageDownloadHeader toNotModifiedDownloadHeader(ImageMetadataEntity entity) {
+        return ImageDownloadHeader.newBuilder()
+                .setEntityId(entity.getEntityId().toString())
+                .setFormat(entity.getFormat())
+                .setContentHash(entity.getContentHash())
+                .setNotModified(true)
+                .build();
+    }
+
+    public static Rendition fromRenditionGrpc(RenditionGrpc rendition, boolean isOriginal) {
+        return rendition == RenditionGrpc.RENDITION_UNSPECIFIED || rendition == RenditionGrpc.UNRECOGNIZED
+                ? (isOriginal ? Rendition.ORIGINAL : Rendition.THUMBNAIL)
+                : Rendition.valueOf(rendition.name());
+    }
+
     public static ImageFilter fromFilterGrpc(FindImagesGrpcRequest request) {
         return ImageFilter.builder()
                 .entityType(
@@ -116,13 +191,4 @@ public class ImageMapper {
                         pageable.getSort().getOrder().split(","))
         );
     }
-
-    public static void update(ImageMetadataEntity oldMetadata, ImageMetadataEntity newMetadata) {
-        oldMetadata.setFormat(newMetadata.getFormat())
-                .setContentHash(newMetadata.getContentHash())
-                .getContent()
-                .setData(newMetadata.getContent().getData())
-                .setThumbnailData(newMetadata.getContent().getThumbnailData());
-
-    }
 }
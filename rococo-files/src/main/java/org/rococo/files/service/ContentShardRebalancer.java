@@ -0,0 +1,176 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.rococo.files.data.store.ShardedDatabaseImageContentStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves contents of {@link ShardedDatabaseImageContentStore} to the shards they belong to, after a shard was added
+ * to {@code rococo-files.storage.shards}. Started, stopped and watched through actuator endpoint,
+ * see {@link ContentShardsEndpoint}.
+ * <p>
+ * Every shard is scanned in batches in order of content ids with a pause between batches. Content is copied to its
+ * shard before it is deleted from the old one, so it is readable all the time. Rebalancing is not resumed after
+ * restart: running it again only scans contents which are already in place.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+@ConditionalOnProperty(name = "rococo-files.storage.shards")
+public class ContentShardRebalancer {
+
+    private static final UUID FIRST_CONTENT_ID = new UUID(0, 0);
+
+    private final ShardedDatabaseImageContentStore contentStore;
+
+    private final ImageContentRepository contentRepository;
+
+    private final int batchSize;
+
+    private final Duration batchDelay;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("content-shard-rebalancer-"));
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong scanned = new AtomicLong();
+
+    private final AtomicLong moved = new AtomicLong();
+
+    private final Counter movedCounter;
+
+    private volatile boolean stopRequested;
+
+    @Nullable
+    private volatile String currentShard;
+
+    public ContentShardRebalancer(ShardedDatabaseImageContentStore contentStore,
+                                  ImageContentRepository contentRepository,
+                                  @Value("${rococo-files.storage.rebalance.batch-size:100}") int batchSize,
+                                  @Value("${rococo-files.storage.rebalance.batch-delay:500ms}") Duration batchDelay,
+                                  MeterRegistry meterRegistry
+    ) {
+        this.contentStore = contentStore;
+        this.contentRepository = contentRepository;
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+        this.movedCounter = Counter.builder("rococo.files.shards.moved")
+                .description("Contents moved to the shard they belong to")
+                .register(meterRegistry);
+    }
+
+    @Nonnull
+    public synchronized Status start() {
+        if (running.compareAndSet(false, true)) {
+            stopRequested = false;
+            scanned.set(0);
+            moved.set(0);
+            runner.execute(() -> {
+                try {
+                    for (String shard : contentStore.shards()) {
+                        currentShard = shard;
+                        rebalance(shard);
+                    }
+                    log.info("Content shards are rebalanced: scanned = [{}], moved = [{}]", scanned.get(), moved.get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception ex) {
+                    log.error("Content shards rebalancing failed, it must be started again", ex);
+                } finally {
+                    currentShard = null;
+                    running.set(false);
+                }
+            });
+        }
+        return status();
+    }
+
+    /**
+     * Current batch is finished
+     */
+    @Nonnull
+    public Status stop() {
+        stopRequested = true;
+        return status();
+    }
+
+    @Nonnull
+    public Status status() {
+        return new Status(running.get(), currentShard, scanned.get(), moved.get());
+    }
+
+    /**
+     * @return number of contents moved from the shard
+     */
+    long rebalance(String shard) throws InterruptedException {
+
+        long movedFromShard = 0;
+        var after = FIRST_CONTENT_ID;
+        List<ImageContentLocation> page;
+        do {
+            if (stopRequested)
+                break;
+
+            page = contentStore.findLocationsAfter(shard, after, batchSize);
+            for (var location : page) {
+                scanned.incrementAndGet();
+                if (!shard.equals(contentStore.shardOf(location)) && contentStore.move(location, shard)) {
+                    // content deleted while it was moved must not be left on its new shard
+                    if (contentRepository.findLocationById(location.contentId()).isEmpty())
+                        contentStore.delete(location);
+                    moved.incrementAndGet();
+                    movedCounter.increment();
+                    movedFromShard++;
+                }
+            }
+            if (!page.isEmpty()) {
+                after = page.getLast().contentId();
+                Thread.sleep(batchDelay);
+            }
+        } while (page.size() == batchSize);
+
+        log.info("Moved [{}] contents from shard [{}]", movedFromShard, shard);
+        return movedFromShard;
+
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+    }
+
+    public record Status(
+
+            boolean running,
+
+            @Nullable
+            String shard,
+
+            long scanned,
+
+            long moved
+
+    ) {
+    }
+
+}
@@ -0,0 +1,38 @@
+package org.rococo.files.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code contentshards} of {@link ContentShardRebalancer}: read returns progress,
+ * write starts rebalancing, delete stops it. Exposed through JMX like {@link ThumbnailBackfillEndpoint}.
+ */
+@Component
+@Endpoint(id = "contentshards")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "rococo-files.storage.shards")
+public class ContentShardsEndpoint {
+
+    private final ContentShardRebalancer rebalancer;
+
+    @ReadOperation
+    public ContentShardRebalancer.Status status() {
+        return rebalancer.status();
+    }
+
+    @WriteOperation
+    public ContentShardRebalancer.Status start() {
+        return rebalancer.start();
+    }
+
+    @DeleteOperation
+    public ContentShardRebalancer.Status stop() {
+        return rebalancer.stop();
+    }
+
+}
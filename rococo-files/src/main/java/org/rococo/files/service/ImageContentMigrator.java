@@ -0,0 +1,155 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.config.AppProperty;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.rococo.files.data.store.ImageContentStores;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Moves original bytes of stored contents to the storage which new contents are written to,
+ * while the service keeps working. Enabled by {@code rococo-files.storage.migrate=true}.
+ * Contents are moved in small batches, each in its own transaction with locked content rows:
+ * bytes are copied to the target storage, row is pointed to it and source bytes are deleted after commit.
+ * Readers which still see the old row read it once more, see {@link ImageContentStores#read}.
+ * <p>
+ * Contents of each source storage are paged by id, a pass ends when no contents are left after the last page.
+ * Contents whose bytes cannot be read stay in their storage and are only skipped by the pass, contents locked by
+ * concurrent transaction are taken by the next one. Migration is finished by a pass which moves nothing.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+@ConditionalOnProperty(name = "rococo-files.storage.migrate", havingValue = "true")
+public class ImageContentMigrator {
+
+    private final ImageContentRepository contentRepository;
+
+    private final ImageContentStores contentStores;
+
+    private final TransactionOperations transactionOperations;
+
+    private static final UUID FIRST_CONTENT_ID = new UUID(0, 0);
+
+    private final Counter migrated;
+
+    private final Map<ContentStorage, UUID> cursors = new EnumMap<>(ContentStorage.class);
+
+    private int movedInPass;
+
+    private int unreadableInPass;
+
+    private boolean finished;
+
+    public ImageContentMigrator(ImageContentRepository contentRepository,
+                                ImageContentStores contentStores,
+                                TransactionOperations transactionOperations,
+                                MeterRegistry meterRegistry
+    ) {
+        this.contentRepository = contentRepository;
+        this.contentStores = contentStores;
+        this.transactionOperations = transactionOperations;
+        this.migrated = Counter.builder("rococo.files.content.migrated")
+                .description("Image contents moved to storage of new contents")
+                .tag("storage", contentStores.writeStore().storage().name())
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelay = AppProperty.CONTENT_MIGRATION_DELAY_MS)
+    public void migrate() {
+
+        if (finished)
+            return;
+
+        final var target = contentStores.writeStore().storage();
+        boolean passEnded = true;
+        for (var source : ContentStorage.values()) {
+            if (source == target)
+                continue;
+            final var batch = migrateBatch(source, target, cursors.getOrDefault(source, FIRST_CONTENT_ID));
+            if (batch.lastId() != null) {
+                cursors.put(source, batch.lastId());
+                passEnded = false;
+            }
+            movedInPass += batch.moved();
+            unreadableInPass += batch.unreadable();
+        }
+
+        if (!passEnded)
+            return;
+
+        if (movedInPass == 0) {
+            finished = true;
+            if (unreadableInPass == 0)
+                log.info("All image contents are stored in [{}]", target);
+            else
+                log.warn("All readable image contents are stored in [{}], [{}] contents without bytes are left in their storages",
+                        target, unreadableInPass);
+        }
+        cursors.clear();
+        movedInPass = 0;
+        unreadableInPass = 0;
+
+    }
+
+    /**
+     * Moves contents of source storage with ids after the given one
+     */
+    @Nonnull
+    Batch migrateBatch(ContentStorage source, ContentStorage target, UUID after) {
+        final var batch = Objects.requireNonNull(transactionOperations.execute(status -> {
+            final var ids = contentRepository.findIdsByStorageForUpdate(source.name(), after, AppProperty.CONTENT_MIGRATION_BATCH_SIZE);
+            if (ids.isEmpty())
+                return new Batch(null, 0, 0);
+
+            int moved = 0;
+            int unreadable = 0;
+            for (ImageContentLocation location : contentRepository.findAllLocationsByIdIn(ids)) {
+                final var data = contentStores.get(source).read(location);
+                if (data.isEmpty()) {
+                    log.warn("Image content with id = [{}] has no bytes in [{}], it is not moved", location.contentId(), source);
+                    unreadable++;
+                    continue;
+                }
+
+                final var bytes = new byte[data.get().remaining()];
+                data.get().duplicate().get(bytes);
+                contentStores.write(new ImageContentLocation(location.contentId(), location.contentHash(), target), bytes);
+                if (contentRepository.moveStorage(location.contentId(), source.name(), target.name()) > 0) {
+                    contentStores.deleteAfterCommit(location);
+                    moved++;
+                }
+            }
+            return new Batch(ids.getLast(), moved, unreadable);
+        }));
+
+        if (batch.moved() > 0) {
+            log.info("Moved [{}] image contents from [{}] to [{}]", batch.moved(), source, target);
+            migrated.increment(batch.moved());
+        }
+        return batch;
+    }
+
+    /**
+     * @param lastId     id of the last content of batch, null if no contents are left after the given id
+     * @param unreadable contents without bytes in source storage, they are not moved
+     */
+    record Batch(@Nullable UUID lastId, int moved, int unreadable) {
+    }
+
+}
@@ -0,0 +1,186 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.data.entity.ImageContentEntity;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.entity.ImageMetadataEntity;
+import org.rococo.files.data.entity.Rendition;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.rococo.files.data.repository.ImageRenditionRepository;
+import org.rococo.files.data.repository.ThumbnailTaskRepository;
+import org.rococo.files.data.store.ImageContentStores;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Content-addressed storage of image bytes.
+ * Equal images share one {@link ImageContentEntity} row, which is deleted when the last metadata referencing it goes away.
+ * Original bytes are kept in {@link ImageContentStores}, thumbnail and other renditions in the database.
+ */
+@Slf4j
+@Service
+@ParametersAreNonnullByDefault
+public class ImageContentService {
+
+    private final ImageContentRepository contentRepository;
+
+    private final ImageRenditionRepository renditionRepository;
+
+    private final ImageContentStores contentStores;
+
+    private final ThumbnailCache thumbnailCache;
+
+    private final ThumbnailTaskRepository taskRepository;
+
+    private final Counter dedupHits;
+
+    private final Counter dedupMisses;
+
+    public ImageContentService(ImageContentRepository contentRepository,
+                               ImageRenditionRepository renditionRepository,
+                               ImageContentStores contentStores,
+                               ThumbnailCache thumbnailCache,
+                               ThumbnailTaskRepository taskRepository,
+                               MeterRegistry meterRegistry
+    ) {
+        this.contentRepository = contentRepository;
+        this.renditionRepository = renditionRepository;
+        this.contentStores = contentStores;
+        this.thumbnailCache = thumbnailCache;
+        this.taskRepository = taskRepository;
+        this.dedupHits = dedupCounter(meterRegistry, "hit");
+        this.dedupMisses = dedupCounter(meterRegistry, "miss");
+    }
+
+    /**
+     * Returns stored content for the image of the given metadata, taking one reference on it.
+     * New content is stored without thumbnail, it is generated later by {@link ThumbnailWorker}.
+     */
+    @Nonnull
+    @Transactional(propagation = Propagation.MANDATORY)
+    public ImageContentEntity acquire(ImageMetadataEntity metadata) {
+
+        final var contentHash = metadata.getContentHash();
+
+        var existingId = contentRepository.findIdByContentHash(contentHash);
+        if (existingId.isPresent() && contentRepository.incrementRefCount(existingId.get()) > 0) {
+            log.debug("Image content with hash = [{}] already stored, reusing it", contentHash);
+            dedupHits.increment();
+            return contentRepository.getReferenceById(existingId.get());
+        }
+
+        dedupMisses.increment();
+        final var contentId = contentRepository.insertOrAcquire(contentHash);
+        final var writeStore = contentStores.writeStore();
+        if (contentRepository.claimStorage(contentId, writeStore.storage()) > 0) {
+            contentStores.write(new ImageContentLocation(contentId, contentHash, writeStore.storage()),
+                    metadata.getContent().getData());
+            taskRepository.enqueue(contentId, metadata.getFormat());
+        }
+
+        return contentRepository.getReferenceById(contentId);
+
+    }
+
+    /**
+     * Drops one reference on the content and deletes it when nothing references it anymore.
+     *
+     * @return true if content was deleted
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean release(ImageContentEntity content) {
+        // pending metadata changes must reach the database before the content row can be deleted
+        contentRepository.flush();
+        contentRepository.decrementRefCount(content.getId());
+        final var location = contentRepository.findLocationById(content.getId());
+        if (contentRepository.deleteIfUnreferenced(content.getId()) > 0) {
+            log.debug("Image content with id = [{}] is not referenced anymore and was deleted", content.getId());
+            location.ifPresent(contentStores::deleteAfterCommit);
+            thumbnailCache.invalidate(content.getId());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads image bytes in requested rendition by content ids. Only the needed columns are selected, so thumbnails
+     * and renditions are read without original bytes. Rendition which is not generated yet (or not smaller than
+     * original) is returned as original. Placeholder which is not generated yet is not returned at all:
+     * placeholder is requested for lists to be light, so nothing heavier is sent in its place.
+     */
+    @Nonnull
+    @Transactional(readOnly = true)
+    public Map<UUID, ByteBuffer> findData(Collection<UUID> contentIds, Rendition rendition) {
+
+        if (contentIds.isEmpty())
+            return Map.of();
+
+        final Map<UUID, ByteBuffer> result = new HashMap<>();
+        switch (rendition) {
+            case ORIGINAL -> {
+            }
+            case THUMBNAIL -> result.putAll(findThumbnails(contentIds));
+            case PLACEHOLDER -> {
+                contentRepository.findAllPlaceholdersByIdIn(contentIds)
+                        .forEach(content -> result.put(content.contentId(), ByteBuffer.wrap(content.data())));
+                return result;
+            }
+            default -> renditionRepository.findAllByContentIdInAndRendition(contentIds, rendition)
+                    .forEach(stored -> result.put(stored.getContentId(), ByteBuffer.wrap(stored.getData())));
+        }
+
+        final var missingIds = contentIds.stream()
+                .filter(id -> !result.containsKey(id))
+                .collect(Collectors.toSet());
+        if (!missingIds.isEmpty())
+            result.putAll(contentStores.readAll(missingIds));
+
+        return result;
+
+    }
+
+    private Map<UUID, ByteBuffer> findThumbnails(Collection<UUID> contentIds) {
+        if (contentIds.isEmpty())
+            return Map.of();
+        final Map<UUID, ByteBuffer> result = new HashMap<>(thumbnailCache.getAllPresent(contentIds));
+        final var notCachedIds = contentIds.stream()
+                .filter(id -> !result.containsKey(id))
+                .collect(Collectors.toSet());
+        if (!notCachedIds.isEmpty())
+            contentRepository.findAllThumbnailsByIdIn(notCachedIds).forEach(content -> {
+                thumbnailCache.put(content.contentId(), content.data());
+                result.put(content.contentId(), ByteBuffer.wrap(content.data()));
+            });
+        return result;
+    }
+
+    /**
+     * @return read-only buffer with original bytes of content or empty if content was deleted
+     */
+    @Nonnull
+    @Transactional(readOnly = true)
+    public Optional<ByteBuffer> findOriginal(UUID contentId) {
+        return contentStores.read(contentId);
+    }
+
+    private static Counter dedupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("rococo.files.image.dedup")
+                .description("Image uploads matched (hit) or not matched (miss) with already stored content")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.rococo.files.service;
+
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.grpc.files.ImageDownloadChunk;
+import org.rococo.grpc.files.ImageDownloadHeader;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+
+/**
+ * Sends byte range of image as a header followed by fixed-size data chunks.
+ * Chunks are written only while the transport is ready, the rest is sent from onReady callbacks,
+ * so a slow client does not make the whole image pile up in outbound buffers.
+ */
+@Slf4j
+@ParametersAreNonnullByDefault
+class ImageDownloadStreamer implements Runnable {
+
+    // multiple of 3, so base64 of chunks can be concatenated by the client
+    static final int CHUNK_SIZE = 48 * 1024;
+
+    private final StreamObserver<ImageDownloadChunk> responseObserver;
+    @Nullable
+    private final ServerCallStreamObserver<ImageDownloadChunk> serverCallObserver;
+    private final ByteBuffer data;
+    private final int end;
+
+    private int position;
+    private boolean finished;
+
+    ImageDownloadStreamer(StreamObserver<ImageDownloadChunk> responseObserver, ByteBuffer data, int offset, int length) {
+        this.responseObserver = responseObserver;
+        this.serverCallObserver = responseObserver instanceof ServerCallStreamObserver<ImageDownloadChunk> observer
+                ? observer
+                : null;
+        this.data = data;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    void start(ImageDownloadHeader header) {
+        if (serverCallObserver != null) {
+            serverCallObserver.setOnCancelHandler(this::cancel);
+            serverCallObserver.setOnReadyHandler(this);
+        }
+        responseObserver.onNext(ImageDownloadChunk.newBuilder()
+                .setHeader(header)
+                .build());
+        run();
+    }
+
+    @Override
+    public synchronized void run() {
+        while (!finished && (serverCallObserver == null || serverCallObserver.isReady())) {
+            if (position >= end) {
+                finished = true;
+                responseObserver.onCompleted();
+                return;
+            }
+            final int length = Math.min(CHUNK_SIZE, end - position);
+            responseObserver.onNext(ImageDownloadChunk.newBuilder()
+                    .setData(UnsafeByteOperations.unsafeWrap(data.slice(position, length)))
+                    .build());
+            position += length;
+        }
+    }
+
+    private synchronized void cancel() {
+        log.info("Image download was cancelled by client");
+        finished = true;
+    }
+
+}
@@ -3,12 +3,15 @@ package org.rococo.files.service;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.rococo.files.config.AppProperty;
 import org.rococo.files.data.entity.EntityType;
 import org.rococo.files.data.entity.ImageMetadataEntity;
+import org.rococo.files.data.entity.Rendition;
 import org.rococo.files.data.repository.ImageMetadataRepository;
 import org.rococo.files.ex.BadRequestException;
 import org.rococo.files.ex.ImageAlreadyExistsException;
@@ -16,14 +19,24 @@ import org.rococo.files.ex.ImageNotFoundException;
 import org.rococo.files.ex.InternalException;
 import org.rococo.files.mapper.ImageMapper;
 import org.rococo.files.specs.ImageSpecs;
+import org.rococo.files.util.DataUriDecoder;
+import org.rococo.files.util.DataUriDecoder.DecodedImage;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.files.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
-import java.nio.charset.Charset;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 @Slf4j
 @GrpcService
@@ -32,30 +45,47 @@ public class ImageGrpcService extends FilesServiceGrpc.FilesServiceImplBase {
 
     private final ImageMetadataRepository metadataRepository;
 
+    private final ImageContentService contentService;
+
     private final ImageSpecs imageSpecs;
 
+    private final ImageNormalizer imageNormalizer;
+
+    private final TransactionOperations transactionOperations;
+
+    @Value("${rococo-files.mutation.batch-size:100}")
+    private int mutationBatchSize;
+
+    @Value("${rococo-files.mutation.parallelism:2}")
+    private int mutationParallelism;
+
+    /**
+     * Contents of mutation batch are decoded here and not in common pool, so bulk import is bounded
+     * and does not take threads of other parallel work
+     */
+    private ForkJoinPool mutationPool;
+
+    @PostConstruct
+    void startMutationPool() {
+        mutationPool = new ForkJoinPool(mutationParallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        mutationPool.shutdownNow();
+    }
+
+    /**
+     * Image is decoded and normalized before transaction is opened, so connection is not held for CPU-bound work.
+     */
     @Override
-    @Transactional
     public void addImage(ImageGrpcRequest request, StreamObserver<Empty> responseObserver) {
 
         log.info("Add new image: entityType = [{}], entityId = [{}]", request.getEntityType(), request.getEntityId());
 
         validateMetadataRequestParams(request.getEntityType(), request.getEntityId());
-        validateContentRequestParams(request.getContent());
-        validateContentPattern(request.getContent());
 
-        try {
-            var metadataEntity = ImageMapper.fromGrpcRequest(request)
-                    .setCreatedDate(LocalDateTime.now());
-            metadataRepository.save(metadataEntity);
-        } catch (DataIntegrityViolationException ex) {
-            throw new ImageAlreadyExistsException(
-                    EntityType.valueOf(request.getEntityType().name()),
-                    UUID.fromString(request.getEntityId()));
-        } catch (Exception ex) {
-            log.error(ex.getMessage(), ex);
-            throw new InternalException("Failed to save image\n" + ex.getCause().getMessage());
-        }
+        store(ImageMapper.fromGrpcRequest(request, decode(request.getContent())), false);
 
         responseObserver.onNext(Empty.getDefaultInstance());
         responseObserver.onCompleted();
@@ -76,7 +106,9 @@ public class ImageGrpcService extends FilesServiceGrpc.FilesServiceImplBase {
                         UUID.fromString(request.getEntityId()))
                 .ifPresentOrElse(
                         metadata -> responseObserver.onNext(
-                                ImageMapper.toGrpcResponse(metadata, true)),
+                                metadata.getContentHash().equals(request.getKnownHash())
+                                        ? ImageMapper.toNotModifiedGrpcResponse(metadata)
+                                        : toGrpcResponse(metadata, ImageMapper.fromRenditionGrpc(request.getRendition(), true), request.getRawContent())),
                         () -> {
                             throw new ImageNotFoundException(
                                     EntityType.valueOf(request.getEntityType().name()),
@@ -88,6 +120,61 @@ public class ImageGrpcService extends FilesServiceGrpc.FilesServiceImplBase {
 
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void existsImage(FindImageGrpcRequest request, StreamObserver<StatusType> responseObserver) {
+
+        log.info("Check image exists by entityType = [{}] and entityId = [{}]", request.getEntityType(), request.getEntityId());
+
+        validateMetadataRequestParams(request.getEntityType(), request.getEntityId());
+
+        responseObserver.onNext(StatusType.newBuilder()
+                .setStatus(metadataRepository.existsByEntityTypeAndEntityId(
+                        EntityType.valueOf(request.getEntityType().name()),
+                        UUID.fromString(request.getEntityId())))
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void getImageMetadata(FindImageGrpcRequest request, StreamObserver<ImageMetadataGrpcResponse> responseObserver) {
+
+        log.info("Get image metadata by entityType = [{}] and entityId = [{}]", request.getEntityType(), request.getEntityId());
+
+        validateMetadataRequestParams(request.getEntityType(), request.getEntityId());
+
+        final EntityType entityType = EntityType.valueOf(request.getEntityType().name());
+        final UUID entityId = UUID.fromString(request.getEntityId());
+
+        responseObserver.onNext(ImageMapper.toMetadataGrpcResponse(
+                metadataRepository.findByEntityTypeAndEntityId(entityType, entityId)
+                        .orElseThrow(() -> new ImageNotFoundException(entityType, entityId))));
+        responseObserver.onCompleted();
+
+    }
+
+    /**
+     * Metadata of images of many entities by one query, e.g. to take content hashes of a batch of entities.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void getImagesMetadata(FindImagesGrpcRequest request, StreamObserver<ImageMetadataGrpcResponse> responseObserver) {
+
+        log.info("Get images metadata by entityType = [{}] and entityIds = {}", request.getEntityType(), request.getEntityIdsList());
+
+        if (request.getEntityType() == EntityTypeGrpc.UNDEFINED)
+            throw new BadRequestException("Entity type can not equals " + EntityTypeGrpc.UNDEFINED.name());
+
+        if (!request.getEntityIdsList().isEmpty())
+            metadataRepository.findAll(imageSpecs.findByCriteria(ImageMapper.fromFilterGrpc(request)))
+                    .forEach(metadata -> responseObserver.onNext(ImageMapper.toMetadataGrpcResponse(metadata)));
+
+        responseObserver.onCompleted();
+
+    }
+
     @Override
     @Transactional(readOnly = true)
     public void findAllByEntityTypeAndIds(FindImagesGrpcRequest request,
@@ -98,28 +185,84 @@ public class ImageGrpcService extends FilesServiceGrpc.FilesServiceImplBase {
                 .map(UUID::fromString)
                 .toArray(UUID[]::new);
 
-        log.info("Find all images by params: entityType = [{}], entityIds = {}, isOriginalPhoto = {}",
-                request.getEntityType(), Arrays.toString(entityIds), request.getIsOriginal());
+        log.info("Find all images by params: entityType = [{}], entityIds = {}, isOriginalPhoto = {}, rendition = [{}]",
+                request.getEntityType(), Arrays.toString(entityIds), request.getIsOriginal(), request.getRendition());
 
         final var imageFilter = ImageMapper.fromFilterGrpc(request);
 
-        metadataRepository.findAll(imageSpecs.findByCriteria(imageFilter))
-                .forEach(content -> responseObserver.onNext(
-                        ImageMapper.toGrpcResponse(content, request.getIsOriginal())));
+        final var rendition = ImageMapper.fromRenditionGrpc(request.getRendition(), request.getIsOriginal());
+        final var images = metadataRepository.findAll(imageSpecs.findByCriteria(imageFilter));
+        final var knownHashes = request.getKnownHashesMap();
+        final var contents = contentService.findData(
+                images.stream()
+                        .filter(metadata -> !isNotModified(metadata, knownHashes))
+                        .map(metadata -> metadata.getContent().getId())
+                        .toList(),
+                rendition);
+
+        images.forEach(metadata -> responseObserver.onNext(
+                isNotModified(metadata, knownHashes)
+                        ? ImageMapper.toNotModifiedGrpcResponse(metadata)
+                        : ImageMapper.toGrpcResponse(metadata, contents.get(metadata.getContent().getId()), rendition, request.getRawContent())));
 
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Streams original image (or its byte range) in chunks with transport flow control.
+     * Image is loaded in read-only transaction, chunks are sent by {@link ImageDownloadStreamer} as client reads them.
+     * If client already holds current image (known hash), only header marked as not modified is sent.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void downloadImage(DownloadImageGrpcRequest request, StreamObserver<ImageDownloadChunk> responseObserver) {
+
+        log.info("Download image by entityType = [{}] and entityId = [{}], offset = [{}], length = [{}]",
+                request.getEntityType(), request.getEntityId(), request.getOffset(), request.getLength());
+
+        validateMetadataRequestParams(request.getEntityType(), request.getEntityId());
+
+        final EntityType entityType = EntityType.valueOf(request.getEntityType().name());
+        final UUID entityId = UUID.fromString(request.getEntityId());
+
+        final var metadata = metadataRepository.findByEntityTypeAndEntityId(entityType, entityId)
+                .orElseThrow(() -> new ImageNotFoundException(entityType, entityId));
+
+        if (metadata.getContentHash().equals(request.getKnownHash())) {
+            responseObserver.onNext(ImageDownloadChunk.newBuilder()
+                    .setHeader(ImageMapper.toNotModifiedDownloadHeader(metadata))
+                    .build());
+            responseObserver.onCompleted();
+            return;
+        }
+
+        final var data = contentService.findOriginal(metadata.getContent().getId())
+                .orElseThrow(() -> new ImageNotFoundException(entityType, entityId));
+        final int size = data.remaining();
+
+        if (request.getOffset() < 0 || request.getLength() < 0 || request.getOffset() > size)
+            throw new BadRequestException("Byte range [offset = %d, length = %d] is out of image size = %d"
+                    .formatted(request.getOffset(), request.getLength(), size));
+
+        final int offset = (int) request.getOffset();
+        final int length = (int) Math.min(
+                request.getLength() == 0 ? Long.MAX_VALUE : request.getLength(),
+                size - offset);
+
+        new ImageDownloadStreamer(responseObserver, data, offset, length)
+                .start(ImageMapper.toDownloadHeader(metadata, size, offset, length));
+
+    }
+
     /**
      * Updating metadata and content
      * 1) If old metadata not exists and request contains image -> create new image (important for user)
      * 2) If old metadata exists ->
-     * a) update values if request contains image;
-     * b) clear some metadata and content fields.
+     * a) point metadata to content of the new image if request contains image, old content is released;
+     * b) delete image if request contains no image.
      */
     @Override
-    @Transactional
     public void updateImage(ImageGrpcRequest request, StreamObserver<Empty> responseObserver) {
 
         log.info("Update image by entityType = [{}] and entityId = [{}]", request.getEntityType(), request.getEntityId());
@@ -128,14 +271,16 @@ public class ImageGrpcService extends FilesServiceGrpc.FilesServiceImplBase {
         final EntityType entityType = EntityType.valueOf(request.getEntityType().name());
         final UUID entityId = UUID.fromString(request.getEntityId());
 
-        var oldMetadata = metadataRepository
-                .findByEntityTypeAndEntityId(entityType, entityId)
-                .orElseThrow(() -> new ImageNotFoundException(entityType, entityId));
-
         if (request.getContent().isEmpty()) {
-            ImageMapper.update(oldMetadata, ImageMetadataEntity.empty());
+            transactionOperations.executeWithoutResult(status -> {
+                var oldMetadata = metadataRepository
+                        .findByEntityTypeAndEntityId(entityType, entityId)
+                        .orElseThrow(() -> new ImageNotFoundException(entityType, entityId));
+                metadataRepository.delete(oldMetadata);
+                contentService.release(oldMetadata.getContent());
+            });
         } else {
-            ImageMapper.updateFromGrpcRequest(oldMetadata, request);
+            store(ImageMapper.fromGrpcRequest(request, decode(request.getContent())), true);
         }
 
         responseObserver.onNext(Empty.getDefaultInstance());
@@ -161,14 +306,197 @@ public class ImageGrpcService extends FilesServiceGrpc.FilesServiceImplBase {
 
         metadataRepository.findByEntityTypeAndEntityId(EntityType.valueOf(request.getEntityType().name()),
                         UUID.fromString(request.getEntityId()))
-                .ifPresent(metadataRepository::delete);
+                .ifPresent(metadata -> {
+                    metadataRepository.delete(metadata);
+                    contentService.release(metadata.getContent());
+                });
 
         responseObserver.onNext(Empty.getDefaultInstance());
         responseObserver.onCompleted();
 
     }
 
-    private static void validateMetadataRequestParams(EntityTypeGrpc entityType,
+    /**
+     * Client-streaming upload: header chunk is followed by data-URI parts (or raw image parts, if header has format),
+     * which are decoded as they arrive.
+     * Image is stored (added or updated by header) in one transaction when client completes the stream.
+     */
+    @Override
+    public StreamObserver<ImageChunk> uploadImage(StreamObserver<Empty> responseObserver) {
+        return new ImageUploadObserver(responseObserver, imageNormalizer::normalize,
+                (header, metadata) -> store(metadata, header.getIsUpdate()));
+    }
+
+    /**
+     * Client-streaming batch of add, update and delete operations, applied in batches of
+     * {@code rococo-files.mutation.batch-size}: contents of batch are decoded in parallel by
+     * {@code rococo-files.mutation.parallelism} threads, then batch is written
+     * in one transaction. If batch transaction fails, its operations are applied again one by one,
+     * so failed operation does not abort the others. Result of every operation is returned in order of operations.
+     */
+    @Override
+    public StreamObserver<ImageMutationGrpcRequest> mutateImages(StreamObserver<ImageMutationsGrpcResponse> responseObserver) {
+        return new ImageMutationObserver(responseObserver, mutationBatchSize, this::mutate);
+    }
+
+    List<ImageMutationResultGrpc> mutate(List<ImageMutationGrpcRequest> requests) {
+
+        log.info("Apply batch of {} image mutations", requests.size());
+
+        final var mutations = mutationPool.submit(() -> requests.parallelStream()
+                        .map(request -> ImageMutation.decode(request, this::decode))
+                        .toList())
+                .join();
+
+        try {
+            return transactionOperations.execute(status -> applyMutations(mutations));
+        } catch (RuntimeException ex) {
+            log.warn("Batch of {} image mutations failed, applying them one by one: {}", mutations.size(), ex.getMessage());
+            return mutations.stream()
+                    .map(mutation -> {
+                        try {
+                            return transactionOperations.execute(status -> applyMutations(List.of(mutation))).getFirst();
+                        } catch (RuntimeException mutationEx) {
+                            return mutation.failed(mutationEx);
+                        }
+                    })
+                    .toList();
+        }
+
+    }
+
+    /**
+     * Existing images of all operations are loaded with one query per entity type and are tracked in memory
+     * while operations are applied, so metadata writes are flushed together in JDBC batches.
+     */
+    private List<ImageMutationResultGrpc> applyMutations(List<ImageMutation> mutations) {
+
+        final Map<EntityType, Map<UUID, ImageMetadataEntity>> images = new EnumMap<>(EntityType.class);
+        mutations.stream()
+                .filter(mutation -> mutation.error() == null)
+                .collect(Collectors.groupingBy(ImageMutation::entityType,
+                        Collectors.mapping(ImageMutation::entityId, Collectors.toSet())))
+                .forEach((entityType, entityIds) -> images.put(entityType,
+                        metadataRepository.findAllByEntityTypeAndEntityIdIn(entityType, entityIds).stream()
+                                .collect(Collectors.toMap(ImageMetadataEntity::getEntityId, metadata -> metadata))));
+
+        final List<ImageMutationResultGrpc> results = new ArrayList<>(mutations.size());
+        for (var mutation : mutations) {
+            if (mutation.error() != null) {
+                results.add(mutation.failed(mutation.error()));
+                continue;
+            }
+            try {
+                applyMutation(mutation, images.get(mutation.entityType()));
+                results.add(mutation.applied());
+            } catch (ImageAlreadyExistsException | ImageNotFoundException ex) {
+                results.add(mutation.failed(ex));
+            }
+        }
+        return results;
+
+    }
+
+    private void applyMutation(ImageMutation mutation, Map<UUID, ImageMetadataEntity> images) {
+
+        final var entityId = mutation.entityId();
+        final var current = images.get(entityId);
+
+        switch (mutation.type()) {
+            case ADD -> {
+                if (current != null)
+                    throw new ImageAlreadyExistsException(mutation.entityType(), entityId);
+                saveImage(mutation.metadata());
+                images.put(entityId, mutation.metadata());
+            }
+            case UPDATE -> {
+                if (current == null)
+                    throw new ImageNotFoundException(mutation.entityType(), entityId);
+                if (mutation.metadata() == null) {
+                    metadataRepository.delete(current);
+                    contentService.release(current.getContent());
+                    images.remove(entityId);
+                } else {
+                    replaceImage(current, mutation.metadata());
+                }
+            }
+            case DELETE -> {
+                if (current != null) {
+                    metadataRepository.delete(current);
+                    contentService.release(current.getContent());
+                    images.remove(entityId);
+                }
+            }
+        }
+
+    }
+
+    private ImageGrpcResponse toGrpcResponse(ImageMetadataEntity metadata, Rendition rendition, boolean rawContent) {
+        final var contentId = metadata.getContent().getId();
+        return ImageMapper.toGrpcResponse(metadata, contentService.findData(List.of(contentId), rendition).get(contentId), rendition, rawContent);
+    }
+
+    private static boolean isNotModified(ImageMetadataEntity metadata, Map<String, String> knownHashes) {
+        return metadata.getContentHash().equals(knownHashes.get(metadata.getEntityId().toString()));
+    }
+
+    /**
+     * Decodes data-URI of new original and normalizes it before it is hashed for deduplication and stored
+     */
+    private DecodedImage decode(ByteString content) {
+        return imageNormalizer.normalize(DataUriDecoder.decode(content, AppProperty.MAX_IMAGE_SIZE));
+    }
+
+    /**
+     * Adds or updates decoded image in one short transaction
+     */
+    private void store(ImageMetadataEntity metadata, boolean isUpdate) {
+        try {
+            transactionOperations.executeWithoutResult(status -> {
+                if (isUpdate) {
+                    replaceImage(
+                            metadataRepository.findByEntityTypeAndEntityId(metadata.getEntityType(), metadata.getEntityId())
+                                    .orElseThrow(() -> new ImageNotFoundException(metadata.getEntityType(), metadata.getEntityId())),
+                            metadata);
+                } else {
+                    saveImage(metadata);
+                }
+            });
+        } catch (DataIntegrityViolationException ex) {
+            throw new ImageAlreadyExistsException(metadata.getEntityType(), metadata.getEntityId());
+        }
+    }
+
+    private void saveImage(ImageMetadataEntity metadata) {
+
+        metadata.setContent(contentService.acquire(metadata))
+                .setCreatedDate(LocalDateTime.now());
+
+        try {
+            metadataRepository.save(metadata);
+        } catch (DataIntegrityViolationException ex) {
+            throw new ImageAlreadyExistsException(metadata.getEntityType(), metadata.getEntityId());
+        } catch (Exception ex) {
+            log.error(ex.getMessage(), ex);
+            throw new InternalException("Failed to save image\n" + ex.getCause().getMessage());
+        }
+
+    }
+
+    private void replaceImage(ImageMetadataEntity oldMetadata, ImageMetadataEntity newMetadata) {
+        if (!newMetadata.getContentHash().equals(oldMetadata.getContentHash())) {
+            final var oldContent = oldMetadata.getContent();
+            oldMetadata.setFormat(newMetadata.getFormat())
+                    .setContentHash(newMetadata.getContentHash())
+                    .setWidth(newMetadata.getWidth())
+                    .setHeight(newMetadata.getHeight())
+                    .setByteSize(newMetadata.getByteSize())
+                    .setContent(contentService.acquire(newMetadata));
+            contentService.release(oldContent);
+        }
+    }
+
+    static void validateMetadataRequestParams(EntityTypeGrpc entityType,
                                                       String entityId
     ) {
 
@@ -181,14 +509,4 @@ public class ImageGrpcService extends FilesServiceGrpc.FilesServiceImplBase {
 
     }
 
-    private static void validateContentRequestParams(ByteString content) {
-        if (content.isEmpty())
-            throw new BadRequestException("Content can not be empty");
-    }
-
-    private static void validateContentPattern(ByteString content) {
-        if (!content.isEmpty() && !content.toString(Charset.defaultCharset()).matches(AppProperty.IMAGE_PATTERN))
-            throw new BadRequestException("Content has invalid pattern");
-    }
-
 }
@@ -0,0 +1,111 @@
+package org.rococo.files.service;
+
+import com.google.protobuf.ByteString;
+import org.rococo.files.data.entity.EntityType;
+import org.rococo.files.data.entity.ImageMetadataEntity;
+import org.rococo.files.ex.BadRequestException;
+import org.rococo.files.ex.ImageAlreadyExistsException;
+import org.rococo.files.ex.ImageNotFoundException;
+import org.rococo.files.mapper.ImageMapper;
+import org.rococo.files.util.DataUriDecoder.DecodedImage;
+import org.rococo.grpc.files.EntityTypeGrpc;
+import org.rococo.grpc.files.ImageGrpcRequest;
+import org.rococo.grpc.files.ImageMutationGrpcRequest;
+import org.rococo.grpc.files.ImageMutationResultGrpc;
+import org.rococo.grpc.files.MutationStatusGrpc;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Operation of batch mutation with decoded content, or with error if request is invalid.
+ *
+ * @param type     {@code null} if request is invalid
+ * @param metadata new image of add and update, {@code null} for delete and for update without content
+ */
+@ParametersAreNonnullByDefault
+record ImageMutation(@Nullable Type type,
+                     EntityTypeGrpc entityTypeGrpc,
+                     String entityIdValue,
+                     @Nullable EntityType entityType,
+                     @Nullable UUID entityId,
+                     @Nullable ImageMetadataEntity metadata,
+                     @Nullable RuntimeException error) {
+
+    enum Type {
+        ADD, UPDATE, DELETE
+    }
+
+    /**
+     * Validates request and decodes its content, CPU-bound, so it is done in parallel for whole batch.
+     */
+    @Nonnull
+    static ImageMutation decode(ImageMutationGrpcRequest request, Function<ByteString, DecodedImage> contentDecoder) {
+        return switch (request.getMutationCase()) {
+            case ADD -> decode(Type.ADD, request.getAdd(), contentDecoder);
+            case UPDATE -> decode(Type.UPDATE, request.getUpdate(), contentDecoder);
+            case DELETE -> decode(Type.DELETE, ImageGrpcRequest.newBuilder()
+                    .setEntityType(request.getDelete().getEntityType())
+                    .setEntityId(request.getDelete().getEntityId())
+                    .build(), contentDecoder);
+            default -> invalid(EntityTypeGrpc.UNDEFINED, "", new BadRequestException("Mutation can not be empty"));
+        };
+    }
+
+    private static ImageMutation decode(Type type,
+                                        ImageGrpcRequest request,
+                                        Function<ByteString, DecodedImage> contentDecoder
+    ) {
+        try {
+            ImageGrpcService.validateMetadataRequestParams(request.getEntityType(), request.getEntityId());
+            final var metadata = type == Type.ADD || type == Type.UPDATE && !request.getContent().isEmpty()
+                    ? ImageMapper.fromGrpcRequest(request, contentDecoder.apply(request.getContent()))
+                    : null;
+            return new ImageMutation(type,
+                    request.getEntityType(),
+                    request.getEntityId(),
+                    EntityType.valueOf(request.getEntityType().name()),
+                    UUID.fromString(request.getEntityId()),
+                    metadata,
+                    null);
+        } catch (RuntimeException ex) {
+            return invalid(request.getEntityType(), request.getEntityId(), ex);
+        }
+    }
+
+    private static ImageMutation invalid(EntityTypeGrpc entityType, String entityId, RuntimeException error) {
+        return new ImageMutation(null, entityType, entityId, null, null, null, error);
+    }
+
+    @Nonnull
+    ImageMutationResultGrpc applied() {
+        return result(MutationStatusGrpc.APPLIED, "");
+    }
+
+    @Nonnull
+    ImageMutationResultGrpc failed(Exception ex) {
+        final var status = switch (ex) {
+            case BadRequestException e -> MutationStatusGrpc.BAD_REQUEST;
+            case IllegalArgumentException e -> MutationStatusGrpc.BAD_REQUEST;
+            case ImageNotFoundException e -> MutationStatusGrpc.NOT_FOUND;
+            case ImageAlreadyExistsException e -> MutationStatusGrpc.ALREADY_EXISTS;
+            case DataIntegrityViolationException e -> MutationStatusGrpc.ALREADY_EXISTS;
+            default -> MutationStatusGrpc.FAILED;
+        };
+        return result(status, ex.getMessage() == null ? "" : ex.getMessage());
+    }
+
+    private ImageMutationResultGrpc result(MutationStatusGrpc status, String message) {
+        return ImageMutationResultGrpc.newBuilder()
+                .setEntityType(entityTypeGrpc)
+                .setEntityId(entityIdValue)
+                .setStatus(status)
+                .setMessage(message)
+                .build();
+    }
+
+}
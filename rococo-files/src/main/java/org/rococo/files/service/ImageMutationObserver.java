@@ -0,0 +1,67 @@
+package org.rococo.files.service;
+
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.grpc.files.ImageMutationGrpcRequest;
+import org.rococo.grpc.files.ImageMutationResultGrpc;
+import org.rococo.grpc.files.ImageMutationsGrpcResponse;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Receives batch mutation stream. Operations are collected into batches of fixed size and every batch is applied
+ * as soon as it is full, so at most one batch of operations is held at a time.
+ */
+@Slf4j
+@ParametersAreNonnullByDefault
+class ImageMutationObserver implements StreamObserver<ImageMutationGrpcRequest> {
+
+    private final StreamObserver<ImageMutationsGrpcResponse> responseObserver;
+    private final int batchSize;
+    private final Function<List<ImageMutationGrpcRequest>, List<ImageMutationResultGrpc>> applyBatch;
+    private final List<ImageMutationGrpcRequest> batch = new ArrayList<>();
+    private final ImageMutationsGrpcResponse.Builder response = ImageMutationsGrpcResponse.newBuilder();
+
+    ImageMutationObserver(StreamObserver<ImageMutationsGrpcResponse> responseObserver,
+                          int batchSize,
+                          Function<List<ImageMutationGrpcRequest>, List<ImageMutationResultGrpc>> applyBatch
+    ) {
+        this.responseObserver = responseObserver;
+        this.batchSize = batchSize;
+        this.applyBatch = applyBatch;
+    }
+
+    @Override
+    public void onNext(ImageMutationGrpcRequest request) {
+        batch.add(request);
+        if (batch.size() >= batchSize)
+            applyBatch();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.warn("Image mutation stream was cancelled after {} applied mutations: {}",
+                response.getResultsCount(), t.getMessage());
+    }
+
+    @Override
+    public void onCompleted() {
+
+        applyBatch();
+
+        responseObserver.onNext(response.build());
+        responseObserver.onCompleted();
+
+    }
+
+    private void applyBatch() {
+        if (batch.isEmpty())
+            return;
+        response.addAllResults(applyBatch.apply(List.copyOf(batch)));
+        batch.clear();
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.util.DataUriDecoder.DecodedImage;
+import org.rococo.files.util.HashUtil;
+import org.rococo.files.util.ImageUtil;
+import org.rococo.files.util.MetadataStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+
+/**
+ * Normalizes originals before they are stored: images larger than configured box are downscaled,
+ * metadata is stripped and image is re-encoded at target quality if that makes it smaller.
+ * Image within the box and without metadata is not re-encoded, since that rarely pays off for the CPU it takes.
+ * Opaque PNG is stored as JPEG if that halves it, which is the case for photos saved losslessly.
+ * <p>
+ * JPEG with EXIF orientation is stored as is: viewers rotate it by EXIF, which is lost on re-encoding.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+public class ImageNormalizer {
+
+    private static final String JPEG = "jpeg";
+
+    private final ImageResizer imageResizer;
+
+    private final boolean enabled;
+
+    private final int maxWidth;
+
+    private final int maxHeight;
+
+    private final double quality;
+
+    private final DistributionSummary savedBytes;
+
+    private final Counter skipped;
+
+    public ImageNormalizer(ImageResizer imageResizer,
+                           @Value("${rococo-files.normalization.enabled:true}") boolean enabled,
+                           @Value("${rococo-files.normalization.max-width:2560}") int maxWidth,
+                           @Value("${rococo-files.normalization.max-height:2560}") int maxHeight,
+                           @Value("${rococo-files.normalization.quality:0.85}") double quality,
+                           MeterRegistry meterRegistry
+    ) {
+        this.imageResizer = imageResizer;
+        this.enabled = enabled;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.quality = quality;
+        this.savedBytes = DistributionSummary.builder("rococo.files.normalization.saved")
+                .description("Bytes saved by normalization of one original")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.skipped = Counter.builder("rococo.files.normalization.skipped")
+                .description("Originals stored as is because of unsupported format or EXIF orientation")
+                .register(meterRegistry);
+    }
+
+    @Nonnull
+    public DecodedImage normalize(DecodedImage image) {
+
+        if (!enabled)
+            return image;
+
+        final var format = image.format().toLowerCase();
+        final var isJpeg = format.equals("jpg") || format.equals(JPEG);
+        final var dimensions = ImageUtil.readDimensions(image.data());
+        if (!isJpeg && !format.equals("png")
+                || dimensions.isEmpty()
+                || isJpeg && MetadataStripper.orientation(image.data()) != 1) {
+            skipped.increment();
+            return image;
+        }
+
+        final var isLarger = dimensions.get().width > maxWidth || dimensions.get().height > maxHeight;
+        final var stripped = MetadataStripper.strip(image.data(), format);
+
+        var normalized = new DecodedImage(image.format(), stripped, null);
+        if (!isJpeg && !ImageUtil.hasAlpha(stripped)) {
+            final var jpeg = fit(stripped, JPEG);
+            if (jpeg.length * 2 < stripped.length)
+                normalized = new DecodedImage(JPEG, jpeg, null);
+        }
+        if (normalized.data() == stripped && (isLarger || stripped != image.data())) {
+            final var reencoded = fit(stripped, image.format());
+            if (isLarger || reencoded.length < stripped.length)
+                normalized = new DecodedImage(image.format(), reencoded, null);
+        }
+
+        if (normalized.data() == image.data())
+            return image;
+
+        log.debug("Normalized image: {}x{} {} of {} bytes to {} of {} bytes",
+                dimensions.get().width, dimensions.get().height, image.format(), image.data().length,
+                normalized.format(), normalized.data().length);
+        savedBytes.record(Math.max(0, image.data().length - normalized.data().length));
+        return new DecodedImage(normalized.format(), normalized.data(), HashUtil.getHash(normalized.data()));
+
+    }
+
+    private byte[] fit(byte[] data, String format) {
+        return imageResizer.fit(ByteBuffer.wrap(data), maxWidth, maxHeight, format, quality);
+    }
+
+}
@@ -0,0 +1,261 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.common.image.Blurhash;
+import org.rococo.files.config.RenditionProperties;
+import org.rococo.files.data.entity.Rendition;
+import org.rococo.files.util.ImageUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Generates renditions of one image within bounded heap. Dimensions are read from image header first,
+ * then image is decoded with source subsampling to the smallest size which still covers the largest rendition.
+ * Every rendition is produced from the previous, larger one: image is halved while it is more than twice
+ * the rendition, the last step is done by Thumbnailator.
+ * Decoding waits while estimated pixel memory of decodes in progress exceeds {@code rococo-files.resize.heap-budget}.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+public class ImageResizer {
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    // decoded image and its first halved copy are held at the same time
+    private static final int COPIES_HELD = 2;
+
+    private static final int PLACEHOLDER_COMPONENTS_X = 4;
+
+    private static final int PLACEHOLDER_COMPONENTS_Y = 3;
+
+    private final int budgetKilobytes;
+
+    private final Semaphore budget;
+
+    private final Timer budgetWait;
+
+    private final RenditionProperties renditionProperties;
+
+    public ImageResizer(@Value("${rococo-files.resize.heap-budget:256MB}") DataSize heapBudget,
+                        RenditionProperties renditionProperties,
+                        MeterRegistry meterRegistry
+    ) {
+        this.renditionProperties = renditionProperties;
+        this.budgetKilobytes = (int) Math.min(Integer.MAX_VALUE, heapBudget.toKilobytes());
+        this.budget = new Semaphore(budgetKilobytes, true);
+
+        Gauge.builder("rococo.files.resize.heap.reserved", this, ImageResizer::reservedBytes)
+                .description("Heap reserved for images being decoded and resized")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.budgetWait = Timer.builder("rococo.files.resize.budget.wait")
+                .description("Time of waiting for heap budget before decoding image")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Thumbnail and placeholder are always generated, other renditions only if they are smaller than original.
+     * Placeholder is ASCII {@link Blurhash} of image fitted into its box.
+     *
+     * @return encoded renditions from the largest to the smallest
+     */
+    @Nonnull
+    public Map<Rendition, byte[]> resize(ByteBuffer data, String format, List<Rendition> renditions) {
+        return read(data, (reader, width, height) -> {
+            final var targets = renditions.stream()
+                    .filter(rendition -> rendition == Rendition.THUMBNAIL
+                            || rendition == Rendition.PLACEHOLDER
+                            || renditionProperties.of(rendition).isSmallerThan(width, height))
+                    .sorted(Comparator.comparingLong((Rendition rendition) -> area(renditionProperties.of(rendition)))
+                            .reversed())
+                    .toList();
+            if (targets.isEmpty())
+                return Map.of();
+
+            final var largest = renditionProperties.of(targets.getFirst());
+            return decode(reader, width, height, largest.getWidth(), largest.getHeight(), decoded -> {
+                var image = decoded;
+                final Map<Rendition, byte[]> result = new LinkedHashMap<>();
+                for (var rendition : targets) {
+                    final var box = renditionProperties.of(rendition);
+                    image = halveWhileTwiceLarger(image, box.getWidth(), box.getHeight());
+                    result.put(rendition, rendition == Rendition.PLACEHOLDER
+                            ? placeholder(image)
+                            : ImageUtil.resizeImage(image, format, box.getWidth(), box.getHeight(), box.getQuality()));
+                }
+                return result;
+            });
+        });
+    }
+
+    /**
+     * Re-encodes image in given format, downscaled to fit into box if it is larger. Metadata is not written.
+     */
+    @Nonnull
+    public byte[] fit(ByteBuffer data, int maxWidth, int maxHeight, String format, double quality) {
+        return read(data, (reader, width, height) -> {
+            final boolean isLarger = width > maxWidth || height > maxHeight;
+            final int boxWidth = isLarger ? maxWidth : width;
+            final int boxHeight = isLarger ? maxHeight : height;
+            return decode(reader, width, height, boxWidth, boxHeight, image -> ImageUtil.resizeImage(
+                    halveWhileTwiceLarger(image, boxWidth, boxHeight), format, boxWidth, boxHeight, quality));
+        });
+    }
+
+    private static <T> T read(ByteBuffer data, HeaderFunction<T> function) {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteBufferInputStream(data))) {
+            final var readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext())
+                throw new IllegalArgumentException("Unsupported image format");
+
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return function.apply(reader, reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            log.error("Error while resizing image");
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T decode(ImageReader reader,
+                         int width,
+                         int height,
+                         int boxWidth,
+                         int boxHeight,
+                         Function<BufferedImage, T> function
+    ) throws IOException {
+
+        final int subsampling = subsampling(width, height, boxWidth, boxHeight);
+        final int permits = permits(Math.ceilDiv(width, subsampling), Math.ceilDiv(height, subsampling));
+
+        budgetWait.record(() -> budget.acquireUninterruptibly(permits));
+        try {
+            final var param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            return function.apply(reader.read(0, param));
+        } finally {
+            budget.release(permits);
+        }
+
+    }
+
+    /**
+     * Largest factor at which subsampled image is still not smaller than original fitted into box
+     */
+    static int subsampling(int width, int height, int boxWidth, int boxHeight) {
+        return Math.max(1, (int) Math.max(
+                (double) width / boxWidth,
+                (double) height / boxHeight));
+    }
+
+    /**
+     * Image larger than the whole budget waits for all decodes in progress and runs alone
+     */
+    private int permits(int width, int height) {
+        final long kilobytes = (long) width * height * BYTES_PER_PIXEL * COPIES_HELD / 1024;
+        return (int) Math.max(1, Math.min(budgetKilobytes, kilobytes));
+    }
+
+    private static BufferedImage halveWhileTwiceLarger(BufferedImage image, int boxWidth, int boxHeight) {
+
+        final double scale = Math.min(
+                (double) boxWidth / image.getWidth(),
+                (double) boxHeight / image.getHeight());
+        final long targetWidth = Math.round(image.getWidth() * scale);
+        final long targetHeight = Math.round(image.getHeight() * scale);
+
+        var result = image;
+        while (result.getWidth() >= 2 * targetWidth && result.getHeight() >= 2 * targetHeight) {
+            final var halved = new BufferedImage(result.getWidth() / 2, result.getHeight() / 2,
+                    result.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            final var graphics = halved.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(result, 0, 0, halved.getWidth(), halved.getHeight(), null);
+            } finally {
+                graphics.dispose();
+            }
+            result = halved;
+        }
+        return result;
+
+    }
+
+    private static long area(RenditionProperties.Box box) {
+        return (long) box.getWidth() * box.getHeight();
+    }
+
+    private static byte[] placeholder(BufferedImage image) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        return Blurhash.encode(image.getRGB(0, 0, width, height, null, 0, width), width, height,
+                        PLACEHOLDER_COMPONENTS_X, PLACEHOLDER_COMPONENTS_Y)
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    long reservedBytes() {
+        return (long) (budgetKilobytes - budget.availablePermits()) * 1024;
+    }
+
+    @FunctionalInterface
+    private interface HeaderFunction<T> {
+        T apply(ImageReader reader, int width, int height) throws IOException;
+    }
+
+    /**
+     * Reads buffer without copying it, so mapped files are decoded straight from page cache
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer.duplicate();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining())
+                return -1;
+            final int read = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, read);
+            return read;
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.rococo.files.service;
+
+import com.google.protobuf.Empty;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.config.AppProperty;
+import org.rococo.files.data.entity.ImageMetadataEntity;
+import org.rococo.files.ex.BadRequestException;
+import org.rococo.files.mapper.ImageMapper;
+import org.rococo.files.util.DataUriDecoder;
+import org.rococo.files.util.DataUriDecoder.DecodedImage;
+import org.rococo.grpc.files.ImageChunk;
+import org.rococo.grpc.files.ImageUploadHeader;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Receives one upload stream of {@link ImageChunk}. Data chunks are decoded right away,
+ * so neither the whole data-URI nor its chunks are kept after they are processed.
+ * Raw image chunks (header has format) are only accumulated.
+ */
+@Slf4j
+@ParametersAreNonnullByDefault
+class ImageUploadObserver implements StreamObserver<ImageChunk> {
+
+    private final StreamObserver<Empty> responseObserver;
+    private final UnaryOperator<DecodedImage> normalizer;
+    private final BiConsumer<ImageUploadHeader, ImageMetadataEntity> onUploaded;
+
+    private ImageUploadHeader header;
+    private DataUriDecoder decoder;
+
+    ImageUploadObserver(StreamObserver<Empty> responseObserver,
+                        UnaryOperator<DecodedImage> normalizer,
+                        BiConsumer<ImageUploadHeader, ImageMetadataEntity> onUploaded
+    ) {
+        this.responseObserver = responseObserver;
+        this.normalizer = normalizer;
+        this.onUploaded = onUploaded;
+    }
+
+    @Override
+    public void onNext(ImageChunk chunk) {
+        switch (chunk.getChunkCase()) {
+            case HEADER -> {
+                if (header != null)
+                    throw new BadRequestException("Upload header can be sent only once");
+                ImageGrpcService.validateMetadataRequestParams(
+                        chunk.getHeader().getEntityType(),
+                        chunk.getHeader().getEntityId());
+                header = chunk.getHeader();
+                decoder = header.getFormat().isEmpty()
+                        ? new DataUriDecoder(AppProperty.MAX_IMAGE_SIZE)
+                        : DataUriDecoder.forRawImage(header.getFormat(), AppProperty.MAX_IMAGE_SIZE);
+                log.info("Upload image: entityType = [{}], entityId = [{}], isUpdate = [{}], format = [{}]",
+                        header.getEntityType(), header.getEntityId(), header.getIsUpdate(), header.getFormat());
+            }
+            case DATA -> {
+                if (header == null)
+                    throw new BadRequestException("Upload header must be sent before content");
+                decoder.update(chunk.getData());
+            }
+            default -> throw new BadRequestException("Upload chunk can not be empty");
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        log.warn("Image upload was cancelled: {}", t.getMessage());
+    }
+
+    @Override
+    public void onCompleted() {
+
+        if (header == null)
+            throw new BadRequestException("Upload header must be sent before content");
+
+        onUploaded.accept(header, ImageMapper.fromUpload(header, normalizer.apply(decoder.finish())));
+
+        responseObserver.onNext(Empty.getDefaultInstance());
+        responseObserver.onCompleted();
+
+    }
+
+}
@@ -0,0 +1,240 @@
+package org.rococo.files.service;
+
+import io.grpc.StatusRuntimeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.client.EntityIdsGrpcClient;
+import org.rococo.files.data.entity.EntityType;
+import org.rococo.files.data.repository.ImageMetadataRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Deletes images of entities which do not exist anymore, e.g. when owning service deleted the entity
+ * but failed to delete its image. Enabled by {@code rococo-files.orphan-collector.enabled=true}.
+ * <p>
+ * Entity ids of images and ids of entities read from the owning service are both sorted by database,
+ * so they are merged page by page and memory does not grow with the number of images. Images created
+ * within the grace period are skipped: owning service adds image right after its entity is committed,
+ * so a new image can be newer than the page of entity ids it is compared with.
+ * Orphans are deleted in small batches, each in its own transaction, with a pause between batches.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+@ConditionalOnProperty(name = "rococo-files.orphan-collector.enabled", havingValue = "true")
+public class OrphanImageCollector {
+
+    /**
+     * Order of uuid in PostgreSQL: unsigned, byte by byte
+     */
+    static final Comparator<UUID> DATABASE_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private static final UUID FIRST_ENTITY_ID = new UUID(0, 0);
+
+    private final ImageMetadataRepository metadataRepository;
+
+    private final ImageContentService contentService;
+
+    private final EntityIdsGrpcClient entityIdsClient;
+
+    private final TransactionOperations transactionOperations;
+
+    private final int pageSize;
+
+    private final int batchSize;
+
+    private final Duration batchDelay;
+
+    private final Duration gracePeriod;
+
+    private final Map<EntityType, Counter> deleted = new EnumMap<>(EntityType.class);
+
+    private final Map<EntityType, Counter> reclaimed = new EnumMap<>(EntityType.class);
+
+    public OrphanImageCollector(ImageMetadataRepository metadataRepository,
+                                ImageContentService contentService,
+                                EntityIdsGrpcClient entityIdsClient,
+                                TransactionOperations transactionOperations,
+                                @Value("${rococo-files.orphan-collector.page-size:1000}") int pageSize,
+                                @Value("${rococo-files.orphan-collector.batch-size:50}") int batchSize,
+                                @Value("${rococo-files.orphan-collector.batch-delay:1s}") Duration batchDelay,
+                                @Value("${rococo-files.orphan-collector.grace-period:1h}") Duration gracePeriod,
+                                MeterRegistry meterRegistry
+    ) {
+        this.metadataRepository = metadataRepository;
+        this.contentService = contentService;
+        this.entityIdsClient = entityIdsClient;
+        this.transactionOperations = transactionOperations;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+        this.gracePeriod = gracePeriod;
+
+        for (EntityType type : EntityType.values()) {
+            deleted.put(type, Counter.builder("rococo.files.orphans.deleted")
+                    .description("Images of not existing entities deleted by collector")
+                    .tag("entity_type", type.name())
+                    .register(meterRegistry));
+            reclaimed.put(type, Counter.builder("rococo.files.orphans.reclaimed")
+                    .description("Bytes of image contents deleted with images of not existing entities")
+                    .baseUnit("bytes")
+                    .tag("entity_type", type.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Scheduled(initialDelayString = "${rococo-files.orphan-collector.initial-delay:10m}",
+            fixedDelayString = "${rococo-files.orphan-collector.interval:6h}")
+    public void collect() {
+        for (EntityType type : EntityType.values()) {
+            try {
+                final long bytes = collect(type);
+                log.info("Orphaned images of [{}] are collected, [{}] bytes reclaimed", type, bytes);
+            } catch (StatusRuntimeException ex) {
+                log.warn("Orphaned images of [{}] are not collected, owning service is unavailable: {}", type, ex.getStatus());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return bytes of deleted image contents
+     */
+    long collect(EntityType type) throws InterruptedException {
+
+        final var createdBefore = LocalDateTime.now().minus(gracePeriod);
+        final var entityIds = new EntityIds(type);
+        if (entityIds.isEmpty()) {
+            // more likely misconfiguration than removal of all entities
+            log.warn("Owning service has no entities of [{}], their images are not collected", type);
+            return 0;
+        }
+
+        long bytes = 0;
+        final List<UUID> orphans = new ArrayList<>(batchSize);
+        var after = FIRST_ENTITY_ID;
+        List<UUID> page;
+        do {
+            page = metadataRepository.findEntityIdsAfter(type, after, createdBefore, Limit.of(pageSize));
+            for (UUID entityId : page) {
+                if (entityIds.contains(entityId))
+                    continue;
+                orphans.add(entityId);
+                if (orphans.size() == batchSize) {
+                    bytes += delete(type, orphans, createdBefore);
+                    orphans.clear();
+                    Thread.sleep(batchDelay);
+                }
+            }
+            if (!page.isEmpty())
+                after = page.getLast();
+        } while (page.size() == pageSize);
+
+        if (!orphans.isEmpty())
+            bytes += delete(type, orphans, createdBefore);
+        return bytes;
+
+    }
+
+    private long delete(EntityType type, List<UUID> entityIds, LocalDateTime createdBefore) {
+
+        final int[] count = {0};
+        final Long bytes = transactionOperations.execute(status -> {
+            long freed = 0;
+            for (var metadata : metadataRepository.findAllByEntityTypeAndEntityIdIn(type, entityIds)) {
+                // replaced since it was listed, so its entity may be new
+                if (!metadata.getCreatedDate().isBefore(createdBefore))
+                    continue;
+                metadataRepository.delete(metadata);
+                count[0]++;
+                if (contentService.release(metadata.getContent()))
+                    freed += Objects.requireNonNullElse(metadata.getByteSize(), 0L);
+            }
+            return freed;
+        });
+
+        final long freed = Objects.requireNonNullElse(bytes, 0L);
+        log.info("Deleted [{}] orphaned images of [{}], [{}] bytes reclaimed", count[0], type, freed);
+        deleted.get(type).increment(count[0]);
+        reclaimed.get(type).increment(freed);
+        return freed;
+
+    }
+
+    /**
+     * Ids of entities in owning service, read page by page while they are checked in ascending order.
+     */
+    private final class EntityIds {
+
+        private final EntityType type;
+
+        private List<UUID> page = List.of();
+
+        private int position;
+
+        @Nullable
+        private UUID last;
+
+        private boolean exhausted;
+
+        private EntityIds(EntityType type) {
+            this.type = type;
+        }
+
+        boolean isEmpty() {
+            return page.isEmpty() && !fetch();
+        }
+
+        /**
+         * @param id must not be less than id checked before
+         */
+        boolean contains(UUID id) {
+            do {
+                for (; position < page.size(); position++) {
+                    final int order = DATABASE_ORDER.compare(page.get(position), id);
+                    if (order == 0)
+                        return true;
+                    if (order > 0)
+                        return false;
+                }
+            } while (fetch());
+            return false;
+        }
+
+        private boolean fetch() {
+            if (exhausted)
+                return false;
+            page = entityIdsClient.findIdsPage(type, last, pageSize);
+            position = 0;
+            exhausted = page.size() < pageSize;
+            if (page.isEmpty())
+                return false;
+            last = page.getLast();
+            return true;
+        }
+
+    }
+
+}
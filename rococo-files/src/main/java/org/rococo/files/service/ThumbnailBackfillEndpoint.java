@@ -0,0 +1,41 @@
+package org.rococo.files.service;
+
+import lombok.RequiredArgsConstructor;
+import org.rococo.files.data.entity.ThumbnailBackfillEntity;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code thumbnails} of {@link ThumbnailBackfillJob}: read returns progress,
+ * write starts or resumes backfill, delete stops it. Service has no web server, endpoint is exposed through JMX.
+ */
+@Component
+@Endpoint(id = "thumbnails")
+@RequiredArgsConstructor
+public class ThumbnailBackfillEndpoint {
+
+    private final ThumbnailBackfillJob backfillJob;
+
+    @Nullable
+    @ReadOperation
+    public ThumbnailBackfillEntity status() {
+        return backfillJob.status().orElse(null);
+    }
+
+    @Nullable
+    @WriteOperation
+    public ThumbnailBackfillEntity start(@Nullable Boolean restart) {
+        return backfillJob.start(Boolean.TRUE.equals(restart)).orElse(null);
+    }
+
+    @Nullable
+    @DeleteOperation
+    public ThumbnailBackfillEntity stop() {
+        return backfillJob.stop().orElse(null);
+    }
+
+}
@@ -0,0 +1,268 @@
+package org.rococo.files.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.config.AppProperty;
+import org.rococo.files.data.entity.BackfillStatus;
+import org.rococo.files.data.entity.ThumbnailBackfillEntity;
+import org.rococo.files.data.entity.ThumbnailSource;
+import org.rococo.files.data.repository.ImageMetadataRepository;
+import org.rococo.files.data.repository.ThumbnailBackfillRepository;
+import org.rococo.files.data.repository.ThumbnailTaskRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Regenerates thumbnails and renditions of all stored contents, e.g. after their sizes were changed.
+ * Started, stopped and watched through actuator endpoint, see {@link ThumbnailBackfillEndpoint}.
+ * <p>
+ * Contents are read in batches in order of their ids and processed on a fork-join pool of the job,
+ * so new images queued to {@link ThumbnailWorker} are not delayed by it. The last processed id is stored
+ * after each batch and running backfill is resumed from it after restart. Next batch waits while CPU load
+ * or thumbnail queue are above the limits or while requests wait for database connections.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+public class ThumbnailBackfillJob {
+
+    static final String NAME = "thumbnails";
+
+    private static final UUID FIRST_CONTENT_ID = new UUID(0, 0);
+
+    private final ImageMetadataRepository metadataRepository;
+
+    private final ThumbnailBackfillRepository backfillRepository;
+
+    private final ThumbnailTaskRepository taskRepository;
+
+    private final ThumbnailWorker thumbnailWorker;
+
+    private final TransactionOperations transactionOperations;
+
+    private final IntSupplier awaitingConnections;
+
+    private final DoubleSupplier cpuLoad = ManagementFactory.getPlatformMXBean(
+            com.sun.management.OperatingSystemMXBean.class)::getCpuLoad;
+
+    private final int batchSize;
+
+    private final double maxCpuLoad;
+
+    private final long maxPendingTasks;
+
+    private final Duration throttleDelay;
+
+    private final ForkJoinPool pool;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("thumbnail-backfill-"));
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Counter processed;
+
+    private final Counter failed;
+
+    private final Counter throttled;
+
+    public ThumbnailBackfillJob(ImageMetadataRepository metadataRepository,
+                                ThumbnailBackfillRepository backfillRepository,
+                                ThumbnailTaskRepository taskRepository,
+                                ThumbnailWorker thumbnailWorker,
+                                TransactionOperations transactionOperations,
+                                DataSource dataSource,
+                                @Value("${rococo-files.thumbnail-backfill.batch-size:200}") int batchSize,
+                                @Value("${rococo-files.thumbnail-backfill.parallelism:2}") int parallelism,
+                                @Value("${rococo-files.thumbnail-backfill.max-cpu-load:0.75}") double maxCpuLoad,
+                                @Value("${rococo-files.thumbnail-backfill.max-pending-tasks:100}") long maxPendingTasks,
+                                @Value("${rococo-files.thumbnail-backfill.throttle-delay:5s}") Duration throttleDelay,
+                                MeterRegistry meterRegistry
+    ) {
+        this.metadataRepository = metadataRepository;
+        this.backfillRepository = backfillRepository;
+        this.taskRepository = taskRepository;
+        this.thumbnailWorker = thumbnailWorker;
+        this.transactionOperations = transactionOperations;
+        this.awaitingConnections = dataSource instanceof HikariDataSource hikari
+                ? () -> hikari.getHikariPoolMXBean() == null ? 0 : hikari.getHikariPoolMXBean().getThreadsAwaitingConnection()
+                : () -> 0;
+        this.batchSize = batchSize;
+        this.maxCpuLoad = maxCpuLoad;
+        this.maxPendingTasks = maxPendingTasks;
+        this.throttleDelay = throttleDelay;
+        this.pool = new ForkJoinPool(parallelism);
+
+        this.processed = backfillCounter(meterRegistry, "success");
+        this.failed = backfillCounter(meterRegistry, "failure");
+        this.throttled = Counter.builder("rococo.files.thumbnail.backfill.throttled")
+                .description("Backfill batches postponed because of CPU or database load")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resumes stopped backfill from its checkpoint. Completed backfill, or any backfill if {@code restart} is set,
+     * starts from the first content. Running backfill must be stopped before restart.
+     */
+    @Nonnull
+    public synchronized Optional<ThumbnailBackfillEntity> start(boolean restart) {
+
+        if (restart && running.get()) {
+            log.warn("Thumbnail backfill is running, it must be stopped before restart");
+            return status();
+        }
+
+        transactionOperations.executeWithoutResult(status -> {
+            final var now = LocalDateTime.now();
+            final var backfill = backfillRepository.findById(NAME)
+                    .filter(existing -> !restart && existing.getStatus() != BackfillStatus.COMPLETED)
+                    .orElseGet(() -> ThumbnailBackfillEntity.builder()
+                            .name(NAME)
+                            .lastContentId(FIRST_CONTENT_ID)
+                            .startedDate(now)
+                            .build());
+            backfillRepository.save(backfill
+                    .setStatus(BackfillStatus.RUNNING)
+                    .setUpdatedDate(now));
+        });
+        launch();
+        return status();
+
+    }
+
+    /**
+     * Current batch is finished, next start resumes after it
+     */
+    @Nonnull
+    public Optional<ThumbnailBackfillEntity> stop() {
+        transactionOperations.executeWithoutResult(status ->
+                backfillRepository.finishRunning(NAME, BackfillStatus.STOPPED));
+        return status();
+    }
+
+    @Nonnull
+    public Optional<ThumbnailBackfillEntity> status() {
+        return backfillRepository.findById(NAME);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resume() {
+        if (status().filter(backfill -> backfill.getStatus() == BackfillStatus.RUNNING).isPresent()) {
+            log.info("Resume thumbnail backfill");
+            launch();
+        }
+    }
+
+    private void launch() {
+        if (running.compareAndSet(false, true))
+            runner.execute(() -> {
+                try {
+                    while (runBatch()) {
+                        // next batch
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception ex) {
+                    log.error("Thumbnail backfill was interrupted, it is resumed from checkpoint on next start", ex);
+                } finally {
+                    running.set(false);
+                }
+            });
+    }
+
+    /**
+     * @return false if backfill is completed, stopped or advanced by another instance
+     */
+    boolean runBatch() throws InterruptedException {
+
+        if (isOverloaded()) {
+            throttled.increment();
+            Thread.sleep(throttleDelay);
+            return status().filter(backfill -> backfill.getStatus() == BackfillStatus.RUNNING).isPresent();
+        }
+
+        final var backfill = status()
+                .filter(existing -> existing.getStatus() == BackfillStatus.RUNNING)
+                .orElse(null);
+        if (backfill == null)
+            return false;
+
+        final var sources = metadataRepository.findThumbnailSourcesAfter(backfill.getLastContentId(), Limit.of(batchSize));
+        if (sources.isEmpty()) {
+            transactionOperations.executeWithoutResult(status ->
+                    backfillRepository.finishRunning(NAME, BackfillStatus.COMPLETED));
+            log.info("Thumbnail backfill is completed: processed = [{}], failed = [{}]",
+                    backfill.getProcessed(), backfill.getFailed());
+            return false;
+        }
+
+        final long failures = pool.submit(() -> sources.parallelStream()
+                        .filter(source -> !regenerate(source))
+                        .count())
+                .join();
+
+        final Integer advanced = transactionOperations.execute(status -> backfillRepository.advance(NAME,
+                backfill.getLastContentId(),
+                sources.getLast().contentId(),
+                sources.size() - failures,
+                failures));
+        return Objects.requireNonNullElse(advanced, 0) > 0;
+
+    }
+
+    private boolean isOverloaded() {
+        return cpuLoad.getAsDouble() > maxCpuLoad
+                || taskRepository.countPending(AppProperty.THUMBNAIL_MAX_ATTEMPTS) > maxPendingTasks
+                || awaitingConnections.getAsInt() > 0;
+    }
+
+    private boolean regenerate(ThumbnailSource source) {
+        try {
+            thumbnailWorker.generate(source.contentId(), source.format());
+            processed.increment();
+            return true;
+        } catch (Exception ex) {
+            log.error("Failed to regenerate thumbnail for content with id = [{}]", source.contentId(), ex);
+            failed.increment();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    private static Counter backfillCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("rococo.files.thumbnail.backfill.processed")
+                .description("Contents processed by thumbnail backfill")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+}
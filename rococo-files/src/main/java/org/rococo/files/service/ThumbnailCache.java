@@ -0,0 +1,92 @@
+package org.rococo.files.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Thumbnails by content id, kept in direct buffers out of heap and bounded by total size in bytes.
+ * Content bytes never change, so entries are invalidated only when content is deleted or its thumbnail regenerated.
+ * Eviction is Window TinyLFU of Caffeine, hits, misses and evictions are registered as cache {@code thumbnails}.
+ */
+@Component
+@ParametersAreNonnullByDefault
+public class ThumbnailCache {
+
+    private static final String CACHE_NAME = "thumbnails";
+
+    private final Cache<UUID, ByteBuffer> cache;
+
+    @Autowired
+    public ThumbnailCache(@Value("${rococo-files.thumbnail-cache.max-size:64MB}") DataSize maxSize,
+                          MeterRegistry meterRegistry
+    ) {
+        this(maxSize, meterRegistry, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param maintenanceExecutor runs Caffeine maintenance, which weighs and evicts entries after writes
+     */
+    ThumbnailCache(DataSize maxSize, MeterRegistry meterRegistry, Executor maintenanceExecutor) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((UUID contentId, ByteBuffer thumbnail) -> thumbnail.capacity())
+                .executor(maintenanceExecutor)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("rococo.files.thumbnail.cache.bytes", this, ThumbnailCache::residentBytes)
+                .description("Bytes of thumbnails kept in cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return read-only buffers of cached thumbnails by content id, not cached contents are absent
+     */
+    @Nonnull
+    public Map<UUID, ByteBuffer> getAllPresent(Collection<UUID> contentIds) {
+        final Map<UUID, ByteBuffer> result = new HashMap<>();
+        cache.getAllPresent(contentIds)
+                .forEach((contentId, thumbnail) -> result.put(contentId, thumbnail.asReadOnlyBuffer()));
+        return result;
+    }
+
+    public void put(UUID contentId, byte[] thumbnail) {
+        final var buffer = ByteBuffer.allocateDirect(thumbnail.length);
+        buffer.put(thumbnail).flip();
+        cache.put(contentId, buffer);
+    }
+
+    public void invalidate(UUID contentId) {
+        cache.invalidate(contentId);
+    }
+
+    /**
+     * Weighted size as of last maintenance, it is not forced on scrape: writes made since are counted on the next one
+     */
+    long residentBytes() {
+        return cache.policy()
+                .eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+}
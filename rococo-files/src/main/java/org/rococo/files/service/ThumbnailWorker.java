@@ -0,0 +1,197 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.files.config.AppProperty;
+import org.rococo.files.data.entity.ImageRenditionEntity;
+import org.rococo.files.data.entity.Rendition;
+import org.rococo.files.data.entity.ThumbnailTaskEntity;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.rococo.files.data.repository.ImageRenditionRepository;
+import org.rococo.files.data.repository.ThumbnailTaskRepository;
+import org.rococo.files.data.store.ImageContentStores;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Generates thumbnail and other {@link Rendition}s for tasks from {@code rococo.thumbnail_task}
+ * on a fixed pool of one thread per core.
+ * Tasks are leased in short transactions, resize itself runs without DB connection.
+ * Task of failed or crashed worker becomes available again when its lease expires.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+public class ThumbnailWorker {
+
+    private static final List<Rendition> RENDITIONS = Stream.concat(
+            Stream.of(Rendition.THUMBNAIL, Rendition.PLACEHOLDER),
+            Rendition.STORED_SEPARATELY.stream()
+    ).toList();
+
+    private final ThumbnailTaskRepository taskRepository;
+
+    private final ImageContentRepository contentRepository;
+
+    private final ImageRenditionRepository renditionRepository;
+
+    private final ImageContentStores contentStores;
+
+    private final ThumbnailCache thumbnailCache;
+
+    private final ImageResizer imageResizer;
+
+    private final TransactionOperations transactionOperations;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    private final Timer resizeTimer;
+
+    private final Counter processed;
+
+    private final Counter failed;
+
+    public ThumbnailWorker(ThumbnailTaskRepository taskRepository,
+                           ImageContentRepository contentRepository,
+                           ImageRenditionRepository renditionRepository,
+                           ImageContentStores contentStores,
+                           ThumbnailCache thumbnailCache,
+                           ImageResizer imageResizer,
+                           TransactionOperations transactionOperations,
+                           MeterRegistry meterRegistry
+    ) {
+        this.taskRepository = taskRepository;
+        this.contentRepository = contentRepository;
+        this.renditionRepository = renditionRepository;
+        this.contentStores = contentStores;
+        this.thumbnailCache = thumbnailCache;
+        this.imageResizer = imageResizer;
+        this.transactionOperations = transactionOperations;
+
+        final int threads = Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads),
+                new CustomizableThreadFactory("thumbnail-worker-"));
+
+        Gauge.builder("rococo.files.thumbnail.queue.depth", queueDepth, AtomicLong::get)
+                .description("Thumbnail tasks waiting for generation")
+                .register(meterRegistry);
+        this.resizeTimer = Timer.builder("rococo.files.thumbnail.resize")
+                .description("Time of generating all renditions of one image")
+                .register(meterRegistry);
+        this.processed = thumbnailCounter(meterRegistry, "success");
+        this.failed = thumbnailCounter(meterRegistry, "failure");
+    }
+
+    @Scheduled(fixedDelay = AppProperty.THUMBNAIL_POLL_DELAY_MS)
+    public void poll() {
+
+        queueDepth.set(taskRepository.countPending(AppProperty.THUMBNAIL_MAX_ATTEMPTS));
+
+        final int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0)
+            return;
+
+        final List<ThumbnailTaskEntity> tasks = transactionOperations.execute(status -> {
+            var available = taskRepository.findAvailableForUpdate(AppProperty.THUMBNAIL_MAX_ATTEMPTS, capacity);
+            if (!available.isEmpty())
+                taskRepository.lease(
+                        available.stream().map(ThumbnailTaskEntity::getContentId).toList(),
+                        AppProperty.THUMBNAIL_LEASE_SECONDS);
+            return available;
+        });
+
+        if (tasks != null)
+            tasks.forEach(task -> executor.execute(() -> process(task)));
+
+    }
+
+    void process(ThumbnailTaskEntity task) {
+        try {
+            if (generate(task.getContentId(), task.getFormat()))
+                processed.increment();
+        } catch (Exception ex) {
+            log.error("Failed to generate thumbnail for content with id = [{}], attempt = [{}]",
+                    task.getContentId(), task.getAttempts() + 1, ex);
+            failed.increment();
+        }
+    }
+
+    /**
+     * Replaces thumbnail and renditions of stored content and removes its task, if content is queued.
+     *
+     * @return false if content was deleted, task is deleted with it by cascade
+     */
+    boolean generate(UUID contentId, String format) {
+        final var data = contentStores.read(contentId);
+        if (data.isEmpty())
+            return false;
+
+        final var renditions = resizeTimer.record(() -> generateRenditions(contentId, format, data.get()));
+
+        transactionOperations.executeWithoutResult(status -> {
+            contentRepository.updateThumbnail(contentId, renditions.thumbnail());
+            contentRepository.updatePlaceholder(contentId, renditions.placeholder());
+            renditionRepository.deleteAllByContentId(contentId);
+            renditionRepository.saveAll(renditions.others());
+            taskRepository.deleteById(contentId);
+        });
+        thumbnailCache.invalidate(contentId);
+        return true;
+    }
+
+    /**
+     * Original is decoded once for all renditions. Renditions not smaller than original are not stored.
+     */
+    private GeneratedRenditions generateRenditions(UUID contentId, String format, ByteBuffer data) {
+        final var renditions = imageResizer.resize(data, format, RENDITIONS);
+        return new GeneratedRenditions(
+                renditions.get(Rendition.THUMBNAIL),
+                renditions.get(Rendition.PLACEHOLDER),
+                Rendition.STORED_SEPARATELY.stream()
+                        .filter(renditions::containsKey)
+                        .map(rendition -> ImageRenditionEntity.builder()
+                                .contentId(contentId)
+                                .rendition(rendition)
+                                .data(renditions.get(rendition))
+                                .build())
+                        .toList());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private record GeneratedRenditions(byte[] thumbnail,
+                                       @Nullable byte[] placeholder,
+                                       List<ImageRenditionEntity> others) {
+    }
+
+    private static Counter thumbnailCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("rococo.files.thumbnail.processed")
+                .description("Processed thumbnail tasks")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+}
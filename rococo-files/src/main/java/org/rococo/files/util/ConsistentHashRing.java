@@ -0,0 +1,52 @@
+package org.rococo.files.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Consistent hashing of keys to named nodes. Each node takes many points of the ring, so keys are spread evenly,
+ * and a node added to the ring takes keys only from the other nodes: about {@code 1 / nodes} of keys move.
+ */
+@ParametersAreNonnullByDefault
+public class ConsistentHashRing {
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    private final List<String> nodes;
+
+    public ConsistentHashRing(Collection<String> nodes, int pointsPerNode) {
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("Ring must have at least one node");
+        this.nodes = List.copyOf(nodes);
+        this.nodes.forEach(node -> {
+            for (int point = 0; point < pointsPerNode; point++)
+                ring.put(hash(node + "#" + point), node);
+        });
+    }
+
+    @Nonnull
+    public String nodeOf(String key) {
+        final var entry = ring.ceilingEntry(hash(key));
+        return entry == null
+                ? ring.firstEntry().getValue()
+                : entry.getValue();
+    }
+
+    @Nonnull
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    private static long hash(String value) {
+        final var digest = HashUtil.newDigest();
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.rococo.files.util;
+
+import com.google.protobuf.ByteString;
+import org.rococo.files.ex.BadRequestException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental decoder of data-URI ({@code data:image/png;base64,...}) received as arbitrary split parts.
+ * Pattern is validated, base64 payload is decoded and content hash is calculated as parts arrive,
+ * so only decoded image bytes are accumulated. When the decoded size is known in advance,
+ * the image is decoded straight into the array which is returned.
+ * <p>
+ * Raw image bytes of known format are taken the same way, only without the data-URI pattern and base64.
+ */
+@ParametersAreNonnullByDefault
+public class DataUriDecoder {
+
+    private static final Pattern PREFIX_PATTERN = Pattern.compile("^data:image/([a-z]{3,4});base64,$");
+    private static final Pattern FORMAT_PATTERN = Pattern.compile("^[a-z]{3,4}$");
+    private static final int MAX_PREFIX_LENGTH = "data:image/jpeg;base64,".length();
+    private static final int BLOCK_SIZE = 3 * 1024;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        final var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++)
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+    }
+
+    private final long maxLength;
+    private final StringBuilder prefix = new StringBuilder(MAX_PREFIX_LENGTH);
+    private final MessageDigest messageDigest = HashUtil.newDigest();
+
+    private byte[] decoded;
+    private String format;
+    private boolean raw;
+    private long length;
+    private int decodedLength;
+    private int hashedLength;
+    private int quantum;
+    private int quantumLength;
+    private int paddingLength;
+
+    public DataUriDecoder(long maxLength) {
+        this(maxLength, INITIAL_CAPACITY);
+    }
+
+    public DataUriDecoder(long maxLength, int expectedDecodedLength) {
+        this.maxLength = maxLength;
+        this.decoded = new byte[(int) Math.max(Math.min(expectedDecodedLength, maxLength), 1)];
+    }
+
+    /**
+     * Decodes whole data-URI at once, without copying it into string or intermediate buffers
+     */
+    @Nonnull
+    public static DecodedImage decode(ByteString dataUri, long maxLength) {
+        final var decoder = new DataUriDecoder(maxLength, expectedDecodedLength(dataUri));
+        decoder.update(dataUri);
+        return decoder.finish();
+    }
+
+    /**
+     * Decoder of raw image bytes, which are accumulated and hashed as they are
+     */
+    @Nonnull
+    public static DataUriDecoder forRawImage(String format, long maxLength) {
+        if (!FORMAT_PATTERN.matcher(format).matches())
+            throw new BadRequestException("Image format [%s] is invalid".formatted(format));
+        final var decoder = new DataUriDecoder(maxLength);
+        decoder.format = format;
+        decoder.raw = true;
+        return decoder;
+    }
+
+    public void update(ByteString part) {
+
+        length += part.size();
+        if (length > maxLength)
+            throw new BadRequestException("Content size can not be greater than %d bytes".formatted(maxLength));
+
+        if (raw) {
+            writeRaw(part);
+            return;
+        }
+
+        final var buffer = part.asReadOnlyByteBuffer();
+        while (buffer.hasRemaining()) {
+            final byte b = buffer.get();
+            if (format == null)
+                readPrefix(b);
+            else
+                readPayload(b);
+        }
+
+    }
+
+    @Nonnull
+    public DecodedImage finish() {
+
+        if (length == 0)
+            throw new BadRequestException("Content can not be empty");
+        if (format == null || quantumLength == 1 || (paddingLength > 0 && quantumLength + paddingLength != 4))
+            throw invalidPattern();
+
+        if (quantumLength == 2) {
+            write(quantum >> 4);
+        } else if (quantumLength == 3) {
+            write(quantum >> 10);
+            write(quantum >> 2);
+        }
+        hashDecoded();
+
+        if (decodedLength == 0)
+            throw invalidPattern();
+
+        return new DecodedImage(
+                format,
+                decodedLength == decoded.length ? decoded : Arrays.copyOf(decoded, decodedLength),
+                HashUtil.getHash(messageDigest));
+
+    }
+
+    private void readPrefix(byte b) {
+        prefix.append((char) b);
+        if (b == ',') {
+            final var matcher = PREFIX_PATTERN.matcher(prefix);
+            if (!matcher.matches())
+                throw invalidPattern();
+            format = matcher.group(1);
+        } else if (prefix.length() >= MAX_PREFIX_LENGTH) {
+            throw invalidPattern();
+        }
+    }
+
+    private void readPayload(byte b) {
+
+        if (b == '=') {
+            if (++paddingLength > 2)
+                throw invalidPattern();
+            return;
+        }
+
+        final int value = b < 0 ? -1 : BASE64_VALUES[b];
+        if (value < 0 || paddingLength > 0)
+            throw invalidPattern();
+
+        quantum = (quantum << 6) | value;
+        if (++quantumLength == 4) {
+            write(quantum >> 16);
+            write(quantum >> 8);
+            write(quantum);
+            quantum = 0;
+            quantumLength = 0;
+        }
+
+    }
+
+    private void write(int value) {
+        if (decodedLength == decoded.length)
+            decoded = Arrays.copyOf(decoded, decoded.length * 2);
+        decoded[decodedLength++] = (byte) value;
+        if (decodedLength - hashedLength == BLOCK_SIZE)
+            hashDecoded();
+    }
+
+    private void writeRaw(ByteString part) {
+        if (decodedLength + part.size() > decoded.length)
+            decoded = Arrays.copyOf(decoded, Math.max(decoded.length * 2, decodedLength + part.size()));
+        part.copyTo(decoded, decodedLength);
+        decodedLength += part.size();
+        if (decodedLength - hashedLength >= BLOCK_SIZE)
+            hashDecoded();
+    }
+
+    private void hashDecoded() {
+        messageDigest.update(decoded, hashedLength, decodedLength - hashedLength);
+        hashedLength = decodedLength;
+    }
+
+    /**
+     * Decoded length of valid data-URI: payload characters without padding carry 6 bits each
+     */
+    private static int expectedDecodedLength(ByteString dataUri) {
+        final int payloadStart = indexOf(dataUri, (byte) ',', MAX_PREFIX_LENGTH) + 1;
+        int payloadEnd = dataUri.size();
+        while (payloadEnd > payloadStart && dataUri.byteAt(payloadEnd - 1) == '=')
+            payloadEnd--;
+        return (int) ((payloadEnd - payloadStart) * 3L / 4);
+    }
+
+    private static int indexOf(ByteString bytes, byte value, int limit) {
+        for (int i = 0; i < Math.min(bytes.size(), limit); i++)
+            if (bytes.byteAt(i) == value)
+                return i;
+        return -1;
+    }
+
+    private static BadRequestException invalidPattern() {
+        return new BadRequestException("Content has invalid pattern");
+    }
+
+    public record DecodedImage(String format, byte[] data, String contentHash) {
+    }
+
+}
@@ -1,6 +1,5 @@
 package org.rococo.files.util;
 
-import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
@@ -10,11 +9,19 @@ public class HashUtil {
     private HashUtil() {
     }
 
-    public static String getHash(String image) {
+    public static String getHash(byte[] data) {
+        final var messageDigest = newDigest();
+        messageDigest.update(data);
+        return getHash(messageDigest);
+    }
+
+    public static String getHash(MessageDigest messageDigest) {
+        return encodeText(messageDigest.digest());
+    }
+
+    public static MessageDigest newDigest() {
         try {
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-            messageDigest.update(image.getBytes(StandardCharsets.UTF_8));
-            return encodeText(messageDigest.digest());
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         }
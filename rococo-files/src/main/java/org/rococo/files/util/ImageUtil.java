@@ -1,15 +1,20 @@
 package org.rococo.files.util;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import lombok.extern.slf4j.Slf4j;
 import net.coobird.thumbnailator.Thumbnails;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.Base64;
 import java.util.Optional;
 
@@ -17,62 +22,143 @@ import java.util.Optional;
 @ParametersAreNonnullByDefault
 public class ImageUtil {
 
+    private static final String DATA_URI_PREFIX = "data:image/%s;base64,";
+
     private ImageUtil() {
     }
 
     @Nonnull
-    public static Optional<byte[]> resizeImage(String originalPhoto,
+    public static Optional<byte[]> resizeImage(byte[] originalPhoto,
                                                String format,
                                                int targetWidth,
                                                int targetHeight,
                                                double quality
     ) {
 
-        if (!originalPhoto.isEmpty()) {
+        if (originalPhoto.length > 0)
+            return Optional.of(resizeImage(readImage(originalPhoto), format, targetWidth, targetHeight, quality));
+
+        return Optional.empty();
+
+    }
+
+    @Nonnull
+    public static BufferedImage readImage(ByteBuffer data) {
+        final var bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return readImage(bytes);
+    }
+
+    @Nonnull
+    public static BufferedImage readImage(byte[] data) {
+        try (ByteArrayInputStream is = new ByteArrayInputStream(data)) {
+            final var image = ImageIO.read(is);
+            if (image == null)
+                throw new IllegalArgumentException("Unsupported image format");
+            return image;
+        } catch (IOException e) {
+            log.error("Error while reading image");
+            throw new UncheckedIOException(e);
+        }
+    }
 
+    /**
+     * Reads width and height from image header without decoding pixels
+     */
+    @Nonnull
+    public static Optional<Dimension> readDimensions(byte[] data) {
+        try (var input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            final var readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext())
+                return Optional.empty();
+            final var reader = readers.next();
             try {
-                String base64Image = originalPhoto.split(",")[1];
-
-                try (ByteArrayInputStream is = new ByteArrayInputStream(Base64.getDecoder().decode(base64Image));
-                     ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-
-                    Thumbnails.of(ImageIO.read(is))
-                            .width(targetWidth)
-                            .height(targetHeight)
-                            .outputQuality(quality)
-                            .outputFormat(format)
-                            .toOutputStream(os);
-
-                    return Optional.of(
-                            concatArrays(
-                                    "data:image/%s;base64,".formatted(format)
-                                            .getBytes(StandardCharsets.UTF_8),
-                                    Base64.getEncoder().encode(os.toByteArray())
-                            ));
-                }
-            } catch (Exception e) {
-                log.error("Error while resizing image");
-                throw new RuntimeException(e);
+                reader.setInput(input, true, true);
+                return Optional.of(new Dimension(reader.getWidth(0), reader.getHeight(0)));
+            } finally {
+                reader.dispose();
             }
+        } catch (IOException e) {
+            log.warn("Error while reading image dimensions: {}", e.getMessage());
+            return Optional.empty();
         }
+    }
 
-        return Optional.empty();
-
+    /**
+     * Reads from image header whether pixels have alpha channel
+     */
+    public static boolean hasAlpha(byte[] data) {
+        try (var input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            final var readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext())
+                return false;
+            final var reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                final var type = reader.getRawImageType(0) != null
+                        ? reader.getRawImageType(0)
+                        : reader.getImageTypes(0).next();
+                return type.getColorModel().hasAlpha();
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            log.warn("Error while reading image type: {}", e.getMessage());
+            return false;
+        }
     }
 
+    /**
+     * Fits already decoded image into target box, so several sizes can be produced from one decoding
+     */
     @Nonnull
-    private static byte[] concatArrays(byte[] first,
-                                       byte[] second
+    public static byte[] resizeImage(BufferedImage image,
+                                     String format,
+                                     int targetWidth,
+                                     int targetHeight,
+                                     double quality
     ) {
-        byte[] result = Arrays.copyOf(first, first.length + second.length);
-        System.arraycopy(second, 0, result, first.length, second.length);
-        return result;
+
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
+
+            Thumbnails.of(image)
+                    .width(targetWidth)
+                    .height(targetHeight)
+                    .outputQuality(quality)
+                    .outputFormat(format)
+                    .toOutputStream(os);
+
+            return os.toByteArray();
+
+        } catch (Exception e) {
+            log.error("Error while resizing image");
+            throw new RuntimeException(e);
+        }
+
+    }
+
+    /**
+     * Decodes base64 payload of data-URI ({@code data:image/png;base64,...}) into raw image bytes
+     */
+    @Nonnull
+    public static byte[] decodeDataUri(String imageData) {
+        return Base64.getDecoder().decode(
+                imageData.substring(imageData.indexOf(",") + 1));
+    }
+
+    /**
+     * Builds data-URI ({@code data:image/png;base64,...}) from raw image bytes.
+     * Encoded payload is wrapped, not copied, so the only allocation of image size is the base64 encoding itself.
+     */
+    @Nonnull
+    public static ByteString toDataUri(String format, byte[] data) {
+        return toDataUri(format, ByteBuffer.wrap(data));
     }
 
     @Nonnull
-    public static String getFormatName(final String imageData) {
-        return imageData.substring(0, imageData.indexOf(";"))
-                .substring(imageData.indexOf("/") + 1);
+    public static ByteString toDataUri(String format, ByteBuffer data) {
+        return ByteString.copyFromUtf8(DATA_URI_PREFIX.formatted(format))
+                .concat(UnsafeByteOperations.unsafeWrap(Base64.getEncoder().encode(data.duplicate())));
     }
 
 }
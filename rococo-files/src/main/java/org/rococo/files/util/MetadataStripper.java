@@ -0,0 +1,164 @@
+package org.rococo.files.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Removes metadata from encoded JPEG and PNG images without decoding pixels.
+ * JPEG keeps JFIF (APP0), ICC profile (APP2) and Adobe (APP14) segments which affect colors,
+ * PNG keeps all chunks except textual ones, EXIF and modification time.
+ * Malformed or unknown images are returned unchanged.
+ */
+@ParametersAreNonnullByDefault
+public class MetadataStripper {
+
+    private static final int APP0 = 0xE0;
+    private static final int APP1 = 0xE1;
+    private static final int APP2 = 0xE2;
+    private static final int APP14 = 0xEE;
+    private static final int APP15 = 0xEF;
+    private static final int COM = 0xFE;
+    private static final int SOS = 0xDA;
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final Set<String> PNG_METADATA_CHUNKS = Set.of("tEXt", "zTXt", "iTXt", "eXIf", "tIME");
+
+    private MetadataStripper() {
+    }
+
+    /**
+     * @return image without metadata, or the same array if there is nothing to strip
+     */
+    @Nonnull
+    public static byte[] strip(byte[] data, String format) {
+        return switch (format.toLowerCase()) {
+            case "jpg", "jpeg" -> stripJpeg(data);
+            case "png" -> stripPng(data);
+            default -> data;
+        };
+    }
+
+    /**
+     * EXIF orientation of JPEG image: 1 is normal, 2-8 mean that viewers flip or rotate the image.
+     * Images without EXIF have normal orientation.
+     */
+    public static int orientation(byte[] data) {
+        if (!isJpeg(data))
+            return 1;
+
+        int pos = 2;
+        while (pos + 4 <= data.length && (data[pos] & 0xFF) == 0xFF) {
+            final int marker = data[pos + 1] & 0xFF;
+            if (marker == SOS)
+                break;
+            final int end = pos + 2 + readShort(data, pos + 2, true);
+            if (end > data.length)
+                break;
+            if (marker == APP1 && startsWith(data, pos + 4, EXIF_HEADER))
+                return exifOrientation(data, pos + 4 + EXIF_HEADER.length, end);
+            pos = end;
+        }
+        return 1;
+    }
+
+    private static byte[] stripJpeg(byte[] data) {
+        if (!isJpeg(data))
+            return data;
+
+        final var result = new ByteArrayOutputStream(data.length);
+        result.write(data, 0, 2);
+        int pos = 2;
+        while (pos + 4 <= data.length) {
+            if ((data[pos] & 0xFF) != 0xFF)
+                return data;
+            final int marker = data[pos + 1] & 0xFF;
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            if (marker == SOS) {
+                result.write(data, pos, data.length - pos);
+                return result.size() == data.length ? data : result.toByteArray();
+            }
+            final int end = pos + 2 + readShort(data, pos + 2, true);
+            if (end > data.length)
+                return data;
+            if (!isJpegMetadata(marker))
+                result.write(data, pos, end - pos);
+            pos = end;
+        }
+        return data;
+    }
+
+    private static boolean isJpegMetadata(int marker) {
+        return marker > APP0 && marker <= APP15 && marker != APP2 && marker != APP14 || marker == COM;
+    }
+
+    private static byte[] stripPng(byte[] data) {
+        if (!startsWith(data, 0, PNG_SIGNATURE))
+            return data;
+
+        final var result = new ByteArrayOutputStream(data.length);
+        result.write(data, 0, PNG_SIGNATURE.length);
+        int pos = PNG_SIGNATURE.length;
+        while (pos + 12 <= data.length) {
+            final long length = readInt(data, pos, true) & 0xFFFFFFFFL;
+            final long end = pos + 12 + length;
+            if (end > data.length)
+                return data;
+            final var type = new String(data, pos + 4, 4, StandardCharsets.US_ASCII);
+            if (!PNG_METADATA_CHUNKS.contains(type))
+                result.write(data, pos, (int) end - pos);
+            pos = (int) end;
+            if (type.equals("IEND"))
+                return result.size() == data.length ? data : result.toByteArray();
+        }
+        return data;
+    }
+
+    private static int exifOrientation(byte[] data, int tiffStart, int end) {
+        if (tiffStart + 8 > end)
+            return 1;
+        final boolean bigEndian = data[tiffStart] == 'M';
+        final int ifdStart = tiffStart + readInt(data, tiffStart + 4, bigEndian);
+        if (ifdStart < tiffStart || ifdStart + 2 > end)
+            return 1;
+        final int entries = readShort(data, ifdStart, bigEndian);
+        for (int i = 0; i < entries; i++) {
+            final int entry = ifdStart + 2 + i * 12;
+            if (entry + 12 > end)
+                break;
+            if (readShort(data, entry, bigEndian) == EXIF_ORIENTATION_TAG)
+                return readShort(data, entry + 8, bigEndian);
+        }
+        return 1;
+    }
+
+    private static boolean isJpeg(byte[] data) {
+        return data.length > 4 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        return offset + prefix.length <= data.length
+                && Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static int readShort(byte[] data, int offset, boolean bigEndian) {
+        final int first = data[offset] & 0xFF;
+        final int second = data[offset + 1] & 0xFF;
+        return bigEndian ? first << 8 | second : second << 8 | first;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean bigEndian) {
+        final int high = readShort(data, offset, bigEndian);
+        final int low = readShort(data, offset + 2, bigEndian);
+        return bigEndian ? high << 16 | low : low << 16 | high;
+    }
+
+}
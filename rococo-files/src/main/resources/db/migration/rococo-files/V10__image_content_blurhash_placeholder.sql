@@ -0,0 +1,4 @@
+-- Placeholder is blurhash string now: placeholders generated as images are dropped and regenerated by thumbnail backfill
+update rococo.image_content
+set placeholder = null
+where placeholder is not null;
@@ -0,0 +1,23 @@
+-- Image content was stored as UTF-8 bytes of data-URI text (data:image/png;base64,...).
+-- Convert existing rows in place to raw decoded image bytes, format stays in image_metadata.format.
+create or replace function rococo.decode_data_uri(content bytea) returns bytea
+    language plpgsql
+    immutable
+as
+$$
+declare
+    payload text;
+begin
+    if content is null or substring(content from 1 for 11) <> convert_to('data:image/', 'UTF8') then
+        return content;
+    end if;
+    payload := split_part(convert_from(content, 'UTF8'), ',', 2);
+    return decode(rpad(payload, ((length(payload) + 3) / 4) * 4, '='), 'base64');
+end;
+$$;
+
+update rococo.image_content
+set data           = rococo.decode_data_uri(data),
+    thumbnail_data = rococo.decode_data_uri(thumbnail_data);
+
+drop function rococo.decode_data_uri(bytea);
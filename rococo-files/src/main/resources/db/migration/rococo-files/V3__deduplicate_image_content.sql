@@ -0,0 +1,42 @@
+-- Image content becomes content-addressed: equal images share one image_content row.
+-- Hash is recalculated over decoded image bytes (same encoding as HashUtil: base64 of SHA-256 without padding).
+alter table rococo.image_content
+    add column if not exists content_hash varchar(64),
+    add column if not exists ref_count    integer not null default 0;
+
+update rococo.image_content
+set content_hash = rtrim(encode(sha256(data), 'base64'), '=');
+
+update rococo.image_metadata m
+set content_hash = c.content_hash
+from rococo.image_content c
+where m.content_id = c.id;
+
+-- Point metadata of duplicated images to one content row and drop the rest
+alter table rococo.image_metadata
+    drop constraint if exists image_metadata_content_id_key;
+
+create temporary table image_content_duplicates on commit drop as
+select id,
+       first_value(id) over (partition by content_hash order by id) as keep_id
+from rococo.image_content;
+
+update rococo.image_metadata m
+set content_id = d.keep_id
+from image_content_duplicates d
+where m.content_id = d.id
+  and d.id <> d.keep_id;
+
+update rococo.image_content c
+set ref_count = (select count(*) from rococo.image_metadata m where m.content_id = c.id);
+
+delete
+from rococo.image_content
+where ref_count = 0;
+
+alter table rococo.image_content
+    alter column content_hash set not null,
+    alter column ref_count drop default,
+    add constraint unique_content_hash unique (content_hash);
+
+create index if not exists idx__image_metadata__content_id on rococo.image_metadata (content_id);
@@ -0,0 +1,19 @@
+-- Thumbnails are generated asynchronously: content is stored without thumbnail and a task is queued for it
+alter table rococo.image_content
+    alter column thumbnail_data drop not null;
+
+create table if not exists rococo.thumbnail_task
+(
+    content_id   uuid        not null,
+    format       varchar(50) not null,
+    attempts     integer     not null default 0,
+    locked_until timestamp,
+    created_date timestamp   not null default now(),
+    primary key (content_id)
+);
+
+alter table rococo.thumbnail_task
+    add constraint fk__thumbnail_task__image_content foreign key (content_id)
+        references rococo.image_content (id) on delete cascade;
+
+create index if not exists idx__thumbnail_task__created_date on rococo.thumbnail_task (created_date);
@@ -0,0 +1,16 @@
+-- Named size-bounded renditions of image content, thumbnail stays in image_content.thumbnail_data
+create table if not exists rococo.image_rendition
+(
+    id         uuid        not null unique default uuid_generate_v1(),
+    content_id uuid        not null,
+    rendition  varchar(20) not null,
+    data       bytea       not null,
+    primary key (id)
+);
+
+alter table rococo.image_rendition
+    add constraint unique_content_id_rendition unique (content_id, rendition);
+
+alter table rococo.image_rendition
+    add constraint fk__image_rendition__image_content foreign key (content_id)
+        references rococo.image_content (id) on delete cascade;
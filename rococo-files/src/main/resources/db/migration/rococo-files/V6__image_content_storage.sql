@@ -0,0 +1,9 @@
+-- original bytes may be stored outside of the table, the row keeps only where they are
+alter table rococo.image_content
+    alter column data drop not null;
+
+-- rococo-files inserts rows with null storage and sets it when their bytes are written
+alter table rococo.image_content
+    add column storage varchar(20) default 'DATABASE';
+
+create index if not exists idx_image_content_storage on rococo.image_content (storage);
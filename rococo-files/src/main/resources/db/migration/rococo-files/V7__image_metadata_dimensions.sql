@@ -0,0 +1,5 @@
+-- read from image header on ingest, so metadata lookups do not touch image bytes; null for images stored before
+alter table rococo.image_metadata
+    add column width     integer,
+    add column height    integer,
+    add column byte_size bigint;
@@ -0,0 +1,12 @@
+-- Progress of thumbnail backfill job: contents are processed in order of their ids, the last processed id is kept
+create table if not exists rococo.thumbnail_backfill
+(
+    name            varchar(50) not null,
+    status          varchar(20) not null,
+    last_content_id uuid        not null,
+    processed       bigint      not null default 0,
+    failed          bigint      not null default 0,
+    started_date    timestamp   not null default now(),
+    updated_date    timestamp   not null default now(),
+    primary key (name)
+);
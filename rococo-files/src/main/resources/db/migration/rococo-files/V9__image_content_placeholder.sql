@@ -0,0 +1,3 @@
+-- Tiny preview of content shown in lists until thumbnail is loaded, generated with thumbnail
+alter table rococo.image_content
+    add column if not exists placeholder bytea;
@@ -0,0 +1,10 @@
+create schema if not exists rococo;
+
+-- original bytes of contents placed on this shard, content row stays in rococo-files database
+create table if not exists rococo.image_content_shard
+(
+    content_id   uuid         not null primary key,
+    content_hash varchar(255) not null,
+    data         bytea        not null,
+    created_date timestamp    not null default now()
+);
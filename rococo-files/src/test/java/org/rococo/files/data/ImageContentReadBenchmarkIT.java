@@ -0,0 +1,128 @@
+package org.rococo.files.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares database I/O of one list page of thumbnails read with whole content entities (as before)
+ * and with thumbnail-only projection. I/O is measured by TOAST blocks of {@code image_content},
+ * where Postgres keeps large image bytes. Run by gradle {@code benchmark} task, {@code test} task skips it.
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@DisplayName("ImageContentRepository: Read benchmark")
+class ImageContentReadBenchmarkIT {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImageContentReadBenchmarkIT.class);
+
+    private static final int PAGE_SIZE = 20;
+    private static final int ORIGINAL_SIZE = 4 * 1024 * 1024;
+    private static final int THUMBNAIL_SIZE = 16 * 1024;
+
+    @Autowired
+    ImageContentRepository contentRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private final List<UUID> contentIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+
+        // random bytes do not compress, so every original is stored out of line as real photos are
+        final var random = new Random(42);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            final var original = new byte[ORIGINAL_SIZE];
+            final var thumbnail = new byte[THUMBNAIL_SIZE];
+            random.nextBytes(original);
+            random.nextBytes(thumbnail);
+
+            final var contentId = UUID.randomUUID();
+            jdbcTemplate.update("""
+                            insert into rococo.image_content(id, content_hash, ref_count, data, thumbnail_data)
+                            values (?, ?, 1, ?, ?)""",
+                    contentId, contentId.toString(), original, thumbnail);
+            contentIds.add(contentId);
+        }
+
+    }
+
+    @AfterEach
+    void tearDown() {
+        contentIds.forEach(contentId -> jdbcTemplate.update("delete from rococo.image_content where id = ?", contentId));
+    }
+
+    @Test
+    @DisplayName("Thumbnail projection does not read original bytes")
+    void thumbnailProjection_ReadsLessThanEntities() {
+
+        // Steps
+        final var entitiesRead = measure("entities", () -> contentRepository.findAllById(contentIds)
+                .forEach(content -> assertEquals(THUMBNAIL_SIZE, content.getThumbnailData().length)));
+        final var projectionRead = measure("thumbnail projection", () -> contentRepository.findAllThumbnailsByIdIn(contentIds)
+                .forEach(content -> assertEquals(THUMBNAIL_SIZE, content.data().length)));
+
+        // Assertions
+        assertAll(
+                () -> assertTrue(entitiesRead > 0),
+                () -> assertTrue(projectionRead * 10 < entitiesRead,
+                        "Thumbnail projection read %d TOAST blocks, entities read %d".formatted(projectionRead, entitiesRead))
+        );
+
+    }
+
+    private long measure(String name, Runnable read) {
+
+        final var blocksBefore = toastBlocks();
+        final var start = System.nanoTime();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> read.run());
+        final var elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        final var blocks = toastBlocks() - blocksBefore;
+
+        LOG.info("Read page of {} images with {}: {} TOAST blocks (~{} KiB), {} ms",
+                PAGE_SIZE, name, blocks, blocks * 8, elapsedMs);
+        return blocks;
+
+    }
+
+    private long toastBlocks() {
+        // backend statistics are flushed when it becomes idle, and cached per transaction when read
+        jdbcTemplate.execute("select pg_stat_force_next_flush()");
+        jdbcTemplate.execute("select pg_stat_clear_snapshot()");
+        final Long blocks = jdbcTemplate.queryForObject("""
+                select coalesce(toast_blks_read, 0) + coalesce(toast_blks_hit, 0)
+                from pg_statio_user_tables
+                where schemaname = 'rococo' and relname = 'image_content'""", Long.class);
+        return blocks == null ? 0 : blocks;
+    }
+
+}
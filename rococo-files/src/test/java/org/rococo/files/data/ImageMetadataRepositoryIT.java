@@ -11,6 +11,7 @@ import org.rococo.files.data.entity.EntityType;
 import org.rococo.files.data.entity.ImageContentEntity;
 import org.rococo.files.data.entity.ImageFilter;
 import org.rococo.files.data.entity.ImageMetadataEntity;
+import org.rococo.files.data.entity.ThumbnailSource;
 import org.rococo.files.data.repository.ImageMetadataRepository;
 import org.rococo.files.specs.ImageSpecs;
 import org.rococo.files.specs.value.EqualEnumSpec;
@@ -19,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -26,8 +28,8 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.nio.charset.Charset;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -61,8 +63,8 @@ class ImageMetadataRepositoryIT {
             .contentHash("c6afb7421eb61816cd54698493ff17573e020431c7b8486c39ceb9b3c07cc54b")
             .content(ImageContentEntity.builder()
                     .id(UUID.fromString("08141894-56fa-4b96-9524-6323c45e3dc0"))
-                    .data("data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mP8/x8AAwMCAO+ip1sAAAAASUVORK5CYII=".getBytes(Charset.defaultCharset()))
-                    .thumbnailData("data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mO89B8AAqkB05ycXjIAAAAASUVORK5CYII=".getBytes(Charset.defaultCharset()))
+                    .data(Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mP8/x8AAwMCAO+ip1sAAAAASUVORK5CYII="))
+                    .thumbnailData(Base64.getDecoder().decode("iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mO89B8AAqkB05ycXjIAAAAASUVORK5CYII="))
                     .build())
             .createdDate(LocalDateTime.of(2024, 1, 1, 11, 15))
             .build();
@@ -105,6 +107,39 @@ class ImageMetadataRepositoryIT {
 
     }
 
+    @Test
+    @DisplayName("FindThumbnailSourcesAfter: returns next contents in order of ids")
+    void findThumbnailSourcesAfter_ReturnsNextContents() {
+
+        // Steps
+        var result = metadataRepository.findThumbnailSourcesAfter(
+                UUID.fromString("3e15fbe7-c942-4b3c-acb9-0ea341176f31"),
+                Limit.of(2));
+
+        // Assertions
+        assertEquals(List.of(
+                        new ThumbnailSource(UUID.fromString("45968a5b-b8df-4331-a464-70bbae1fe68a"), "png"),
+                        new ThumbnailSource(UUID.fromString("598f026f-7011-4fcc-bac0-8b22da8b60d1"), "png")),
+                result);
+
+    }
+
+    @Test
+    @DisplayName("FindEntityIdsAfter: returns entity ids of images created before date")
+    void findEntityIdsAfter_ReturnsEntityIdsCreatedBefore() {
+
+        // Steps
+        var result = metadataRepository.findEntityIdsAfter(
+                EntityType.MUSEUM,
+                new UUID(0, 0),
+                LocalDateTime.of(2024, 1, 1, 11, 30),
+                Limit.of(10));
+
+        // Assertions
+        assertEquals(List.of(UUID.fromString("c4dd91c2-2c1c-4f5d-bdb8-4eee66f2b354")), result);
+
+    }
+
     @ParameterizedTest(name = "Case: {0}")
     @MethodSource("findAllImageMetadata_ArgumentsProvider")
     @DisplayName("FindAllByCriteria: returns ImageMetadata")
@@ -0,0 +1,90 @@
+package org.rococo.files.data.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("FileSystemImageContentStore: Module tests")
+class FileSystemImageContentStoreTests {
+
+    @TempDir
+    Path root;
+
+    private FileSystemImageContentStore contentStore;
+
+    private ImageContentLocation location;
+
+    @BeforeEach
+    void setUp() {
+        contentStore = new FileSystemImageContentStore(root);
+        location = new ImageContentLocation(UUID.randomUUID(), "ab+/cdefgh", ContentStorage.FILE_SYSTEM);
+    }
+
+    @Test
+    @DisplayName("Read: returns written bytes")
+    void read_ReturnsWrittenBytes() {
+
+        // Data
+        final var data = new byte[100_000];
+        new Random(42).nextBytes(data);
+
+        // Steps
+        contentStore.write(location, data);
+        var result = contentStore.read(location);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(ByteBuffer.wrap(data), result.orElseThrow()),
+                () -> assertTrue(result.orElseThrow().isReadOnly())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Write: stores file in directories sharded by hash")
+    void write_StoresFileInShardedDirectories() {
+
+        // Steps
+        contentStore.write(location, new byte[]{1, 2, 3});
+
+        // Assertions
+        final var path = contentStore.pathOf(location);
+        assertAll(
+                () -> assertEquals(root.toAbsolutePath().resolve("ab").resolve("-_"), path.getParent()),
+                () -> assertEquals("ab-_cdefgh_" + location.contentId(), path.getFileName().toString()),
+                () -> assertTrue(Files.exists(path))
+        );
+
+    }
+
+    @Test
+    @DisplayName("Read: returns empty when content is not stored")
+    void read_ReturnsEmpty_IfContentNotStored() {
+        assertTrue(contentStore.read(location).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Delete: removes stored bytes")
+    void delete_RemovesStoredBytes() {
+
+        // Steps
+        contentStore.write(location, new byte[]{1, 2, 3});
+        contentStore.delete(location);
+
+        // Assertions
+        assertTrue(contentStore.read(location).isEmpty());
+
+    }
+
+}
@@ -0,0 +1,193 @@
+package org.rococo.files.data.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ImageContentStores: Module tests")
+class ImageContentStoresTests {
+
+    @Mock
+    private ImageContentStore databaseStore;
+
+    @Mock
+    private ImageContentStore fileSystemStore;
+
+    @Mock
+    private ImageContentRepository contentRepository;
+
+    private ImageContentStores contentStores;
+
+    private UUID contentId;
+    private ImageContentLocation databaseLocation;
+    private ImageContentLocation fileSystemLocation;
+
+    @BeforeEach
+    void setUp() {
+
+        when(databaseStore.storage()).thenReturn(ContentStorage.DATABASE);
+        when(fileSystemStore.storage()).thenReturn(ContentStorage.FILE_SYSTEM);
+        contentStores = new ImageContentStores(List.of(databaseStore, fileSystemStore), contentRepository, ContentStorage.FILE_SYSTEM);
+
+        contentId = UUID.randomUUID();
+        databaseLocation = new ImageContentLocation(contentId, "hash", ContentStorage.DATABASE);
+        fileSystemLocation = new ImageContentLocation(contentId, "hash", ContentStorage.FILE_SYSTEM);
+
+    }
+
+    @Test
+    @DisplayName("WriteStore: returns configured store")
+    void writeStore_ReturnsConfiguredStore() {
+        assertSame(fileSystemStore, contentStores.writeStore());
+    }
+
+    @Test
+    @DisplayName("Read: reads bytes from storage of content")
+    void read_ReadsFromStorageOfContent() {
+
+        // Data
+        final var data = ByteBuffer.wrap(new byte[]{1});
+
+        // Stubs
+        when(contentRepository.findLocationById(contentId)).thenReturn(Optional.of(databaseLocation));
+        when(databaseStore.read(databaseLocation)).thenReturn(Optional.of(data));
+
+        // Steps
+        var result = contentStores.read(contentId);
+
+        // Assertions
+        assertSame(data, result.orElseThrow());
+        verify(fileSystemStore, never()).read(any());
+
+    }
+
+    @Test
+    @DisplayName("Read: reads bytes from new storage when content was moved meanwhile")
+    void read_ReadsFromNewStorage_IfContentWasMoved() {
+
+        // Data
+        final var data = ByteBuffer.wrap(new byte[]{1});
+
+        // Stubs
+        when(contentRepository.findLocationById(contentId))
+                .thenReturn(Optional.of(databaseLocation))
+                .thenReturn(Optional.of(fileSystemLocation));
+        when(databaseStore.read(databaseLocation)).thenReturn(Optional.empty());
+        when(fileSystemStore.read(fileSystemLocation)).thenReturn(Optional.of(data));
+
+        // Steps
+        var result = contentStores.read(contentId);
+
+        // Assertions
+        assertSame(data, result.orElseThrow());
+
+    }
+
+    @Test
+    @DisplayName("ReadAll: reads bytes from stores of contents")
+    void readAll_ReadsFromStoresOfContents() {
+
+        // Data
+        final var otherContentId = UUID.randomUUID();
+        final var otherLocation = new ImageContentLocation(otherContentId, "other", ContentStorage.FILE_SYSTEM);
+        final var data = ByteBuffer.wrap(new byte[]{1});
+        final var otherData = ByteBuffer.wrap(new byte[]{2});
+
+        // Stubs
+        when(contentRepository.findAllLocationsByIdIn(List.of(contentId, otherContentId)))
+                .thenReturn(List.of(databaseLocation, otherLocation));
+        when(databaseStore.readAll(List.of(databaseLocation))).thenReturn(Map.of(contentId, data));
+        when(fileSystemStore.readAll(List.of(otherLocation))).thenReturn(Map.of(otherContentId, otherData));
+
+        // Steps
+        var result = contentStores.readAll(List.of(contentId, otherContentId));
+
+        // Assertions
+        assertAll(
+                () -> assertSame(data, result.get(contentId)),
+                () -> assertSame(otherData, result.get(otherContentId)),
+                () -> assertEquals(2, result.size())
+        );
+
+    }
+
+    @Test
+    @DisplayName("DeleteAfterCommit: deletes bytes at once outside of transaction")
+    void deleteAfterCommit_DeletesAtOnce_IfNoTransaction() {
+
+        // Steps
+        contentStores.deleteAfterCommit(fileSystemLocation);
+
+        // Assertions
+        verify(fileSystemStore).delete(fileSystemLocation);
+        verify(databaseStore, never()).delete(any());
+
+    }
+
+    @Test
+    @DisplayName("Write: deletes written bytes when transaction rolls back")
+    void write_DeletesBytes_IfTransactionRolledBack() {
+
+        // Data
+        final var data = new byte[]{1};
+
+        // Steps
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            contentStores.write(fileSystemLocation, data);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assertions
+        verify(fileSystemStore).write(fileSystemLocation, data);
+        verify(fileSystemStore).delete(fileSystemLocation);
+
+    }
+
+    @Test
+    @DisplayName("Write: keeps written bytes when transaction commits")
+    void write_KeepsBytes_IfTransactionCommitted() {
+
+        // Data
+        final var data = new byte[]{1};
+
+        // Steps
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            contentStores.write(fileSystemLocation, data);
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        // Assertions
+        verify(fileSystemStore).write(fileSystemLocation, data);
+        verify(fileSystemStore, never()).delete(any());
+
+    }
+
+}
@@ -0,0 +1,163 @@
+package org.rococo.files.data.store;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ShardedDatabaseImageContentStore: Module tests")
+class ShardedDatabaseImageContentStoreTests {
+
+    private static final byte[] DATA = {1, 2, 3};
+
+    @Mock
+    private ContentShard firstShard;
+
+    @Mock
+    private ContentShard secondShard;
+
+    private MeterRegistry meterRegistry;
+
+    private ShardedDatabaseImageContentStore contentStore;
+
+    private ImageContentLocation location;
+    private ContentShard owner;
+    private ContentShard other;
+
+    @BeforeEach
+    void setUp() {
+
+        when(firstShard.name()).thenReturn("shard-0");
+        when(secondShard.name()).thenReturn("shard-1");
+        meterRegistry = new SimpleMeterRegistry();
+        contentStore = new ShardedDatabaseImageContentStore(List.of(firstShard, secondShard), meterRegistry);
+
+        location = new ImageContentLocation(UUID.randomUUID(), "hash", ContentStorage.SHARDED_DATABASE);
+        final boolean ownedByFirst = contentStore.shardOf(location).equals("shard-0");
+        owner = ownedByFirst ? firstShard : secondShard;
+        other = ownedByFirst ? secondShard : firstShard;
+
+    }
+
+    @AfterEach
+    void tearDown() {
+        contentStore.shutdown();
+    }
+
+    @Test
+    @DisplayName("Write: writes bytes only to shard of content")
+    void write_WritesToShardOfContent() {
+
+        // Steps
+        contentStore.write(location, DATA);
+
+        // Assertions
+        verify(owner).write(location, DATA);
+        verify(other, never()).write(any(), any());
+
+    }
+
+    @Test
+    @DisplayName("ReadAll: reads bytes from shard of content")
+    void readAll_ReadsFromShardOfContent() {
+
+        // Stubs
+        when(owner.readAll(List.of(location.contentId()))).thenReturn(Map.of(location.contentId(), DATA));
+
+        // Steps
+        final Map<UUID, ByteBuffer> result = contentStore.readAll(List.of(location));
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(ByteBuffer.wrap(DATA), result.get(location.contentId())),
+                () -> assertEquals(0.0, meterRegistry.get("rococo.files.shards.misses").counter().count())
+        );
+        verify(other, never()).readAll(any());
+
+    }
+
+    @Test
+    @DisplayName("ReadAll: looks up bytes not moved to shard of content on other shards")
+    void readAll_LooksUpOtherShards_IfContentIsNotOnItsShard() {
+
+        // Stubs
+        when(owner.readAll(List.of(location.contentId()))).thenReturn(Map.of());
+        when(other.readAll(List.of(location.contentId()))).thenReturn(Map.of(location.contentId(), DATA));
+
+        // Steps
+        final Optional<ByteBuffer> result = contentStore.read(location);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(Optional.of(ByteBuffer.wrap(DATA)), result),
+                () -> assertEquals(1.0, meterRegistry.get("rococo.files.shards.misses").counter().count())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Delete: deletes bytes from every shard")
+    void delete_DeletesFromEveryShard() {
+
+        // Steps
+        contentStore.delete(location);
+
+        // Assertions
+        verify(firstShard).delete(location.contentId());
+        verify(secondShard).delete(location.contentId());
+
+    }
+
+    @Test
+    @DisplayName("Move: copies bytes to shard of content before deleting them from old shard")
+    void move_CopiesBeforeDelete() {
+
+        // Stubs
+        when(other.read(location.contentId())).thenReturn(Optional.of(DATA));
+
+        // Steps
+        final boolean moved = contentStore.move(location, other.name());
+
+        // Assertions
+        assertTrue(moved);
+        final var inOrder = inOrder(owner, other);
+        inOrder.verify(owner).write(location, DATA);
+        inOrder.verify(other).delete(location.contentId());
+
+    }
+
+    @Test
+    @DisplayName("Move: returns false when bytes are not on old shard")
+    void move_ReturnsFalse_IfContentIsNotOnShard() {
+
+        // Stubs
+        when(other.read(location.contentId())).thenReturn(Optional.empty());
+
+        // Steps
+        final boolean moved = contentStore.move(location, other.name());
+
+        // Assertions
+        assertFalse(moved);
+        verify(owner, never()).write(any(), any());
+        verify(other, never()).delete(any());
+
+    }
+
+}
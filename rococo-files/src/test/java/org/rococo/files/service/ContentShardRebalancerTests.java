@@ -0,0 +1,105 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.rococo.files.data.store.ShardedDatabaseImageContentStore;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ContentShardRebalancer: Module tests")
+class ContentShardRebalancerTests {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private ShardedDatabaseImageContentStore contentStore;
+
+    @Mock
+    private ImageContentRepository contentRepository;
+
+    private MeterRegistry meterRegistry;
+
+    private ContentShardRebalancer rebalancer;
+
+    private final ImageContentLocation placed = location(1);
+    private final ImageContentLocation misplaced = location(2);
+    private final ImageContentLocation lastMisplaced = location(3);
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        rebalancer = new ContentShardRebalancer(contentStore, contentRepository, BATCH_SIZE, Duration.ZERO, meterRegistry);
+
+    }
+
+    @Test
+    @DisplayName("Rebalance: moves only contents which are not on their shard")
+    void rebalance_MovesOnlyMisplacedContents() throws InterruptedException {
+
+        // Stubs
+        when(contentStore.findLocationsAfter("shard-0", new UUID(0, 0), BATCH_SIZE)).thenReturn(List.of(placed, misplaced));
+        when(contentStore.findLocationsAfter("shard-0", misplaced.contentId(), BATCH_SIZE)).thenReturn(List.of(lastMisplaced));
+        when(contentStore.shardOf(placed)).thenReturn("shard-0");
+        when(contentStore.shardOf(misplaced)).thenReturn("shard-1");
+        when(contentStore.shardOf(lastMisplaced)).thenReturn("shard-1");
+        when(contentStore.move(any(), eq("shard-0"))).thenReturn(true);
+        when(contentRepository.findLocationById(any())).thenAnswer(invocation -> Optional.of(misplaced));
+
+        // Steps
+        final long moved = rebalancer.rebalance("shard-0");
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(2L, moved),
+                () -> assertEquals(3L, rebalancer.status().scanned()),
+                () -> assertEquals(2.0, meterRegistry.get("rococo.files.shards.moved").counter().count())
+        );
+        verify(contentStore, never()).move(placed, "shard-0");
+        verify(contentStore).move(misplaced, "shard-0");
+        verify(contentStore).move(lastMisplaced, "shard-0");
+        verify(contentStore, never()).delete(any());
+
+    }
+
+    @Test
+    @DisplayName("Rebalance: deletes moved content when content was deleted meanwhile")
+    void rebalance_DeletesMovedContent_IfContentWasDeleted() throws InterruptedException {
+
+        // Stubs
+        when(contentStore.findLocationsAfter("shard-0", new UUID(0, 0), BATCH_SIZE)).thenReturn(List.of(misplaced));
+        when(contentStore.shardOf(misplaced)).thenReturn("shard-1");
+        when(contentStore.move(misplaced, "shard-0")).thenReturn(true);
+        when(contentRepository.findLocationById(misplaced.contentId())).thenReturn(Optional.empty());
+
+        // Steps
+        rebalancer.rebalance("shard-0");
+
+        // Assertions
+        verify(contentStore).delete(misplaced);
+
+    }
+
+    private static ImageContentLocation location(long id) {
+        return new ImageContentLocation(new UUID(0, id), "hash-" + id, ContentStorage.SHARDED_DATABASE);
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.files.config.AppProperty;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.rococo.files.data.store.ImageContentStore;
+import org.rococo.files.data.store.ImageContentStores;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ImageContentMigrator: Module tests")
+class ImageContentMigratorTests {
+
+    private static final UUID FIRST_CONTENT_ID = new UUID(0, 0);
+
+    @Mock
+    private ImageContentRepository contentRepository;
+
+    @Mock
+    private ImageContentStores contentStores;
+
+    @Mock
+    private ImageContentStore databaseStore;
+
+    @Mock
+    private ImageContentStore fileSystemStore;
+
+    private MeterRegistry meterRegistry;
+
+    private ImageContentMigrator contentMigrator;
+
+    private ImageContentLocation location;
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        when(contentStores.writeStore()).thenReturn(fileSystemStore);
+        when(fileSystemStore.storage()).thenReturn(ContentStorage.FILE_SYSTEM);
+        contentMigrator = new ImageContentMigrator(
+                contentRepository,
+                contentStores,
+                TransactionOperations.withoutTransaction(),
+                meterRegistry);
+
+        location = new ImageContentLocation(UUID.randomUUID(), "hash", ContentStorage.DATABASE);
+
+    }
+
+    @Test
+    @DisplayName("MigrateBatch: copies bytes, points content to target storage and deletes source bytes")
+    void migrateBatch_MovesContent() {
+
+        // Data
+        final var data = new byte[]{1, 2, 3};
+
+        // Stubs
+        when(contentRepository.findIdsByStorageForUpdate("DATABASE", FIRST_CONTENT_ID, AppProperty.CONTENT_MIGRATION_BATCH_SIZE))
+                .thenReturn(List.of(location.contentId()));
+        when(contentRepository.findAllLocationsByIdIn(List.of(location.contentId()))).thenReturn(List.of(location));
+        when(contentStores.get(ContentStorage.DATABASE)).thenReturn(databaseStore);
+        when(databaseStore.read(location)).thenReturn(Optional.of(ByteBuffer.wrap(data)));
+        when(contentRepository.moveStorage(location.contentId(), "DATABASE", "FILE_SYSTEM")).thenReturn(1);
+
+        // Steps
+        var result = contentMigrator.migrateBatch(ContentStorage.DATABASE, ContentStorage.FILE_SYSTEM, FIRST_CONTENT_ID);
+
+        // Assertions
+        var inOrder = inOrder(contentRepository, contentStores);
+        inOrder.verify(contentStores).write(
+                new ImageContentLocation(location.contentId(), location.contentHash(), ContentStorage.FILE_SYSTEM), data);
+        inOrder.verify(contentRepository).moveStorage(location.contentId(), "DATABASE", "FILE_SYSTEM");
+        inOrder.verify(contentStores).deleteAfterCommit(location);
+        assertEquals(new ImageContentMigrator.Batch(location.contentId(), 1, 0), result);
+        assertEquals(1.0, meterRegistry.get("rococo.files.content.migrated").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("MigrateBatch: skips content without bytes in source storage")
+    void migrateBatch_SkipsContent_IfNoBytesInSource() {
+
+        // Stubs
+        when(contentRepository.findIdsByStorageForUpdate("DATABASE", FIRST_CONTENT_ID, AppProperty.CONTENT_MIGRATION_BATCH_SIZE))
+                .thenReturn(List.of(location.contentId()));
+        when(contentRepository.findAllLocationsByIdIn(List.of(location.contentId()))).thenReturn(List.of(location));
+        when(contentStores.get(ContentStorage.DATABASE)).thenReturn(databaseStore);
+        when(databaseStore.read(location)).thenReturn(Optional.empty());
+
+        // Steps
+        var result = contentMigrator.migrateBatch(ContentStorage.DATABASE, ContentStorage.FILE_SYSTEM, FIRST_CONTENT_ID);
+
+        // Assertions
+        assertEquals(new ImageContentMigrator.Batch(location.contentId(), 0, 1), result);
+        verify(contentStores, never()).write(any(), any());
+        verify(contentRepository, never()).moveStorage(any(), anyString(), anyString());
+
+    }
+
+    @Test
+    @DisplayName("Migrate: stops when nothing is left to move")
+    void migrate_Stops_IfNothingLeft() {
+
+        // Stubs
+        when(contentRepository.findIdsByStorageForUpdate(anyString(), any(), anyInt())).thenReturn(List.of());
+
+        // Steps
+        contentMigrator.migrate();
+        contentMigrator.migrate();
+
+        // Assertions
+        verify(contentRepository, times(1)).findIdsByStorageForUpdate("DATABASE", FIRST_CONTENT_ID, AppProperty.CONTENT_MIGRATION_BATCH_SIZE);
+
+    }
+
+    @Test
+    @DisplayName("Migrate: moves contents after batch of contents without bytes and stops after pass moving nothing")
+    void migrate_MovesContentsAfterUnreadableBatch() {
+
+        // Data
+        final var data = new byte[]{1, 2, 3};
+        final var unreadable = new ImageContentLocation(new UUID(0, 1), "unreadable", ContentStorage.DATABASE);
+        final var readable = new ImageContentLocation(new UUID(0, 2), "readable", ContentStorage.DATABASE);
+
+        // Stubs
+        when(contentRepository.findIdsByStorageForUpdate(anyString(), any(), anyInt())).thenReturn(List.of());
+        when(contentRepository.findIdsByStorageForUpdate("DATABASE", FIRST_CONTENT_ID, AppProperty.CONTENT_MIGRATION_BATCH_SIZE))
+                .thenReturn(List.of(unreadable.contentId()));
+        when(contentRepository.findIdsByStorageForUpdate("DATABASE", unreadable.contentId(), AppProperty.CONTENT_MIGRATION_BATCH_SIZE))
+                .thenReturn(List.of(readable.contentId()), List.of());
+        when(contentRepository.findAllLocationsByIdIn(List.of(unreadable.contentId()))).thenReturn(List.of(unreadable));
+        when(contentRepository.findAllLocationsByIdIn(List.of(readable.contentId()))).thenReturn(List.of(readable));
+        when(contentStores.get(ContentStorage.DATABASE)).thenReturn(databaseStore);
+        when(databaseStore.read(unreadable)).thenReturn(Optional.empty());
+        when(databaseStore.read(readable)).thenReturn(Optional.of(ByteBuffer.wrap(data)));
+        when(contentRepository.moveStorage(readable.contentId(), "DATABASE", "FILE_SYSTEM")).thenReturn(1);
+
+        // Steps
+        for (int i = 0; i < 6; i++)
+            contentMigrator.migrate();
+
+        // Assertions
+        verify(contentRepository).moveStorage(readable.contentId(), "DATABASE", "FILE_SYSTEM");
+        verify(contentRepository, never()).moveStorage(eq(unreadable.contentId()), anyString(), anyString());
+        verify(contentRepository, times(2)).findIdsByStorageForUpdate("DATABASE", FIRST_CONTENT_ID, AppProperty.CONTENT_MIGRATION_BATCH_SIZE);
+        verify(contentRepository, times(2)).findIdsByStorageForUpdate("DATABASE", unreadable.contentId(), AppProperty.CONTENT_MIGRATION_BATCH_SIZE);
+
+    }
+
+}
@@ -0,0 +1,358 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.files.data.entity.ContentStorage;
+import org.rococo.files.data.entity.ImageContentData;
+import org.rococo.files.data.entity.ImageContentEntity;
+import org.rococo.files.data.entity.ImageContentLocation;
+import org.rococo.files.data.entity.ImageMetadataEntity;
+import org.rococo.files.data.entity.ImageRenditionEntity;
+import org.rococo.files.data.entity.Rendition;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.rococo.files.data.repository.ImageRenditionRepository;
+import org.rococo.files.data.repository.ThumbnailTaskRepository;
+import org.rococo.files.data.store.ImageContentStore;
+import org.rococo.files.data.store.ImageContentStores;
+import org.rococo.files.util.HashUtil;
+import org.rococo.files.util.ImageUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ImageContentService: Module tests")
+class ImageContentServiceTests {
+
+    private static final String IMAGE = "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg";
+
+    @Mock
+    private ImageContentRepository contentRepository;
+
+    @Mock
+    private ImageRenditionRepository renditionRepository;
+
+    @Mock
+    private ImageContentStores contentStores;
+
+    @Mock
+    private ImageContentStore writeStore;
+
+    @Mock
+    private ThumbnailCache thumbnailCache;
+
+    @Mock
+    private ThumbnailTaskRepository taskRepository;
+
+    private MeterRegistry meterRegistry;
+
+    private ImageContentService contentService;
+
+    private UUID contentId;
+    private ImageContentEntity storedContent;
+    private ImageMetadataEntity metadata;
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        contentService = new ImageContentService(contentRepository, renditionRepository, contentStores, thumbnailCache, taskRepository, meterRegistry);
+
+        contentId = UUID.randomUUID();
+        storedContent = ImageContentEntity.builder()
+                .id(contentId)
+                .build();
+
+        final var data = ImageUtil.decodeDataUri(IMAGE);
+        final var contentHash = HashUtil.getHash(data);
+        metadata = ImageMetadataEntity.builder()
+                .format("png")
+                .contentHash(contentHash)
+                .content(ImageContentEntity.builder()
+                        .contentHash(contentHash)
+                        .data(data)
+                        .build())
+                .build();
+
+    }
+
+    @Test
+    @DisplayName("Acquire: reuses stored content with same hash without queueing thumbnail")
+    void acquire_ReusesStoredContent_IfHashExists() {
+
+        // Stubs
+        when(contentRepository.findIdByContentHash(metadata.getContentHash())).thenReturn(Optional.of(contentId));
+        when(contentRepository.incrementRefCount(contentId)).thenReturn(1);
+        when(contentRepository.getReferenceById(contentId)).thenReturn(storedContent);
+
+        // Steps
+        var result = contentService.acquire(metadata);
+
+        // Assertions
+        assertAll(
+                () -> assertSame(storedContent, result),
+                () -> assertEquals(1.0, dedupCount("hit")),
+                () -> assertEquals(0.0, dedupCount("miss"))
+        );
+        verify(contentRepository, never()).insertOrAcquire(anyString());
+        verify(taskRepository, never()).enqueue(any(), anyString());
+
+    }
+
+    @Test
+    @DisplayName("Acquire: stores new content and queues thumbnail when hash not exists")
+    void acquire_StoresNewContent_IfHashNotExists() {
+
+        // Stubs
+        when(contentRepository.findIdByContentHash(metadata.getContentHash())).thenReturn(Optional.empty());
+        when(contentRepository.insertOrAcquire(metadata.getContentHash())).thenReturn(contentId);
+        when(contentStores.writeStore()).thenReturn(writeStore);
+        when(writeStore.storage()).thenReturn(ContentStorage.FILE_SYSTEM);
+        when(contentRepository.claimStorage(contentId, ContentStorage.FILE_SYSTEM)).thenReturn(1);
+        when(contentRepository.getReferenceById(contentId)).thenReturn(storedContent);
+
+        // Steps
+        var result = contentService.acquire(metadata);
+
+        // Assertions
+        assertAll(
+                () -> assertSame(storedContent, result),
+                () -> assertEquals(0.0, dedupCount("hit")),
+                () -> assertEquals(1.0, dedupCount("miss"))
+        );
+        verify(contentRepository, never()).incrementRefCount(any());
+        verify(contentStores).write(
+                new ImageContentLocation(contentId, metadata.getContentHash(), ContentStorage.FILE_SYSTEM),
+                metadata.getContent().getData());
+        verify(taskRepository).enqueue(contentId, "png");
+
+    }
+
+    @Test
+    @DisplayName("Acquire: stores new content when content with same hash was deleted concurrently")
+    void acquire_StoresNewContent_IfStoredContentWasDeleted() {
+
+        // Stubs
+        when(contentRepository.findIdByContentHash(metadata.getContentHash())).thenReturn(Optional.of(contentId));
+        when(contentRepository.incrementRefCount(contentId)).thenReturn(0);
+        when(contentRepository.insertOrAcquire(metadata.getContentHash())).thenReturn(contentId);
+        when(contentStores.writeStore()).thenReturn(writeStore);
+        when(writeStore.storage()).thenReturn(ContentStorage.DATABASE);
+        when(contentRepository.claimStorage(contentId, ContentStorage.DATABASE)).thenReturn(1);
+        when(contentRepository.getReferenceById(contentId)).thenReturn(storedContent);
+
+        // Steps
+        contentService.acquire(metadata);
+
+        // Assertions
+        verify(contentRepository).insertOrAcquire(metadata.getContentHash());
+        verify(contentStores).write(any(), eq(metadata.getContent().getData()));
+        assertEquals(1.0, dedupCount("miss"));
+
+    }
+
+    @Test
+    @DisplayName("Acquire: does not write bytes when the same content was stored concurrently")
+    void acquire_DoesNotWriteBytes_IfContentWasStoredConcurrently() {
+
+        // Stubs
+        when(contentRepository.findIdByContentHash(metadata.getContentHash())).thenReturn(Optional.empty());
+        when(contentRepository.insertOrAcquire(metadata.getContentHash())).thenReturn(contentId);
+        when(contentStores.writeStore()).thenReturn(writeStore);
+        when(writeStore.storage()).thenReturn(ContentStorage.DATABASE);
+        when(contentRepository.claimStorage(contentId, ContentStorage.DATABASE)).thenReturn(0);
+        when(contentRepository.getReferenceById(contentId)).thenReturn(storedContent);
+
+        // Steps
+        contentService.acquire(metadata);
+
+        // Assertions
+        verify(contentStores, never()).write(any(), any());
+        verify(taskRepository, never()).enqueue(any(), anyString());
+
+    }
+
+    @Test
+    @DisplayName("Release: decrements references and deletes unreferenced content")
+    void release_DecrementsAndDeletesUnreferencedContent() {
+
+        // Data
+        final var location = new ImageContentLocation(contentId, "hash", ContentStorage.FILE_SYSTEM);
+
+        // Stubs
+        when(contentRepository.findLocationById(contentId)).thenReturn(Optional.of(location));
+        when(contentRepository.deleteIfUnreferenced(contentId)).thenReturn(1);
+
+        // Steps
+        contentService.release(storedContent);
+
+        // Assertions
+        var inOrder = inOrder(contentRepository, contentStores);
+        inOrder.verify(contentRepository).flush();
+        inOrder.verify(contentRepository).decrementRefCount(contentId);
+        inOrder.verify(contentRepository).deleteIfUnreferenced(contentId);
+        inOrder.verify(contentStores).deleteAfterCommit(location);
+        verify(thumbnailCache).invalidate(contentId);
+
+    }
+
+    @Test
+    @DisplayName("Release: keeps bytes of still referenced content")
+    void release_KeepsBytes_IfContentIsReferenced() {
+
+        // Stubs
+        when(contentRepository.deleteIfUnreferenced(contentId)).thenReturn(0);
+
+        // Steps
+        contentService.release(storedContent);
+
+        // Assertions
+        verify(contentStores, never()).deleteAfterCommit(any());
+
+    }
+
+    @Test
+    @DisplayName("FindData: reads thumbnails without original bytes")
+    void findData_ReadsThumbnailsWithoutOriginals() {
+
+        // Data
+        final var thumbnail = new byte[]{1};
+
+        // Stubs
+        when(contentRepository.findAllThumbnailsByIdIn(Set.of(contentId)))
+                .thenReturn(List.of(new ImageContentData(contentId, thumbnail)));
+
+        // Steps
+        var result = contentService.findData(List.of(contentId), Rendition.THUMBNAIL);
+
+        // Assertions
+        assertEquals(ByteBuffer.wrap(thumbnail), result.get(contentId));
+        verify(thumbnailCache).put(contentId, thumbnail);
+        verifyNoInteractions(contentStores);
+
+    }
+
+    @Test
+    @DisplayName("FindData: reads cached thumbnails without database")
+    void findData_ReadsCachedThumbnails() {
+
+        // Data
+        final var thumbnail = ByteBuffer.wrap(new byte[]{1});
+
+        // Stubs
+        when(thumbnailCache.getAllPresent(List.of(contentId))).thenReturn(Map.of(contentId, thumbnail));
+
+        // Steps
+        var result = contentService.findData(List.of(contentId), Rendition.THUMBNAIL);
+
+        // Assertions
+        assertSame(thumbnail, result.get(contentId));
+        verify(contentRepository, never()).findAllThumbnailsByIdIn(any());
+        verifyNoInteractions(contentStores);
+
+    }
+
+    @Test
+    @DisplayName("FindData: reads originals only for content without requested rendition")
+    void findData_ReadsOriginals_IfRenditionNotGenerated() {
+
+        // Data
+        final var otherContentId = UUID.randomUUID();
+        final var rendition = new byte[]{1};
+        final var original = new byte[]{2};
+
+        // Stubs
+        when(renditionRepository.findAllByContentIdInAndRendition(List.of(contentId, otherContentId), Rendition.SMALL))
+                .thenReturn(List.of(ImageRenditionEntity.builder()
+                        .contentId(contentId)
+                        .rendition(Rendition.SMALL)
+                        .data(rendition)
+                        .build()));
+        when(contentStores.readAll(Set.of(otherContentId)))
+                .thenReturn(Map.of(otherContentId, ByteBuffer.wrap(original)));
+
+        // Steps
+        var result = contentService.findData(List.of(contentId, otherContentId), Rendition.SMALL);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(ByteBuffer.wrap(rendition), result.get(contentId)),
+                () -> assertEquals(ByteBuffer.wrap(original), result.get(otherContentId))
+        );
+
+    }
+
+    @Test
+    @DisplayName("FindData: returns nothing for content without placeholder")
+    void findData_ReturnsNothing_IfPlaceholderNotGenerated() {
+
+        // Data
+        final var otherContentId = UUID.randomUUID();
+        final var placeholder = "LxH27k2swxX8mHWWjtf7gJfjfQfj".getBytes(StandardCharsets.US_ASCII);
+
+        // Stubs
+        when(contentRepository.findAllPlaceholdersByIdIn(List.of(contentId, otherContentId)))
+                .thenReturn(List.of(new ImageContentData(contentId, placeholder)));
+
+        // Steps
+        var result = contentService.findData(List.of(contentId, otherContentId), Rendition.PLACEHOLDER);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(ByteBuffer.wrap(placeholder), result.get(contentId)),
+                () -> assertFalse(result.containsKey(otherContentId))
+        );
+        verify(contentRepository, never()).findAllThumbnailsByIdIn(any());
+        verifyNoInteractions(contentStores);
+
+    }
+
+    @Test
+    @DisplayName("FindData: reads originals when original is requested")
+    void findData_ReadsOriginals_IfOriginalRequested() {
+
+        // Data
+        final var original = new byte[]{2};
+
+        // Stubs
+        when(contentStores.readAll(Set.of(contentId)))
+                .thenReturn(Map.of(contentId, ByteBuffer.wrap(original)));
+
+        // Steps
+        var result = contentService.findData(List.of(contentId), Rendition.ORIGINAL);
+
+        // Assertions
+        assertEquals(ByteBuffer.wrap(original), result.get(contentId));
+        verify(contentRepository, never()).findAllThumbnailsByIdIn(any());
+        verifyNoInteractions(renditionRepository);
+
+    }
+
+    private double dedupCount(String result) {
+        return meterRegistry.get("rococo.files.image.dedup")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+}
@@ -3,35 +3,57 @@ package org.rococo.files.service;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.rococo.files.data.entity.EntityType;
 import org.rococo.files.data.entity.ImageContentEntity;
 import org.rococo.files.data.entity.ImageMetadataEntity;
+import org.rococo.files.data.entity.Rendition;
 import org.rococo.files.data.repository.ImageMetadataRepository;
 import org.rococo.files.ex.BadRequestException;
 import org.rococo.files.ex.ImageAlreadyExistsException;
 import org.rococo.files.ex.ImageNotFoundException;
 import org.rococo.files.specs.ImageSpecs;
+import org.rococo.files.util.DataUriDecoder.DecodedImage;
+import org.rococo.files.util.ImageUtil;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.files.*;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
 
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,15 +67,36 @@ class ImageGrpcServiceTests {
     @Mock
     private ImageMetadataRepository metadataRepository;
 
+    @Mock
+    private ImageContentService contentService;
+
     @Mock
     private ImageSpecs imageSpecs;
 
+    @Mock
+    private ImageNormalizer imageNormalizer;
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
     @Mock
     private StreamObserver<ImageGrpcResponse> imageResponseObserver;
 
     @Mock
     private StreamObserver<Empty> emptyResponseObserver;
 
+    @Mock
+    private StreamObserver<ImageDownloadChunk> downloadResponseObserver;
+
+    @Mock
+    private StreamObserver<ImageMutationsGrpcResponse> mutationResponseObserver;
+
+    @Mock
+    private StreamObserver<StatusType> statusResponseObserver;
+
+    @Mock
+    private StreamObserver<ImageMetadataGrpcResponse> metadataResponseObserver;
+
     @InjectMocks
     private ImageGrpcService imageService;
 
@@ -70,10 +113,15 @@ class ImageGrpcServiceTests {
 
         entityId = UUID.randomUUID();
 
+        ReflectionTestUtils.setField(imageService, "mutationParallelism", 2);
+        imageService.startMutationPool();
+
+        lenient().when(imageNormalizer.normalize(any(DecodedImage.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
         final var contentEntity = ImageContentEntity.builder()
                 .id(UUID.randomUUID())
-                .data(IMAGE.getBytes(StandardCharsets.UTF_8))
-                .thumbnailData(THUMBNAIL_IMAGE.getBytes(StandardCharsets.UTF_8))
+                .data(ImageUtil.decodeDataUri(IMAGE))
+                .thumbnailData(ImageUtil.decodeDataUri(THUMBNAIL_IMAGE))
                 .build();
 
         metadataEntity = ImageMetadataEntity.builder()
@@ -116,24 +164,74 @@ class ImageGrpcServiceTests {
 
     }
 
+    @AfterEach
+    void tearDown() {
+        imageService.shutdown();
+    }
+
     @Test
     @DisplayName("AddImage: add new image")
     void addImage_Success() {
 
         // Stubs
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(metadataEntity.getContent());
         when(metadataRepository.save(any(ImageMetadataEntity.class))).thenReturn(metadataEntity);
 
         // Steps
         imageService.addImage(addRequest, emptyResponseObserver);
 
         // Assertions
-        verify(metadataRepository).save(any(ImageMetadataEntity.class));
+        verify(contentService).acquire(any(ImageMetadataEntity.class));
+        verify(metadataRepository).save(argThat(metadata -> metadata.getContent() == metadataEntity.getContent()));
         verify(emptyResponseObserver).onNext(Empty.getDefaultInstance());
         verify(emptyResponseObserver).onCompleted();
         verify(emptyResponseObserver, never()).onError(any());
 
     }
 
+    @Test
+    @DisplayName("AddImage: stores normalized image")
+    void addImage_StoresNormalizedImage() {
+
+        // Data
+        final var normalized = ImageUtil.decodeDataUri(UPDATED_IMAGE);
+
+        // Stubs
+        when(imageNormalizer.normalize(any(DecodedImage.class)))
+                .thenReturn(new DecodedImage("jpeg", normalized, "normalized-hash"));
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(metadataEntity.getContent());
+
+        // Steps
+        imageService.addImage(addRequest, emptyResponseObserver);
+
+        // Assertions
+        verify(imageNormalizer).normalize(argThat(image -> image.format().equals("png")));
+        verify(metadataRepository).save(argThat(metadata ->
+                metadata.getFormat().equals("jpeg")
+                        && metadata.getContentHash().equals("normalized-hash")
+                        && metadata.getByteSize() == normalized.length));
+
+    }
+
+    @Test
+    @DisplayName("AddImage: normalizes image before transaction is opened")
+    void addImage_NormalizesImage_BeforeTransaction() {
+
+        // Stubs
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(metadataEntity.getContent());
+
+        // Steps
+        imageService.addImage(addRequest, emptyResponseObserver);
+
+        // Assertions
+        final var inOrder = inOrder(imageNormalizer, transactionOperations, contentService, metadataRepository);
+        inOrder.verify(imageNormalizer).normalize(any(DecodedImage.class));
+        inOrder.verify(transactionOperations).executeWithoutResult(any());
+        inOrder.verify(contentService).acquire(any(ImageMetadataEntity.class));
+        inOrder.verify(metadataRepository).save(any(ImageMetadataEntity.class));
+
+    }
+
     @Test
     @DisplayName("AddImage: throws ImageAlreadyExistsException when image exists with same entity_type and entity_id")
     void addImage_ThrowsImageAlreadyExistsException_IfImageExists() {
@@ -166,6 +264,7 @@ class ImageGrpcServiceTests {
         assertThrows(BadRequestException.class, () ->
                 imageService.addImage(invalidRequest, emptyResponseObserver));
 
+        verify(contentService, never()).acquire(any());
         verify(metadataRepository, never()).save(any());
         verify(emptyResponseObserver, never()).onNext(any());
         verify(emptyResponseObserver, never()).onCompleted();
@@ -187,6 +286,7 @@ class ImageGrpcServiceTests {
         assertThrows(BadRequestException.class, () ->
                 imageService.addImage(invalidRequest, emptyResponseObserver));
 
+        verify(contentService, never()).acquire(any());
         verify(metadataRepository, never()).save(any());
         verify(emptyResponseObserver, never()).onNext(any());
         verify(emptyResponseObserver, never()).onCompleted();
@@ -208,6 +308,7 @@ class ImageGrpcServiceTests {
         assertThrows(BadRequestException.class, () ->
                 imageService.addImage(invalidRequest, emptyResponseObserver));
 
+        verify(contentService, never()).acquire(any());
         verify(metadataRepository, never()).save(any());
         verify(emptyResponseObserver, never()).onNext(any());
         verify(emptyResponseObserver, never()).onCompleted();
@@ -229,6 +330,7 @@ class ImageGrpcServiceTests {
         assertThrows(BadRequestException.class, () ->
                 imageService.addImage(invalidRequest, emptyResponseObserver));
 
+        verify(contentService, never()).acquire(any());
         verify(metadataRepository, never()).save(any());
         verify(emptyResponseObserver, never()).onNext(any());
         verify(emptyResponseObserver, never()).onCompleted();
@@ -252,6 +354,31 @@ class ImageGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("FindByEntityTypeAndId: returns not modified image without content when known hash is current")
+    void findByEntityTypeAndId_ReturnsNotModified_IfKnownHashIsCurrent() {
+
+        // Data
+        final var request = findRequest.toBuilder()
+                .setKnownHash(metadataEntity.getContentHash())
+                .build();
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.of(metadataEntity));
+
+        // Steps
+        imageService.findByEntityTypeAndId(request, imageResponseObserver);
+
+        // Assertions
+        verify(imageResponseObserver).onNext(argThat(response -> response.getNotModified()
+                && response.getContent().isEmpty()
+                && response.getContentHash().equals(metadataEntity.getContentHash())));
+        verify(imageResponseObserver).onCompleted();
+        verifyNoInteractions(contentService);
+
+    }
+
     @Test
     @DisplayName("FindByEntityTypeAndId: throws ImageNotFoundException when image not exists")
     void findByEntityTypeAndId_ThrowsImageNotFoundException_IfImageDoesNotExist() {
@@ -309,6 +436,112 @@ class ImageGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("ExistsImage: returns whether image exists without reading its content")
+    void existsImage_ReturnsStatus() {
+
+        // Stubs
+        when(metadataRepository.existsByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(true);
+
+        // Steps
+        imageService.existsImage(findRequest, statusResponseObserver);
+
+        // Assertions
+        verify(statusResponseObserver).onNext(StatusType.newBuilder().setStatus(true).build());
+        verify(statusResponseObserver).onCompleted();
+        verifyNoInteractions(contentService);
+
+    }
+
+    @Test
+    @DisplayName("GetImageMetadata: returns hash, format, size and dimensions without content")
+    void getImageMetadata_ReturnsMetadata() {
+
+        // Data
+        metadataEntity.setWidth(640)
+                .setHeight(480)
+                .setByteSize(1024L);
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.of(metadataEntity));
+
+        // Steps
+        imageService.getImageMetadata(findRequest, metadataResponseObserver);
+
+        // Assertions
+        verify(metadataResponseObserver).onNext(ImageMetadataGrpcResponse.newBuilder()
+                .setEntityId(entityId.toString())
+                .setContentHash("hash")
+                .setFormat("png")
+                .setSize(1024)
+                .setWidth(640)
+                .setHeight(480)
+                .build());
+        verify(metadataResponseObserver).onCompleted();
+        verifyNoInteractions(contentService);
+
+    }
+
+    @Test
+    @DisplayName("GetImageMetadata: throws ImageNotFoundException when image not exists")
+    void getImageMetadata_ThrowsImageNotFoundException_IfImageNotExists() {
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.empty());
+
+        // Steps & Assertions
+        assertThrows(ImageNotFoundException.class, () ->
+                imageService.getImageMetadata(findRequest, metadataResponseObserver));
+
+        verify(metadataResponseObserver, never()).onNext(any());
+
+    }
+
+    @Test
+    @DisplayName("GetImagesMetadata: returns metadata of found images by one query without content")
+    void getImagesMetadata_ReturnsMetadataOfFoundImages() {
+
+        // Stubs
+        when(metadataRepository.findAll(ArgumentMatchers.<Specification<ImageMetadataEntity>>any()))
+                .thenReturn(List.of(metadataEntity));
+
+        // Steps
+        imageService.getImagesMetadata(findAllRequest, metadataResponseObserver);
+
+        // Assertions
+        verify(metadataRepository).findAll(ArgumentMatchers.<Specification<ImageMetadataEntity>>any());
+        verify(metadataResponseObserver).onNext(ImageMetadataGrpcResponse.newBuilder()
+                .setEntityId(entityId.toString())
+                .setContentHash("hash")
+                .setFormat("png")
+                .build());
+        verify(metadataResponseObserver).onCompleted();
+        verifyNoInteractions(contentService);
+
+    }
+
+    @Test
+    @DisplayName("GetImagesMetadata: returns nothing without query when no entity ids are given")
+    void getImagesMetadata_ReturnsNothing_IfNoEntityIds() {
+
+        // Data
+        final var request = FindImagesGrpcRequest.newBuilder()
+                .setEntityType(EntityTypeGrpc.USER)
+                .build();
+
+        // Steps
+        imageService.getImagesMetadata(request, metadataResponseObserver);
+
+        // Assertions
+        verifyNoInteractions(metadataRepository);
+        verify(metadataResponseObserver, never()).onNext(any());
+        verify(metadataResponseObserver).onCompleted();
+
+    }
+
     @Test
     @DisplayName("FindAllByEntityTypeAndIds: returns images")
     void findAllByEntityTypeAndIds_Success() {
@@ -326,6 +559,123 @@ class ImageGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("FindAllByEntityTypeAndIds: returns content in requested rendition")
+    void findAllByEntityTypeAndIds_ReturnsRequestedRendition() {
+
+        // Data
+        final var contentId = metadataEntity.getContent().getId();
+        final var renditionData = new byte[]{1, 2, 3};
+        final var request = findAllRequest.toBuilder()
+                .setRendition(RenditionGrpc.SMALL)
+                .build();
+
+        // Stubs
+        when(metadataRepository.findAll(ArgumentMatchers.<Specification<ImageMetadataEntity>>any()))
+                .thenReturn(List.of(metadataEntity));
+        when(contentService.findData(List.of(contentId), Rendition.SMALL))
+                .thenReturn(Map.of(contentId, ByteBuffer.wrap(renditionData)));
+
+        // Steps
+        imageService.findAllByEntityTypeAndIds(request, imageResponseObserver);
+
+        // Assertions
+        verify(imageResponseObserver).onNext(argThat(response -> response.getContent().equals(
+                ImageUtil.toDataUri("png", renditionData))));
+        verify(imageResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindAllByEntityTypeAndIds: returns raw content with its format when requested")
+    void findAllByEntityTypeAndIds_ReturnsRawContent_IfRequested() {
+
+        // Data
+        final var contentId = metadataEntity.getContent().getId();
+        final var renditionData = new byte[]{1, 2, 3};
+        final var request = findAllRequest.toBuilder()
+                .setRendition(RenditionGrpc.SMALL)
+                .setRawContent(true)
+                .build();
+
+        // Stubs
+        when(metadataRepository.findAll(ArgumentMatchers.<Specification<ImageMetadataEntity>>any()))
+                .thenReturn(List.of(metadataEntity));
+        when(contentService.findData(List.of(contentId), Rendition.SMALL))
+                .thenReturn(Map.of(contentId, ByteBuffer.wrap(renditionData)));
+
+        // Steps
+        imageService.findAllByEntityTypeAndIds(request, imageResponseObserver);
+
+        // Assertions
+        verify(imageResponseObserver).onNext(argThat(response ->
+                response.getContent().equals(ByteString.copyFrom(renditionData))
+                        && response.getFormat().equals("png")));
+        verify(imageResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindAllByEntityTypeAndIds: requests thumbnails when original is not requested")
+    void findAllByEntityTypeAndIds_RequestsThumbnails_IfOriginalNotRequested() {
+
+        // Data
+        final var request = findAllRequest.toBuilder()
+                .setIsOriginal(false)
+                .build();
+
+        // Stubs
+        when(metadataRepository.findAll(ArgumentMatchers.<Specification<ImageMetadataEntity>>any()))
+                .thenReturn(List.of(metadataEntity));
+
+        // Steps
+        imageService.findAllByEntityTypeAndIds(request, imageResponseObserver);
+
+        // Assertions
+        verify(contentService).findData(List.of(metadataEntity.getContent().getId()), Rendition.THUMBNAIL);
+
+    }
+
+    @Test
+    @DisplayName("FindAllByEntityTypeAndIds: skips content of images with current known hashes")
+    void findAllByEntityTypeAndIds_SkipsContent_IfKnownHashIsCurrent() {
+
+        // Data
+        final var otherContentId = UUID.randomUUID();
+        final var otherMetadata = ImageMetadataEntity.builder()
+                .entityType(EntityType.USER)
+                .entityId(UUID.randomUUID())
+                .format("png")
+                .contentHash("other-hash")
+                .content(ImageContentEntity.builder().id(otherContentId).build())
+                .build();
+        final var otherData = new byte[]{1, 2, 3};
+        final var request = findAllRequest.toBuilder()
+                .addEntityIds(otherMetadata.getEntityId().toString())
+                .putKnownHashes(entityId.toString(), metadataEntity.getContentHash())
+                .putKnownHashes(otherMetadata.getEntityId().toString(), "outdated-hash")
+                .build();
+
+        // Stubs
+        when(metadataRepository.findAll(ArgumentMatchers.<Specification<ImageMetadataEntity>>any()))
+                .thenReturn(List.of(metadataEntity, otherMetadata));
+        when(contentService.findData(List.of(otherContentId), Rendition.ORIGINAL))
+                .thenReturn(Map.of(otherContentId, ByteBuffer.wrap(otherData)));
+
+        // Steps
+        imageService.findAllByEntityTypeAndIds(request, imageResponseObserver);
+
+        // Assertions
+        verify(imageResponseObserver).onNext(argThat(response -> response.getNotModified()
+                && response.getEntityId().equals(entityId.toString())
+                && response.getContent().isEmpty()));
+        verify(imageResponseObserver).onNext(argThat(response -> !response.getNotModified()
+                && response.getContentHash().equals("other-hash")
+                && response.getContent().equals(ImageUtil.toDataUri("png", otherData))));
+        verify(imageResponseObserver).onCompleted();
+
+    }
+
     @Test
     @DisplayName("FindAllByEntityTypeAndIds: returns no images when images not found")
     void findAllByEntityTypeAndIds_ReturnsNoImages_IfNoneFound() {
@@ -343,25 +693,34 @@ class ImageGrpcServiceTests {
     }
 
     @Test
-    @DisplayName("UpdateImage: updates metadata and content")
+    @DisplayName("UpdateImage: points metadata to new content and releases old content")
     void updateImage_Success_IfImageExists_AndRequestContainsContent() {
 
+        // Data
+        final var oldContent = metadataEntity.getContent();
+        final var newContent = ImageContentEntity.builder()
+                .id(UUID.randomUUID())
+                .build();
+
         // Stubs
         when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
                 .thenReturn(Optional.of(metadataEntity));
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(newContent);
 
         // Steps
         imageService.updateImage(updateRequest, emptyResponseObserver);
 
         // Assertions
         verify(metadataRepository).findByEntityTypeAndEntityId(EntityType.USER, entityId);
+        verify(contentService).release(oldContent);
+        assertSame(newContent, metadataEntity.getContent());
         verify(emptyResponseObserver).onNext(Empty.getDefaultInstance());
         verify(emptyResponseObserver).onCompleted();
 
     }
 
     @Test
-    @DisplayName("UpdateImage: clears metadata and content when request has no content")
+    @DisplayName("UpdateImage: deletes image when request has no content")
     void updateImage_Success_IfImageExists_AndRequestHasNoContent() {
 
         // Data
@@ -380,6 +739,8 @@ class ImageGrpcServiceTests {
 
         // Assertions
         verify(metadataRepository).findByEntityTypeAndEntityId(EntityType.USER, entityId);
+        verify(metadataRepository).delete(metadataEntity);
+        verify(contentService).release(metadataEntity.getContent());
         verify(emptyResponseObserver).onNext(Empty.getDefaultInstance());
         verify(emptyResponseObserver).onCompleted();
 
@@ -457,6 +818,7 @@ class ImageGrpcServiceTests {
 
         // Assertions
         verify(metadataRepository).delete(metadataEntity);
+        verify(contentService).release(metadataEntity.getContent());
         verify(emptyResponseObserver).onNext(Empty.getDefaultInstance());
         verify(emptyResponseObserver).onCompleted();
 
@@ -475,6 +837,7 @@ class ImageGrpcServiceTests {
 
         // Assertions
         verify(metadataRepository, never()).delete(any(ImageMetadataEntity.class));
+        verify(contentService, never()).release(any());
         verify(emptyResponseObserver).onNext(Empty.getDefaultInstance());
         verify(emptyResponseObserver).onCompleted();
 
@@ -522,4 +885,454 @@ class ImageGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("UploadImage: adds image sent in several chunks")
+    void uploadImage_AddsImage() {
+
+        // Stubs
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(metadataEntity.getContent());
+
+        // Steps
+        var uploadObserver = imageService.uploadImage(emptyResponseObserver);
+        uploadObserver.onNext(headerChunk(false));
+        for (int i = 0; i < IMAGE.length(); i += 10)
+            uploadObserver.onNext(dataChunk(IMAGE.substring(i, Math.min(i + 10, IMAGE.length()))));
+        uploadObserver.onCompleted();
+
+        // Assertions
+        var metadataCaptor = ArgumentCaptor.forClass(ImageMetadataEntity.class);
+        verify(contentService).acquire(metadataCaptor.capture());
+        assertAll(
+                () -> assertEquals(EntityType.USER, metadataCaptor.getValue().getEntityType()),
+                () -> assertEquals(entityId, metadataCaptor.getValue().getEntityId()),
+                () -> assertEquals("png", metadataCaptor.getValue().getFormat()),
+                () -> assertArrayEquals(ImageUtil.decodeDataUri(IMAGE), metadataCaptor.getValue().getContent().getData()),
+                () -> assertEquals(1, metadataCaptor.getValue().getWidth()),
+                () -> assertEquals(1, metadataCaptor.getValue().getHeight()),
+                () -> assertEquals(ImageUtil.decodeDataUri(IMAGE).length, metadataCaptor.getValue().getByteSize())
+        );
+        verify(metadataRepository).save(any(ImageMetadataEntity.class));
+        verify(emptyResponseObserver).onNext(Empty.getDefaultInstance());
+        verify(emptyResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("UploadImage: adds image sent as raw bytes when header has format")
+    void uploadImage_AddsImage_IfHeaderHasFormat() {
+
+        // Data
+        final var data = ImageUtil.decodeDataUri(IMAGE);
+
+        // Stubs
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(metadataEntity.getContent());
+
+        // Steps
+        var uploadObserver = imageService.uploadImage(emptyResponseObserver);
+        uploadObserver.onNext(ImageChunk.newBuilder()
+                .setHeader(headerChunk(false).getHeader().toBuilder()
+                        .setFormat("png"))
+                .build());
+        for (int i = 0; i < data.length; i += 10)
+            uploadObserver.onNext(ImageChunk.newBuilder()
+                    .setData(ByteString.copyFrom(data, i, Math.min(10, data.length - i)))
+                    .build());
+        uploadObserver.onCompleted();
+
+        // Assertions
+        var metadataCaptor = ArgumentCaptor.forClass(ImageMetadataEntity.class);
+        verify(contentService).acquire(metadataCaptor.capture());
+        assertAll(
+                () -> assertEquals("png", metadataCaptor.getValue().getFormat()),
+                () -> assertArrayEquals(data, metadataCaptor.getValue().getContent().getData()),
+                () -> assertEquals(1, metadataCaptor.getValue().getWidth())
+        );
+        verify(emptyResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("UploadImage: updates existing image when header has update flag")
+    void uploadImage_UpdatesImage_IfHeaderHasUpdateFlag() {
+
+        // Data
+        final var oldContent = metadataEntity.getContent();
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.of(metadataEntity));
+
+        // Steps
+        var uploadObserver = imageService.uploadImage(emptyResponseObserver);
+        uploadObserver.onNext(headerChunk(true));
+        uploadObserver.onNext(dataChunk(UPDATED_IMAGE));
+        uploadObserver.onCompleted();
+
+        // Assertions
+        verify(contentService).acquire(any(ImageMetadataEntity.class));
+        verify(contentService).release(oldContent);
+        verify(metadataRepository, never()).save(any());
+        verify(emptyResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("UploadImage: throws BadRequestException when content sent before header")
+    void uploadImage_ThrowsBadRequestException_IfContentSentBeforeHeader() {
+
+        // Steps & Assertions
+        var uploadObserver = imageService.uploadImage(emptyResponseObserver);
+        assertThrows(BadRequestException.class, () -> uploadObserver.onNext(dataChunk(IMAGE)));
+
+        verify(emptyResponseObserver, never()).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("UploadImage: throws BadRequestException when content has invalid pattern")
+    void uploadImage_ThrowsBadRequestException_IfContentHasInvalidPattern() {
+
+        // Steps & Assertions
+        var uploadObserver = imageService.uploadImage(emptyResponseObserver);
+        uploadObserver.onNext(headerChunk(false));
+        uploadObserver.onNext(dataChunk("image"));
+        assertThrows(BadRequestException.class, uploadObserver::onCompleted);
+
+        verify(contentService, never()).acquire(any());
+        verify(emptyResponseObserver, never()).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("DownloadImage: streams whole original in chunks after header")
+    void downloadImage_StreamsWholeImageInChunks() {
+
+        // Data
+        final var data = new byte[2 * ImageDownloadStreamer.CHUNK_SIZE + 100];
+        new Random(42).nextBytes(data);
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.of(metadataEntity));
+        when(contentService.findOriginal(metadataEntity.getContent().getId()))
+                .thenReturn(Optional.of(ByteBuffer.wrap(data).asReadOnlyBuffer()));
+
+        // Steps
+        imageService.downloadImage(downloadRequest(0, 0), downloadResponseObserver);
+
+        // Assertions
+        var chunkCaptor = ArgumentCaptor.forClass(ImageDownloadChunk.class);
+        verify(downloadResponseObserver, times(4)).onNext(chunkCaptor.capture());
+        verify(downloadResponseObserver).onCompleted();
+
+        final var chunks = chunkCaptor.getAllValues();
+        final var downloaded = ByteString.copyFrom(chunks.subList(1, chunks.size()).stream()
+                .map(ImageDownloadChunk::getData)
+                .toList());
+        assertAll(
+                () -> assertEquals("png", chunks.getFirst().getHeader().getFormat()),
+                () -> assertEquals(data.length, chunks.getFirst().getHeader().getSize()),
+                () -> assertEquals(data.length, chunks.getFirst().getHeader().getLength()),
+                () -> assertArrayEquals(data, downloaded.toByteArray())
+        );
+
+    }
+
+    @Test
+    @DisplayName("DownloadImage: streams requested byte range")
+    void downloadImage_StreamsByteRange() {
+
+        // Data
+        final var data = metadataEntity.getContent().getData();
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.of(metadataEntity));
+        when(contentService.findOriginal(metadataEntity.getContent().getId()))
+                .thenReturn(Optional.of(ByteBuffer.wrap(data).asReadOnlyBuffer()));
+
+        // Steps
+        imageService.downloadImage(downloadRequest(10, 20), downloadResponseObserver);
+
+        // Assertions
+        var chunkCaptor = ArgumentCaptor.forClass(ImageDownloadChunk.class);
+        verify(downloadResponseObserver, times(2)).onNext(chunkCaptor.capture());
+        verify(downloadResponseObserver).onCompleted();
+        assertArrayEquals(
+                Arrays.copyOfRange(data, 10, 30),
+                chunkCaptor.getAllValues().getLast().getData().toByteArray());
+
+    }
+
+    @Test
+    @DisplayName("DownloadImage: sends only not modified header when known hash is current")
+    void downloadImage_SendsNotModifiedHeader_IfKnownHashIsCurrent() {
+
+        // Data
+        final var request = downloadRequest(0, 0).toBuilder()
+                .setKnownHash(metadataEntity.getContentHash())
+                .build();
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.of(metadataEntity));
+
+        // Steps
+        imageService.downloadImage(request, downloadResponseObserver);
+
+        // Assertions
+        verify(downloadResponseObserver).onNext(argThat(chunk -> chunk.getHeader().getNotModified()
+                && chunk.getHeader().getContentHash().equals(metadataEntity.getContentHash())));
+        verify(downloadResponseObserver).onCompleted();
+        verifyNoInteractions(contentService);
+
+    }
+
+    @Test
+    @DisplayName("DownloadImage: throws BadRequestException when byte range is out of image")
+    void downloadImage_ThrowsBadRequestException_IfRangeIsOutOfImage() {
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.of(metadataEntity));
+        when(contentService.findOriginal(metadataEntity.getContent().getId()))
+                .thenReturn(Optional.of(ByteBuffer.wrap(metadataEntity.getContent().getData())));
+
+        // Steps & Assertions
+        assertThrows(BadRequestException.class, () ->
+                imageService.downloadImage(downloadRequest(Integer.MAX_VALUE, 0), downloadResponseObserver));
+
+        verify(downloadResponseObserver, never()).onNext(any());
+
+    }
+
+    @Test
+    @DisplayName("DownloadImage: throws ImageNotFoundException when image not exists")
+    void downloadImage_ThrowsImageNotFoundException_IfImageNotExists() {
+
+        // Stubs
+        when(metadataRepository.findByEntityTypeAndEntityId(EntityType.USER, entityId))
+                .thenReturn(Optional.empty());
+
+        // Steps & Assertions
+        assertThrows(ImageNotFoundException.class, () ->
+                imageService.downloadImage(downloadRequest(0, 0), downloadResponseObserver));
+
+        verify(downloadResponseObserver, never()).onNext(any());
+
+    }
+
+    @Test
+    @DisplayName("MutateImages: applies mixed operations in one batch and returns result of each")
+    void mutateImages_AppliesMixedOperations() {
+
+        // Data
+        final var newEntityId = UUID.randomUUID();
+        final var missingEntityId = UUID.randomUUID();
+        final var oldContent = metadataEntity.getContent();
+        ReflectionTestUtils.setField(imageService, "mutationBatchSize", 10);
+
+        // Stubs
+        when(metadataRepository.findAllByEntityTypeAndEntityIdIn(eq(EntityType.USER), anyCollection()))
+                .thenReturn(List.of(metadataEntity));
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(oldContent);
+
+        // Steps
+        var mutationObserver = imageService.mutateImages(mutationResponseObserver);
+        mutationObserver.onNext(addMutation(newEntityId, IMAGE));
+        mutationObserver.onNext(updateMutation(entityId, UPDATED_IMAGE));
+        mutationObserver.onNext(deleteMutation(missingEntityId));
+        mutationObserver.onCompleted();
+
+        // Assertions
+        var responseCaptor = ArgumentCaptor.forClass(ImageMutationsGrpcResponse.class);
+        verify(mutationResponseObserver).onNext(responseCaptor.capture());
+        verify(mutationResponseObserver).onCompleted();
+        verify(metadataRepository).findAllByEntityTypeAndEntityIdIn(EntityType.USER,
+                Set.of(newEntityId, entityId, missingEntityId));
+        verify(metadataRepository).save(argThat(metadata -> metadata.getEntityId().equals(newEntityId)));
+        verify(contentService).release(oldContent);
+
+        final var results = responseCaptor.getValue().getResultsList();
+        assertAll(
+                () -> assertEquals(List.of(newEntityId.toString(), entityId.toString(), missingEntityId.toString()),
+                        results.stream().map(ImageMutationResultGrpc::getEntityId).toList()),
+                () -> assertTrue(results.stream().allMatch(result -> result.getStatus() == MutationStatusGrpc.APPLIED))
+        );
+
+    }
+
+    @Test
+    @DisplayName("MutateImages: decodes contents on mutation pool and not on common pool")
+    void mutateImages_DecodesContentsOnMutationPool() {
+
+        // Data
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        ReflectionTestUtils.setField(imageService, "mutationBatchSize", 10);
+
+        // Stubs
+        when(imageNormalizer.normalize(any(DecodedImage.class))).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            return invocation.getArgument(0);
+        });
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(metadataEntity.getContent());
+
+        // Steps
+        var mutationObserver = imageService.mutateImages(mutationResponseObserver);
+        mutationObserver.onNext(addMutation(UUID.randomUUID(), IMAGE));
+        mutationObserver.onNext(addMutation(UUID.randomUUID(), UPDATED_IMAGE));
+        mutationObserver.onCompleted();
+
+        // Assertions
+        assertAll(
+                () -> assertFalse(threads.isEmpty()),
+                () -> assertTrue(threads.stream().noneMatch(thread -> thread.contains("commonPool")))
+        );
+
+    }
+
+    @Test
+    @DisplayName("MutateImages: reports failed operations without aborting the others")
+    void mutateImages_ReportsFailedOperations() {
+
+        // Data
+        final var missingEntityId = UUID.randomUUID();
+        ReflectionTestUtils.setField(imageService, "mutationBatchSize", 10);
+
+        // Stubs
+        when(metadataRepository.findAllByEntityTypeAndEntityIdIn(eq(EntityType.USER), anyCollection()))
+                .thenReturn(List.of(metadataEntity));
+
+        // Steps
+        var mutationObserver = imageService.mutateImages(mutationResponseObserver);
+        mutationObserver.onNext(addMutation(entityId, IMAGE));
+        mutationObserver.onNext(updateMutation(missingEntityId, UPDATED_IMAGE));
+        mutationObserver.onNext(addMutation(UUID.randomUUID(), "invalid image"));
+        mutationObserver.onNext(deleteMutation(entityId));
+        mutationObserver.onCompleted();
+
+        // Assertions
+        var responseCaptor = ArgumentCaptor.forClass(ImageMutationsGrpcResponse.class);
+        verify(mutationResponseObserver).onNext(responseCaptor.capture());
+        verify(metadataRepository, never()).save(any());
+        verify(metadataRepository).delete(metadataEntity);
+        assertEquals(
+                List.of(MutationStatusGrpc.ALREADY_EXISTS,
+                        MutationStatusGrpc.NOT_FOUND,
+                        MutationStatusGrpc.BAD_REQUEST,
+                        MutationStatusGrpc.APPLIED),
+                responseCaptor.getValue().getResultsList().stream()
+                        .map(ImageMutationResultGrpc::getStatus)
+                        .toList());
+
+    }
+
+    @Test
+    @DisplayName("MutateImages: applies operations one by one when batch transaction fails")
+    void mutateImages_AppliesOneByOne_IfBatchFails() {
+
+        // Data
+        final var conflictingEntityId = UUID.randomUUID();
+        final var newEntityId = UUID.randomUUID();
+        ReflectionTestUtils.setField(imageService, "mutationBatchSize", 10);
+
+        // Stubs
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .doThrow(new DataIntegrityViolationException("duplicate key"))
+                .doCallRealMethod()
+                .when(transactionOperations).execute(any());
+        when(contentService.acquire(any(ImageMetadataEntity.class))).thenReturn(metadataEntity.getContent());
+
+        // Steps
+        var mutationObserver = imageService.mutateImages(mutationResponseObserver);
+        mutationObserver.onNext(addMutation(conflictingEntityId, IMAGE));
+        mutationObserver.onNext(addMutation(newEntityId, IMAGE));
+        mutationObserver.onCompleted();
+
+        // Assertions
+        var responseCaptor = ArgumentCaptor.forClass(ImageMutationsGrpcResponse.class);
+        verify(mutationResponseObserver).onNext(responseCaptor.capture());
+        verify(transactionOperations, times(3)).execute(any());
+        verify(metadataRepository).save(argThat(metadata -> metadata.getEntityId().equals(newEntityId)));
+        assertEquals(
+                List.of(MutationStatusGrpc.ALREADY_EXISTS, MutationStatusGrpc.APPLIED),
+                responseCaptor.getValue().getResultsList().stream()
+                        .map(ImageMutationResultGrpc::getStatus)
+                        .toList());
+
+    }
+
+    @Test
+    @DisplayName("MutateImages: applies full batch before stream is completed")
+    void mutateImages_AppliesFullBatch_BeforeStreamCompleted() {
+
+        // Data
+        ReflectionTestUtils.setField(imageService, "mutationBatchSize", 2);
+
+        // Steps
+        var mutationObserver = imageService.mutateImages(mutationResponseObserver);
+        mutationObserver.onNext(deleteMutation(UUID.randomUUID()));
+        mutationObserver.onNext(deleteMutation(UUID.randomUUID()));
+        mutationObserver.onNext(deleteMutation(UUID.randomUUID()));
+
+        // Assertions
+        verify(metadataRepository).findAllByEntityTypeAndEntityIdIn(eq(EntityType.USER), anyCollection());
+        verify(mutationResponseObserver, never()).onNext(any());
+
+        mutationObserver.onCompleted();
+        verify(metadataRepository, times(2)).findAllByEntityTypeAndEntityIdIn(eq(EntityType.USER), anyCollection());
+        verify(mutationResponseObserver).onNext(argThat(response -> response.getResultsCount() == 3));
+
+    }
+
+    private DownloadImageGrpcRequest downloadRequest(long offset, long length) {
+        return DownloadImageGrpcRequest.newBuilder()
+                .setEntityType(EntityTypeGrpc.USER)
+                .setEntityId(entityId.toString())
+                .setOffset(offset)
+                .setLength(length)
+                .build();
+    }
+
+    private ImageMutationGrpcRequest addMutation(UUID entityId, String image) {
+        return ImageMutationGrpcRequest.newBuilder()
+                .setAdd(ImageGrpcRequest.newBuilder()
+                        .setEntityType(EntityTypeGrpc.USER)
+                        .setEntityId(entityId.toString())
+                        .setContent(ByteString.copyFromUtf8(image)))
+                .build();
+    }
+
+    private ImageMutationGrpcRequest updateMutation(UUID entityId, String image) {
+        return ImageMutationGrpcRequest.newBuilder()
+                .setUpdate(ImageGrpcRequest.newBuilder()
+                        .setEntityType(EntityTypeGrpc.USER)
+                        .setEntityId(entityId.toString())
+                        .setContent(ByteString.copyFromUtf8(image)))
+                .build();
+    }
+
+    private ImageMutationGrpcRequest deleteMutation(UUID entityId) {
+        return ImageMutationGrpcRequest.newBuilder()
+                .setDelete(FindImageGrpcRequest.newBuilder()
+                        .setEntityType(EntityTypeGrpc.USER)
+                        .setEntityId(entityId.toString()))
+                .build();
+    }
+
+    private ImageChunk headerChunk(boolean isUpdate) {
+        return ImageChunk.newBuilder()
+                .setHeader(ImageUploadHeader.newBuilder()
+                        .setEntityType(EntityTypeGrpc.USER)
+                        .setEntityId(entityId.toString())
+                        .setIsUpdate(isUpdate))
+                .build();
+    }
+
+    private static ImageChunk dataChunk(String data) {
+        return ImageChunk.newBuilder()
+                .setData(ByteString.copyFromUtf8(data))
+                .build();
+    }
+
 }
@@ -0,0 +1,224 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.rococo.files.config.RenditionProperties;
+import org.rococo.files.util.DataUriDecoder.DecodedImage;
+import org.rococo.files.util.HashUtil;
+import org.rococo.files.util.ImageUtil;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ImageNormalizer: Module tests")
+class ImageNormalizerTests {
+
+    private MeterRegistry meterRegistry;
+
+    private ImageNormalizer imageNormalizer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        imageNormalizer = normalizer(true);
+    }
+
+    @Test
+    @DisplayName("Normalize: downscales image larger than max dimensions")
+    void normalize_DownscalesLargeImage() throws IOException {
+
+        // Data
+        final var original = decoded("jpg", gradient(3000, 1000, BufferedImage.TYPE_INT_RGB));
+
+        // Steps
+        final var result = imageNormalizer.normalize(original);
+
+        // Assertions
+        final var image = ImageUtil.readImage(result.data());
+        assertAll(
+                () -> assertEquals("jpg", result.format()),
+                () -> assertEquals(2560, image.getWidth()),
+                () -> assertEquals(853, image.getHeight()),
+                () -> assertEquals(HashUtil.getHash(result.data()), result.contentHash())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Normalize: strips metadata of image within max dimensions")
+    void normalize_StripsMetadata() throws IOException {
+
+        // Data
+        final var comment = new byte[32 * 1024];
+        new Random(42).nextBytes(comment);
+        final var jpeg = encode(gradient(400, 300, BufferedImage.TYPE_INT_RGB), "jpg");
+        final var original = decoded("jpeg", withJpegSegment(jpeg, 0xFE, comment));
+
+        // Steps
+        final var result = imageNormalizer.normalize(original);
+
+        // Assertions
+        assertAll(
+                () -> assertTrue(result.data().length <= jpeg.length),
+                () -> assertEquals(400, ImageUtil.readImage(result.data()).getWidth()),
+                () -> assertNotEquals(original.contentHash(), result.contentHash())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Normalize: does not re-encode image within max dimensions and without metadata")
+    void normalize_KeepsCleanImage() throws IOException {
+
+        // Data
+        final var original = decoded("jpeg", encode(gradient(400, 300, BufferedImage.TYPE_INT_RGB), "jpg"));
+
+        // Steps
+        final var result = imageNormalizer.normalize(original);
+
+        // Assertions
+        assertAll(
+                () -> assertSame(original, result),
+                () -> assertEquals(0, meterRegistry.get("rococo.files.resize.budget.wait").timer().count())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Normalize: stores opaque photo PNG as JPEG")
+    void normalize_ConvertsOpaquePhotoPngToJpeg() throws IOException {
+
+        // Data
+        final var photo = gradient(600, 400, BufferedImage.TYPE_INT_RGB);
+        final var random = new Random(42);
+        for (int y = 0; y < photo.getHeight(); y++)
+            for (int x = 0; x < photo.getWidth(); x++)
+                photo.setRGB(x, y, photo.getRGB(x, y) ^ random.nextInt(16));
+        final var original = decoded("png", encode(photo, "png"));
+
+        // Steps
+        final var result = imageNormalizer.normalize(original);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals("jpeg", result.format()),
+                () -> assertTrue(result.data().length * 2 < original.data().length),
+                () -> assertEquals(600, ImageUtil.readImage(result.data()).getWidth())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Normalize: keeps PNG with transparency in PNG")
+    void normalize_KeepsTransparentPng() throws IOException {
+
+        // Data
+        final var original = decoded("png", encode(gradient(600, 400, BufferedImage.TYPE_INT_ARGB), "png"));
+
+        // Steps
+        final var result = imageNormalizer.normalize(original);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals("png", result.format()),
+                () -> assertTrue(ImageUtil.hasAlpha(result.data()))
+        );
+
+    }
+
+    @Test
+    @DisplayName("Normalize: stores JPEG with EXIF orientation as is")
+    void normalize_KeepsRotatedJpeg() throws IOException {
+
+        // Data
+        final var original = decoded("jpeg", withJpegSegment(
+                encode(gradient(3000, 1000, BufferedImage.TYPE_INT_RGB), "jpg"), 0xE1, exif(6)));
+
+        // Steps & Assertions
+        assertSame(original, imageNormalizer.normalize(original));
+        assertEquals(1.0, meterRegistry.get("rococo.files.normalization.skipped").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Normalize: stores image as is when normalization is disabled")
+    void normalize_KeepsImage_IfDisabled() throws IOException {
+
+        // Data
+        final var original = decoded("jpg", encode(gradient(3000, 1000, BufferedImage.TYPE_INT_RGB), "jpg"));
+
+        // Steps & Assertions
+        assertSame(original, normalizer(false).normalize(original));
+
+    }
+
+    private ImageNormalizer normalizer(boolean enabled) {
+        return new ImageNormalizer(
+                new ImageResizer(DataSize.ofMegabytes(64), new RenditionProperties(), meterRegistry),
+                enabled,
+                2560,
+                2560,
+                0.85,
+                meterRegistry);
+    }
+
+    private static DecodedImage decoded(String format, byte[] data) {
+        return new DecodedImage(format, data, HashUtil.getHash(data));
+    }
+
+    private static BufferedImage gradient(int width, int height, int type) {
+        final var image = new BufferedImage(width, height, type);
+        final var graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(255, 200, 0, 128), width, height, Color.DARK_GRAY));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        final var result = new ByteArrayOutputStream();
+        ImageIO.write(image, format, result);
+        return result.toByteArray();
+    }
+
+    private static byte[] withJpegSegment(byte[] jpeg, int marker, byte[] payload) {
+        final var result = new ByteArrayOutputStream();
+        result.write(jpeg, 0, 2);
+        result.write(0xFF);
+        result.write(marker);
+        result.write((payload.length + 2) >> 8);
+        result.write((payload.length + 2) & 0xFF);
+        result.writeBytes(payload);
+        result.write(jpeg, 2, jpeg.length - 2);
+        return result.toByteArray();
+    }
+
+    private static byte[] exif(int orientation) {
+        return ByteBuffer.allocate(32)
+                .put("Exif\0\0MM".getBytes(StandardCharsets.US_ASCII))
+                .putShort((short) 42)
+                .putInt(8)
+                .putShort((short) 1)
+                .putShort((short) 0x0112)
+                .putShort((short) 3)
+                .putInt(1)
+                .putShort((short) orientation)
+                .putShort((short) 0)
+                .putInt(0)
+                .array();
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.rococo.files.config.RenditionProperties;
+import org.rococo.files.data.entity.Rendition;
+import org.rococo.files.util.ImageUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares bytes allocated by the current thread while all renditions of one camera sized photo are generated
+ * with the full decode and resize of the original for every rendition, which was used before {@link ImageResizer}.
+ * Run by gradle {@code benchmark} task, {@code test} task skips it.
+ */
+@Tag("benchmark")
+@DisplayName("ImageResizer: Allocation benchmark")
+class ImageResizerAllocationBenchmarkTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ImageResizerAllocationBenchmarkTests.class);
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final List<Rendition> RENDITIONS =
+            List.of(Rendition.THUMBNAIL, Rendition.SMALL, Rendition.MEDIUM, Rendition.LARGE);
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final RenditionProperties renditionProperties = new RenditionProperties();
+
+    private final ImageResizer imageResizer = new ImageResizer(DataSize.ofMegabytes(256), renditionProperties, new SimpleMeterRegistry());
+
+    private byte[] data;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        final var image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        final var graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, WIDTH, HEIGHT, Color.DARK_GRAY));
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        graphics.dispose();
+
+        final var result = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", result);
+        data = result.toByteArray();
+    }
+
+    @Test
+    @DisplayName("Resize: allocates several times less than full decode")
+    void resize_AllocatesLessThanFullDecode() {
+
+        // Steps
+        final var fullDecode = allocatedBytes("full decode", () -> {
+            final var image = ImageUtil.readImage(data);
+            RENDITIONS.stream().map(renditionProperties::of).forEach(box -> ImageUtil.resizeImage(image, "jpg",
+                    box.getWidth(), box.getHeight(), box.getQuality()));
+        });
+        final var subsampled = allocatedBytes("subsampled decode", () ->
+                assertEquals(RENDITIONS.size(), imageResizer.resize(ByteBuffer.wrap(data), "jpg", RENDITIONS).size()));
+
+        // Assertions
+        assertTrue(subsampled * 2 < fullDecode,
+                "Subsampled decode allocated %d bytes, full decode %d".formatted(subsampled, fullDecode));
+
+    }
+
+    private long allocatedBytes(String name, Runnable action) {
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            action.run();
+
+        final var before = threadBean.getCurrentThreadAllocatedBytes();
+        action.run();
+        final var allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+
+        LOG.info("{} of {}x{} image: {} bytes allocated ({} per pixel)",
+                name, WIDTH, HEIGHT, allocated, "%.2f".formatted((double) allocated / WIDTH / HEIGHT));
+        return allocated;
+
+    }
+
+}
@@ -0,0 +1,169 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.rococo.files.config.RenditionProperties;
+import org.rococo.files.data.entity.Rendition;
+import org.rococo.files.util.ImageUtil;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ImageResizer: Module tests")
+class ImageResizerTests {
+
+    private static final List<Rendition> RENDITIONS =
+            List.of(Rendition.THUMBNAIL, Rendition.SMALL, Rendition.MEDIUM, Rendition.LARGE);
+
+    private MeterRegistry meterRegistry;
+
+    private ImageResizer imageResizer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        imageResizer = new ImageResizer(DataSize.ofMegabytes(64), new RenditionProperties(), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Resize: generates renditions smaller than original fitted into their boxes")
+    void resize_GeneratesRenditionsSmallerThanOriginal() throws IOException {
+
+        // Data
+        final var original = image(1000, 500, "png");
+
+        // Steps
+        final var result = imageResizer.resize(ByteBuffer.wrap(original), "png", RENDITIONS);
+
+        // Assertions
+        final var thumbnail = ImageUtil.readImage(result.get(Rendition.THUMBNAIL));
+        final var medium = ImageUtil.readImage(result.get(Rendition.MEDIUM));
+        assertAll(
+                () -> assertEquals(List.of(Rendition.MEDIUM, Rendition.SMALL, Rendition.THUMBNAIL),
+                        List.copyOf(result.keySet())),
+                () -> assertEquals(100, thumbnail.getWidth()),
+                () -> assertEquals(50, thumbnail.getHeight()),
+                () -> assertEquals(800, medium.getWidth()),
+                () -> assertEquals(400, medium.getHeight())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Resize: fits renditions into configured boxes")
+    void resize_FitsRenditionsIntoConfiguredBoxes() throws IOException {
+
+        // Data
+        final var renditionProperties = new RenditionProperties();
+        renditionProperties.getSmall().setWidth(200);
+        final var resizer = new ImageResizer(DataSize.ofMegabytes(64), renditionProperties, meterRegistry);
+
+        // Steps
+        final var result = resizer.resize(ByteBuffer.wrap(image(1000, 500, "png")), "png", List.of(Rendition.SMALL));
+
+        // Assertions
+        final var small = ImageUtil.readImage(result.get(Rendition.SMALL));
+        assertAll(
+                () -> assertEquals(200, small.getWidth()),
+                () -> assertEquals(100, small.getHeight())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Resize: generates thumbnail even if original is smaller than thumbnail")
+    void resize_GeneratesThumbnail_IfOriginalIsSmall() throws IOException {
+
+        // Steps
+        final var result = imageResizer.resize(ByteBuffer.wrap(image(10, 10, "png")), "png", RENDITIONS);
+
+        // Assertions
+        assertEquals(List.of(Rendition.THUMBNAIL), List.copyOf(result.keySet()));
+
+    }
+
+    @Test
+    @DisplayName("Resize: reads image from direct buffer")
+    void resize_ReadsDirectBuffer() throws IOException {
+
+        // Data
+        final var original = image(400, 400, "jpg");
+        final var buffer = ByteBuffer.allocateDirect(original.length).put(original).flip();
+
+        // Steps
+        final var result = imageResizer.resize(buffer, "jpg", RENDITIONS);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(320, ImageUtil.readImage(result.get(Rendition.SMALL)).getWidth()),
+                () -> assertEquals(0, buffer.position())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Resize: releases heap budget after resize")
+    void resize_ReleasesHeapBudget() throws IOException {
+
+        // Steps
+        imageResizer.resize(ByteBuffer.wrap(image(2000, 1000, "png")), "png", RENDITIONS);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(0.0, meterRegistry.get("rococo.files.resize.heap.reserved").gauge().value()),
+                () -> assertEquals(1L, meterRegistry.get("rococo.files.resize.budget.wait").timer().count())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Resize: releases heap budget if image is broken")
+    void resize_ReleasesHeapBudget_IfImageIsBroken() throws IOException {
+
+        // Data
+        final var original = image(400, 400, "png");
+        final var broken = ByteBuffer.wrap(original, 0, original.length / 2);
+
+        // Steps & Assertions
+        assertThrows(UncheckedIOException.class, () -> imageResizer.resize(broken, "png", RENDITIONS));
+        assertEquals(0L, imageResizer.reservedBytes());
+
+    }
+
+    @Test
+    @DisplayName("Subsampling: keeps decoded image not smaller than largest rendition")
+    void subsampling_KeepsDecodedImageNotSmallerThanRendition() {
+        assertAll(
+                () -> assertEquals(3, ImageResizer.subsampling(6000, 4000, 1600, 1600)),
+                () -> assertEquals(2, ImageResizer.subsampling(4000, 3000, 1600, 1600)),
+                () -> assertEquals(1, ImageResizer.subsampling(1000, 500, 800, 800)),
+                () -> assertEquals(1, ImageResizer.subsampling(10, 10, 100, 100))
+        );
+    }
+
+    private static byte[] image(int width, int height, String format) throws IOException {
+        final var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final var graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.RED, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+
+        final var result = new ByteArrayOutputStream();
+        ImageIO.write(image, format, result);
+        return result.toByteArray();
+    }
+
+}
@@ -0,0 +1,170 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.files.client.EntityIdsGrpcClient;
+import org.rococo.files.data.entity.EntityType;
+import org.rococo.files.data.entity.ImageContentEntity;
+import org.rococo.files.data.entity.ImageMetadataEntity;
+import org.rococo.files.data.repository.ImageMetadataRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OrphanImageCollector: Module tests")
+class OrphanImageCollectorTests {
+
+    private static final int PAGE_SIZE = 2;
+
+    @Mock
+    private ImageMetadataRepository metadataRepository;
+
+    @Mock
+    private ImageContentService contentService;
+
+    @Mock
+    private EntityIdsGrpcClient entityIdsClient;
+
+    private MeterRegistry meterRegistry;
+
+    private OrphanImageCollector orphanCollector;
+
+    // ids in order of database
+    private final UUID firstId = new UUID(0, 1);
+    private final UUID secondId = new UUID(0, 2);
+    private final UUID thirdId = new UUID(0, 3);
+    private final UUID lastId = new UUID(Long.MIN_VALUE, 0);
+
+    @BeforeEach
+    void setUp() {
+
+        meterRegistry = new SimpleMeterRegistry();
+        orphanCollector = new OrphanImageCollector(
+                metadataRepository,
+                contentService,
+                entityIdsClient,
+                TransactionOperations.withoutTransaction(),
+                PAGE_SIZE,
+                50,
+                Duration.ZERO,
+                Duration.ofHours(1),
+                meterRegistry);
+
+    }
+
+    @Test
+    @DisplayName("Collect: deletes images of entities missing in owning service and counts reclaimed bytes")
+    void collect_DeletesOrphanedImages() throws InterruptedException {
+
+        // Data
+        final var sharedContent = new ImageContentEntity();
+        final var orphan = metadata(secondId, 100L, new ImageContentEntity());
+        final var orphanWithSharedContent = metadata(lastId, 200L, sharedContent);
+
+        // Stubs
+        when(entityIdsClient.findIdsPage(EntityType.ARTIST, null, PAGE_SIZE)).thenReturn(List.of(firstId, thirdId));
+        when(entityIdsClient.findIdsPage(EntityType.ARTIST, thirdId, PAGE_SIZE)).thenReturn(List.of());
+        when(metadataRepository.findEntityIdsAfter(eq(EntityType.ARTIST), eq(new UUID(0, 0)), any(LocalDateTime.class), eq(Limit.of(PAGE_SIZE))))
+                .thenReturn(List.of(firstId, secondId));
+        when(metadataRepository.findEntityIdsAfter(eq(EntityType.ARTIST), eq(secondId), any(LocalDateTime.class), eq(Limit.of(PAGE_SIZE))))
+                .thenReturn(List.of(thirdId, lastId));
+        when(metadataRepository.findEntityIdsAfter(eq(EntityType.ARTIST), eq(lastId), any(LocalDateTime.class), eq(Limit.of(PAGE_SIZE))))
+                .thenReturn(List.of());
+        when(metadataRepository.findAllByEntityTypeAndEntityIdIn(EntityType.ARTIST, List.of(secondId, lastId)))
+                .thenReturn(List.of(orphan, orphanWithSharedContent));
+        when(contentService.release(orphan.getContent())).thenReturn(true);
+        when(contentService.release(sharedContent)).thenReturn(false);
+
+        // Steps
+        final long reclaimed = orphanCollector.collect(EntityType.ARTIST);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(100L, reclaimed),
+                () -> assertEquals(2.0, meterRegistry.get("rococo.files.orphans.deleted").tag("entity_type", "ARTIST").counter().count()),
+                () -> assertEquals(100.0, meterRegistry.get("rococo.files.orphans.reclaimed").tag("entity_type", "ARTIST").counter().count())
+        );
+        verify(metadataRepository).delete(orphan);
+        verify(metadataRepository).delete(orphanWithSharedContent);
+        verify(entityIdsClient, times(2)).findIdsPage(eq(EntityType.ARTIST), any(), eq(PAGE_SIZE));
+
+    }
+
+    @Test
+    @DisplayName("Collect: keeps image replaced after it was listed")
+    void collect_KeepsRecentlyReplacedImage() throws InterruptedException {
+
+        // Data
+        final var replaced = metadata(secondId, 100L, new ImageContentEntity())
+                .setCreatedDate(LocalDateTime.now().plusMinutes(1));
+
+        // Stubs
+        when(entityIdsClient.findIdsPage(EntityType.MUSEUM, null, PAGE_SIZE)).thenReturn(List.of(firstId));
+        when(metadataRepository.findEntityIdsAfter(eq(EntityType.MUSEUM), eq(new UUID(0, 0)), any(LocalDateTime.class), eq(Limit.of(PAGE_SIZE))))
+                .thenReturn(List.of(secondId));
+        when(metadataRepository.findAllByEntityTypeAndEntityIdIn(EntityType.MUSEUM, List.of(secondId)))
+                .thenReturn(List.of(replaced));
+
+        // Steps
+        final long reclaimed = orphanCollector.collect(EntityType.MUSEUM);
+
+        // Assertions
+        assertEquals(0L, reclaimed);
+        verify(metadataRepository, never()).delete(any());
+        verifyNoInteractions(contentService);
+
+    }
+
+    @Test
+    @DisplayName("Collect: skips entity type when owning service returns no entities")
+    void collect_SkipsEntityType_IfOwningServiceHasNoEntities() throws InterruptedException {
+
+        // Stubs
+        when(entityIdsClient.findIdsPage(EntityType.USER, null, PAGE_SIZE)).thenReturn(List.of());
+
+        // Steps
+        final long reclaimed = orphanCollector.collect(EntityType.USER);
+
+        // Assertions
+        assertEquals(0L, reclaimed);
+        verifyNoInteractions(metadataRepository, contentService);
+
+    }
+
+    @Test
+    @DisplayName("DatabaseOrder: compares uuids as unsigned like PostgreSQL")
+    void databaseOrder_ComparesUnsigned() {
+        assertAll(
+                () -> assertTrue(OrphanImageCollector.DATABASE_ORDER.compare(thirdId, lastId) < 0),
+                () -> assertTrue(thirdId.compareTo(lastId) > 0)
+        );
+    }
+
+    private static ImageMetadataEntity metadata(UUID entityId, Long byteSize, ImageContentEntity content) {
+        return new ImageMetadataEntity()
+                .setEntityType(EntityType.ARTIST)
+                .setEntityId(entityId)
+                .setByteSize(byteSize)
+                .setContent(content)
+                .setCreatedDate(LocalDateTime.now().minusDays(1));
+    }
+
+}
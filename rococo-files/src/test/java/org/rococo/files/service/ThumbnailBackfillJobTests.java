@@ -0,0 +1,242 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.files.data.entity.BackfillStatus;
+import org.rococo.files.data.entity.ThumbnailBackfillEntity;
+import org.rococo.files.data.entity.ThumbnailSource;
+import org.rococo.files.data.repository.ImageMetadataRepository;
+import org.rococo.files.data.repository.ThumbnailBackfillRepository;
+import org.rococo.files.data.repository.ThumbnailTaskRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ThumbnailBackfillJob: Module tests")
+class ThumbnailBackfillJobTests {
+
+    @Mock
+    private ImageMetadataRepository metadataRepository;
+
+    @Mock
+    private ThumbnailBackfillRepository backfillRepository;
+
+    @Mock
+    private ThumbnailTaskRepository taskRepository;
+
+    @Mock
+    private ThumbnailWorker thumbnailWorker;
+
+    @Mock
+    private DataSource dataSource;
+
+    private MeterRegistry meterRegistry;
+
+    private ThumbnailBackfillJob backfillJob;
+
+    private ThumbnailBackfillEntity backfill;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        backfillJob = backfillJob(10);
+        backfill = ThumbnailBackfillEntity.builder()
+                .name(ThumbnailBackfillJob.NAME)
+                .status(BackfillStatus.RUNNING)
+                .lastContentId(new UUID(0, 0))
+                .startedDate(LocalDateTime.now())
+                .updatedDate(LocalDateTime.now())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        backfillJob.shutdown();
+    }
+
+    @Test
+    @DisplayName("RunBatch: regenerates batch and moves checkpoint to its last content")
+    void runBatch_RegeneratesBatchAndMovesCheckpoint() throws Exception {
+
+        // Data
+        final var first = new ThumbnailSource(UUID.randomUUID(), "png");
+        final var last = new ThumbnailSource(UUID.randomUUID(), "jpeg");
+
+        // Stubs
+        when(backfillRepository.findById(ThumbnailBackfillJob.NAME)).thenReturn(Optional.of(backfill));
+        when(metadataRepository.findThumbnailSourcesAfter(eq(backfill.getLastContentId()), any(Limit.class)))
+                .thenReturn(List.of(first, last));
+        when(backfillRepository.advance(any(), any(), any(), anyLong(), anyLong())).thenReturn(1);
+
+        // Steps
+        final var hasNext = backfillJob.runBatch();
+
+        // Assertions
+        assertTrue(hasNext);
+        verify(thumbnailWorker).generate(first.contentId(), "png");
+        verify(thumbnailWorker).generate(last.contentId(), "jpeg");
+        verify(backfillRepository).advance(ThumbnailBackfillJob.NAME, backfill.getLastContentId(), last.contentId(), 2, 0);
+        assertEquals(2.0, processedCount("success"));
+
+    }
+
+    @Test
+    @DisplayName("RunBatch: counts failed contents and continues")
+    void runBatch_CountsFailedContents() throws Exception {
+
+        // Data
+        final var broken = new ThumbnailSource(UUID.randomUUID(), "png");
+
+        // Stubs
+        when(backfillRepository.findById(ThumbnailBackfillJob.NAME)).thenReturn(Optional.of(backfill));
+        when(metadataRepository.findThumbnailSourcesAfter(any(), any())).thenReturn(List.of(broken));
+        when(thumbnailWorker.generate(broken.contentId(), "png")).thenThrow(new IllegalArgumentException("Unsupported image format"));
+        when(backfillRepository.advance(any(), any(), any(), anyLong(), anyLong())).thenReturn(1);
+
+        // Steps
+        final var hasNext = backfillJob.runBatch();
+
+        // Assertions
+        assertTrue(hasNext);
+        verify(backfillRepository).advance(ThumbnailBackfillJob.NAME, backfill.getLastContentId(), broken.contentId(), 0, 1);
+        assertEquals(1.0, processedCount("failure"));
+
+    }
+
+    @Test
+    @DisplayName("RunBatch: stops when checkpoint was moved by another instance")
+    void runBatch_Stops_IfCheckpointWasMoved() throws Exception {
+
+        // Stubs
+        when(backfillRepository.findById(ThumbnailBackfillJob.NAME)).thenReturn(Optional.of(backfill));
+        when(metadataRepository.findThumbnailSourcesAfter(any(), any()))
+                .thenReturn(List.of(new ThumbnailSource(UUID.randomUUID(), "png")));
+        when(backfillRepository.advance(any(), any(), any(), anyLong(), anyLong())).thenReturn(0);
+
+        // Steps & Assertions
+        assertFalse(backfillJob.runBatch());
+
+    }
+
+    @Test
+    @DisplayName("RunBatch: completes backfill when all contents are processed")
+    void runBatch_CompletesBackfill_IfNoContentsLeft() throws Exception {
+
+        // Stubs
+        when(backfillRepository.findById(ThumbnailBackfillJob.NAME)).thenReturn(Optional.of(backfill));
+        when(metadataRepository.findThumbnailSourcesAfter(any(), any())).thenReturn(List.of());
+
+        // Steps & Assertions
+        assertFalse(backfillJob.runBatch());
+        verify(backfillRepository).finishRunning(ThumbnailBackfillJob.NAME, BackfillStatus.COMPLETED);
+
+    }
+
+    @Test
+    @DisplayName("RunBatch: postpones batch while thumbnail queue is above the limit")
+    void runBatch_PostponesBatch_IfQueueIsFull() throws Exception {
+
+        // Stubs
+        when(taskRepository.countPending(anyInt())).thenReturn(11L);
+        when(backfillRepository.findById(ThumbnailBackfillJob.NAME)).thenReturn(Optional.of(backfill));
+
+        // Steps
+        final var hasNext = backfillJob.runBatch();
+
+        // Assertions
+        assertTrue(hasNext);
+        verifyNoInteractions(metadataRepository, thumbnailWorker);
+        assertEquals(1.0, meterRegistry.get("rococo.files.thumbnail.backfill.throttled").counter().count());
+
+    }
+
+    @Test
+    @DisplayName("Start: restarts completed backfill from the first content")
+    void start_RestartsCompletedBackfill() {
+
+        // Data
+        backfill.setStatus(BackfillStatus.COMPLETED).setLastContentId(UUID.randomUUID()).setProcessed(100);
+
+        // Stubs
+        when(backfillRepository.findById(ThumbnailBackfillJob.NAME)).thenReturn(Optional.of(backfill));
+
+        // Steps
+        backfillJob.start(false);
+
+        // Assertions
+        final ArgumentCaptor<ThumbnailBackfillEntity> captor = ArgumentCaptor.forClass(ThumbnailBackfillEntity.class);
+        verify(backfillRepository).save(captor.capture());
+        assertAll(
+                () -> assertEquals(BackfillStatus.RUNNING, captor.getValue().getStatus()),
+                () -> assertEquals(new UUID(0, 0), captor.getValue().getLastContentId()),
+                () -> assertEquals(0, captor.getValue().getProcessed())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Start: resumes stopped backfill from its checkpoint")
+    void start_ResumesStoppedBackfill() {
+
+        // Data
+        final var checkpoint = UUID.randomUUID();
+        backfill.setStatus(BackfillStatus.STOPPED).setLastContentId(checkpoint);
+
+        // Stubs
+        when(backfillRepository.findById(ThumbnailBackfillJob.NAME)).thenReturn(Optional.of(backfill));
+
+        // Steps
+        backfillJob.start(false);
+
+        // Assertions
+        verify(backfillRepository).save(argThat(saved ->
+                saved.getStatus() == BackfillStatus.RUNNING && saved.getLastContentId().equals(checkpoint)));
+
+    }
+
+    private ThumbnailBackfillJob backfillJob(long maxPendingTasks) {
+        return new ThumbnailBackfillJob(
+                metadataRepository,
+                backfillRepository,
+                taskRepository,
+                thumbnailWorker,
+                TransactionOperations.withoutTransaction(),
+                dataSource,
+                2,
+                2,
+                1.0,
+                maxPendingTasks,
+                Duration.ZERO,
+                meterRegistry);
+    }
+
+    private double processedCount(String result) {
+        return meterRegistry.get("rococo.files.thumbnail.backfill.processed")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+}
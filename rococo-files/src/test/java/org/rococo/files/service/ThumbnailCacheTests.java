@@ -0,0 +1,87 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ThumbnailCache: Module tests")
+class ThumbnailCacheTests {
+
+    private MeterRegistry meterRegistry;
+
+    private ThumbnailCache thumbnailCache;
+
+    private UUID contentId;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        thumbnailCache = new ThumbnailCache(DataSize.ofKilobytes(64), meterRegistry, Runnable::run);
+        contentId = UUID.randomUUID();
+    }
+
+    @Test
+    @DisplayName("GetAllPresent: returns read-only off-heap copies of cached thumbnails")
+    void getAllPresent_ReturnsCachedThumbnails() {
+
+        // Data
+        final var thumbnail = new byte[]{1, 2, 3};
+
+        // Steps
+        thumbnailCache.put(contentId, thumbnail);
+        var result = thumbnailCache.getAllPresent(List.of(contentId, UUID.randomUUID()));
+
+        // Assertions
+        final var cached = result.get(contentId);
+        assertAll(
+                () -> assertEquals(1, result.size()),
+                () -> assertEquals(ByteBuffer.wrap(thumbnail), cached),
+                () -> assertTrue(cached.isDirect()),
+                () -> assertTrue(cached.isReadOnly())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Invalidate: removes thumbnail from cache")
+    void invalidate_RemovesThumbnail() {
+
+        // Steps
+        thumbnailCache.put(contentId, new byte[]{1});
+        thumbnailCache.invalidate(contentId);
+
+        // Assertions
+        assertTrue(thumbnailCache.getAllPresent(List.of(contentId)).isEmpty());
+
+    }
+
+    @Test
+    @DisplayName("Metrics: exposes hits, misses and resident bytes")
+    void metrics_ExposeHitsMissesAndResidentBytes() {
+
+        // Steps
+        thumbnailCache.put(contentId, new byte[100]);
+        thumbnailCache.getAllPresent(List.of(contentId));
+        thumbnailCache.getAllPresent(List.of(UUID.randomUUID()));
+
+        // Assertions
+        assertAll(
+                () -> assertEquals(100.0, meterRegistry.get("rococo.files.thumbnail.cache.bytes").gauge().value()),
+                () -> assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "thumbnails").tag("result", "hit")
+                        .functionCounter().count()),
+                () -> assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "thumbnails").tag("result", "miss")
+                        .functionCounter().count())
+        );
+
+    }
+
+}
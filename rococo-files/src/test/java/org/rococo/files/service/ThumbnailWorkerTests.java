@@ -0,0 +1,206 @@
+package org.rococo.files.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.common.image.Blurhash;
+import org.rococo.files.config.AppProperty;
+import org.rococo.files.config.RenditionProperties;
+import org.rococo.files.data.entity.ImageRenditionEntity;
+import org.rococo.files.data.entity.Rendition;
+import org.rococo.files.data.entity.ThumbnailTaskEntity;
+import org.rococo.files.data.repository.ImageContentRepository;
+import org.rococo.files.data.repository.ImageRenditionRepository;
+import org.rococo.files.data.repository.ThumbnailTaskRepository;
+import org.rococo.files.data.store.ImageContentStores;
+import org.rococo.files.util.ImageUtil;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ThumbnailWorker: Module tests")
+class ThumbnailWorkerTests {
+
+    private static final String IMAGE = "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg";
+
+    @Mock
+    private ThumbnailTaskRepository taskRepository;
+
+    @Mock
+    private ImageContentRepository contentRepository;
+
+    @Mock
+    private ImageRenditionRepository renditionRepository;
+
+    @Mock
+    private ImageContentStores contentStores;
+
+    @Mock
+    private ThumbnailCache thumbnailCache;
+
+    private MeterRegistry meterRegistry;
+
+    private ThumbnailWorker thumbnailWorker;
+
+    private ThumbnailTaskEntity task;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        thumbnailWorker = new ThumbnailWorker(
+                taskRepository,
+                contentRepository,
+                renditionRepository,
+                contentStores,
+                thumbnailCache,
+                new ImageResizer(DataSize.ofMegabytes(64), new RenditionProperties(), meterRegistry),
+                TransactionOperations.withoutTransaction(),
+                meterRegistry);
+        task = ThumbnailTaskEntity.builder()
+                .contentId(UUID.randomUUID())
+                .format("png")
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        thumbnailWorker.shutdown();
+    }
+
+    @Test
+    @DisplayName("Process: stores generated thumbnail and removes task")
+    void process_StoresThumbnailAndRemovesTask() {
+
+        // Stubs
+        when(contentStores.read(task.getContentId()))
+                .thenReturn(Optional.of(ByteBuffer.wrap(ImageUtil.decodeDataUri(IMAGE))));
+
+        // Steps
+        thumbnailWorker.process(task);
+
+        // Assertions
+        verify(contentRepository).updateThumbnail(eq(task.getContentId()), any(byte[].class));
+        verify(renditionRepository).saveAll(List.of());
+        verify(taskRepository).deleteById(task.getContentId());
+        verify(thumbnailCache).invalidate(task.getContentId());
+        assertEquals(1.0, processedCount("success"));
+        assertEquals(1L, meterRegistry.get("rococo.files.thumbnail.resize").timer().count());
+
+    }
+
+    @Test
+    @DisplayName("Process: stores only renditions smaller than original")
+    void process_StoresRenditionsSmallerThanOriginal() throws Exception {
+
+        // Data
+        final var original = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(500, 400, BufferedImage.TYPE_INT_RGB), "png", original);
+
+        // Stubs
+        when(contentStores.read(task.getContentId())).thenReturn(Optional.of(ByteBuffer.wrap(original.toByteArray())));
+
+        // Steps
+        thumbnailWorker.process(task);
+
+        // Assertions
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ImageRenditionEntity>> renditionsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(renditionRepository).saveAll(renditionsCaptor.capture());
+        final var rendition = renditionsCaptor.getValue().getFirst();
+        final var renditionImage = ImageUtil.readImage(rendition.getData());
+        final ArgumentCaptor<byte[]> placeholderCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(contentRepository).updatePlaceholder(eq(task.getContentId()), placeholderCaptor.capture());
+        final var placeholder = new String(placeholderCaptor.getValue(), StandardCharsets.US_ASCII);
+        assertAll(
+                () -> assertEquals(28, placeholderCaptor.getValue().length),
+                () -> assertEquals(16, Blurhash.decode(placeholder, 4, 4).length),
+                () -> assertEquals(1, renditionsCaptor.getValue().size()),
+                () -> assertEquals(Rendition.SMALL, rendition.getRendition()),
+                () -> assertEquals(task.getContentId(), rendition.getContentId()),
+                () -> assertEquals(320, renditionImage.getWidth()),
+                () -> assertEquals(256, renditionImage.getHeight())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Process: does nothing when content was deleted")
+    void process_DoesNothing_IfContentWasDeleted() {
+
+        // Stubs
+        when(contentStores.read(task.getContentId())).thenReturn(Optional.empty());
+
+        // Steps
+        thumbnailWorker.process(task);
+
+        // Assertions
+        verify(contentRepository, never()).updateThumbnail(any(), any());
+        verify(taskRepository, never()).deleteById(any());
+
+    }
+
+    @Test
+    @DisplayName("Process: keeps task for retry when thumbnail generation fails")
+    void process_KeepsTask_IfResizeFails() {
+
+        // Stubs
+        when(contentStores.read(task.getContentId())).thenReturn(Optional.of(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+
+        // Steps
+        thumbnailWorker.process(task);
+
+        // Assertions
+        verify(contentRepository, never()).updateThumbnail(any(), any());
+        verify(taskRepository, never()).deleteById(any());
+        assertEquals(1.0, processedCount("failure"));
+
+    }
+
+    @Test
+    @DisplayName("Poll: leases available tasks and processes them")
+    void poll_LeasesAndProcessesAvailableTasks() {
+
+        // Stubs
+        when(taskRepository.findAvailableForUpdate(eq(AppProperty.THUMBNAIL_MAX_ATTEMPTS), anyInt()))
+                .thenReturn(List.of(task));
+        when(contentStores.read(task.getContentId())).thenReturn(Optional.empty());
+
+        // Steps
+        thumbnailWorker.poll();
+
+        // Assertions
+        verify(taskRepository).lease(List.of(task.getContentId()), AppProperty.THUMBNAIL_LEASE_SECONDS);
+        verify(contentStores, timeout(1000)).read(task.getContentId());
+
+    }
+
+    private double processedCount(String result) {
+        return meterRegistry.get("rococo.files.thumbnail.processed")
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+
+}
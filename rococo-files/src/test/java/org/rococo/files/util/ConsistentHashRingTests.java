@@ -0,0 +1,68 @@
+package org.rococo.files.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ConsistentHashRing: Module tests")
+class ConsistentHashRingTests {
+
+    private static final int KEYS = 10_000;
+
+    private final List<String> keys = IntStream.range(0, KEYS)
+            .mapToObj(i -> UUID.nameUUIDFromBytes(("key-" + i).getBytes()).toString())
+            .toList();
+
+    @Test
+    @DisplayName("NodeOf: spreads keys evenly over nodes")
+    void nodeOf_SpreadsKeysEvenly() {
+
+        // Data
+        final var ring = new ConsistentHashRing(List.of("shard-0", "shard-1", "shard-2"), 128);
+
+        // Steps
+        final Map<String, Integer> keysByNode = new HashMap<>();
+        keys.forEach(key -> keysByNode.merge(ring.nodeOf(key), 1, Integer::sum));
+
+        // Assertions
+        assertEquals(3, keysByNode.size());
+        keysByNode.values().forEach(count ->
+                assertTrue(count > KEYS / 4 && count < KEYS * 5 / 12, "Keys of node: " + count));
+
+    }
+
+    @Test
+    @DisplayName("NodeOf: moves keys only to added node")
+    void nodeOf_MovesKeysOnlyToAddedNode() {
+
+        // Data
+        final var ring = new ConsistentHashRing(List.of("shard-0", "shard-1", "shard-2"), 128);
+        final var extendedRing = new ConsistentHashRing(List.of("shard-0", "shard-1", "shard-2", "shard-3"), 128);
+
+        // Steps
+        final var movedKeys = keys.stream()
+                .filter(key -> !ring.nodeOf(key).equals(extendedRing.nodeOf(key)))
+                .toList();
+
+        // Assertions
+        assertAll(
+                () -> assertTrue(movedKeys.stream().allMatch(key -> extendedRing.nodeOf(key).equals("shard-3"))),
+                () -> assertTrue(movedKeys.size() > KEYS / 5 && movedKeys.size() < KEYS / 3, "Moved keys: " + movedKeys.size())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Constructor: throws IllegalArgumentException when ring has no nodes")
+    void constructor_ThrowsIllegalArgumentException_IfNoNodes() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 128));
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.rococo.files.util;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares bytes allocated by the current thread while one image goes in (data-URI to bytes and hash)
+ * and out (bytes to data-URI) with the string based way, which was used before {@link DataUriDecoder#decode}.
+ * Run by gradle {@code benchmark} task, {@code test} task skips it.
+ */
+@Tag("benchmark")
+@DisplayName("DataUriDecoder: Allocation benchmark")
+class DataUriAllocationBenchmarkTests {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataUriAllocationBenchmarkTests.class);
+
+    private static final String IMAGE_PATTERN = "^data:image\\/[a-z]{3,4};base64,[A-Za-z0-9+/]+={0,2}$";
+    private static final int IMAGE_SIZE = 2 * 1024 * 1024;
+    private static final int WARMUP_ITERATIONS = 5;
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private byte[] data;
+    private ByteString dataUri;
+
+    @BeforeEach
+    void setUp() {
+        data = new byte[IMAGE_SIZE];
+        new Random(42).nextBytes(data);
+        dataUri = ByteString.copyFromUtf8("data:image/png;base64," + Base64.getEncoder().encodeToString(data));
+    }
+
+    @Test
+    @DisplayName("Decode: allocates several times less than string based decoding")
+    void decode_AllocatesLessThanStringDecoding() {
+
+        // Steps
+        final var stringBased = allocatedBytes("string based ingest", () -> {
+            if (!dataUri.toString(Charset.defaultCharset()).matches(IMAGE_PATTERN))
+                throw new IllegalStateException();
+            final var content = dataUri.toString(Charset.defaultCharset());
+            final var decoded = Base64.getDecoder().decode(content.substring(content.indexOf(",") + 1));
+            assertEquals(HashUtil.getHash(data), HashUtil.getHash(decoded));
+        });
+        final var streaming = allocatedBytes("single pass ingest", () ->
+                assertArrayEquals(data, DataUriDecoder.decode(dataUri, Integer.MAX_VALUE).data()));
+
+        // Assertions
+        assertTrue(streaming * 3 < stringBased,
+                "Single pass ingest allocated %d bytes, string based %d".formatted(streaming, stringBased));
+
+    }
+
+    @Test
+    @DisplayName("ToDataUri: allocates several times less than copying encoding")
+    void toDataUri_AllocatesLessThanCopyingEncoding() {
+
+        // Steps
+        final var copying = allocatedBytes("copying egress", () -> {
+            final var prefix = "data:image/png;base64,".getBytes();
+            final var encoded = Base64.getEncoder().encode(data);
+            final var result = Arrays.copyOf(prefix, prefix.length + encoded.length);
+            System.arraycopy(encoded, 0, result, prefix.length, encoded.length);
+            assertEquals(dataUri.size(), ByteString.copyFrom(result).size());
+        });
+        final var wrapping = allocatedBytes("wrapping egress", () ->
+                assertEquals(dataUri.size(), ImageUtil.toDataUri("png", data).size()));
+
+        // Assertions
+        assertTrue(wrapping * 2.5 < copying,
+                "Wrapping egress allocated %d bytes, copying %d".formatted(wrapping, copying));
+
+    }
+
+    private long allocatedBytes(String name, Runnable action) {
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++)
+            action.run();
+
+        final var before = threadBean.getCurrentThreadAllocatedBytes();
+        action.run();
+        final var allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+
+        LOG.info("{} of {} bytes image: {} bytes allocated ({} per image byte)",
+                name, IMAGE_SIZE, allocated, "%.2f".formatted((double) allocated / IMAGE_SIZE));
+        return allocated;
+
+    }
+
+}
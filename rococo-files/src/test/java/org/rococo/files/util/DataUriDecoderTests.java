@@ -0,0 +1,147 @@
+package org.rococo.files.util;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.rococo.files.ex.BadRequestException;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("DataUriDecoder: Module tests")
+class DataUriDecoderTests {
+
+    @ParameterizedTest(name = "Case: part size = {0}")
+    @ValueSource(ints = {1, 3, 4, 7, 1024, 100_000})
+    @DisplayName("Finish: returns decoded bytes and hash regardless of how data-URI is split")
+    void finish_ReturnsDecodedImage_IfDataUriSplitIntoParts(int partSize) {
+
+        // Data
+        final var data = new byte[4099];
+        new Random(42).nextBytes(data);
+        final var dataUri = "data:image/jpeg;base64," + Base64.getEncoder().withoutPadding().encodeToString(data);
+        final var decoder = new DataUriDecoder(Integer.MAX_VALUE);
+
+        // Steps
+        for (int i = 0; i < dataUri.length(); i += partSize)
+            decoder.update(ByteString.copyFromUtf8(dataUri.substring(i, Math.min(i + partSize, dataUri.length()))));
+        var result = decoder.finish();
+
+        // Assertions
+        assertAll(
+                () -> assertEquals("jpeg", result.format()),
+                () -> assertArrayEquals(data, result.data()),
+                () -> assertEquals(HashUtil.getHash(data), result.contentHash())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Finish: accepts padded payload")
+    void finish_ReturnsDecodedImage_IfPayloadIsPadded() {
+
+        // Data
+        final var data = new byte[]{1, 2, 3, 4};
+        final var decoder = new DataUriDecoder(Integer.MAX_VALUE);
+
+        // Steps
+        decoder.update(ByteString.copyFromUtf8("data:image/png;base64," + Base64.getEncoder().encodeToString(data)));
+
+        // Assertions
+        assertArrayEquals(data, decoder.finish().data());
+
+    }
+
+    @ParameterizedTest(name = "Case: data size = {0}")
+    @ValueSource(ints = {1, 2, 3, 100_000, 100_001})
+    @DisplayName("Decode: returns decoded bytes and hash of whole data-URI")
+    void decode_ReturnsDecodedImage(int size) {
+
+        // Data
+        final var data = new byte[size];
+        new Random(42).nextBytes(data);
+        final var dataUri = ByteString.copyFromUtf8("data:image/png;base64," + Base64.getEncoder().encodeToString(data));
+
+        // Steps
+        var result = DataUriDecoder.decode(dataUri, Integer.MAX_VALUE);
+
+        // Assertions
+        assertAll(
+                () -> assertEquals("png", result.format()),
+                () -> assertArrayEquals(data, result.data()),
+                () -> assertEquals(HashUtil.getHash(data), result.contentHash())
+        );
+
+    }
+
+    @ParameterizedTest(name = "Case: {0}")
+    @ValueSource(strings = {
+            "image",
+            "data:image/png;base64,",
+            "data:text/plain;base64,AAAA",
+            "data:image/png;base64,AA*A",
+            "data:image/png;base64,A",
+            "data:image/png;base64,AA=A"
+    })
+    @DisplayName("Finish: throws BadRequestException when content has invalid pattern")
+    void finish_ThrowsBadRequestException_IfContentHasInvalidPattern(String content) {
+
+        // Steps & Assertions
+        assertThrows(BadRequestException.class, () -> {
+            final var decoder = new DataUriDecoder(Integer.MAX_VALUE);
+            decoder.update(ByteString.copyFromUtf8(content));
+            decoder.finish();
+        });
+
+    }
+
+    @Test
+    @DisplayName("Update: throws BadRequestException when content exceeds max size")
+    void update_ThrowsBadRequestException_IfContentExceedsMaxSize() {
+
+        // Data
+        final var decoder = new DataUriDecoder(30);
+
+        // Steps & Assertions
+        decoder.update(ByteString.copyFromUtf8("data:image/png;base64,"));
+        assertThrows(BadRequestException.class, () ->
+                decoder.update(ByteString.copyFromUtf8("AAAAAAAAAAAA")));
+
+    }
+
+    @ParameterizedTest(name = "Case: part size = {0}")
+    @ValueSource(ints = {1, 1024, 100_000})
+    @DisplayName("ForRawImage: returns raw bytes and hash regardless of how they are split")
+    void forRawImage_ReturnsImage_IfRawBytesSplitIntoParts(int partSize) {
+
+        // Data
+        final var data = new byte[70_001];
+        new Random(42).nextBytes(data);
+        final var decoder = DataUriDecoder.forRawImage("png", Integer.MAX_VALUE);
+
+        // Steps
+        for (int i = 0; i < data.length; i += partSize)
+            decoder.update(ByteString.copyFrom(data, i, Math.min(partSize, data.length - i)));
+        var result = decoder.finish();
+
+        // Assertions
+        assertAll(
+                () -> assertEquals("png", result.format()),
+                () -> assertArrayEquals(data, result.data()),
+                () -> assertEquals(HashUtil.getHash(data), result.contentHash())
+        );
+
+    }
+
+    @ParameterizedTest(name = "Case: {0}")
+    @ValueSource(strings = {"", "p", "image/png", "PNG"})
+    @DisplayName("ForRawImage: throws BadRequestException when format is invalid")
+    void forRawImage_ThrowsBadRequestException_IfFormatIsInvalid(String format) {
+        assertThrows(BadRequestException.class, () -> DataUriDecoder.forRawImage(format, Integer.MAX_VALUE));
+    }
+
+}
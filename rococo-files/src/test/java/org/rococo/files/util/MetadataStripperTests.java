@@ -0,0 +1,179 @@
+package org.rococo.files.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MetadataStripper: Module tests")
+class MetadataStripperTests {
+
+    private static final byte[] COMMENT = "Camera comment which must not be stored".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    @DisplayName("Strip: removes EXIF and comment segments from JPEG")
+    void strip_RemovesJpegMetadata() throws IOException {
+
+        // Data
+        final var original = image("jpg");
+        final var withMetadata = withJpegSegments(original,
+                segment(0xE1, exif(ByteOrder.BIG_ENDIAN, 1)),
+                segment(0xFE, COMMENT));
+
+        // Steps
+        final var stripped = MetadataStripper.strip(withMetadata, "jpeg");
+
+        // Assertions
+        assertAll(
+                () -> assertArrayEquals(original, stripped),
+                () -> assertEquals(40, ImageUtil.readImage(stripped).getWidth())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Strip: keeps ICC profile segment of JPEG")
+    void strip_KeepsJpegIccProfile() throws IOException {
+
+        // Data
+        final var withProfile = withJpegSegments(image("jpg"), segment(0xE2, "ICC_PROFILE\0".getBytes(StandardCharsets.US_ASCII)));
+
+        // Steps & Assertions
+        assertSame(withProfile, MetadataStripper.strip(withProfile, "jpg"));
+
+    }
+
+    @Test
+    @DisplayName("Strip: removes text chunks from PNG")
+    void strip_RemovesPngTextChunks() throws IOException {
+
+        // Data
+        final var original = image("png");
+        final var withText = withPngChunk(original, "tEXt", COMMENT);
+
+        // Steps
+        final var stripped = MetadataStripper.strip(withText, "png");
+
+        // Assertions
+        assertAll(
+                () -> assertArrayEquals(original, stripped),
+                () -> assertEquals(40, ImageUtil.readImage(stripped).getWidth())
+        );
+
+    }
+
+    @Test
+    @DisplayName("Strip: returns unknown and malformed images unchanged")
+    void strip_ReturnsUnchanged_IfImageIsUnknownOrMalformed() throws IOException {
+
+        // Data
+        final var gif = image("gif");
+        final var truncated = withJpegSegments(image("jpg"), segment(0xFE, COMMENT));
+        final var malformed = Arrays.copyOf(truncated, 30);
+
+        // Steps & Assertions
+        assertAll(
+                () -> assertSame(gif, MetadataStripper.strip(gif, "gif")),
+                () -> assertSame(malformed, MetadataStripper.strip(malformed, "jpeg"))
+        );
+
+    }
+
+    @Test
+    @DisplayName("Orientation: reads EXIF orientation in both byte orders")
+    void orientation_ReadsExifOrientation() throws IOException {
+
+        // Data
+        final var original = image("jpg");
+
+        // Steps & Assertions
+        assertAll(
+                () -> assertEquals(1, MetadataStripper.orientation(original)),
+                () -> assertEquals(6, MetadataStripper.orientation(
+                        withJpegSegments(original, segment(0xE1, exif(ByteOrder.BIG_ENDIAN, 6))))),
+                () -> assertEquals(8, MetadataStripper.orientation(
+                        withJpegSegments(original, segment(0xE1, exif(ByteOrder.LITTLE_ENDIAN, 8)))))
+        );
+
+    }
+
+    static byte[] image(String format) throws IOException {
+        final var result = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB), format, result);
+        return result.toByteArray();
+    }
+
+    /**
+     * EXIF payload of APP1 segment with one IFD entry: orientation
+     */
+    static byte[] exif(ByteOrder order, int orientation) {
+        return ByteBuffer.allocate(6 + 8 + 2 + 12 + 4)
+                .put("Exif\0\0".getBytes(StandardCharsets.US_ASCII))
+                .order(order)
+                .put(order == ByteOrder.BIG_ENDIAN ? "MM".getBytes(StandardCharsets.US_ASCII) : "II".getBytes(StandardCharsets.US_ASCII))
+                .putShort((short) 42)
+                .putInt(8)
+                .putShort((short) 1)
+                .putShort((short) 0x0112)
+                .putShort((short) 3)
+                .putInt(1)
+                .putShort((short) orientation)
+                .putShort((short) 0)
+                .putInt(0)
+                .array();
+    }
+
+    static byte[] segment(int marker, byte[] payload) {
+        return ByteBuffer.allocate(4 + payload.length)
+                .put((byte) 0xFF)
+                .put((byte) marker)
+                .putShort((short) (payload.length + 2))
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Inserts segments right after start of image marker
+     */
+    static byte[] withJpegSegments(byte[] jpeg, byte[]... segments) {
+        final var result = new ByteArrayOutputStream();
+        result.write(jpeg, 0, 2);
+        for (var segment : segments)
+            result.writeBytes(segment);
+        result.write(jpeg, 2, jpeg.length - 2);
+        return result.toByteArray();
+    }
+
+    /**
+     * Inserts chunk right after IHDR chunk, which follows 8 bytes signature and is 25 bytes long
+     */
+    private static byte[] withPngChunk(byte[] png, String type, byte[] data) {
+        final var crc = new CRC32();
+        crc.update(type.getBytes(StandardCharsets.US_ASCII));
+        crc.update(data);
+
+        final var chunk = ByteBuffer.allocate(12 + data.length)
+                .putInt(data.length)
+                .put(type.getBytes(StandardCharsets.US_ASCII))
+                .put(data)
+                .putInt((int) crc.getValue())
+                .array();
+
+        final var result = new ByteArrayOutputStream();
+        result.write(png, 0, 33);
+        result.writeBytes(chunk);
+        result.write(png, 33, png.length - 33);
+        return result.toByteArray();
+    }
+
+}
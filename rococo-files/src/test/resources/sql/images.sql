@@ -1,9 +1,9 @@
-INSERT INTO rococo.image_content(id, data, thumbnail_data)
-VALUES ('b400bf26-7e82-49f8-8a4c-b4e178e6505c', decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNk+A8AAQUBAScY42YAAAAASUVORK5CYII=', 'escape'), decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mPM/g8AAdsBbIl0L7oAAAAASUVORK5CYII=', 'escape')),
-       ('08141894-56fa-4b96-9524-6323c45e3dc0', decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mP8/x8AAwMCAO+ip1sAAAAASUVORK5CYII=', 'escape'), decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mO89B8AAqkB05ycXjIAAAAASUVORK5CYII=', 'escape')),
-       ('598f026f-7011-4fcc-bac0-8b22da8b60d1', decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mP8z8DwHwAFBQIAX8jx0gAAAABJRU5ErkJggg==', 'escape'), decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNc7uf3HwAFKwJEFmzWQQAAAABJRU5ErkJggg==', 'escape')),
-       ('3e15fbe7-c942-4b3c-acb9-0ea341176f31', decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNMefj/PwAHOgNF1x8QkwAAAABJRU5ErkJggg==', 'escape'), decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk8Pz/HwAD4gJJ3tBg2gAAAABJRU5ErkJggg==', 'escape')),
-       ('45968a5b-b8df-4331-a464-70bbae1fe68a', decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M/8HwAEDAID9wDhXAAAAABJRU5ErkJggg==', 'escape'), decode('data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkqGb6DwACfgF+J9HWjAAAAABJRU5ErkJggg==', 'escape'));
+INSERT INTO rococo.image_content(id, content_hash, ref_count, data, thumbnail_data)
+VALUES ('b400bf26-7e82-49f8-8a4c-b4e178e6505c', '8a7cfc42f9ac4632311e4feb7cd7c7f8dfd400b32303599c5156d4719ecc5bba', 1, decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mNk+A8AAQUBAScY42YAAAAASUVORK5CYII=', 'base64'), decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mPM/g8AAdsBbIl0L7oAAAAASUVORK5CYII=', 'base64')),
+       ('08141894-56fa-4b96-9524-6323c45e3dc0', 'c6afb7421eb61816cd54698493ff17573e020431c7b8486c39ceb9b3c07cc54b', 1, decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mP8/x8AAwMCAO+ip1sAAAAASUVORK5CYII=', 'base64'), decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAQAAAC1HAwCAAAAC0lEQVR42mO89B8AAqkB05ycXjIAAAAASUVORK5CYII=', 'base64')),
+       ('598f026f-7011-4fcc-bac0-8b22da8b60d1', 'ed36ceb87f830dd44f9047e105bc7e1485656ef90c62b70763f482968d27c79b', 1, decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mP8z8DwHwAFBQIAX8jx0gAAAABJRU5ErkJggg==', 'base64'), decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNc7uf3HwAFKwJEFmzWQQAAAABJRU5ErkJggg==', 'base64')),
+       ('3e15fbe7-c942-4b3c-acb9-0ea341176f31', '31efa06fe69ce88358cb869a0ca69fcb06d39563cc7369969077dad542b8d17d', 1, decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNMefj/PwAHOgNF1x8QkwAAAABJRU5ErkJggg==', 'base64'), decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk8Pz/HwAD4gJJ3tBg2gAAAABJRU5ErkJggg==', 'base64')),
+       ('45968a5b-b8df-4331-a464-70bbae1fe68a', 'c70171c49f4ddcc300f4ec82ca8b54a22e4d3c8a73821addca227a5477f0fe6f', 1, decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M/8HwAEDAID9wDhXAAAAABJRU5ErkJggg==', 'base64'), decode('iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkqGb6DwACfgF+J9HWjAAAAABJRU5ErkJggg==', 'base64'));
 
 INSERT INTO rococo.image_metadata(id, entity_type, entity_id, format, content_hash, content_id, created_date)
 VALUES ('a9515907-f028-4e7b-a659-1899b19645a3', 'USER', 'c8d18a64-8f5e-4f87-8572-1aaf47ae5ffb', 'png', '8a7cfc42f9ac4632311e4feb7cd7c7f8dfd400b32303599c5156d4719ecc5bba', 'b400bf26-7e82-49f8-8a4c-b4e178e6505c', '2024-01-01 11:00:00'),
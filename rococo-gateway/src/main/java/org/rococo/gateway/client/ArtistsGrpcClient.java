@@ -69,11 +69,23 @@ public class ArtistsGrpcClient {
         }
     }
 
-    public Page<ArtistDTO> findAll(String name, boolean isOriginalPhoto, Pageable pageable) {
+    public boolean existsById(UUID id) {
+        try {
+            return artistsServiceStub.existsById(
+                            IdType.newBuilder()
+                                    .setId(id.toString())
+                                    .build())
+                    .getStatus();
+        } catch (StatusRuntimeException ex) {
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+    }
+
+    public Page<ArtistDTO> findAll(String name, boolean isOriginalPhoto, boolean isPlaceholderPhoto, Pageable pageable) {
         try {
             return ArtistMapper.toPageDTO(
                     artistsServiceStub.findAll(
-                            ArtistMapper.toFilter(name, isOriginalPhoto, pageable)));
+                            ArtistMapper.toFilter(name, isOriginalPhoto, isPlaceholderPhoto, pageable)));
         } catch (StatusRuntimeException ex) {
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
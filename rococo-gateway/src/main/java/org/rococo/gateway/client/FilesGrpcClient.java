@@ -1,23 +1,32 @@
 package org.rococo.gateway.client;
 
+import com.google.protobuf.ByteString;
 import io.grpc.Status.Code;
 import io.grpc.StatusRuntimeException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.rococo.common.files.ImageCache;
 import org.rococo.gateway.ex.ImageNotFoundException;
 import org.rococo.gateway.ex.ServiceUnavailableException;
 import org.rococo.gateway.mapper.ImageMapper;
 import org.rococo.gateway.model.EntityType;
 import org.rococo.gateway.model.files.ImageDTO;
+import org.rococo.grpc.files.DownloadImageGrpcRequest;
 import org.rococo.grpc.files.EntityTypeGrpc;
 import org.rococo.grpc.files.FilesServiceGrpc;
 import org.rococo.grpc.files.FindImagesGrpcRequest;
+import org.rococo.grpc.files.ImageDownloadChunk;
+import org.rococo.grpc.files.ImageDownloadHeader;
+import org.rococo.grpc.files.ImageGrpcResponse;
+import org.rococo.grpc.files.RenditionGrpc;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -32,6 +41,8 @@ public class FilesGrpcClient {
     @GrpcClient("grpcFilesClient")
     private FilesServiceGrpc.FilesServiceBlockingStub filesServiceStub;
 
+    private final ImageCache<ImageKey> imageCache;
+
     public void add(EntityType entityType, UUID entityId, String image) {
         try {
             filesServiceStub.addImage(
@@ -41,12 +52,25 @@ public class FilesGrpcClient {
         }
     }
 
+    /**
+     * Downloads original image, unless local copy is still current. Original is received in chunks,
+     * so no single message carries it whole.
+     */
     public Optional<ImageDTO> findImage(EntityType entityType, UUID entityId) {
         try {
-            return Optional.of(
-                    ImageMapper.toDTO(
-                            filesServiceStub.findByEntityTypeAndId(
-                                    ImageMapper.toFindGrpcRequest(entityType, entityId))));
+            final var imageKey = new ImageKey(entityType, entityId);
+            final var cached = imageCache.get(imageKey, RenditionGrpc.ORIGINAL);
+            final var chunks = filesServiceStub.downloadImage(
+                    DownloadImageGrpcRequest.newBuilder()
+                            .setEntityType(EntityTypeGrpc.valueOf(entityType.name()))
+                            .setEntityId(entityId.toString())
+                            .setKnownHash(cached.map(ImageGrpcResponse::getContentHash).orElse(""))
+                            .build());
+            final var header = chunks.next().getHeader();
+            return Optional.of(ImageMapper.fromRawGrpcModel(
+                    header.getNotModified() && cached.isPresent()
+                            ? cached.get()
+                            : imageCache.put(imageKey, toImageResponse(header, chunks), RenditionGrpc.ORIGINAL)));
         } catch (StatusRuntimeException ex) {
             if (ex.getStatus().getCode() == Code.NOT_FOUND)
                 return Optional.empty();
@@ -54,20 +78,36 @@ public class FilesGrpcClient {
         }
     }
 
+    /**
+     * Finds thumbnails sending content hashes of local copies: images not modified since are taken from local copies,
+     * ones evicted meanwhile are requested again without hashes.
+     */
     public List<ImageDTO> findAll(final EntityType entityType, final List<UUID> entityIds) {
 
+        final var rendition = RenditionGrpc.THUMBNAIL;
         try {
-            final var grpcImagesStream = filesServiceStub.findAllByEntityTypeAndIds(
-                    FindImagesGrpcRequest.newBuilder()
-                            .setEntityType(EntityTypeGrpc.valueOf(entityType.name()))
-                            .addAllEntityIds(entityIds.stream()
-                                    .map(UUID::toString)
-                                    .toList())
-                            .build());
             final List<ImageDTO> images = new ArrayList<>();
-            while (grpcImagesStream.hasNext()) {
-                images.add(ImageMapper.toDTO(grpcImagesStream.next()));
-            }
+            final List<UUID> evictedIds = new ArrayList<>();
+            final var imageKeys = entityIds.stream()
+                    .map(entityId -> new ImageKey(entityType, entityId))
+                    .toList();
+            findAll(entityType, entityIds, imageCache.knownHashes(imageKeys, rendition))
+                    .forEachRemaining(image -> {
+                        final var entityId = UUID.fromString(image.getEntityId());
+                        if (!image.getNotModified()) {
+                            images.add(ImageMapper.toDTO(imageCache.put(new ImageKey(entityType, entityId), image, rendition)));
+                            return;
+                        }
+                        imageCache.get(new ImageKey(entityType, entityId), rendition)
+                                .ifPresentOrElse(
+                                        cached -> images.add(ImageMapper.toDTO(cached)),
+                                        () -> evictedIds.add(entityId));
+                    });
+            if (!evictedIds.isEmpty())
+                findAll(entityType, evictedIds, Map.of())
+                        .forEachRemaining(image ->
+                                images.add(ImageMapper.toDTO(imageCache.put(
+                                        new ImageKey(entityType, UUID.fromString(image.getEntityId())), image, rendition))));
             return images;
         } catch (StatusRuntimeException ex) {
             log.info(ex.getMessage());
@@ -98,4 +138,39 @@ public class FilesGrpcClient {
         }
     }
 
+    private Iterator<ImageGrpcResponse> findAll(EntityType entityType,
+                                                List<UUID> entityIds,
+                                                Map<String, String> knownHashes) {
+        return filesServiceStub.findAllByEntityTypeAndIds(
+                FindImagesGrpcRequest.newBuilder()
+                        .setEntityType(EntityTypeGrpc.valueOf(entityType.name()))
+                        .addAllEntityIds(entityIds.stream()
+                                .map(UUID::toString)
+                                .toList())
+                        .setRendition(RenditionGrpc.THUMBNAIL)
+                        .putAllKnownHashes(knownHashes)
+                        .build());
+    }
+
+    private static ImageGrpcResponse toImageResponse(ImageDownloadHeader header, Iterator<ImageDownloadChunk> chunks) {
+
+        var content = ByteString.empty();
+        while (chunks.hasNext())
+            content = content.concat(chunks.next().getData());
+
+        return ImageGrpcResponse.newBuilder()
+                .setEntityId(header.getEntityId())
+                .setContent(content)
+                .setContentHash(header.getContentHash())
+                .setFormat(header.getFormat())
+                .build();
+
+    }
+
+    /**
+     * Key of image kept in {@link ImageCache}: ids of different entity types may be the same
+     */
+    public record ImageKey(EntityType entityType, UUID entityId) {
+    }
+
 }
@@ -65,10 +65,22 @@ public class MuseumsGrpcClient {
         }
     }
 
-    public Page<MuseumDTO> findAll(String title, boolean isOriginalPhoto, Pageable pageable) {
+    public boolean existsById(UUID id) {
+        try {
+            return museumsServiceStub.existsById(
+                            IdType.newBuilder()
+                                    .setId(id.toString())
+                                    .build())
+                    .getStatus();
+        } catch (StatusRuntimeException ex) {
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+    }
+
+    public Page<MuseumDTO> findAll(String title, boolean isOriginalPhoto, boolean isPlaceholderPhoto, Pageable pageable) {
         try {
             return MuseumMapper.toPageDTO(museumsServiceStub.findAll(
-                    MuseumMapper.toFilter(title, isOriginalPhoto, pageable)));
+                    MuseumMapper.toFilter(title, isOriginalPhoto, isPlaceholderPhoto, pageable)));
         } catch (StatusRuntimeException ex) {
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
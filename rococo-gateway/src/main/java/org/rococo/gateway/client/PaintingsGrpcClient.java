@@ -66,16 +66,29 @@ public class PaintingsGrpcClient {
         }
     }
 
+    public boolean existsById(UUID id) {
+        try {
+            return paintingsServiceStub.existsById(
+                            IdType.newBuilder()
+                                    .setId(id.toString())
+                                    .build())
+                    .getStatus();
+        } catch (StatusRuntimeException ex) {
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+    }
+
     @Nonnull
     public Page<PaintingDTO> findAll(@Nullable String name,
                                      @Nullable UUID artistId,
                                      boolean isOriginalPhoto,
+                                     boolean isPlaceholderPhoto,
                                      Pageable pageable
     ) {
         try {
             return PaintingMapper.toPageDTO(
                     paintingsServiceStub.findAll(
-                            PaintingMapper.toFilter(name, artistId, isOriginalPhoto, pageable)));
+                            PaintingMapper.toFilter(name, artistId, isOriginalPhoto, isPlaceholderPhoto, pageable)));
         } catch (StatusRuntimeException ex) {
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
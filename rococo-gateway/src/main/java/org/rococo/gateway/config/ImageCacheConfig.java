@@ -0,0 +1,18 @@
+package org.rococo.gateway.config;
+
+import org.rococo.common.files.ImageCache;
+import org.rococo.gateway.client.FilesGrpcClient.ImageKey;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+public class ImageCacheConfig {
+
+    @Bean
+    public ImageCache<ImageKey> imageCache(@Value("${rococo-gateway.files.image-cache.max-size:32MB}") DataSize maxSize) {
+        return new ImageCache<>(maxSize.toBytes());
+    }
+
+}
@@ -30,6 +30,7 @@ public class SecurityConfig {
                                 antMatcher(HttpMethod.GET, "/api/country/**"),
                                 antMatcher(HttpMethod.GET, "/api/museum/**"),
                                 antMatcher(HttpMethod.GET, "/api/painting/**"),
+                                antMatcher(HttpMethod.GET, "/api/thumbnail/**"),
                                 antMatcher(HttpMethod.GET, "/api/user/all"),
                                 antMatcher("/actuator/health"))
                         .permitAll()
@@ -1,6 +1,7 @@
 package org.rococo.gateway.config.cors;
 
 import jakarta.annotation.Nonnull;
+import org.rococo.gateway.controller.DegradedPageAdvice;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -28,6 +29,7 @@ public class CorsCustomizer {
                 cc.setAllowedOrigins(List.of(rococoFrontUri));
                 cc.setAllowedHeaders(List.of("*"));
                 cc.setAllowedMethods(List.of("*"));
+                cc.setExposedHeaders(List.of(DegradedPageAdvice.DEGRADED_HEADER));
                 return cc;
             };
 
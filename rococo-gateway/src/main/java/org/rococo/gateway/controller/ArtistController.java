@@ -17,22 +17,22 @@ public class ArtistController {
 
     private final ArtistsGrpcClient artistsClient;
 
-    @ModelAttribute(name = "artist", binding = false)
-    public ArtistDTO artist(@PathVariable("id") UUID id) {
+    @GetMapping
+    public ArtistDTO findById(@PathVariable("id") UUID id) {
+        log.info("Find artist by id: {}", id);
         return artistsClient.findById(id)
                 .orElseThrow(() -> new ArtistNotFoundException(id));
     }
 
-    @GetMapping
-    public ArtistDTO findById(@ModelAttribute("artist") ArtistDTO artist) {
-        log.info("Find artist by id: {}", artist.getId());
-        return artist;
-    }
-
+    /**
+     * Existence is checked without loading artist and its photo.
+     */
     @DeleteMapping
-    public void delete(@ModelAttribute("artist") ArtistDTO artist) {
-        log.info("Delete artist: {}", artist);
-        artistsClient.delete(artist.getId());
+    public void delete(@PathVariable("id") UUID id) {
+        log.info("Delete artist by id: {}", id);
+        if (!artistsClient.existsById(id))
+            throw new ArtistNotFoundException(id);
+        artistsClient.delete(id);
     }
 
 }
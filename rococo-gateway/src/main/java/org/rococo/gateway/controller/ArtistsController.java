@@ -42,6 +42,7 @@ public class ArtistsController {
 
     @GetMapping
     public Page<ArtistDTO> findAll(@RequestParam(name = "name", required = false) String name,
+                                   @RequestParam(name = "placeholder", required = false, defaultValue = "false") boolean placeholder,
                                    @PageableDefault(size = 20, sort = {"name"}, direction = ASC) Pageable pageable,
                                    @RequestParam Map<String, String> requestParams
     ) {
@@ -52,7 +53,7 @@ public class ArtistsController {
                 ArtistMapper.toRequestParamObj(requestParams, pageable),
                 "ArtistsFindAllParamsValidationObject");
 
-        return artistsClient.findAll(name, false, pageable);
+        return artistsClient.findAll(name, false, placeholder, pageable);
     }
 
     @PatchMapping
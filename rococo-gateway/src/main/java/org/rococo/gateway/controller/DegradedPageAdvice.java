@@ -0,0 +1,48 @@
+package org.rococo.gateway.controller;
+
+import org.rococo.gateway.model.RestPage;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Marks page lacking data of a dependency which did not answer in time by {@value #DEGRADED_HEADER} header,
+ * e.g. page of artists returned without photos. Body is written as plain page, so its JSON is the same
+ * for degraded and complete pages.
+ */
+@RestControllerAdvice
+@ParametersAreNonnullByDefault
+public class DegradedPageAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String DEGRADED_HEADER = "X-Rococo-Degraded";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return Page.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body,
+                                  MethodParameter returnType,
+                                  MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request,
+                                  ServerHttpResponse response
+    ) {
+        if (!(body instanceof RestPage<?> page))
+            return body;
+
+        if (page.isDegraded())
+            response.getHeaders().set(DEGRADED_HEADER, "true");
+        return new PageImpl<>(page.getContent(), page.getPageable(), page.getTotalElements());
+    }
+
+}
@@ -17,22 +17,22 @@ public class MuseumController {
 
     private final MuseumsGrpcClient museumsClient;
 
-    @ModelAttribute(name = "museum", binding = false)
-    public MuseumDTO museum(@PathVariable UUID id) {
+    @GetMapping
+    public MuseumDTO findById(@PathVariable UUID id) {
+        log.info("Find museum by id: {}", id);
         return museumsClient.findById(id)
                 .orElseThrow(() -> new MuseumNotFoundException(id));
     }
 
-    @GetMapping
-    public MuseumDTO findById(@ModelAttribute("museum") MuseumDTO museum) {
-        log.info("Find museum by id: {}", museum.getId());
-        return museum;
-    }
-
+    /**
+     * Existence is checked without loading museum and its photo.
+     */
     @DeleteMapping
-    public void delete(@ModelAttribute("museum") MuseumDTO museum) {
-        log.info("Delete museum by id: {}", museum.getId());
-        museumsClient.delete(museum.getId());
+    public void delete(@PathVariable UUID id) {
+        log.info("Delete museum by id: {}", id);
+        if (!museumsClient.existsById(id))
+            throw new MuseumNotFoundException(id);
+        museumsClient.delete(id);
     }
 
 }
@@ -42,6 +42,7 @@ public class MuseumsController {
 
     @GetMapping
     public Page<MuseumDTO> findAll(@RequestParam(name = "title", required = false) String name,
+                                   @RequestParam(name = "placeholder", required = false, defaultValue = "false") boolean placeholder,
                                    @PageableDefault(size = 9, sort = {"title"}, direction = ASC) Pageable pageable,
                                    @RequestParam Map<String, String> requestParams
     ) {
@@ -52,7 +53,7 @@ public class MuseumsController {
                 MuseumMapper.toRequestParamObj(requestParams, pageable),
                 "MuseumsFindAllParamsValidationObject");
 
-        return museumsClient.findAll(name, false, pageable);
+        return museumsClient.findAll(name, false, placeholder, pageable);
     }
 
     @PatchMapping
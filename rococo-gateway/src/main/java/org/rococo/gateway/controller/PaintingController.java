@@ -17,23 +17,22 @@ public class PaintingController {
 
     private final PaintingsGrpcClient paintingsClient;
 
-    @ModelAttribute(name = "painting")
-    public PaintingDTO painting(@PathVariable("id") UUID id) {
+    @GetMapping
+    public PaintingDTO findById(@PathVariable("id") UUID id) {
+        log.info("Find painting by id: {}", id);
         return paintingsClient.findById(id)
                 .orElseThrow(() -> new PaintingNotFoundException(id));
     }
 
-    @GetMapping
-    public PaintingDTO findById(@ModelAttribute("painting") PaintingDTO painting) {
-        log.info("Find painting by id: {}", painting.getId());
-        return painting;
-    }
-
-
+    /**
+     * Existence is checked without loading painting and its photo.
+     */
     @DeleteMapping
-    public void delete(@ModelAttribute("painting") PaintingDTO painting) {
-        log.info("Delete painting by id: {}", painting.getId());
-        paintingsClient.delete(painting.getId());
+    public void delete(@PathVariable("id") UUID id) {
+        log.info("Delete painting by id: {}", id);
+        if (!paintingsClient.existsById(id))
+            throw new PaintingNotFoundException(id);
+        paintingsClient.delete(id);
     }
 
 }
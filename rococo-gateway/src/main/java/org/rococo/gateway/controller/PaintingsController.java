@@ -44,13 +44,14 @@ public class PaintingsController {
     @GetMapping
     public Page<PaintingDTO> findAll(@RequestParam(name = "title", required = false) String title,
                                      @RequestParam(value = "authorId", required = false) UUID artistId,
+                                     @RequestParam(name = "placeholder", required = false, defaultValue = "false") boolean placeholder,
                                      @PageableDefault(size = 9, sort = "title", direction = ASC) Pageable pageable,
                                      @RequestParam Map<String, String> requestParams
     ) {
         log.info("Find all paintings by params: {}", PageableUtil.getLogText(pageable, requestParams));
         validationService.validateObject(PaintingMapper.toRequestParamObj(requestParams, pageable),
                 "PaintingsFindAllParamsValidationObject");
-        return paintingsClient.findAll(title, artistId, false, pageable);
+        return paintingsClient.findAll(title, artistId, false, placeholder, pageable);
     }
 
     @PatchMapping
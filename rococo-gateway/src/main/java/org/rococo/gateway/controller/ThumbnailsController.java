@@ -0,0 +1,43 @@
+package org.rococo.gateway.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.gateway.client.FilesGrpcClient;
+import org.rococo.gateway.ex.BadRequestException;
+import org.rococo.gateway.model.EntityType;
+import org.rococo.gateway.model.files.ImageDTO;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Thumbnails of list items requested with placeholder photos, loaded after the list itself.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping({"/api/thumbnail", "/api/thumbnail/"})
+public class ThumbnailsController {
+
+    private static final int MAX_IDS = 100;
+
+    private final FilesGrpcClient filesClient;
+
+    @GetMapping("/{entityType:artist|museum|painting}")
+    public List<ImageDTO> findAll(@PathVariable("entityType") String entityType,
+                                  @RequestParam("ids") List<UUID> ids
+    ) {
+        log.info("Find {} thumbnails by ids: {}", entityType, ids);
+        if (ids.size() > MAX_IDS)
+            throw new BadRequestException(List.of(
+                    new FieldError("thumbnails", "ids", "Size must be at most " + MAX_IDS)));
+        return filesClient.findAll(EntityType.valueOf(entityType.toUpperCase()), ids);
+    }
+
+}
@@ -1,12 +1,12 @@
 package org.rococo.gateway.mapper;
 
+import org.rococo.gateway.model.RestPage;
 import org.rococo.gateway.model.artists.AddArtistRequestDTO;
 import org.rococo.gateway.model.artists.ArtistDTO;
 import org.rococo.gateway.model.artists.ArtistFindAllParamsValidationObject;
 import org.rococo.gateway.model.artists.UpdateArtistRequestDTO;
 import org.rococo.grpc.artists.*;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
@@ -24,6 +24,7 @@ public class ArtistMapper {
 
     @Nonnull
     public static AddArtistGrpcRequest toGrpcModel(final AddArtistRequestDTO requestDTO) {
+        final var photo = ImageMapper.fromDataUri(requestDTO.photo());
         return AddArtistGrpcRequest.newBuilder()
                 .setName(requestDTO.name() == null
                         ? ""
@@ -31,14 +32,14 @@ public class ArtistMapper {
                 .setBiography(requestDTO.biography() == null
                         ? ""
                         : requestDTO.biography())
-                .setPhoto(requestDTO.photo() == null
-                        ? ""
-                        : requestDTO.photo())
+                .setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat())
                 .build();
     }
 
     @Nonnull
     public static UpdateArtistGrpcRequest toGrpcModel(final UpdateArtistRequestDTO requestDTO) {
+        final var photo = ImageMapper.fromDataUri(requestDTO.photo());
         return UpdateArtistGrpcRequest.newBuilder()
                 .setId(requestDTO.id() == null
                         ? ""
@@ -49,9 +50,8 @@ public class ArtistMapper {
                 .setBiography(requestDTO.biography() == null
                         ? ""
                         : requestDTO.biography())
-                .setPhoto(requestDTO.photo() == null
-                        ? ""
-                        : requestDTO.photo())
+                .setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat())
                 .build();
     }
 
@@ -67,9 +67,10 @@ public class ArtistMapper {
                 .biography(grpcResponseModel.getBiography().isEmpty()
                         ? null
                         : grpcResponseModel.getBiography())
-                .photo(grpcResponseModel.getPhoto().isEmpty()
-                        ? null
-                        : grpcResponseModel.getPhoto())
+                .photo(ImageMapper.toDataUri(
+                        grpcResponseModel.getPhotoContent(),
+                        grpcResponseModel.getPhotoFormat(),
+                        grpcResponseModel.getPhoto()))
                 .build();
     }
 
@@ -91,12 +92,14 @@ public class ArtistMapper {
     @Nonnull
     public static ArtistsFilterGrpcRequest toFilter(@Nullable final String name,
                                                     boolean isOriginalPhoto,
+                                                    boolean isPlaceholderPhoto,
                                                     final Pageable pageable) {
         return ArtistsFilterGrpcRequest.newBuilder()
                 .setQuery(name == null
                         ? ""
                         : name)
                 .setOriginalPhoto(isOriginalPhoto)
+                .setPlaceholderPhoto(isPlaceholderPhoto)
                 .setPageable(
                         PageableMapper.toPageableGrpc(pageable))
                 .build();
@@ -104,13 +107,14 @@ public class ArtistMapper {
 
     @Nonnull
     public static Page<ArtistDTO> toPageDTO(final ArtistsGrpcResponse response) {
-        return new PageImpl<>(
+        return new RestPage<>(
                 response.getDataList().stream()
                         .map(ArtistMapper::toDTO)
                         .toList(),
                 PageRequest.of(response.getCurrentPage(),
                         response.getItemsPerPage()),
-                response.getTotalItems()
+                response.getTotalItems(),
+                response.getDegraded()
         );
     }
 
@@ -1,6 +1,8 @@
 package org.rococo.gateway.mapper;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.rococo.common.image.Blurhash;
 import org.rococo.gateway.model.EntityType;
 import org.rococo.gateway.model.files.ImageDTO;
 import org.rococo.grpc.artists.ArtistsFilterGrpcRequest;
@@ -13,13 +15,25 @@ import org.springframework.data.domain.Pageable;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.UUID;
 
 @ParametersAreNonnullByDefault
 public class ImageMapper {
 
+    private static final String DATA_URI_PREFIX = "data:image/";
+    private static final String BASE64_SEPARATOR = ";base64,";
+
+    // browser upscales it smoothly, so a few pixels are enough for blurred placeholder
+    private static final int PLACEHOLDER_SIZE = 4;
+
     private ImageMapper() {
     }
 
@@ -53,6 +67,79 @@ public class ImageMapper {
                 .build();
     }
 
+    /**
+     * Image downloaded as raw bytes with its format, its content is returned as data-URI
+     */
+    @Nonnull
+    public static ImageDTO fromRawGrpcModel(final ImageGrpcResponse grpcResponseModel) {
+        return ImageDTO.builder()
+                .entityId(grpcResponseModel.getEntityId().isEmpty()
+                        ? null
+                        : UUID.fromString(grpcResponseModel.getEntityId()))
+                .content(toDataUri(grpcResponseModel.getContent(), grpcResponseModel.getFormat(), ""))
+                .build();
+    }
+
+    /**
+     * Photo of JSON request (already validated data-URI) as raw image with its format, which is sent to domain
+     * services in photo_content and photo_format. Base64 is decoded only here, at the gateway edge.
+     *
+     * @return empty image if photo is not set
+     */
+    @Nonnull
+    public static ImageGrpcResponse fromDataUri(@Nullable final String dataUri) {
+        if (dataUri == null || dataUri.isEmpty())
+            return ImageGrpcResponse.getDefaultInstance();
+
+        final int separator = dataUri.indexOf(BASE64_SEPARATOR);
+        if (!dataUri.startsWith(DATA_URI_PREFIX) || separator < 0)
+            throw new IllegalArgumentException("Photo must be base64 data-URI");
+
+        return ImageGrpcResponse.newBuilder()
+                .setContent(UnsafeByteOperations.unsafeWrap(
+                        Base64.getDecoder().decode(dataUri.substring(separator + BASE64_SEPARATOR.length()))))
+                .setFormat(dataUri.substring(DATA_URI_PREFIX.length(), separator))
+                .build();
+    }
+
+    /**
+     * Photo of domain service response as JSON data-URI. Service which does not send photo_content yet
+     * sends data-URI in legacy photo field. Blurhash placeholder is decoded into a tiny PNG.
+     *
+     * @return null if response has no photo or its placeholder is malformed
+     */
+    @Nullable
+    public static String toDataUri(final ByteString content, final String format, final String legacyPhoto) {
+        if (content.isEmpty())
+            return legacyPhoto.isEmpty()
+                    ? null
+                    : legacyPhoto;
+        if (format.equals(Blurhash.FORMAT))
+            return placeholderDataUri(content.toStringUtf8());
+        return DATA_URI_PREFIX + format + BASE64_SEPARATOR
+                + Base64.getEncoder().encodeToString(content.toByteArray());
+    }
+
+    @Nullable
+    private static String placeholderDataUri(final String blurhash) {
+        final int[] pixels;
+        try {
+            pixels = Blurhash.decode(blurhash, PLACEHOLDER_SIZE, PLACEHOLDER_SIZE);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+
+        final var image = new BufferedImage(PLACEHOLDER_SIZE, PLACEHOLDER_SIZE, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, PLACEHOLDER_SIZE, PLACEHOLDER_SIZE, pixels, 0, PLACEHOLDER_SIZE);
+        final var png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", png);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return DATA_URI_PREFIX + "png" + BASE64_SEPARATOR + Base64.getEncoder().encodeToString(png.toByteArray());
+    }
+
     @Nonnull
     public static ArtistsFilterGrpcRequest toFilter(@Nullable final String name,
                                                     final Pageable pageable) {
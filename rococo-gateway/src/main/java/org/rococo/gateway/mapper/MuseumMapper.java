@@ -1,5 +1,6 @@
 package org.rococo.gateway.mapper;
 
+import org.rococo.gateway.model.RestPage;
 import org.rococo.gateway.model.countries.LocationResponseDTO;
 import org.rococo.gateway.model.museums.AddMuseumRequestDTO;
 import org.rococo.gateway.model.museums.MuseumDTO;
@@ -7,7 +8,6 @@ import org.rococo.gateway.model.museums.MuseumFindAllParamsValidationObject;
 import org.rococo.gateway.model.museums.UpdateMuseumRequestDTO;
 import org.rococo.grpc.museums.*;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
@@ -25,6 +25,7 @@ public class MuseumMapper {
 
     @Nonnull
     public static AddMuseumGrpcRequest toGrpcModel(final AddMuseumRequestDTO requestDTO) {
+        final var photo = ImageMapper.fromDataUri(requestDTO.photo());
         return AddMuseumGrpcRequest.newBuilder()
                 .setTitle(requestDTO.title() == null
                         ? ""
@@ -38,14 +39,14 @@ public class MuseumMapper {
                 .setCity(requestDTO.location().city() == null
                         ? ""
                         : requestDTO.location().city())
-                .setPhoto(requestDTO.photo() == null
-                        ? ""
-                        : requestDTO.photo())
+                .setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat())
                 .build();
     }
 
     @Nonnull
     public static UpdateMuseumGrpcRequest toGrpcModel(final UpdateMuseumRequestDTO requestDTO) {
+        final var photo = ImageMapper.fromDataUri(requestDTO.photo());
         return UpdateMuseumGrpcRequest.newBuilder()
                 .setId(requestDTO.id().toString())
                 .setTitle(requestDTO.title() == null
@@ -60,9 +61,8 @@ public class MuseumMapper {
                 .setCity(requestDTO.location().city() == null
                         ? ""
                         : requestDTO.location().city())
-                .setPhoto(requestDTO.photo() == null
-                        ? ""
-                        : requestDTO.photo())
+                .setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat())
                 .build();
     }
 
@@ -85,9 +85,10 @@ public class MuseumMapper {
                                         : grpcResponseModel.getCity())
                                 .country(CountryMapper.toDTO(grpcResponseModel.getCountry()))
                                 .build())
-                .photo(grpcResponseModel.getPhoto().isEmpty()
-                        ? null
-                        : grpcResponseModel.getPhoto())
+                .photo(ImageMapper.toDataUri(
+                        grpcResponseModel.getPhotoContent(),
+                        grpcResponseModel.getPhotoFormat(),
+                        grpcResponseModel.getPhoto()))
                 .build();
     }
 
@@ -116,6 +117,7 @@ public class MuseumMapper {
     @Nonnull
     public static MuseumsFilterGrpcRequest toFilter(@Nullable final String name,
                                                     final boolean isOriginalPhoto,
+                                                    final boolean isPlaceholderPhoto,
                                                     final Pageable pageable) {
         return MuseumsFilterGrpcRequest.newBuilder()
                 .setQuery(
@@ -124,6 +126,7 @@ public class MuseumMapper {
                                 : name
                 )
                 .setOriginalPhoto(isOriginalPhoto)
+                .setPlaceholderPhoto(isPlaceholderPhoto)
                 .setPageable(
                         PageableMapper.toPageableGrpc(pageable))
                 .build();
@@ -131,13 +134,14 @@ public class MuseumMapper {
 
     @Nonnull
     public static Page<MuseumDTO> toPageDTO(final MuseumsGrpcResponse response) {
-        return new PageImpl<>(
+        return new RestPage<>(
                 response.getDataList().stream()
                         .map(MuseumMapper::toDTO)
                         .toList(),
                 PageRequest.of(response.getCurrentPage(),
                         response.getItemsPerPage()),
-                response.getTotalItems()
+                response.getTotalItems(),
+                response.getDegraded()
         );
     }
 
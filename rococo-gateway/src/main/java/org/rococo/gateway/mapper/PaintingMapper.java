@@ -1,12 +1,12 @@
 package org.rococo.gateway.mapper;
 
+import org.rococo.gateway.model.RestPage;
 import org.rococo.gateway.model.paintings.AddPaintingRequestDTO;
 import org.rococo.gateway.model.paintings.PaintingDTO;
 import org.rococo.gateway.model.paintings.PaintingFindAllParamsValidationObject;
 import org.rococo.gateway.model.paintings.UpdatePaintingRequestDTO;
 import org.rococo.grpc.paintings.*;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
@@ -24,6 +24,7 @@ public class PaintingMapper {
 
     @Nonnull
     public static AddPaintingGrpcRequest toGrpcModel(final AddPaintingRequestDTO requestDTO) {
+        final var photo = ImageMapper.fromDataUri(requestDTO.photo());
         return AddPaintingGrpcRequest.newBuilder()
                 .setTitle(requestDTO.title() == null
                         ? ""
@@ -37,15 +38,15 @@ public class PaintingMapper {
                 .setMuseumId(requestDTO.museum() == null
                         ? ""
                         : requestDTO.museum().id().toString())
-                .setPhoto(requestDTO.photo() == null
-                        ? ""
-                        : requestDTO.photo())
+                .setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat())
                 .build();
     }
 
     @Nonnull
     public static UpdatePaintingGrpcRequest toGrpcModel(final UpdatePaintingRequestDTO requestDTO
     ) {
+        final var photo = ImageMapper.fromDataUri(requestDTO.photo());
         return UpdatePaintingGrpcRequest.newBuilder()
                 .setId(requestDTO.id() == null
                         ? ""
@@ -62,9 +63,8 @@ public class PaintingMapper {
                 .setMuseumId(requestDTO.museum() == null
                         ? ""
                         : requestDTO.museum().id().toString())
-                .setPhoto(requestDTO.photo() == null
-                        ? ""
-                        : requestDTO.photo())
+                .setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat())
                 .build();
     }
 
@@ -82,9 +82,10 @@ public class PaintingMapper {
                         : grpcResponseModel.getDescription())
                 .artist(ArtistMapper.toDTO(grpcResponseModel.getArtist()))
                 .museum(MuseumMapper.toDTO(grpcResponseModel.getMuseum()))
-                .photo(grpcResponseModel.getPhoto().isEmpty()
-                        ? null
-                        : grpcResponseModel.getPhoto())
+                .photo(ImageMapper.toDataUri(
+                        grpcResponseModel.getPhotoContent(),
+                        grpcResponseModel.getPhotoFormat(),
+                        grpcResponseModel.getPhoto()))
                 .build();
     }
 
@@ -92,6 +93,7 @@ public class PaintingMapper {
     public static PaintingsFilterGrpcRequest toFilter(@Nullable final String name,
                                                       @Nullable final UUID artistId,
                                                       boolean isOriginalPhoto,
+                                                      boolean isPlaceholderPhoto,
                                                       final Pageable pageable
     ) {
         return PaintingsFilterGrpcRequest.newBuilder()
@@ -104,6 +106,7 @@ public class PaintingMapper {
                                 ? ""
                                 : artistId.toString())
                 .setOriginalPhoto(isOriginalPhoto)
+                .setPlaceholderPhoto(isPlaceholderPhoto)
                 .setPageable(
                         PageableMapper.toPageableGrpc(pageable))
                 .build();
@@ -111,13 +114,14 @@ public class PaintingMapper {
 
     @Nonnull
     public static Page<PaintingDTO> toPageDTO(final PaintingsGrpcResponse response) {
-        return new PageImpl<>(
+        return new RestPage<>(
                 response.getDataList().stream()
                         .map(PaintingMapper::toDTO)
                         .toList(),
                 PageRequest.of(response.getCurrentPage(),
                         response.getItemsPerPage()),
-                response.getTotalItems()
+                response.getTotalItems(),
+                response.getDegraded()
         );
     }
 
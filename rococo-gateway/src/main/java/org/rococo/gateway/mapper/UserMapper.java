@@ -22,6 +22,7 @@ public class UserMapper {
 
     @Nonnull
     public static CreateUserGrpcRequest toGrpcModel(final CreateUserRequestDTO requestDTO) {
+        final var photo = ImageMapper.fromDataUri(requestDTO.photo());
         return CreateUserGrpcRequest.newBuilder()
                 .setUsername(requestDTO.username() == null
                         ? ""
@@ -32,9 +33,8 @@ public class UserMapper {
                 .setLastName(requestDTO.lastName() == null
                         ? ""
                         : requestDTO.lastName())
-                .setPhoto(requestDTO.photo() == null
-                        ? ""
-                        : requestDTO.photo())
+                .setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat())
                 .build();
     }
 
@@ -42,6 +42,7 @@ public class UserMapper {
     public static UpdateUserGrpcRequest toGrpcModel(final UUID id,
                                                     final UpdateUserRequestDTO requestDTO
     ) {
+        final var photo = ImageMapper.fromDataUri(requestDTO.photo());
         return UpdateUserGrpcRequest.newBuilder()
                 .setId(id.toString())
                 .setFirstName(requestDTO.firstName() == null
@@ -50,9 +51,8 @@ public class UserMapper {
                 .setLastName(requestDTO.lastName() == null
                         ? ""
                         : requestDTO.lastName())
-                .setPhoto(requestDTO.photo() == null
-                        ? ""
-                        : requestDTO.photo())
+                .setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat())
                 .build();
     }
 
@@ -71,9 +71,10 @@ public class UserMapper {
                 .lastName(grpcResponseModel.getLastName().isEmpty()
                         ? null
                         : grpcResponseModel.getLastName())
-                .photo(grpcResponseModel.getPhoto().isEmpty()
-                        ? null
-                        : grpcResponseModel.getPhoto())
+                .photo(ImageMapper.toDataUri(
+                        grpcResponseModel.getPhotoContent(),
+                        grpcResponseModel.getPhotoFormat(),
+                        grpcResponseModel.getPhoto()))
                 .build();
     }
 
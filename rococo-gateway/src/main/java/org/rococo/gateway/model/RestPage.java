@@ -10,8 +10,14 @@ import org.springframework.data.domain.Pageable;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Page of REST response. Degraded page lacks data of a dependency which did not answer in time, e.g. photos,
+ * it is marked by header, see {@link org.rococo.gateway.controller.DegradedPageAdvice}.
+ */
 public class RestPage<T> extends PageImpl<T> {
 
+    private final boolean degraded;
+
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public RestPage(@JsonProperty("content") List<T> content,
                     @JsonProperty("number") int number,
@@ -25,17 +31,28 @@ public class RestPage<T> extends PageImpl<T> {
                     @JsonProperty("numberOfElements") int numberOfElements,
                     @JsonProperty("empty") boolean empty) {
         super(content, PageRequest.of(number, size), totalElements);
+        this.degraded = false;
     }
 
-    public RestPage(List<T> content, Pageable pageable, long total) {
+    public RestPage(List<T> content, Pageable pageable, long total, boolean degraded) {
         super(content, pageable, total);
+        this.degraded = degraded;
+    }
+
+    public RestPage(List<T> content, Pageable pageable, long total) {
+        this(content, pageable, total, false);
     }
 
     public RestPage(List<T> content) {
         super(content);
+        this.degraded = false;
     }
 
     public RestPage() {
-        super(new ArrayList<T>());
+        this(new ArrayList<T>());
+    }
+
+    public boolean isDegraded() {
+        return degraded;
     }
 }
\ No newline at end of file
@@ -125,8 +125,8 @@ class ArtistControllerIT {
     void delete_ExistingArtist_Success() throws Exception {
 
         // Stubs
-        when(artistsClient.findById(artistId))
-                .thenReturn(Optional.of(artist));
+        when(artistsClient.existsById(artistId))
+                .thenReturn(true);
         doNothing().when(artistsClient)
                 .delete(artistId);
 
@@ -39,8 +39,12 @@ class ArtistControllerTests {
     @DisplayName("FindById: returns artist when found")
     void findById_Success() {
 
+        // Stubs
+        when(artistsClient.findById(artistId))
+                .thenReturn(Optional.of(artistDTO));
+
         // Steps
-        final var result = artistController.findById(artistDTO);
+        final var result = artistController.findById(artistId);
 
         // Assertions
         assertEquals(artistDTO, result);
@@ -56,7 +60,7 @@ class ArtistControllerTests {
                 .thenReturn(Optional.empty());
 
         // Assertions
-        assertThrows(ArtistNotFoundException.class, () -> artistController.artist(artistId));
+        assertThrows(ArtistNotFoundException.class, () -> artistController.findById(artistId));
         verify(artistsClient).findById(artistId);
 
     }
@@ -66,14 +70,32 @@ class ArtistControllerTests {
     void delete_Success() {
 
         // Stubs
+        when(artistsClient.existsById(artistId))
+                .thenReturn(true);
         doNothing().when(artistsClient)
                 .delete(artistId);
 
         // Steps
-        artistController.delete(artistDTO);
+        artistController.delete(artistId);
 
         // Assertions
         verify(artistsClient).delete(artistId);
+        verify(artistsClient, never()).findById(artistId);
+
+    }
+
+    @Test
+    @DisplayName("Delete: throws ArtistNotFoundException when artist not found")
+    void delete_ThrowsArtistNotFoundException_IfArtistNotFound() {
+
+        // Stubs
+        when(artistsClient.existsById(artistId))
+                .thenReturn(false);
+
+        // Steps & Assertions
+        assertThrows(ArtistNotFoundException.class, () -> artistController.delete(artistId));
+
+        verify(artistsClient, never()).delete(artistId);
 
     }
 
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Test;
 import org.rococo.gateway.client.ArtistsGrpcClient;
 import org.rococo.gateway.ex.ArtistAlreadyExistsException;
 import org.rococo.gateway.ex.ArtistNotFoundException;
+import org.rococo.gateway.model.RestPage;
 import org.rococo.gateway.model.artists.AddArtistRequestDTO;
 import org.rococo.gateway.model.artists.ArtistDTO;
 import org.rococo.gateway.model.artists.UpdateArtistRequestDTO;
@@ -36,6 +37,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -248,7 +250,7 @@ class ArtistsControllerIT {
         );
 
         // Stubs
-        when(artistsClient.findAll(any(), anyBoolean(), any()))
+        when(artistsClient.findAll(any(), anyBoolean(), anyBoolean(), any()))
                 .thenReturn(page);
 
         // Steps
@@ -288,6 +290,65 @@ class ArtistsControllerIT {
 
     }
 
+    @Test
+    @DisplayName("FindAll: marks page without data of slow dependency by header")
+    void findAll_ReturnsDegradedHeader_IfPageIsDegraded() throws Exception {
+
+        // Data
+        final Page<ArtistDTO> page = new RestPage<>(List.of(artist), PageRequest.of(0, 20), 1, true);
+
+        // Stubs
+        when(artistsClient.findAll(any(), anyBoolean(), anyBoolean(), any()))
+                .thenReturn(page);
+
+        // Steps
+        mockMvc.perform(get(ARTIST_URL)
+                        .param("size", "20")
+                        .param("sort", "name,asc"))
+                .andDo(print())
+
+                // Assertions
+                .andExpectAll(
+                        status().isOk(),
+                        header().string(DegradedPageAdvice.DEGRADED_HEADER, "true"),
+                        content().json("""
+                                {
+                                  "page": {
+                                    "size": 20,
+                                    "number": 0,
+                                    "totalElements": 1,
+                                    "totalPages": 1
+                                  }
+                                }""")
+                );
+
+    }
+
+    @Test
+    @DisplayName("FindAll: does not mark complete page by header")
+    void findAll_ReturnsNoDegradedHeader_IfPageIsComplete() throws Exception {
+
+        // Data
+        final Page<ArtistDTO> page = new RestPage<>(List.of(artist), PageRequest.of(0, 20), 1, false);
+
+        // Stubs
+        when(artistsClient.findAll(any(), anyBoolean(), anyBoolean(), any()))
+                .thenReturn(page);
+
+        // Steps
+        mockMvc.perform(get(ARTIST_URL)
+                        .param("size", "20")
+                        .param("sort", "name,asc"))
+                .andDo(print())
+
+                // Assertions
+                .andExpectAll(
+                        status().isOk(),
+                        header().doesNotExist(DegradedPageAdvice.DEGRADED_HEADER)
+                );
+
+    }
+
     @Test
     @DisplayName("FindAll: throws BAD_REQUEST when request has validation errors")
     void findAll_ThrowsBadRequest_IfRequestHasValidationErrors() throws Exception {
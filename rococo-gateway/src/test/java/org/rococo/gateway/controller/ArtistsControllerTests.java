@@ -150,21 +150,42 @@ class ArtistsControllerTests {
         final var pageResult = new PageImpl<>(List.of(artist), pageable, 1);
 
         // Stubs
-        when(artistsClient.findAll(query, false, pageable))
+        when(artistsClient.findAll(query, false, false, pageable))
                 .thenReturn(pageResult);
         doNothing().when(validationService)
                 .validateObject(any(), eq("ArtistsFindAllParamsValidationObject"));
 
         // Steps
-        Page<ArtistDTO> result = artistsController.findAll(query, pageable, requestParams);
+        Page<ArtistDTO> result = artistsController.findAll(query, false, pageable, requestParams);
 
         // Assertions
         assertEquals(pageResult, result);
-        verify(artistsClient).findAll(query, false, pageable);
+        verify(artistsClient).findAll(query, false, false, pageable);
         verify(validationService).validateObject(any(), eq("ArtistsFindAllParamsValidationObject"));
 
     }
 
+    @Test
+    @DisplayName("FindAll requests placeholder photos when placeholder requested")
+    void findAll_RequestsPlaceholders_IfPlaceholderRequested() {
+
+        // Data
+        final var pageable = PageRequest.of(0, 20, Sort.by("name").ascending());
+        final var pageResult = new PageImpl<>(List.of(artist), pageable, 1);
+
+        // Stubs
+        when(artistsClient.findAll(null, false, true, pageable))
+                .thenReturn(pageResult);
+
+        // Steps
+        Page<ArtistDTO> result = artistsController.findAll(null, true, pageable, Map.of("placeholder", "true"));
+
+        // Assertions
+        assertEquals(pageResult, result);
+        verify(artistsClient).findAll(null, false, true, pageable);
+
+    }
+
     @Test
     @DisplayName("Update: updates artist successfully")
     void update_Success() {
@@ -136,8 +136,8 @@ class MuseumControllerIT {
     void delete_ExistingMuseum_Success() throws Exception {
 
         // Stubs
-        when(museumsClient.findById(museumId))
-                .thenReturn(Optional.of(museum));
+        when(museumsClient.existsById(museumId))
+                .thenReturn(true);
         doNothing().when(museumsClient)
                 .delete(museumId);
 
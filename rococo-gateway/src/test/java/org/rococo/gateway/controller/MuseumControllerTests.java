@@ -50,8 +50,12 @@ class MuseumControllerTests {
                         .build())
                 .build();
 
+        // Stubs
+        when(museumsClient.findById(id))
+                .thenReturn(Optional.of(expectedMuseum));
+
         // Steps
-        MuseumDTO result = museumController.findById(expectedMuseum);
+        MuseumDTO result = museumController.findById(id);
 
         // Assertions
         assertEquals(expectedMuseum, result);
@@ -70,7 +74,7 @@ class MuseumControllerTests {
                 .thenReturn(Optional.empty());
 
         // Steps & Assertions
-        assertThrows(MuseumNotFoundException.class, () -> museumController.museum(id));
+        assertThrows(MuseumNotFoundException.class, () -> museumController.findById(id));
         verify(museumsClient).findById(id);
 
     }
@@ -81,21 +85,36 @@ class MuseumControllerTests {
 
         // Data
         final var id = UUID.randomUUID();
-        final var museum = MuseumDTO.builder()
-                .id(id)
-                .title("Test Museum")
-                .description("Test Description")
-                .photo("test-photo.jpg")
-                .build();
 
         // Stubs
+        when(museumsClient.existsById(id))
+                .thenReturn(true);
         doNothing().when(museumsClient).delete(id);
 
         // Steps
-        museumController.delete(museum);
+        museumController.delete(id);
 
         // Assertions
         verify(museumsClient).delete(id);
+        verify(museumsClient, never()).findById(id);
+
+    }
+
+    @Test
+    @DisplayName("Delete: throws MuseumNotFoundException when museum does not exist")
+    void delete_ThrowsMuseumNotFoundException_WhenMuseumNotFound() {
+
+        // Data
+        final var id = UUID.randomUUID();
+
+        // Stubs
+        when(museumsClient.existsById(id))
+                .thenReturn(false);
+
+        // Steps & Assertions
+        assertThrows(MuseumNotFoundException.class, () -> museumController.delete(id));
+
+        verify(museumsClient, never()).delete(id);
 
     }
 
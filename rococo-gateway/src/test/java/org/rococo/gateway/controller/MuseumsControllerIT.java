@@ -9,6 +9,7 @@ import org.rococo.gateway.client.MuseumsGrpcClient;
 import org.rococo.gateway.ex.CountryNotFoundException;
 import org.rococo.gateway.ex.MuseumAlreadyExistsException;
 import org.rococo.gateway.ex.MuseumNotFoundException;
+import org.rococo.gateway.model.RestPage;
 import org.rococo.gateway.model.countries.CountryDTO;
 import org.rococo.gateway.model.countries.CountryIdDTO;
 import org.rococo.gateway.model.countries.LocationRequestDTO;
@@ -41,6 +42,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -346,7 +348,7 @@ class MuseumsControllerIT {
         );
 
         // Stubs
-        when(museumsClient.findAll(any(), anyBoolean(), any()))
+        when(museumsClient.findAll(any(), anyBoolean(), anyBoolean(), any()))
                 .thenReturn(page);
 
         // Steps
@@ -402,6 +404,65 @@ class MuseumsControllerIT {
 
     }
 
+    @Test
+    @DisplayName("FindAll: marks page without data of slow dependency by header")
+    void findAll_ReturnsDegradedHeader_IfPageIsDegraded() throws Exception {
+
+        // Data
+        final Page<MuseumDTO> page = new RestPage<>(List.of(museum), PageRequest.of(0, 20), 1, true);
+
+        // Stubs
+        when(museumsClient.findAll(any(), anyBoolean(), anyBoolean(), any()))
+                .thenReturn(page);
+
+        // Steps
+        mockMvc.perform(get(MUSEUM_URL)
+                        .param("size", "20")
+                        .param("sort", "title,asc"))
+                .andDo(print())
+
+                // Assertions
+                .andExpectAll(
+                        status().isOk(),
+                        header().string(DegradedPageAdvice.DEGRADED_HEADER, "true"),
+                        content().json("""
+                                {
+                                  "page": {
+                                    "size": 20,
+                                    "number": 0,
+                                    "totalElements": 1,
+                                    "totalPages": 1
+                                  }
+                                }""")
+                );
+
+    }
+
+    @Test
+    @DisplayName("FindAll: does not mark complete page by header")
+    void findAll_ReturnsNoDegradedHeader_IfPageIsComplete() throws Exception {
+
+        // Data
+        final Page<MuseumDTO> page = new RestPage<>(List.of(museum), PageRequest.of(0, 20), 1, false);
+
+        // Stubs
+        when(museumsClient.findAll(any(), anyBoolean(), anyBoolean(), any()))
+                .thenReturn(page);
+
+        // Steps
+        mockMvc.perform(get(MUSEUM_URL)
+                        .param("size", "20")
+                        .param("sort", "title,asc"))
+                .andDo(print())
+
+                // Assertions
+                .andExpectAll(
+                        status().isOk(),
+                        header().doesNotExist(DegradedPageAdvice.DEGRADED_HEADER)
+                );
+
+    }
+
     @Test
     @DisplayName("FindAll: throws BAD_REQUEST when request has validation errors")
     void findAll_ThrowsBadRequest_IfRequestHasValidationErrors() throws Exception {
@@ -181,18 +181,18 @@ class MuseumsControllerTests {
         final var expectedPage = new PageImpl<>(List.of(museum), pageable, 1);
 
         // Stubs
-        when(museumsClient.findAll(name, false, pageable))
+        when(museumsClient.findAll(name, false, false, pageable))
                 .thenReturn(expectedPage);
         doNothing().when(validationService)
                 .validateObject(any(), eq("MuseumsFindAllParamsValidationObject"));
 
         // Steps
-        final var result = museumsController.findAll(name, pageable, requestParams);
+        final var result = museumsController.findAll(name, false, pageable, requestParams);
 
         // Assertions
         assertEquals(expectedPage, result);
         assertEquals(1, result.getContent().size());
-        verify(museumsClient).findAll(name, false, pageable);
+        verify(museumsClient).findAll(name, false, false, pageable);
         verify(validationService).validateObject(any(), eq("MuseumsFindAllParamsValidationObject"));
 
     }
@@ -208,18 +208,18 @@ class MuseumsControllerTests {
         final Page<MuseumDTO> emptyPage = new PageImpl<>(Collections.emptyList(), pageable, 0);
 
         // Stubs
-        when(museumsClient.findAll(name, false, pageable))
+        when(museumsClient.findAll(name, false, false, pageable))
                 .thenReturn(emptyPage);
         doNothing().when(validationService)
                 .validateObject(any(), eq("MuseumsFindAllParamsValidationObject"));
 
         // Steps
-        final var result = museumsController.findAll(name, pageable, requestParams);
+        final var result = museumsController.findAll(name, false, pageable, requestParams);
 
         // Assertions
         assertTrue(result.getContent().isEmpty());
         assertEquals(0, result.getTotalElements());
-        verify(museumsClient).findAll(name, false, pageable);
+        verify(museumsClient).findAll(name, false, false, pageable);
         verify(validationService).validateObject(any(), eq("MuseumsFindAllParamsValidationObject"));
 
     }
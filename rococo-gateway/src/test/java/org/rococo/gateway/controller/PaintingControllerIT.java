@@ -154,8 +154,8 @@ class PaintingControllerIT {
     void delete_ExistingPainting_Success() throws Exception {
 
         // Stubs
-        when(paintingsClient.findById(paintingId))
-                .thenReturn(Optional.of(painting));
+        when(paintingsClient.existsById(paintingId))
+                .thenReturn(true);
         doNothing().when(paintingsClient)
                 .delete(paintingId);
 
@@ -71,8 +71,12 @@ class PaintingControllerTests {
     @DisplayName("FindById: returns painting when found")
     void findById_Success() {
 
+        // Stubs
+        when(paintingsClient.findById(paintingId))
+                .thenReturn(Optional.of(painting));
+
         // Steps
-        PaintingDTO result = paintingController.findById(painting);
+        PaintingDTO result = paintingController.findById(paintingId);
 
         // Assertions
         assertEquals(painting, result);
@@ -88,7 +92,7 @@ class PaintingControllerTests {
                 .thenReturn(Optional.empty());
 
         // Steps & Assertions
-        assertThrows(PaintingNotFoundException.class, () -> paintingController.painting(paintingId));
+        assertThrows(PaintingNotFoundException.class, () -> paintingController.findById(paintingId));
         verify(paintingsClient).findById(paintingId);
 
     }
@@ -98,14 +102,17 @@ class PaintingControllerTests {
     void delete_Success() {
 
         // Stubs
+        when(paintingsClient.existsById(paintingId))
+                .thenReturn(true);
         doNothing().when(paintingsClient)
                 .delete(paintingId);
 
         // Steps
-        paintingController.delete(painting);
+        paintingController.delete(paintingId);
 
         // Assertions
         verify(paintingsClient).delete(paintingId);
+        verify(paintingsClient, never()).findById(paintingId);
 
     }
 
@@ -114,13 +121,13 @@ class PaintingControllerTests {
     void delete_PaintingNotFound_ThrowsException() {
 
         // Stubs
-        when(paintingsClient.findById(paintingId))
-                .thenReturn(Optional.empty());
+        when(paintingsClient.existsById(paintingId))
+                .thenReturn(false);
 
         // Steps & Assertions
-        assertThrows(PaintingNotFoundException.class, () -> paintingController.painting(paintingId));
+        assertThrows(PaintingNotFoundException.class, () -> paintingController.delete(paintingId));
 
-        verify(paintingsClient).findById(paintingId);
+        verify(paintingsClient, never()).findById(paintingId);
         verify(paintingsClient, never()).delete(paintingId);
 
     }
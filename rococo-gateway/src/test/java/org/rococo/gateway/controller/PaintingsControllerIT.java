@@ -10,6 +10,7 @@ import org.rococo.gateway.ex.ArtistNotFoundException;
 import org.rococo.gateway.ex.MuseumNotFoundException;
 import org.rococo.gateway.ex.PaintingAlreadyExistsException;
 import org.rococo.gateway.ex.PaintingNotFoundException;
+import org.rococo.gateway.model.RestPage;
 import org.rococo.gateway.model.artists.ArtistDTO;
 import org.rococo.gateway.model.artists.ArtistIdDTO;
 import org.rococo.gateway.model.countries.CountryDTO;
@@ -44,6 +45,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -385,7 +387,7 @@ class PaintingsControllerIT {
         final Page<PaintingDTO> page = new PageImpl<>(List.of(painting, updatedPainting), PageRequest.of(0, 20), 2);
 
         // Stubs
-        when(paintingsClient.findAll(any(), any(), anyBoolean(), any(Pageable.class)))
+        when(paintingsClient.findAll(any(), any(), anyBoolean(), anyBoolean(), any(Pageable.class)))
                 .thenReturn(page);
 
         // Steps
@@ -463,6 +465,65 @@ class PaintingsControllerIT {
 
     }
 
+    @Test
+    @DisplayName("FindAll: marks page without data of slow dependency by header")
+    void findAll_ReturnsDegradedHeader_IfPageIsDegraded() throws Exception {
+
+        // Data
+        final Page<PaintingDTO> page = new RestPage<>(List.of(painting), PageRequest.of(0, 20), 1, true);
+
+        // Stubs
+        when(paintingsClient.findAll(any(), any(), anyBoolean(), anyBoolean(), any(Pageable.class)))
+                .thenReturn(page);
+
+        // Steps
+        mockMvc.perform(get(PAINTING_URL)
+                        .param("size", "20")
+                        .param("sort", "title,asc"))
+                .andDo(print())
+
+                // Assertions
+                .andExpectAll(
+                        status().isOk(),
+                        header().string(DegradedPageAdvice.DEGRADED_HEADER, "true"),
+                        content().json("""
+                                {
+                                  "page": {
+                                    "size": 20,
+                                    "number": 0,
+                                    "totalElements": 1,
+                                    "totalPages": 1
+                                  }
+                                }""")
+                );
+
+    }
+
+    @Test
+    @DisplayName("FindAll: does not mark complete page by header")
+    void findAll_ReturnsNoDegradedHeader_IfPageIsComplete() throws Exception {
+
+        // Data
+        final Page<PaintingDTO> page = new RestPage<>(List.of(painting), PageRequest.of(0, 20), 1, false);
+
+        // Stubs
+        when(paintingsClient.findAll(any(), any(), anyBoolean(), anyBoolean(), any(Pageable.class)))
+                .thenReturn(page);
+
+        // Steps
+        mockMvc.perform(get(PAINTING_URL)
+                        .param("size", "20")
+                        .param("sort", "title,asc"))
+                .andDo(print())
+
+                // Assertions
+                .andExpectAll(
+                        status().isOk(),
+                        header().doesNotExist(DegradedPageAdvice.DEGRADED_HEADER)
+                );
+
+    }
+
     @Test
     @DisplayName("FindAll: throws BAD_REQUEST when request has validation errors")
     void findAll_ThrowsBadRequest_IfRequestHasValidationErrors() throws Exception {
@@ -222,17 +222,17 @@ class PaintingsControllerTests {
         Page<PaintingDTO> expectedPage = new PageImpl<>(Collections.singletonList(painting), pageable, 1);
 
         // Stubs
-        when(paintingsClient.findAll(painting.getTitle(), artistId, false, pageable))
+        when(paintingsClient.findAll(painting.getTitle(), artistId, false, false, pageable))
                 .thenReturn(expectedPage);
         doNothing().when(validationService)
                 .validateObject(any(), eq("PaintingsFindAllParamsValidationObject"));
 
         // Steps
-        final var result = paintingsController.findAll(painting.getTitle(), artistId, pageable, Map.of("title", painting.getTitle()));
+        final var result = paintingsController.findAll(painting.getTitle(), artistId, false, pageable, Map.of("title", painting.getTitle()));
 
         // Assertions
         assertEquals(expectedPage, result);
-        verify(paintingsClient).findAll(painting.getTitle(), artistId, false, pageable);
+        verify(paintingsClient).findAll(painting.getTitle(), artistId, false, false, pageable);
         verify(validationService).validateObject(any(), eq("PaintingsFindAllParamsValidationObject"));
 
     }
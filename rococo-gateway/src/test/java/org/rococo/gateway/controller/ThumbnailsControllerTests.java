@@ -0,0 +1,65 @@
+package org.rococo.gateway.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.gateway.client.FilesGrpcClient;
+import org.rococo.gateway.ex.BadRequestException;
+import org.rococo.gateway.model.EntityType;
+import org.rococo.gateway.model.files.ImageDTO;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ThumbnailsController: Module tests")
+class ThumbnailsControllerTests {
+
+    @Mock
+    private FilesGrpcClient filesClient;
+
+    @InjectMocks
+    private ThumbnailsController thumbnailsController;
+
+    @Test
+    @DisplayName("FindAll: returns thumbnails of entities with given type")
+    void findAll_Success() {
+
+        // Data
+        final var ids = List.of(UUID.randomUUID());
+        final var thumbnails = List.of(new ImageDTO(ids.getFirst(), "data:image/png;base64,AA=="));
+
+        // Stubs
+        when(filesClient.findAll(EntityType.PAINTING, ids))
+                .thenReturn(thumbnails);
+
+        // Steps
+        var result = thumbnailsController.findAll("painting", ids);
+
+        // Assertions
+        assertEquals(thumbnails, result);
+
+    }
+
+    @Test
+    @DisplayName("FindAll: throws BadRequestException when too many ids requested")
+    void findAll_ThrowsBadRequestException_IfTooManyIds() {
+
+        // Data
+        final var ids = Collections.nCopies(101, UUID.randomUUID());
+
+        // Steps & Assertions
+        assertThrows(BadRequestException.class, () -> thumbnailsController.findAll("artist", ids));
+        verifyNoInteractions(filesClient);
+
+    }
+
+}
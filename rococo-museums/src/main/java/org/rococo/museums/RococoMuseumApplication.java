@@ -1,9 +1,12 @@
 package org.rococo.museums;
 
+import org.rococo.common.db.DataSourceMetricsConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
+@Import(DataSourceMetricsConfig.class)
 public class RococoMuseumApplication {
 
     public static void main(String[] args) {
@@ -2,11 +2,11 @@ package org.rococo.museums.client;
 
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.rococo.common.loader.BatchLoader;
+import org.rococo.common.loader.BatchLoaders;
 import org.rococo.grpc.common.page.PageableGrpc;
-import org.rococo.grpc.common.type.IdType;
 import org.rococo.grpc.common.type.IdsType;
 import org.rococo.grpc.common.type.NameType;
 import org.rococo.grpc.countries.CountriesGrpcResponse;
@@ -18,13 +18,19 @@ import org.springframework.stereotype.Service;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Countries are looked up by ids through batch loader: ids requested at about the same time are sent as one
+ * {@code findAllByIds} call, and one request finds every country once.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 @ParametersAreNonnullByDefault
 public class CountriesGrpcClient {
 
@@ -33,16 +39,16 @@ public class CountriesGrpcClient {
     @GrpcClient("grpcCountriesClient")
     private CountriesServiceGrpc.CountriesServiceBlockingStub countriesServiceStub;
 
+    private final BatchLoader<UUID, CountryGrpcResponse> countriesLoader;
+
+    public CountriesGrpcClient(BatchLoaders loaders) {
+        this.countriesLoader = loaders.create("countries", this::fetchAllByIds);
+    }
+
     public Optional<CountryGrpcResponse> findById(UUID id) {
         try {
-            var country = countriesServiceStub.findById(
-                    IdType.newBuilder()
-                            .setId(id.toString())
-                            .build());
-            return Optional.of(country);
+            return countriesLoader.get(id);
         } catch (StatusRuntimeException ex) {
-            if (ex.getStatus().getCode() == Status.Code.NOT_FOUND)
-                return Optional.empty();
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
     }
@@ -63,13 +69,10 @@ public class CountriesGrpcClient {
 
     public List<CountryGrpcResponse> findAllByIds(List<UUID> countriesIds) {
         try {
-            var idsType = IdsType.newBuilder()
-                    .addAllId(countriesIds.stream()
+            return List.copyOf(countriesLoader.getAll(countriesIds.stream()
                             .filter(Objects::nonNull)
-                            .map(UUID::toString)
                             .toList())
-                    .build();
-            return countriesServiceStub.findAllByIds(idsType).getCountriesList();
+                    .values());
         } catch (StatusRuntimeException ex) {
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
@@ -86,4 +89,14 @@ public class CountriesGrpcClient {
         }
     }
 
+    private Map<UUID, CountryGrpcResponse> fetchAllByIds(List<UUID> countriesIds) {
+        var idsType = IdsType.newBuilder()
+                .addAllId(countriesIds.stream()
+                        .map(UUID::toString)
+                        .toList())
+                .build();
+        return countriesServiceStub.findAllByIds(idsType).getCountriesList().stream()
+                .collect(Collectors.toMap(country -> UUID.fromString(country.getId()), Function.identity()));
+    }
+
 }
@@ -3,19 +3,27 @@ package org.rococo.museums.client;
 import com.google.protobuf.ByteString;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.rococo.common.files.ImageCache;
+import org.rococo.common.files.ImageUploader;
+import org.rococo.common.loader.BatchLoader;
+import org.rococo.common.loader.BatchLoaders;
 import org.rococo.grpc.files.*;
 import org.rococo.museums.ex.ImageAlreadyExistsException;
 import org.rococo.museums.ex.ImageNotFoundException;
 import org.rococo.museums.ex.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -24,7 +32,6 @@ import static org.rococo.grpc.files.EntityTypeGrpc.MUSEUM;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 @ParametersAreNonnullByDefault
 public class FilesGrpcClient {
 
@@ -33,14 +40,30 @@ public class FilesGrpcClient {
     @GrpcClient("grpcFilesClient")
     private FilesServiceGrpc.FilesServiceBlockingStub filesServiceStub;
 
-    public void add(UUID entityId, String image) {
+    @GrpcClient("grpcFilesClient")
+    private FilesServiceGrpc.FilesServiceStub filesServiceAsyncStub;
+
+    @Value("${rococo-museums.files.upload-timeout:30s}")
+    private Duration uploadTimeout;
+
+    private final ImageCache<UUID> imageCache;
+
+    private final Map<RenditionGrpc, BatchLoader<UUID, ImageGrpcResponse>> imagesLoaders = new EnumMap<>(RenditionGrpc.class);
+
+    public FilesGrpcClient(ImageCache<UUID> imageCache, BatchLoaders loaders) {
+        this.imageCache = imageCache;
+        for (var rendition : List.of(RenditionGrpc.THUMBNAIL, RenditionGrpc.ORIGINAL))
+            imagesLoaders.put(rendition, loaders.create(
+                    "images-" + rendition.name().toLowerCase(),
+                    entityIds -> fetchAllByIds(entityIds, rendition)));
+    }
+
+    /**
+     * @param format format of raw image bytes, empty if content is data-URI
+     */
+    public void add(UUID entityId, ByteString content, String format) {
         try {
-            var request = ImageGrpcRequest.newBuilder()
-                    .setEntityType(MUSEUM)
-                    .setEntityId(entityId.toString())
-                    .setContent(ByteString.copyFromUtf8(image))
-                    .build();
-            filesServiceStub.addImage(request);
+            upload(entityId, content, format, false);
         } catch (StatusRuntimeException ex) {
             if (ex.getStatus().getCode() == Status.Code.ALREADY_EXISTS)
                 throw new ImageAlreadyExistsException(entityId);
@@ -48,13 +71,22 @@ public class FilesGrpcClient {
         }
     }
 
+    /**
+     * Downloads original image, unless local copy is still current.
+     */
     public Optional<ImageGrpcResponse> findImage(UUID entityId) {
         try {
-            var request = FindImageGrpcRequest.newBuilder()
-                    .setEntityType(MUSEUM)
-                    .setEntityId(entityId.toString())
-                    .build();
-            return Optional.of(filesServiceStub.findByEntityTypeAndId(request));
+            final var cached = imageCache.get(entityId, RenditionGrpc.ORIGINAL);
+            final var chunks = filesServiceStub.downloadImage(
+                    DownloadImageGrpcRequest.newBuilder()
+                            .setEntityType(MUSEUM)
+                            .setEntityId(entityId.toString())
+                            .setKnownHash(cached.map(ImageGrpcResponse::getContentHash).orElse(""))
+                            .build());
+            final var header = chunks.next().getHeader();
+            if (header.getNotModified() && cached.isPresent())
+                return cached;
+            return Optional.of(imageCache.put(entityId, toImageResponse(header, chunks), RenditionGrpc.ORIGINAL));
         } catch (StatusRuntimeException ex) {
             if (ex.getStatus().getCode() == Status.Code.NOT_FOUND)
                 return Optional.empty();
@@ -62,38 +94,60 @@ public class FilesGrpcClient {
         }
     }
 
+    /**
+     * Checks image metadata only, image itself is not transferred.
+     */
+    public boolean exists(UUID entityId) {
+        try {
+            return filesServiceStub.existsImage(
+                            FindImageGrpcRequest.newBuilder()
+                                    .setEntityType(MUSEUM)
+                                    .setEntityId(entityId.toString())
+                                    .build())
+                    .getStatus();
+        } catch (StatusRuntimeException ex) {
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+    }
+
+    /**
+     * Finds images through batch loader of rendition, so images requested at about the same time are fetched
+     * in one call.
+     */
     public List<ImageGrpcResponse> findAllByIds(final List<UUID> entityIds, boolean isOriginal) {
 
+        final var rendition = isOriginal ? RenditionGrpc.ORIGINAL : RenditionGrpc.THUMBNAIL;
         try {
-            final var grpcImagesStream = filesServiceStub.findAllByEntityTypeAndIds(
-                    FindImagesGrpcRequest.newBuilder()
-                            .setEntityType(MUSEUM)
-                            .addAllEntityIds(entityIds.stream()
-                                    .map(UUID::toString)
-                                    .toList())
-                            .setIsOriginal(isOriginal)
-                            .build());
+            return List.copyOf(imagesLoaders.get(rendition).getAll(entityIds).values());
+        } catch (StatusRuntimeException ex) {
+            log.info(ex.getMessage());
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+
+    }
 
-            List<ImageGrpcResponse> response = new ArrayList<>();
-            while (grpcImagesStream.hasNext()) {
-                response.add(grpcImagesStream.next());
-            }
+    /**
+     * Finds blurhash placeholders of a few dozen bytes, images whose placeholders are not generated yet have no content.
+     * Placeholders are not kept locally: they are cheaper to send than to look up, and they share content hash
+     * with thumbnails kept in the cache.
+     */
+    public List<ImageGrpcResponse> findAllPlaceholders(final List<UUID> entityIds) {
+        try {
+            final List<ImageGrpcResponse> response = new ArrayList<>();
+            findAllByIds(entityIds, RenditionGrpc.PLACEHOLDER, Map.of()).forEachRemaining(response::add);
             return response;
         } catch (StatusRuntimeException ex) {
             log.info(ex.getMessage());
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
-
     }
 
-    public void update(UUID entityId, String image) {
+    /**
+     * @param format format of raw image bytes, empty if content is data-URI
+     */
+    public void update(UUID entityId, ByteString content, String format) {
         try {
-            filesServiceStub.updateImage(
-                    ImageGrpcRequest.newBuilder()
-                            .setEntityType(MUSEUM)
-                            .setEntityId(entityId.toString())
-                            .setContent(ByteString.copyFrom(image, StandardCharsets.UTF_8))
-                            .build());
+            upload(entityId, content, format, true);
         } catch (StatusRuntimeException ex) {
             throw (ex.getStatus().getCode() == Status.Code.NOT_FOUND)
                     ? new ImageNotFoundException(entityId)
@@ -115,4 +169,78 @@ public class FilesGrpcClient {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Fetches images sending content hashes of local copies: images not modified since are taken from local copies,
+     * ones evicted meanwhile are requested again without hashes.
+     */
+    private Map<UUID, ImageGrpcResponse> fetchAllByIds(List<UUID> entityIds, RenditionGrpc rendition) {
+
+        final Map<UUID, ImageGrpcResponse> response = new HashMap<>();
+        final List<UUID> evictedIds = new ArrayList<>();
+        findAllByIds(entityIds, rendition, imageCache.knownHashes(entityIds, rendition))
+                .forEachRemaining(image -> {
+                    final var entityId = UUID.fromString(image.getEntityId());
+                    if (!image.getNotModified()) {
+                        response.put(entityId, imageCache.put(entityId, image, rendition));
+                        return;
+                    }
+                    imageCache.get(entityId, rendition)
+                            .ifPresentOrElse(cached -> response.put(entityId, cached), () -> evictedIds.add(entityId));
+                });
+        if (!evictedIds.isEmpty())
+            findAllByIds(evictedIds, rendition, Map.of())
+                    .forEachRemaining(image -> {
+                        final var entityId = UUID.fromString(image.getEntityId());
+                        response.put(entityId, imageCache.put(entityId, image, rendition));
+                    });
+        return response;
+
+    }
+
+    private Iterator<ImageGrpcResponse> findAllByIds(List<UUID> entityIds,
+                                                     RenditionGrpc rendition,
+                                                     Map<String, String> knownHashes) {
+        return filesServiceStub.findAllByEntityTypeAndIds(
+                FindImagesGrpcRequest.newBuilder()
+                        .setEntityType(MUSEUM)
+                        .addAllEntityIds(entityIds.stream()
+                                .map(UUID::toString)
+                                .toList())
+                        .setRendition(rendition)
+                        .putAllKnownHashes(knownHashes)
+                        .setRawContent(true)
+                        .build());
+    }
+
+    /**
+     * Assembles downloaded image into response with raw content, chunks following the header are joined
+     * without copying.
+     */
+    private static ImageGrpcResponse toImageResponse(ImageDownloadHeader header, Iterator<ImageDownloadChunk> chunks) {
+
+        var content = ByteString.empty();
+        while (chunks.hasNext())
+            content = content.concat(chunks.next().getData());
+
+        return ImageGrpcResponse.newBuilder()
+                .setEntityId(header.getEntityId())
+                .setContent(content)
+                .setContentHash(header.getContentHash())
+                .setFormat(header.getFormat())
+                .build();
+
+    }
+
+    private void upload(UUID entityId, ByteString content, String format, boolean isUpdate) {
+        ImageUploader.upload(filesServiceAsyncStub,
+                ImageUploadHeader.newBuilder()
+                        .setEntityType(MUSEUM)
+                        .setEntityId(entityId.toString())
+                        .setIsUpdate(isUpdate)
+                        .setFormat(format)
+                        .build(),
+                content,
+                uploadTimeout);
+    }
+
+}
@@ -0,0 +1,38 @@
+package org.rococo.museums.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.rococo.common.loader.BatchLoaders;
+import org.rococo.common.loader.ConcurrentLookups;
+import org.rococo.common.loader.RequestScopeInterceptor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class BatchLoaderConfig {
+
+    @Bean(destroyMethod = "close")
+    public BatchLoaders batchLoaders(MeterRegistry meterRegistry,
+                                     @Value("${rococo-museums.loader.window:2ms}") Duration window,
+                                     @Value("${rococo-museums.loader.max-batch-size:200}") int maxBatchSize,
+                                     @Value("${rococo-museums.loader.timeout:5s}") Duration timeout,
+                                     @Value("${rococo-museums.loader.threads:16}") int threads) {
+        return new BatchLoaders(meterRegistry, window, maxBatchSize, timeout, threads);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ConcurrentLookups concurrentLookups(@Value("${rococo-museums.lookups.budget:3s}") Duration budget,
+                                               @Value("${rococo-museums.lookups.threads:64}") int threads) {
+        return new ConcurrentLookups(budget, threads);
+    }
+
+    @Bean
+    @GrpcGlobalServerInterceptor
+    public RequestScopeInterceptor requestScopeInterceptor() {
+        return new RequestScopeInterceptor();
+    }
+
+}
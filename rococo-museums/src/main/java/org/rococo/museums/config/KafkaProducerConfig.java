@@ -0,0 +1,51 @@
+package org.rococo.museums.config;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.rococo.museums.model.MuseumEventDTO;
+import org.rococo.museums.service.MuseumEventPublisher;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.apache.kafka.clients.producer.ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG;
+import static org.apache.kafka.clients.producer.ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG;
+
+@Configuration
+@RequiredArgsConstructor
+public class KafkaProducerConfig {
+
+    private final KafkaProperties kafkaProperties;
+
+    @Bean
+    public ProducerFactory<String, MuseumEventDTO> museumEventsProducerFactory(SslBundles sslBundles) {
+        Map<String, Object> properties = new HashMap<>(kafkaProperties.buildProducerProperties(sslBundles));
+        properties.put(KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        properties.put(VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        return new DefaultKafkaProducerFactory<>(properties);
+    }
+
+    @Bean
+    public KafkaTemplate<String, MuseumEventDTO> museumEventsKafkaTemplate(SslBundles sslBundles) {
+        return new KafkaTemplate<>(museumEventsProducerFactory(sslBundles));
+    }
+
+    @Bean
+    public NewTopic museumEventsTopic() {
+        return TopicBuilder.name(MuseumEventPublisher.TOPIC)
+                .partitions(10)
+                .replicas(1)
+                .build();
+    }
+
+}
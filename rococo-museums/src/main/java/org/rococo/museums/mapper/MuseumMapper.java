@@ -1,21 +1,27 @@
 package org.rococo.museums.mapper;
 
+import com.google.protobuf.ByteString;
 import org.rococo.grpc.countries.CountryGrpcResponse;
 import org.rococo.grpc.files.ImageGrpcResponse;
 import org.rococo.grpc.museums.*;
 import org.rococo.museums.data.MuseumEntity;
+import org.rococo.museums.model.EventType;
+import org.rococo.museums.model.MuseumEventDTO;
 import org.rococo.museums.model.MuseumFilter;
 import org.springframework.data.domain.Page;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Base64;
 import java.util.Map;
 import java.util.UUID;
 
 @ParametersAreNonnullByDefault
 public class MuseumMapper {
 
+    private static final String DATA_URI_PREFIX = "data:image/%s;base64,";
+
     private MuseumMapper() {
     }
 
@@ -55,9 +61,16 @@ public class MuseumMapper {
                 .build();
     }
 
+    /**
+     * @param image       raw image with its format, or data-URI without format sent by old client
+     * @param legacyPhoto raw photo is also set as data-URI for clients not reading photo_content yet
+     */
     @Nonnull
-    public static MuseumGrpcResponse toGrpcResponse(MuseumEntity entity, @Nullable CountryGrpcResponse country, @Nullable ImageGrpcResponse image) {
-            return MuseumGrpcResponse.newBuilder()
+    public static MuseumGrpcResponse toGrpcResponse(MuseumEntity entity,
+                                                    @Nullable CountryGrpcResponse country,
+                                                    @Nullable ImageGrpcResponse image,
+                                                    boolean legacyPhoto) {
+            final var response = MuseumGrpcResponse.newBuilder()
                     .setId(entity.getId() == null
                             ? ""
                             : entity.getId().toString())
@@ -72,22 +85,46 @@ public class MuseumMapper {
                             : country)
                     .setCity(entity.getCity() == null
                             ? ""
-                            : entity.getCity())
-                    .setPhoto(image == null
-                            ? ""
-                            : image.getContent().toStringUtf8())
-                    .build();
+                            : entity.getCity());
+
+            if (image == null || image.getContent().isEmpty())
+                return response.build();
+            if (image.getFormat().isEmpty())
+                return response.setPhoto(image.getContent().toStringUtf8()).build();
+
+            response.setPhotoContent(image.getContent())
+                    .setPhotoFormat(image.getFormat());
+            if (legacyPhoto)
+                response.setPhoto(toDataUri(image));
+            return response.build();
+    }
+
+    /**
+     * Photo of request as it is sent to rococo-files: raw image with its format,
+     * or data-URI without format if client does not use photo_content yet.
+     */
+    @Nonnull
+    public static ImageGrpcResponse toPhoto(AddMuseumGrpcRequest request) {
+        return toPhoto(request.getPhotoContent(), request.getPhotoFormat(), request.getPhoto());
     }
 
     @Nonnull
-    public static MuseumsGrpcResponse toPageGrpc(Page<MuseumEntity> page, Map<UUID, CountryGrpcResponse> countries, Map<UUID, ImageGrpcResponse> photos) {
+    public static ImageGrpcResponse toPhoto(UpdateMuseumGrpcRequest request) {
+        return toPhoto(request.getPhotoContent(), request.getPhotoFormat(), request.getPhoto());
+    }
+
+    @Nonnull
+    public static MuseumsGrpcResponse toPageGrpc(Page<MuseumEntity> page,
+                                                 Map<UUID, CountryGrpcResponse> countries,
+                                                 Map<UUID, ImageGrpcResponse> photos,
+                                                 boolean legacyPhoto) {
         return MuseumsGrpcResponse.newBuilder()
                 .setCurrentPage(page.getPageable().getPageNumber())
                 .setItemsPerPage(page.getSize())
                 .setTotalItems(page.getTotalElements())
                 .setTotalPages(page.getTotalPages())
                 .addAllData(page.getContent().stream()
-                        .map(museum -> MuseumMapper.toGrpcResponse(museum, countries.get(museum.getCountryId()), photos.get(museum.getId())))
+                        .map(museum -> MuseumMapper.toGrpcResponse(museum, countries.get(museum.getCountryId()), photos.get(museum.getId()), legacyPhoto))
                         .toList())
                 .build();
     }
@@ -106,4 +143,44 @@ public class MuseumMapper {
                 .build();
     }
 
+    @Nonnull
+    public static MuseumEventDTO toEvent(EventType type, MuseumEntity entity, CountryGrpcResponse country) {
+        return MuseumEventDTO.builder()
+                .type(type)
+                .id(entity.getId())
+                .title(entity.getTitle())
+                .description(entity.getDescription())
+                .city(entity.getCity())
+                .countryId(entity.getCountryId())
+                .countryName(country.getName())
+                .countryCode(country.getCode())
+                .build();
+    }
+
+    @Nonnull
+    public static MuseumEventDTO toDeletedEvent(UUID id) {
+        return MuseumEventDTO.builder()
+                .type(EventType.DELETED)
+                .id(id)
+                .build();
+    }
+
+    @Nonnull
+    private static String toDataUri(ImageGrpcResponse photo) {
+        return DATA_URI_PREFIX.formatted(photo.getFormat())
+                + Base64.getEncoder().encodeToString(photo.getContent().toByteArray());
+    }
+
+    @Nonnull
+    private static ImageGrpcResponse toPhoto(ByteString content, String format, String dataUri) {
+        return content.isEmpty()
+                ? ImageGrpcResponse.newBuilder()
+                .setContent(ByteString.copyFromUtf8(dataUri))
+                .build()
+                : ImageGrpcResponse.newBuilder()
+                .setContent(content)
+                .setFormat(format)
+                .build();
+    }
+
 }
@@ -0,0 +1,14 @@
+package org.rococo.museums.model;
+
+/**
+ * Change of museum published to Kafka
+ */
+public enum EventType {
+
+    ADDED,
+
+    UPDATED,
+
+    DELETED
+
+}
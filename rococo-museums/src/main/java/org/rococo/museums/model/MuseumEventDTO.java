@@ -0,0 +1,43 @@
+package org.rococo.museums.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Published to topic {@code museums} after museum is added, updated or deleted, with museum id as key.
+ * Carries country of museum as it was found in rococo-countries. Event of deleted museum has id only.
+ */
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MuseumEventDTO(
+
+        @JsonProperty("type")
+        EventType type,
+
+        @JsonProperty("id")
+        UUID id,
+
+        @JsonProperty("title")
+        String title,
+
+        @JsonProperty("description")
+        String description,
+
+        @JsonProperty("city")
+        String city,
+
+        @JsonProperty("countryId")
+        UUID countryId,
+
+        @JsonProperty("countryName")
+        String countryName,
+
+        @JsonProperty("countryCode")
+        String countryCode
+
+) implements Serializable {
+}
@@ -0,0 +1,33 @@
+package org.rococo.museums.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.museums.model.MuseumEventDTO;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Sends museum events to Kafka once transaction which changed the museum is committed, so rolled back changes
+ * are never published. Events are keyed by museum id: events of one museum are read in order they were sent.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MuseumEventPublisher {
+
+    public static final String TOPIC = "museums";
+
+    private final KafkaTemplate<String, MuseumEventDTO> kafkaTemplate;
+
+    @TransactionalEventListener
+    public void publish(MuseumEventDTO event) {
+        log.info("Publish museum event: {}", event);
+        kafkaTemplate.send(TOPIC, event.id().toString(), event)
+                .whenComplete((result, ex) -> {
+                    if (ex != null)
+                        log.error("Museum event is not published: {}", event, ex);
+                });
+    }
+
+}
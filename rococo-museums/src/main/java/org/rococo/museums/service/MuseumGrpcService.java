@@ -1,13 +1,17 @@
 package org.rococo.museums.service;
 
-import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.rococo.common.budget.LatencyBudgets;
+import org.rococo.common.loader.ConcurrentLookups;
+import org.rococo.grpc.common.page.IdsPageGrpcRequest;
 import org.rococo.grpc.common.type.IdType;
+import org.rococo.grpc.common.type.IdsType;
 import org.rococo.grpc.common.type.NameType;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.countries.CountryGrpcResponse;
 import org.rococo.grpc.files.ImageGrpcResponse;
 import org.rococo.grpc.museums.*;
@@ -20,14 +24,22 @@ import org.rococo.museums.ex.MuseumAlreadyExistsException;
 import org.rococo.museums.ex.MuseumNotFoundException;
 import org.rococo.museums.mapper.MuseumMapper;
 import org.rococo.museums.mapper.PageableMapper;
+import org.rococo.museums.model.EventType;
 import org.rococo.museums.specs.MuseumSpecs;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static org.rococo.common.tx.Compensations.runOrCompensate;
+
 @Slf4j
 @GrpcService
 @RequiredArgsConstructor
@@ -38,43 +50,64 @@ public class MuseumGrpcService extends MuseumsServiceGrpc.MuseumsServiceImplBase
     private final MuseumSpecs museumSpecs;
     private final FilesGrpcClient filesClient;
     private final CountriesGrpcClient countriesClient;
-
+    private final ConcurrentLookups lookups;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final LatencyBudgets latencyBudgets;
+
+    @Value("${rococo-museums.legacy-photo:false}")
+    private boolean legacyPhoto;
+
+    /**
+     * Country is looked up before short transaction, photo is sent to rococo-files after commit.
+     * Museum is removed if photo is not saved.
+     */
     @Override
-    @Transactional
     public void add(AddMuseumGrpcRequest request, StreamObserver<MuseumGrpcResponse> responseObserver) {
 
         log.info("Add new museum: {}", request);
 
         museumRepository.findByTitle(request.getTitle())
-                .ifPresentOrElse(
-                        museum -> {
-                            throw new MuseumAlreadyExistsException(request.getTitle());
-                        },
-                        () -> {
-                            var countryId = UUID.fromString(request.getCountryId());
-                            var country = countriesClient.findById(countryId)
-                                    .orElseThrow(() -> new CountryNotFoundException(countryId));
-
-                            var museum = museumRepository.save(
-                                    MuseumMapper.fromGrpcRequest(request)
-                                            .setCreatedDate(LocalDateTime.now()));
-                            filesClient.add(museum.getId(), request.getPhoto());
-
-                            responseObserver.onNext(
-                                    MuseumMapper.toGrpcResponse(
-                                            museum,
-                                            country,
-                                            ImageGrpcResponse.newBuilder()
-                                                    .setEntityId(museum.getId().toString())
-                                                    .setContent(ByteString.copyFromUtf8(request.getPhoto()))
-                                                    .build()));
-                            responseObserver.onCompleted();
-                        });
+                .ifPresent(museum -> {
+                    throw new MuseumAlreadyExistsException(request.getTitle());
+                });
+        var countryId = UUID.fromString(request.getCountryId());
+        var country = countriesClient.findById(countryId)
+                .orElseThrow(() -> new CountryNotFoundException(countryId));
+
+        var museum = transactionTemplate.execute(status -> {
+            var savedMuseum = museumRepository.save(
+                    MuseumMapper.fromGrpcRequest(request)
+                            .setCreatedDate(LocalDateTime.now()));
+            eventPublisher.publishEvent(MuseumMapper.toEvent(EventType.ADDED, savedMuseum, country));
+            return savedMuseum;
+        });
+
+        var photo = MuseumMapper.toPhoto(request);
+        runOrCompensate(
+                () -> filesClient.add(museum.getId(), photo.getContent(), photo.getFormat()),
+                () -> delete(museum.getId()));
+
+        responseObserver.onNext(
+                MuseumMapper.toGrpcResponse(museum, country, photo, legacyPhoto));
+        responseObserver.onCompleted();
 
     }
 
     @Override
     @Transactional(readOnly = true)
+    public void existsById(IdType request, StreamObserver<StatusType> responseObserver) {
+
+        log.info("Check museum exists by id: {}", request.getId());
+
+        responseObserver.onNext(StatusType.newBuilder()
+                .setStatus(museumRepository.existsById(UUID.fromString(request.getId())))
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    @Override
     public void findById(IdType request, StreamObserver<MuseumGrpcResponse> responseObserver) {
 
         log.info("Find museum by id: {}", request.getId());
@@ -82,11 +115,13 @@ public class MuseumGrpcService extends MuseumsServiceGrpc.MuseumsServiceImplBase
         museumRepository.findById(UUID.fromString(request.getId()))
                 .ifPresentOrElse(
                         museum -> {
-                            var country = countriesClient.findById(museum.getCountryId())
-                                    .orElse(CountryGrpcResponse.getDefaultInstance());
-                            var photo = filesClient.findImage(museum.getId())
-                                    .orElse(ImageGrpcResponse.getDefaultInstance());
-                            responseObserver.onNext(MuseumMapper.toGrpcResponse(museum, country, photo));
+                            try (var batch = lookups.start()) {
+                                var country = batch.submit(() -> countriesClient.findById(museum.getCountryId())
+                                        .orElse(CountryGrpcResponse.getDefaultInstance()));
+                                var photo = batch.submit(() -> filesClient.findImage(museum.getId()).orElse(null));
+                                responseObserver.onNext(
+                                        MuseumMapper.toGrpcResponse(museum, batch.join(country), batch.join(photo), legacyPhoto));
+                            }
                             responseObserver.onCompleted();
                         },
                         () -> {
@@ -97,7 +132,6 @@ public class MuseumGrpcService extends MuseumsServiceGrpc.MuseumsServiceImplBase
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void findByTitle(NameType request, StreamObserver<MuseumGrpcResponse> responseObserver) {
 
         log.info("Find museum by title: {}", request.getName());
@@ -105,9 +139,12 @@ public class MuseumGrpcService extends MuseumsServiceGrpc.MuseumsServiceImplBase
         museumRepository.findByTitle(request.getName())
                 .ifPresentOrElse(
                         museum -> {
-                            var country = countriesClient.findById(museum.getCountryId()).orElse(null);
-                            var photo = filesClient.findImage(museum.getId()).orElse(null);
-                            responseObserver.onNext(MuseumMapper.toGrpcResponse(museum, country, photo));
+                            try (var batch = lookups.start()) {
+                                var country = batch.submit(() -> countriesClient.findById(museum.getCountryId()).orElse(null));
+                                var photo = batch.submit(() -> filesClient.findImage(museum.getId()).orElse(null));
+                                responseObserver.onNext(
+                                        MuseumMapper.toGrpcResponse(museum, batch.join(country), batch.join(photo), legacyPhoto));
+                            }
                             responseObserver.onCompleted();
                         },
                         () -> {
@@ -119,7 +156,6 @@ public class MuseumGrpcService extends MuseumsServiceGrpc.MuseumsServiceImplBase
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void findAllByIds(MuseumsByIdsGrpcRequest request, StreamObserver<MuseumListGrpcResponse> responseObserver) {
 
         var isOriginalText = request.getOriginalPhoto()
@@ -139,39 +175,50 @@ public class MuseumGrpcService extends MuseumsServiceGrpc.MuseumsServiceImplBase
                 .distinct()
                 .toList();
 
-        var countryMap = countriesClient.findAllByIds(countryIds).stream()
-                .collect(Collectors.toMap(
-                        country -> UUID.fromString(country.getId()),
-                        country -> country));
-
-        var photoMap = filesClient.findAllByIds(museumIds, request.getOriginalPhoto()).stream()
-                .collect(Collectors.toMap(
-                        photo -> UUID.fromString(photo.getEntityId()),
-                        photo -> photo));
-
-        var grpcMuseums = museumEntities.stream()
-                .map(museum -> MuseumMapper
-                        .toGrpcResponse(
-                                museum,
-                                countryMap.getOrDefault(museum.getCountryId(), CountryGrpcResponse.getDefaultInstance()),
-                                photoMap.getOrDefault(museum.getId(), ImageGrpcResponse.getDefaultInstance())))
-                .toList();
+        try (var batch = lookups.start()) {
 
-        responseObserver.onNext(MuseumListGrpcResponse.newBuilder()
-                .addAllMuseums(grpcMuseums)
-                .build());
+            var countries = batch.submit(() -> countriesClient.findAllByIds(countryIds));
+            var photos = batch.submit(() -> filesClient.findAllByIds(museumIds, request.getOriginalPhoto()));
+
+            var countryMap = batch.join(countries).stream()
+                    .collect(Collectors.toMap(
+                            country -> UUID.fromString(country.getId()),
+                            country -> country));
+
+            var photoMap = batch.join(photos).stream()
+                    .collect(Collectors.toMap(
+                            photo -> UUID.fromString(photo.getEntityId()),
+                            photo -> photo));
+
+            var grpcMuseums = museumEntities.stream()
+                    .map(museum -> MuseumMapper
+                            .toGrpcResponse(
+                                    museum,
+                                    countryMap.getOrDefault(museum.getCountryId(), CountryGrpcResponse.getDefaultInstance()),
+                                    photoMap.get(museum.getId()),
+                                    legacyPhoto))
+                    .toList();
+
+            responseObserver.onNext(MuseumListGrpcResponse.newBuilder()
+                    .addAllMuseums(grpcMuseums)
+                    .build());
+
+        }
 
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Countries and photos are waited for within their budgets, page is returned without data of a service
+     * which spent its budget.
+     */
     @Override
-    @Transactional(readOnly = true)
     public void findAll(MuseumsFilterGrpcRequest request, StreamObserver<MuseumsGrpcResponse> responseObserver) {
 
-        var isOriginalText = request.getOriginalPhoto()
-                ? "original"
-                : "thumbnail";
+        var isOriginalText = request.getPlaceholderPhoto()
+                ? "placeholder"
+                : request.getOriginalPhoto() ? "original" : "thumbnail";
         log.info("Find all museums with {} photos by params: {}", isOriginalText, request);
 
         var museumEntities = museumRepository.findAll(
@@ -189,89 +236,148 @@ public class MuseumGrpcService extends MuseumsServiceGrpc.MuseumsServiceImplBase
                 .distinct()
                 .toList();
 
-        var countryMap = countriesClient.findAllByIds(countryIds).stream()
-                .collect(Collectors.toMap(
-                        country -> UUID.fromString(country.getId()),
-                        country -> country));
-
-        var photoMap = filesClient.findAllByIds(museumIds, request.getOriginalPhoto()).stream()
-                .collect(Collectors.toMap(
-                        photo -> UUID.fromString(photo.getEntityId()),
-                        photo -> photo));
-
-        responseObserver.onNext(
-                MuseumMapper.toPageGrpc(
-                        museumEntities,
-                        countryMap,
-                        photoMap
-                ));
+        var budget = latencyBudgets.start();
+        try (var batch = lookups.start()) {
+
+            var countries = batch.submit(() -> budget.call(
+                    "countries",
+                    () -> countriesClient.findAllByIds(countryIds),
+                    List.<CountryGrpcResponse>of()));
+            var photos = batch.submit(() -> budget.call(
+                    "files",
+                    () -> request.getPlaceholderPhoto()
+                            ? filesClient.findAllPlaceholders(museumIds)
+                            : filesClient.findAllByIds(museumIds, request.getOriginalPhoto()),
+                    List.<ImageGrpcResponse>of()));
+
+            var countryMap = batch.join(countries).stream()
+                    .collect(Collectors.toMap(
+                            country -> UUID.fromString(country.getId()),
+                            country -> country));
+
+            var photoMap = batch.join(photos).stream()
+                    .collect(Collectors.toMap(
+                            photo -> UUID.fromString(photo.getEntityId()),
+                            photo -> photo));
+
+            responseObserver.onNext(
+                    MuseumMapper.toPageGrpc(
+                                    museumEntities,
+                                    countryMap,
+                                    photoMap,
+                                    legacyPhoto
+                            ).toBuilder()
+                            .setDegraded(budget.finish())
+                            .build());
+
+        }
 
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Remote lookups are done before short transaction, photo is sent to rococo-files after commit.
+     * Previous museum data is restored if photo is not saved.
+     */
     @Override
-    @Transactional
     public void update(UpdateMuseumGrpcRequest request, StreamObserver<MuseumGrpcResponse> responseObserver) {
 
         log.info("Update museum: {}", request);
 
-        museumRepository.findById(UUID.fromString(request.getId()))
-                .ifPresentOrElse(
-                        museum -> {
-                            museumRepository.findByTitle(request.getTitle())
-                                    .ifPresent(m -> {
-                                        if (!m.getId().equals(museum.getId()))
-                                            throw new MuseumAlreadyExistsException(request.getTitle());
-                                    });
-
-                            var countryId = UUID.fromString(request.getCountryId());
-                            var country = countriesClient.findById(countryId)
-                                    .orElseThrow(() -> new CountryNotFoundException(countryId));
-
-                            var updatedMuseum = museumRepository.save(
-                                    MuseumMapper.updateFromGrpcRequest(museum, request));
-
-                            var existPhoto = filesClient.findImage(museum.getId());
-                            if (existPhoto.isPresent() && !request.getPhoto().isEmpty()) {
-                                filesClient.update(museum.getId(), request.getPhoto());
-                            } else if (existPhoto.isPresent() && request.getPhoto().isEmpty()) {
-                                filesClient.delete(museum.getId());
-                            } else if (existPhoto.isEmpty() && !request.getPhoto().isEmpty()) {
-                                filesClient.add(museum.getId(), request.getPhoto());
-                            }
+        var id = UUID.fromString(request.getId());
+        var museum = museumRepository.findById(id)
+                .orElseThrow(() -> new MuseumNotFoundException(id));
+        museumRepository.findByTitle(request.getTitle())
+                .ifPresent(m -> {
+                    if (!m.getId().equals(museum.getId()))
+                        throw new MuseumAlreadyExistsException(request.getTitle());
+                });
+
+        var countryId = UUID.fromString(request.getCountryId());
+        var country = countriesClient.findById(countryId)
+                .orElseThrow(() -> new CountryNotFoundException(countryId));
+        var photo = MuseumMapper.toPhoto(request);
+        var hasPhoto = filesClient.exists(museum.getId());
+
+        var updatedMuseum = save(MuseumMapper.updateFromGrpcRequest(museum, request), country);
+        runOrCompensate(
+                () -> {
+                    if (hasPhoto && !photo.getContent().isEmpty()) {
+                        filesClient.update(museum.getId(), photo.getContent(), photo.getFormat());
+                    } else if (hasPhoto && photo.getContent().isEmpty()) {
+                        filesClient.delete(museum.getId());
+                    } else if (!hasPhoto && !photo.getContent().isEmpty()) {
+                        filesClient.add(museum.getId(), photo.getContent(), photo.getFormat());
+                    }
+                },
+                () -> save(museum, countriesClient.findById(museum.getCountryId())
+                        .orElse(CountryGrpcResponse.getDefaultInstance())));
 
-                            responseObserver.onNext(
-                                    MuseumMapper.toGrpcResponse(
-                                            updatedMuseum,
-                                            country,
-                                            ImageGrpcResponse.newBuilder()
-                                                    .setEntityId(museum.getId().toString())
-                                                    .setContent(ByteString.copyFromUtf8(request.getPhoto()))
-                                                    .build()
-                                    ));
-                            responseObserver.onCompleted();
-                        },
-                        () -> {
-                            throw new MuseumNotFoundException(UUID.fromString(request.getId()));
-                        }
-                );
+        responseObserver.onNext(
+                MuseumMapper.toGrpcResponse(updatedMuseum, country, photo, legacyPhoto));
+        responseObserver.onCompleted();
 
     }
 
+    /**
+     * Photo is deleted after commit. Photo left by failed call is collected by rococo-files later.
+     */
     @Override
-    @Transactional
     public void removeById(IdType request, StreamObserver<Empty> responseObserver) {
 
         log.info("Delete museum by id: {}", request.getId());
 
         var id = UUID.fromString(request.getId());
-        museumRepository.deleteById(id);
-        filesClient.delete(id);
+        delete(id);
+        try {
+            filesClient.delete(id);
+        } catch (RuntimeException ex) {
+            log.warn("Photo of deleted museum [{}] is not deleted, it is left for collector", id, ex);
+        }
 
         responseObserver.onNext(Empty.newBuilder().build());
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Ids of all museums page by page, images of entities missing here are collected by rococo-files.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void findIdsPage(IdsPageGrpcRequest request, StreamObserver<IdsType> responseObserver) {
+
+        log.info("Find museum ids after: [{}]", request.getAfter());
+
+        var after = request.getAfter().isEmpty()
+                ? new UUID(0, 0)
+                : UUID.fromString(request.getAfter());
+        var ids = museumRepository.findIdsAfter(after, Limit.of(Math.max(request.getSize(), 1))).stream()
+                .map(UUID::toString)
+                .toList();
+
+        responseObserver.onNext(IdsType.newBuilder()
+                .addAllId(ids)
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    private MuseumEntity save(MuseumEntity museum, CountryGrpcResponse country) {
+        return transactionTemplate.execute(status -> {
+            var savedMuseum = museumRepository.save(museum);
+            eventPublisher.publishEvent(MuseumMapper.toEvent(EventType.UPDATED, savedMuseum, country));
+            return savedMuseum;
+        });
+    }
+
+    private void delete(UUID id) {
+        transactionTemplate.execute(status -> {
+            museumRepository.deleteById(id);
+            eventPublisher.publishEvent(MuseumMapper.toDeletedEvent(id));
+            return null;
+        });
+    }
+
 }
@@ -2,7 +2,10 @@ package org.rococo.museums.service;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
+import io.grpc.Context;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,13 +13,18 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.rococo.common.budget.LatencyBudgets;
+import org.rococo.common.loader.ConcurrentLookups;
 import org.rococo.grpc.common.page.DirectionGrpc;
 import org.rococo.grpc.common.page.PageableGrpc;
 import org.rococo.grpc.common.page.SortGrpc;
 import org.rococo.grpc.common.type.IdType;
 import org.rococo.grpc.common.type.IdsType;
 import org.rococo.grpc.common.type.NameType;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.countries.CountryGrpcResponse;
 import org.rococo.grpc.files.ImageGrpcResponse;
 import org.rococo.grpc.museums.*;
@@ -27,19 +35,30 @@ import org.rococo.museums.data.MuseumRepository;
 import org.rococo.museums.ex.CountryNotFoundException;
 import org.rococo.museums.ex.MuseumAlreadyExistsException;
 import org.rococo.museums.ex.MuseumNotFoundException;
+import org.rococo.museums.model.EventType;
+import org.rococo.museums.model.MuseumEventDTO;
 import org.rococo.museums.specs.MuseumSpecs;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -56,9 +75,23 @@ class MuseumGrpcServiceTests {
     @Mock
     private FilesGrpcClient filesClient;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private LatencyBudgets latencyBudgets = new LatencyBudgets(new SimpleMeterRegistry(), Map.of(
+            "files", Duration.ofSeconds(1),
+            "countries", Duration.ofSeconds(1)));
+
     @Mock
     private CountriesGrpcClient countriesClient;
 
+    @Spy
+    private ConcurrentLookups lookups = new ConcurrentLookups(Duration.ofSeconds(5), 4);
+
     @Mock
     private StreamObserver<MuseumGrpcResponse> museumResponseObserver;
 
@@ -71,6 +104,9 @@ class MuseumGrpcServiceTests {
     @Mock
     private StreamObserver<Empty> emptyResponseObserver;
 
+    @Mock
+    private StreamObserver<StatusType> statusResponseObserver;
+
     @InjectMocks
     private MuseumGrpcService museumGrpcService;
 
@@ -89,6 +125,10 @@ class MuseumGrpcServiceTests {
     @BeforeEach
     void setUp() {
 
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(new SimpleTransactionStatus()));
+
         museumId = UUID.randomUUID();
         countryId = UUID.randomUUID();
 
@@ -109,6 +149,7 @@ class MuseumGrpcServiceTests {
         image = ImageGrpcResponse.newBuilder()
                 .setEntityId(museumId.toString())
                 .setContent(ByteString.copyFromUtf8("image-data"))
+                .setFormat("png")
                 .build();
 
         addRequest = AddMuseumGrpcRequest.newBuilder()
@@ -175,12 +216,73 @@ class MuseumGrpcServiceTests {
 
         // Assertions
         verify(museumRepository).save(any(MuseumEntity.class));
-        verify(filesClient).add(museumId, "image-data");
+        verify(filesClient).add(museumId, ByteString.copyFromUtf8("image-data"), "");
+        verify(eventPublisher).publishEvent(argThat((MuseumEventDTO event) ->
+                event.type() == EventType.ADDED && event.id().equals(museumId) && event.countryName().equals(country.getName())));
         verify(museumResponseObserver).onNext(any(MuseumGrpcResponse.class));
         verify(museumResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("Add: removes saved museum when rococo-files did not save photo")
+    void add_RemovesMuseum_IfPhotoNotSaved() {
+
+        // Stubs
+        when(museumRepository.findByTitle("Louvre"))
+                .thenReturn(Optional.empty());
+        when(countriesClient.findById(countryId))
+                .thenReturn(Optional.of(country));
+        when(museumRepository.save(any(MuseumEntity.class)))
+                .thenReturn(museumEntity);
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).add(any(), any(), any());
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () ->
+                museumGrpcService.add(addRequest, museumResponseObserver));
+
+        final var inOrder = inOrder(countriesClient, museumRepository, filesClient);
+        inOrder.verify(countriesClient).findById(countryId);
+        inOrder.verify(museumRepository).save(any(MuseumEntity.class));
+        inOrder.verify(filesClient).add(any(), any(), any());
+        inOrder.verify(museumRepository).deleteById(museumId);
+        verify(museumResponseObserver, never()).onNext(any());
+
+    }
+
+    @Test
+    @DisplayName("Add: passes raw photo to rococo-files and back unchanged")
+    void add_PassesRawPhotoUnchanged() {
+
+        // Data
+        final var content = ByteString.copyFrom(new byte[]{1, 2, 3});
+        final var rawPhotoRequest = addRequest.toBuilder()
+                .clearPhoto()
+                .setPhotoContent(content)
+                .setPhotoFormat("png")
+                .build();
+
+        // Stubs
+        when(museumRepository.findByTitle("Louvre"))
+                .thenReturn(Optional.empty());
+        when(countriesClient.findById(countryId))
+                .thenReturn(Optional.of(country));
+        when(museumRepository.save(any(MuseumEntity.class)))
+                .thenReturn(museumEntity);
+
+        // Steps
+        museumGrpcService.add(rawPhotoRequest, museumResponseObserver);
+
+        // Assertions
+        verify(filesClient).add(museumId, content, "png");
+        verify(museumResponseObserver).onNext(argThat(response ->
+                response.getPhotoContent() == content
+                        && response.getPhotoFormat().equals("png")
+                        && response.getPhoto().isEmpty()));
+
+    }
+
     @Test
     @DisplayName("Add: throws MuseumAlreadyExistsException when title exists")
     void add_ThrowsMuseumAlreadyExistsException_IfMuseumWithSameTitleExists() {
@@ -194,7 +296,7 @@ class MuseumGrpcServiceTests {
                 museumGrpcService.add(addRequest, museumResponseObserver));
 
         verify(museumRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(museumResponseObserver, never()).onNext(any());
         verify(museumResponseObserver, never()).onCompleted();
 
@@ -215,12 +317,30 @@ class MuseumGrpcServiceTests {
                 museumGrpcService.add(addRequest, museumResponseObserver));
 
         verify(museumRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(museumResponseObserver, never()).onNext(any());
         verify(museumResponseObserver, never()).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("ExistsById: returns whether museum exists without loading photo")
+    void existsById_ReturnsStatus() {
+
+        // Stubs
+        when(museumRepository.existsById(museumId))
+                .thenReturn(true);
+
+        // Steps
+        museumGrpcService.existsById(idRequest, statusResponseObserver);
+
+        // Assertions
+        verify(statusResponseObserver).onNext(StatusType.newBuilder().setStatus(true).build());
+        verify(statusResponseObserver).onCompleted();
+        verifyNoInteractions(filesClient);
+
+    }
+
     @Test
     @DisplayName("FindById: returns museum")
     void findById_Success() {
@@ -342,6 +462,91 @@ class MuseumGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("FindAll: looks up countries and photos concurrently within budget")
+    void findAll_LooksUpCountriesAndPhotosConcurrently() {
+
+        // Data
+        final Page<MuseumEntity> page = new PageImpl<>(List.of(museumEntity), PageRequest.of(0, 10), 1);
+        final var started = new CountDownLatch(2);
+
+        // Stubs
+        when(museumRepository.findAll(ArgumentMatchers.<Specification<MuseumEntity>>any(), any(Pageable.class)))
+                .thenReturn(page);
+        when(countriesClient.findAllByIds(List.of(countryId)))
+                .then(afterAllStarted(started, List.of(country)));
+        when(filesClient.findAllByIds(List.of(museumId), true))
+                .then(afterAllStarted(started, List.of(image)));
+
+        // Steps
+        museumGrpcService.findAll(filterRequest, museumsResponseObserver);
+
+        // Assertions
+        verify(museumsResponseObserver).onNext(argThat(response -> !response.getDegraded()));
+        verify(museumsResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindAll: returns degraded page without countries when rococo-countries did not answer within budget")
+    void findAll_ReturnsDegradedPage_IfCountriesBudgetSpent() {
+
+        // Data
+        final Page<MuseumEntity> page = new PageImpl<>(List.of(museumEntity), PageRequest.of(0, 10), 1);
+
+        // Stubs
+        when(museumRepository.findAll(ArgumentMatchers.<Specification<MuseumEntity>>any(), any(Pageable.class)))
+                .thenReturn(page);
+        when(countriesClient.findAllByIds(List.of(countryId)))
+                .thenAnswer(invocation -> {
+                    final var cancelled = new CountDownLatch(1);
+                    Context.current().addListener(context -> cancelled.countDown(), Runnable::run);
+                    assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+                    throw Status.DEADLINE_EXCEEDED.asRuntimeException();
+                });
+        when(filesClient.findAllByIds(List.of(museumId), true))
+                .thenReturn(List.of(image));
+
+        // Steps
+        museumGrpcService.findAll(filterRequest, museumsResponseObserver);
+
+        // Assertions
+        verify(museumsResponseObserver).onNext(argThat(response ->
+                response.getDegraded()
+                        && response.getData(0).getCountry().getId().isEmpty()
+                        && response.getData(0).getPhotoContent().equals(image.getContent())));
+        verify(museumsResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindAll: returns museums with placeholder photos if requested")
+    void findAll_ReturnsPlaceholders_IfPlaceholderRequested() {
+
+        // Data
+        final Page<MuseumEntity> page = new PageImpl<>(List.of(museumEntity), PageRequest.of(0, 10), 1);
+        final var placeholderRequest = filterRequest.toBuilder()
+                .setPlaceholderPhoto(true)
+                .build();
+
+        // Stubs
+        when(museumRepository.findAll(ArgumentMatchers.<Specification<MuseumEntity>>any(), any(Pageable.class)))
+                .thenReturn(page);
+        when(countriesClient.findAllByIds(List.of(countryId)))
+                .thenReturn(List.of(country));
+        when(filesClient.findAllPlaceholders(List.of(museumId)))
+                .thenReturn(List.of(image));
+
+        // Steps
+        museumGrpcService.findAll(placeholderRequest, museumsResponseObserver);
+
+        // Assertions
+        verify(museumsResponseObserver).onNext(any(MuseumsGrpcResponse.class));
+        verify(museumsResponseObserver).onCompleted();
+        verify(filesClient, never()).findAllByIds(anyList(), anyBoolean());
+
+    }
+
     @Test
     @DisplayName("Update: update museum with same title and send request to update photo")
     void update_Success_IfMuseumTitleUnchanged() {
@@ -365,20 +570,49 @@ class MuseumGrpcServiceTests {
                 .thenReturn(Optional.of(country));
         when(museumRepository.save(any(MuseumEntity.class)))
                 .thenReturn(museumEntity);
-        when(filesClient.findImage(museumId))
-                .thenReturn(Optional.of(image));
+        when(filesClient.exists(museumId))
+                .thenReturn(true);
 
         // Steps
         museumGrpcService.update(sameTitleRequest, museumResponseObserver);
 
         // Assertions
         verify(museumRepository).save(any(MuseumEntity.class));
-        verify(filesClient).update(museumId, sameTitleRequest.getPhoto());
+        verify(filesClient).update(museumId, ByteString.copyFromUtf8(sameTitleRequest.getPhoto()), "");
         verify(museumResponseObserver).onNext(any(MuseumGrpcResponse.class));
         verify(museumResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("Update: restores previous museum data when rococo-files did not save photo")
+    void update_RestoresMuseum_IfPhotoNotSaved() {
+
+        // Stubs
+        when(museumRepository.findById(museumId))
+                .thenReturn(Optional.of(museumEntity));
+        when(museumRepository.findByTitle(updateRequest.getTitle()))
+                .thenReturn(Optional.empty());
+        when(countriesClient.findById(countryId))
+                .thenReturn(Optional.of(country));
+        when(museumRepository.save(any(MuseumEntity.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(filesClient.exists(museumId))
+                .thenReturn(true);
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).update(any(), any(), any());
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () ->
+                museumGrpcService.update(updateRequest, museumResponseObserver));
+
+        final var inOrder = inOrder(museumRepository);
+        inOrder.verify(museumRepository).save(argThat((MuseumEntity museum) -> museum.getTitle().equals("Hermitage")));
+        inOrder.verify(museumRepository).save(argThat((MuseumEntity museum) -> museum.getTitle().equals("Louvre")));
+        verify(museumResponseObserver, never()).onNext(any());
+
+    }
+
     @Test
     @DisplayName("Update: update museum with new not taken title")
     void update_Success_IfNewMuseumTitleNotTaken() {
@@ -392,15 +626,15 @@ class MuseumGrpcServiceTests {
                 .thenReturn(Optional.of(country));
         when(museumRepository.save(any(MuseumEntity.class)))
                 .thenReturn(museumEntity);
-        when(filesClient.findImage(museumId))
-                .thenReturn(Optional.of(image));
+        when(filesClient.exists(museumId))
+                .thenReturn(true);
 
         // Steps
         museumGrpcService.update(updateRequest, museumResponseObserver);
 
         // Assertions
         verify(museumRepository).save(any(MuseumEntity.class));
-        verify(filesClient).update(museumId, "updated-image");
+        verify(filesClient).update(museumId, ByteString.copyFromUtf8("updated-image"), "");
         verify(museumResponseObserver).onNext(any(MuseumGrpcResponse.class));
         verify(museumResponseObserver).onCompleted();
 
@@ -429,8 +663,8 @@ class MuseumGrpcServiceTests {
                 .thenReturn(Optional.of(country));
         when(museumRepository.save(any(MuseumEntity.class)))
                 .thenReturn(museumEntity);
-        when(filesClient.findImage(museumId))
-                .thenReturn(Optional.of(image));
+        when(filesClient.exists(museumId))
+                .thenReturn(true);
 
         // Steps
         museumGrpcService.update(noPhotoRequest, museumResponseObserver);
@@ -466,15 +700,15 @@ class MuseumGrpcServiceTests {
                 .thenReturn(Optional.of(country));
         when(museumRepository.save(any(MuseumEntity.class)))
                 .thenReturn(museumEntity);
-        when(filesClient.findImage(museumId))
-                .thenReturn(Optional.empty());
+        when(filesClient.exists(museumId))
+                .thenReturn(false);
 
         // Steps
         museumGrpcService.update(newPhotoRequest, museumResponseObserver);
 
         // Assertions
         verify(museumRepository).save(any(MuseumEntity.class));
-        verify(filesClient).add(museumId, "new-image");
+        verify(filesClient).add(museumId, ByteString.copyFromUtf8("new-image"), "");
         verify(museumResponseObserver).onNext(any(MuseumGrpcResponse.class));
         verify(museumResponseObserver).onCompleted();
 
@@ -500,8 +734,8 @@ class MuseumGrpcServiceTests {
                 museumGrpcService.update(updateRequest, museumResponseObserver));
 
         verify(museumRepository, never()).save(any());
-        verify(filesClient, never()).update(any(), any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).update(any(), any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(filesClient, never()).delete(any());
         verify(museumResponseObserver, never()).onNext(any());
         verify(museumResponseObserver, never()).onCompleted();
@@ -521,8 +755,8 @@ class MuseumGrpcServiceTests {
                 museumGrpcService.update(updateRequest, museumResponseObserver));
 
         verify(museumRepository, never()).save(any());
-        verify(filesClient, never()).update(any(), any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).update(any(), any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(filesClient, never()).delete(any());
         verify(museumResponseObserver, never()).onNext(any());
         verify(museumResponseObserver, never()).onCompleted();
@@ -546,8 +780,8 @@ class MuseumGrpcServiceTests {
                 museumGrpcService.update(updateRequest, museumResponseObserver));
 
         verify(museumRepository, never()).save(any());
-        verify(filesClient, never()).update(any(), any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).update(any(), any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(filesClient, never()).delete(any());
         verify(museumResponseObserver, never()).onNext(any());
         verify(museumResponseObserver, never()).onCompleted();
@@ -564,9 +798,44 @@ class MuseumGrpcServiceTests {
         // Assertions
         verify(museumRepository).deleteById(museumId);
         verify(filesClient).delete(museumId);
+        verify(eventPublisher).publishEvent(MuseumEventDTO.builder()
+                .type(EventType.DELETED)
+                .id(museumId)
+                .build());
         verify(emptyResponseObserver).onNext(Empty.newBuilder().build());
         verify(emptyResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("RemoveById: deletes museum when rococo-files did not delete photo")
+    void removeById_Success_IfPhotoNotDeleted() {
+
+        // Stubs
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).delete(museumId);
+
+        // Steps
+        museumGrpcService.removeById(idRequest, emptyResponseObserver);
+
+        // Assertions
+        verify(museumRepository).deleteById(museumId);
+        verify(emptyResponseObserver).onNext(Empty.newBuilder().build());
+        verify(emptyResponseObserver).onCompleted();
+
+    }
+
+    /**
+     * Lookup finishes only when all lookups are started: sequential lookups time out
+     */
+    private static <T> Answer<T> afterAllStarted(CountDownLatch started, T result) {
+        return invocation -> {
+            assertTrue(Context.current().getDeadline() != null, "Lookup has no deadline");
+            started.countDown();
+            if (!started.await(5, TimeUnit.SECONDS))
+                throw new IllegalStateException("Lookups are not concurrent");
+            return result;
+        };
+    }
+
 }
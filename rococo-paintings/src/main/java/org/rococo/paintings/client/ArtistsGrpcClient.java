@@ -1,26 +1,31 @@
 package org.rococo.paintings.client;
 
-import io.grpc.Status.Code;
 import io.grpc.StatusRuntimeException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.rococo.common.loader.BatchLoader;
+import org.rococo.common.loader.BatchLoaders;
 import org.rococo.grpc.artists.ArtistGrpcResponse;
 import org.rococo.grpc.artists.ArtistsByIdsGrpcRequest;
 import org.rococo.grpc.artists.ArtistsServiceGrpc;
-import org.rococo.grpc.common.type.IdType;
 import org.rococo.grpc.common.type.IdsType;
 import org.rococo.paintings.ex.ServiceUnavailableException;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Artists are looked up through batch loaders: ids requested at about the same time are sent as one
+ * {@code findAllByIds} call, and one request finds every artist once.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 @ParametersAreNonnullByDefault
 public class ArtistsGrpcClient {
 
@@ -29,19 +34,22 @@ public class ArtistsGrpcClient {
     @GrpcClient("grpcArtistsClient")
     private ArtistsServiceGrpc.ArtistsServiceBlockingStub artistsServiceStub;
 
+    private final BatchLoader<UUID, ArtistGrpcResponse> artistsLoader;
+
+    private final BatchLoader<UUID, ArtistGrpcResponse> artistsWithOriginalPhotoLoader;
+
+    public ArtistsGrpcClient(BatchLoaders loaders) {
+        this.artistsLoader = loaders.create("artists", ids -> fetchAllByIds(ids, false));
+        this.artistsWithOriginalPhotoLoader = loaders.create("artists-original-photo", ids -> fetchAllByIds(ids, true));
+    }
+
     public Optional<ArtistGrpcResponse> findById(UUID id) {
 
         log.info("Find artist by id: {}", id);
 
         try {
-            return Optional.of(
-                    artistsServiceStub.findById(
-                            IdType.newBuilder()
-                                    .setId(id.toString())
-                                    .build()));
+            return artistsWithOriginalPhotoLoader.get(id);
         } catch (StatusRuntimeException ex) {
-            if (ex.getStatus().getCode() == Code.NOT_FOUND)
-                return Optional.empty();
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
 
@@ -52,22 +60,27 @@ public class ArtistsGrpcClient {
         log.info("Find all artists by ids: {}", ids);
 
         try {
-            var idsText = ids.stream()
-                    .map(UUID::toString)
-                    .toList();
-            var response = artistsServiceStub.findAllByIds(
-                    ArtistsByIdsGrpcRequest.newBuilder()
-                            .setIds(
-                                    IdsType.newBuilder()
-                                            .addAllId(idsText)
-                                            .build())
-                            .setOriginalPhoto(false)
-                            .build());
-            return response.getArtistsList();
+            return List.copyOf(artistsLoader.getAll(ids).values());
         } catch (StatusRuntimeException ex) {
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
 
     }
 
+    private Map<UUID, ArtistGrpcResponse> fetchAllByIds(List<UUID> ids, boolean originalPhoto) {
+        var idsText = ids.stream()
+                .map(UUID::toString)
+                .toList();
+        var response = artistsServiceStub.findAllByIds(
+                ArtistsByIdsGrpcRequest.newBuilder()
+                        .setIds(
+                                IdsType.newBuilder()
+                                        .addAllId(idsText)
+                                        .build())
+                        .setOriginalPhoto(originalPhoto)
+                        .build());
+        return response.getArtistsList().stream()
+                .collect(Collectors.toMap(artist -> UUID.fromString(artist.getId()), Function.identity()));
+    }
+
 }
@@ -3,19 +3,27 @@ package org.rococo.paintings.client;
 import com.google.protobuf.ByteString;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.rococo.common.files.ImageCache;
+import org.rococo.common.files.ImageUploader;
+import org.rococo.common.loader.BatchLoader;
+import org.rococo.common.loader.BatchLoaders;
 import org.rococo.grpc.files.*;
 import org.rococo.paintings.ex.ImageAlreadyExistsException;
 import org.rococo.paintings.ex.ImageNotFoundException;
 import org.rococo.paintings.ex.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -23,7 +31,6 @@ import static org.rococo.grpc.files.EntityTypeGrpc.PAINTING;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 @ParametersAreNonnullByDefault
 public class FilesGrpcClient {
 
@@ -32,14 +39,30 @@ public class FilesGrpcClient {
     @GrpcClient("grpcFilesClient")
     private FilesServiceGrpc.FilesServiceBlockingStub filesServiceStub;
 
-    public void add(UUID entityId, String image) {
+    @GrpcClient("grpcFilesClient")
+    private FilesServiceGrpc.FilesServiceStub filesServiceAsyncStub;
+
+    @Value("${rococo-paintings.files.upload-timeout:30s}")
+    private Duration uploadTimeout;
+
+    private final ImageCache<UUID> imageCache;
+
+    private final Map<RenditionGrpc, BatchLoader<UUID, ImageGrpcResponse>> imagesLoaders = new EnumMap<>(RenditionGrpc.class);
+
+    public FilesGrpcClient(ImageCache<UUID> imageCache, BatchLoaders loaders) {
+        this.imageCache = imageCache;
+        for (var rendition : List.of(RenditionGrpc.THUMBNAIL, RenditionGrpc.ORIGINAL))
+            imagesLoaders.put(rendition, loaders.create(
+                    "images-" + rendition.name().toLowerCase(),
+                    entityIds -> fetchAllByIds(entityIds, rendition)));
+    }
+
+    /**
+     * @param format format of raw image bytes, empty if content is data-URI
+     */
+    public void add(UUID entityId, ByteString content, String format) {
         try {
-            var request = ImageGrpcRequest.newBuilder()
-                    .setEntityType(PAINTING)
-                    .setEntityId(entityId.toString())
-                    .setContent(ByteString.copyFromUtf8(image))
-                    .build();
-            filesServiceStub.addImage(request);
+            upload(entityId, content, format, false);
         } catch (StatusRuntimeException ex) {
             if (ex.getStatus().getCode() == Status.Code.ALREADY_EXISTS)
                 throw new ImageAlreadyExistsException(entityId);
@@ -47,13 +70,22 @@ public class FilesGrpcClient {
         }
     }
 
+    /**
+     * Downloads original image, unless local copy is still current.
+     */
     public Optional<ImageGrpcResponse> findImage(UUID entityId) {
         try {
-            var request = FindImageGrpcRequest.newBuilder()
-                    .setEntityType(PAINTING)
-                    .setEntityId(entityId.toString())
-                    .build();
-            return Optional.of(filesServiceStub.findByEntityTypeAndId(request));
+            final var cached = imageCache.get(entityId, RenditionGrpc.ORIGINAL);
+            final var chunks = filesServiceStub.downloadImage(
+                    DownloadImageGrpcRequest.newBuilder()
+                            .setEntityType(PAINTING)
+                            .setEntityId(entityId.toString())
+                            .setKnownHash(cached.map(ImageGrpcResponse::getContentHash).orElse(""))
+                            .build());
+            final var header = chunks.next().getHeader();
+            if (header.getNotModified() && cached.isPresent())
+                return cached;
+            return Optional.of(imageCache.put(entityId, toImageResponse(header, chunks), RenditionGrpc.ORIGINAL));
         } catch (StatusRuntimeException ex) {
             if (ex.getStatus().getCode() == Status.Code.NOT_FOUND)
                 return Optional.empty();
@@ -61,38 +93,102 @@ public class FilesGrpcClient {
         }
     }
 
+    /**
+     * Checks image metadata only, image itself is not transferred.
+     */
+    public boolean exists(UUID entityId) {
+        try {
+            return filesServiceStub.existsImage(
+                            FindImageGrpcRequest.newBuilder()
+                                    .setEntityType(PAINTING)
+                                    .setEntityId(entityId.toString())
+                                    .build())
+                    .getStatus();
+        } catch (StatusRuntimeException ex) {
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+    }
+
+    /**
+     * Finds hash, format, size and dimensions of images by one call, images themselves are not transferred.
+     * Paintings without image are absent.
+     */
+    public List<ImageMetadataGrpcResponse> findAllMetadata(final List<UUID> entityIds) {
+        try {
+            final List<ImageMetadataGrpcResponse> response = new ArrayList<>();
+            filesServiceStub.getImagesMetadata(
+                            FindImagesGrpcRequest.newBuilder()
+                                    .setEntityType(PAINTING)
+                                    .addAllEntityIds(entityIds.stream()
+                                            .map(UUID::toString)
+                                            .toList())
+                                    .build())
+                    .forEachRemaining(response::add);
+            return response;
+        } catch (StatusRuntimeException ex) {
+            log.info(ex.getMessage());
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+    }
+
+    /**
+     * Finds images through batch loader of rendition, so images requested at about the same time are fetched
+     * in one call.
+     */
     public List<ImageGrpcResponse> findAllByIds(final List<UUID> entityIds, boolean isOriginal) {
 
+        final var rendition = isOriginal ? RenditionGrpc.ORIGINAL : RenditionGrpc.THUMBNAIL;
         try {
-            final var grpcImagesStream = filesServiceStub.findAllByEntityTypeAndIds(
-                    FindImagesGrpcRequest.newBuilder()
-                            .setEntityType(PAINTING)
-                            .addAllEntityIds(entityIds.stream()
-                                    .map(UUID::toString)
-                                    .toList())
-                            .setIsOriginal(isOriginal)
-                            .build());
+            return List.copyOf(imagesLoaders.get(rendition).getAll(entityIds).values());
+        } catch (StatusRuntimeException ex) {
+            log.info(ex.getMessage());
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+
+    }
+
+    /**
+     * Takes local copies whose content hash is the expected one without asking rococo-files, e.g. hashes kept
+     * in painting read model. Other images are found by {@link #findAllByIds(List, boolean)}.
+     *
+     * @param expectedHashes entity id -> content hash of its current image, null if it is not known
+     */
+    public List<ImageGrpcResponse> findAllByIds(final Map<UUID, String> expectedHashes, boolean isOriginal) {
+
+        final var rendition = isOriginal ? RenditionGrpc.ORIGINAL : RenditionGrpc.THUMBNAIL;
+        final List<ImageGrpcResponse> response = new ArrayList<>();
+        final List<UUID> unknownIds = new ArrayList<>();
+        expectedHashes.forEach((entityId, expectedHash) -> imageCache.get(entityId, rendition)
+                .filter(image -> image.getContentHash().equals(expectedHash))
+                .ifPresentOrElse(response::add, () -> unknownIds.add(entityId)));
+        if (!unknownIds.isEmpty())
+            response.addAll(findAllByIds(unknownIds, isOriginal));
+        return response;
 
-            List<ImageGrpcResponse> response = new ArrayList<>();
-            while (grpcImagesStream.hasNext()) {
-                response.add(grpcImagesStream.next());
-            }
+    }
+
+    /**
+     * Finds blurhash placeholders of a few dozen bytes, images whose placeholders are not generated yet have no content.
+     * Placeholders are not kept locally: they are cheaper to send than to look up, and they share content hash
+     * with thumbnails kept in the cache.
+     */
+    public List<ImageGrpcResponse> findAllPlaceholders(final List<UUID> entityIds) {
+        try {
+            final List<ImageGrpcResponse> response = new ArrayList<>();
+            findAllByIds(entityIds, RenditionGrpc.PLACEHOLDER, Map.of()).forEachRemaining(response::add);
             return response;
         } catch (StatusRuntimeException ex) {
             log.info(ex.getMessage());
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
-
     }
 
-    public void update(UUID entityId, String image) {
+    /**
+     * @param format format of raw image bytes, empty if content is data-URI
+     */
+    public void update(UUID entityId, ByteString content, String format) {
         try {
-            filesServiceStub.updateImage(
-                    ImageGrpcRequest.newBuilder()
-                            .setEntityType(PAINTING)
-                            .setEntityId(entityId.toString())
-                            .setContent(ByteString.copyFrom(image, StandardCharsets.UTF_8))
-                            .build());
+            upload(entityId, content, format, true);
         } catch (StatusRuntimeException ex) {
             throw (ex.getStatus().getCode() == Status.Code.NOT_FOUND)
                     ? new ImageNotFoundException(entityId)
@@ -114,4 +210,78 @@ public class FilesGrpcClient {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Fetches images sending content hashes of local copies: images not modified since are taken from local copies,
+     * ones evicted meanwhile are requested again without hashes.
+     */
+    private Map<UUID, ImageGrpcResponse> fetchAllByIds(List<UUID> entityIds, RenditionGrpc rendition) {
+
+        final Map<UUID, ImageGrpcResponse> response = new HashMap<>();
+        final List<UUID> evictedIds = new ArrayList<>();
+        findAllByIds(entityIds, rendition, imageCache.knownHashes(entityIds, rendition))
+                .forEachRemaining(image -> {
+                    final var entityId = UUID.fromString(image.getEntityId());
+                    if (!image.getNotModified()) {
+                        response.put(entityId, imageCache.put(entityId, image, rendition));
+                        return;
+                    }
+                    imageCache.get(entityId, rendition)
+                            .ifPresentOrElse(cached -> response.put(entityId, cached), () -> evictedIds.add(entityId));
+                });
+        if (!evictedIds.isEmpty())
+            findAllByIds(evictedIds, rendition, Map.of())
+                    .forEachRemaining(image -> {
+                        final var entityId = UUID.fromString(image.getEntityId());
+                        response.put(entityId, imageCache.put(entityId, image, rendition));
+                    });
+        return response;
+
+    }
+
+    private Iterator<ImageGrpcResponse> findAllByIds(List<UUID> entityIds,
+                                                     RenditionGrpc rendition,
+                                                     Map<String, String> knownHashes) {
+        return filesServiceStub.findAllByEntityTypeAndIds(
+                FindImagesGrpcRequest.newBuilder()
+                        .setEntityType(PAINTING)
+                        .addAllEntityIds(entityIds.stream()
+                                .map(UUID::toString)
+                                .toList())
+                        .setRendition(rendition)
+                        .putAllKnownHashes(knownHashes)
+                        .setRawContent(true)
+                        .build());
+    }
+
+    /**
+     * Assembles downloaded image into response with raw content, chunks following the header are joined
+     * without copying.
+     */
+    private static ImageGrpcResponse toImageResponse(ImageDownloadHeader header, Iterator<ImageDownloadChunk> chunks) {
+
+        var content = ByteString.empty();
+        while (chunks.hasNext())
+            content = content.concat(chunks.next().getData());
+
+        return ImageGrpcResponse.newBuilder()
+                .setEntityId(header.getEntityId())
+                .setContent(content)
+                .setContentHash(header.getContentHash())
+                .setFormat(header.getFormat())
+                .build();
+
+    }
+
+    private void upload(UUID entityId, ByteString content, String format, boolean isUpdate) {
+        ImageUploader.upload(filesServiceAsyncStub,
+                ImageUploadHeader.newBuilder()
+                        .setEntityType(PAINTING)
+                        .setEntityId(entityId.toString())
+                        .setIsUpdate(isUpdate)
+                        .setFormat(format)
+                        .build(),
+                content,
+                uploadTimeout);
+    }
+
+}
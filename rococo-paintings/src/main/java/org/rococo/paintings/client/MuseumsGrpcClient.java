@@ -1,27 +1,32 @@
 package org.rococo.paintings.client;
 
-import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
-import org.rococo.grpc.common.type.IdType;
-import org.rococo.grpc.common.type.IdsType;
+import org.rococo.common.loader.BatchLoader;
+import org.rococo.common.loader.BatchLoaders;
 import org.rococo.grpc.museums.MuseumGrpcResponse;
 import org.rococo.grpc.museums.MuseumsByIdsGrpcRequest;
 import org.rococo.grpc.museums.MuseumsServiceGrpc;
+import org.rococo.grpc.common.type.IdsType;
 import org.rococo.paintings.ex.ServiceUnavailableException;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Museums are looked up through batch loaders: ids requested at about the same time are sent as one
+ * {@code findAllByIds} call, and one request finds every museum once.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 @ParametersAreNonnullByDefault
 public class MuseumsGrpcClient {
 
@@ -30,19 +35,23 @@ public class MuseumsGrpcClient {
     @GrpcClient("grpcMuseumsClient")
     private MuseumsServiceGrpc.MuseumsServiceBlockingStub museumsServiceStub;
 
+    private final BatchLoader<UUID, MuseumGrpcResponse> museumsLoader;
+
+    private final BatchLoader<UUID, MuseumGrpcResponse> museumsWithOriginalPhotoLoader;
+
+    public MuseumsGrpcClient(BatchLoaders loaders) {
+        this.museumsLoader = loaders.create("museums", ids -> fetchAllByIds(ids, false));
+        this.museumsWithOriginalPhotoLoader = loaders.create("museums-original-photo", ids -> fetchAllByIds(ids, true));
+    }
+
     @Nonnull
     public Optional<MuseumGrpcResponse> findById(UUID id) {
 
         log.info("Find museum by id: %s".formatted(id));
 
         try {
-            var idType = IdType.newBuilder()
-                    .setId(id.toString())
-                    .build();
-            return Optional.of(museumsServiceStub.findById(idType));
+            return museumsWithOriginalPhotoLoader.get(id);
         } catch (StatusRuntimeException ex) {
-            if (ex.getStatus().getCode() == Status.Code.NOT_FOUND)
-                return Optional.empty();
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
 
@@ -53,21 +62,27 @@ public class MuseumsGrpcClient {
         log.info("Find all museums by ids: {}", ids);
 
         try {
-            var idsText = ids.stream()
-                    .map(UUID::toString)
-                    .toList();
-            var response = museumsServiceStub.findAllByIds(
-                    MuseumsByIdsGrpcRequest.newBuilder()
-                            .setIds(
-                                    IdsType.newBuilder()
-                                            .addAllId(idsText)
-                                            .build())
-                            .setOriginalPhoto(false)
-                            .build());
-            return response.getMuseumsList();
+            return List.copyOf(museumsLoader.getAll(ids).values());
         } catch (StatusRuntimeException ex) {
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
 
     }
+
+    private Map<UUID, MuseumGrpcResponse> fetchAllByIds(List<UUID> ids, boolean originalPhoto) {
+        var idsText = ids.stream()
+                .map(UUID::toString)
+                .toList();
+        var response = museumsServiceStub.findAllByIds(
+                MuseumsByIdsGrpcRequest.newBuilder()
+                        .setIds(
+                                IdsType.newBuilder()
+                                        .addAllId(idsText)
+                                        .build())
+                        .setOriginalPhoto(originalPhoto)
+                        .build());
+        return response.getMuseumsList().stream()
+                .collect(Collectors.toMap(museum -> UUID.fromString(museum.getId()), Function.identity()));
+    }
+
 }
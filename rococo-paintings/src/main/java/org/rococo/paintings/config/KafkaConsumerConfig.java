@@ -0,0 +1,49 @@
+package org.rococo.paintings.config;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.rococo.paintings.model.ArtistEventDTO;
+import org.rococo.paintings.model.MuseumEventDTO;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+@Configuration
+@RequiredArgsConstructor
+public class KafkaConsumerConfig {
+
+    private final KafkaProperties kafkaProperties;
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, ArtistEventDTO> artistEventsContainerFactory(SslBundles sslBundles) {
+        ConcurrentKafkaListenerContainerFactory<String, ArtistEventDTO> containerFactory
+                = new ConcurrentKafkaListenerContainerFactory<>();
+        containerFactory.setConsumerFactory(consumerFactory(ArtistEventDTO.class, sslBundles));
+        return containerFactory;
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, MuseumEventDTO> museumEventsContainerFactory(SslBundles sslBundles) {
+        ConcurrentKafkaListenerContainerFactory<String, MuseumEventDTO> containerFactory
+                = new ConcurrentKafkaListenerContainerFactory<>();
+        containerFactory.setConsumerFactory(consumerFactory(MuseumEventDTO.class, sslBundles));
+        return containerFactory;
+    }
+
+    private <T> ConsumerFactory<String, T> consumerFactory(Class<T> eventClass, SslBundles sslBundles) {
+        final JsonDeserializer<T> jsonDeserializer = new JsonDeserializer<>(eventClass);
+        jsonDeserializer.setUseTypeHeaders(false);
+        jsonDeserializer.addTrustedPackages("*");
+        return new DefaultKafkaConsumerFactory<>(
+                kafkaProperties.buildConsumerProperties(sslBundles),
+                new StringDeserializer(),
+                jsonDeserializer
+        );
+    }
+
+}
@@ -1,10 +1,14 @@
 package org.rococo.paintings.data;
 
 import jakarta.annotation.Nonnull;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -17,4 +21,11 @@ public interface PaintingRepository extends JpaRepository<PaintingEntity, UUID>,
     @Nonnull
     Optional<PaintingEntity> findByTitle(String title);
 
+    /**
+     * Next page of ids in ascending order, keyset pagination does not slow down with offset.
+     */
+    @Nonnull
+    @Query("SELECT p.id FROM PaintingEntity p WHERE p.id > :after ORDER BY p.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Limit limit);
+
 }
@@ -0,0 +1,99 @@
+package org.rococo.paintings.data;
+
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Row of painting read model: painting with data of its artist, museum and content hash of its image.
+ * Fields of deleted artist or museum are null, {@code syncedDate} is null until row is filled by rebuild job.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+@ToString(onlyExplicitlyIncluded = true)
+@Entity
+@Table(schema = "rococo", name = "painting_view")
+public class PaintingViewEntity {
+
+    @ToString.Include
+    @Id
+    private UUID id;
+
+    @ToString.Include
+    @Column(name = "title", nullable = false)
+    private String title;
+
+    @Column(name = "description")
+    private String description;
+
+    @ToString.Include
+    @Column(name = "artist_id", nullable = false)
+    private UUID artistId;
+
+    @ToString.Include
+    @Column(name = "artist_name")
+    private String artistName;
+
+    @Column(name = "artist_biography")
+    private String artistBiography;
+
+    @ToString.Include
+    @Column(name = "museum_id", nullable = false)
+    private UUID museumId;
+
+    @ToString.Include
+    @Column(name = "museum_title")
+    private String museumTitle;
+
+    @Column(name = "museum_description")
+    private String museumDescription;
+
+    @Column(name = "museum_city")
+    private String museumCity;
+
+    @Column(name = "country_id")
+    private UUID countryId;
+
+    @Column(name = "country_name")
+    private String countryName;
+
+    @Column(name = "country_code")
+    private String countryCode;
+
+    @ToString.Include
+    @Column(name = "image_hash")
+    private String imageHash;
+
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate;
+
+    @ToString.Include
+    @Column(name = "synced_date")
+    private LocalDateTime syncedDate;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null) return false;
+        Class<?> oEffectiveClass = o instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass() : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass() : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) return false;
+        PaintingViewEntity that = (PaintingViewEntity) o;
+        return getId() != null && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy proxy ? proxy.getHibernateLazyInitializer().getPersistentClass().hashCode() : getClass().hashCode();
+    }
+
+}
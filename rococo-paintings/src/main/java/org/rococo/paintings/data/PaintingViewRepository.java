@@ -0,0 +1,82 @@
+package org.rococo.paintings.data;
+
+import jakarta.annotation.Nonnull;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@ParametersAreNonnullByDefault
+public interface PaintingViewRepository extends JpaRepository<PaintingViewEntity, UUID>, JpaSpecificationExecutor<PaintingViewEntity> {
+
+    /**
+     * @return number of updated paintings of the artist
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE PaintingViewEntity p
+            SET p.artistName = :name, p.artistBiography = :biography, p.syncedDate = :syncedDate
+            WHERE p.artistId = :artistId""")
+    int updateArtist(@Param("artistId") UUID artistId,
+                     @Nullable @Param("name") String name,
+                     @Nullable @Param("biography") String biography,
+                     @Param("syncedDate") LocalDateTime syncedDate);
+
+    /**
+     * @return number of updated paintings of the museum
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE PaintingViewEntity p
+            SET p.museumTitle = :title, p.museumDescription = :description, p.museumCity = :city,
+                p.countryId = :countryId, p.countryName = :countryName, p.countryCode = :countryCode,
+                p.syncedDate = :syncedDate
+            WHERE p.museumId = :museumId""")
+    int updateMuseum(@Param("museumId") UUID museumId,
+                     @Nullable @Param("title") String title,
+                     @Nullable @Param("description") String description,
+                     @Nullable @Param("city") String city,
+                     @Nullable @Param("countryId") UUID countryId,
+                     @Nullable @Param("countryName") String countryName,
+                     @Nullable @Param("countryCode") String countryCode,
+                     @Param("syncedDate") LocalDateTime syncedDate);
+
+    /**
+     * Row is updated only if it was not saved since it was read with {@code syncedDate}: hash of image found before
+     * painting update must not be kept for its new image.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PaintingViewEntity p SET p.imageHash = :imageHash WHERE p.id = :id AND p.syncedDate = :syncedDate")
+    void updateImageHash(@Param("id") UUID id,
+                         @Param("imageHash") String imageHash,
+                         @Param("syncedDate") LocalDateTime syncedDate);
+
+    boolean existsBySyncedDateIsNull();
+
+    /**
+     * Next page of rows in ascending order of ids, keyset pagination does not slow down with offset.
+     */
+    @Nonnull
+    @Query("SELECT p FROM PaintingViewEntity p WHERE p.id > :after ORDER BY p.id")
+    List<PaintingViewEntity> findAllAfter(@Param("after") UUID after, Limit limit);
+
+    /**
+     * Ids of paintings which have no row in read model
+     */
+    @Nonnull
+    @Query("SELECT p.id FROM PaintingEntity p WHERE NOT EXISTS (SELECT v.id FROM PaintingViewEntity v WHERE v.id = p.id)")
+    List<UUID> findMissingIds(Limit limit);
+
+}
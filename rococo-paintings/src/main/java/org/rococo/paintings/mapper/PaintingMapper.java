@@ -1,7 +1,9 @@
 package org.rococo.paintings.mapper;
 
+import com.google.protobuf.ByteString;
 import org.rococo.grpc.artists.ArtistGrpcResponse;
 import org.rococo.grpc.artists.ArtistShortGrpcResponse;
+import org.rococo.grpc.files.ImageGrpcResponse;
 import org.rococo.grpc.museums.MuseumGrpcResponse;
 import org.rococo.grpc.museums.MuseumShortGrpcResponse;
 import org.rococo.grpc.paintings.*;
@@ -12,12 +14,15 @@ import org.springframework.data.domain.Page;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Base64;
 import java.util.Map;
 import java.util.UUID;
 
 @ParametersAreNonnullByDefault
 public class PaintingMapper {
 
+    private static final String DATA_URI_PREFIX = "data:image/%s;base64,";
+
     private PaintingMapper() {
     }
 
@@ -47,9 +52,17 @@ public class PaintingMapper {
                 .build();
     }
 
+    /**
+     * @param photo       raw image with its format, or data-URI without format sent by old client
+     * @param legacyPhoto raw photo is also set as data-URI for clients not reading photo_content yet
+     */
     @Nonnull
-    public static PaintingGrpcResponse toGrpcResponse(PaintingEntity entity, ArtistGrpcResponse artist, MuseumGrpcResponse museum, @Nullable String photo) {
-        return PaintingGrpcResponse.newBuilder()
+    public static PaintingGrpcResponse toGrpcResponse(PaintingEntity entity,
+                                                      ArtistGrpcResponse artist,
+                                                      MuseumGrpcResponse museum,
+                                                      @Nullable ImageGrpcResponse photo,
+                                                      boolean legacyPhoto) {
+        final var response = PaintingGrpcResponse.newBuilder()
                 .setId(entity.getId().toString())
                 .setTitle(entity.getTitle())
                 .setDescription(entity.getDescription() == null
@@ -68,11 +81,32 @@ public class PaintingMapper {
                                 .setDescription(museum.getDescription())
                                 .setCity(museum.getCity())
                                 .setCountry(museum.getCountry())
-                                .build())
-                .setPhoto(photo == null
-                        ? ""
-                        : photo)
-                .build();
+                                .build());
+
+        if (photo == null || photo.getContent().isEmpty())
+            return response.build();
+        if (photo.getFormat().isEmpty())
+            return response.setPhoto(photo.getContent().toStringUtf8()).build();
+
+        response.setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat());
+        if (legacyPhoto)
+            response.setPhoto(toDataUri(photo));
+        return response.build();
+    }
+
+    /**
+     * Photo of request as it is sent to rococo-files: raw image with its format,
+     * or data-URI without format if client does not use photo_content yet.
+     */
+    @Nonnull
+    public static ImageGrpcResponse toPhoto(AddPaintingGrpcRequest request) {
+        return toPhoto(request.getPhotoContent(), request.getPhotoFormat(), request.getPhoto());
+    }
+
+    @Nonnull
+    public static ImageGrpcResponse toPhoto(UpdatePaintingGrpcRequest request) {
+        return toPhoto(request.getPhotoContent(), request.getPhotoFormat(), request.getPhoto());
     }
 
     @Nonnull
@@ -91,16 +125,38 @@ public class PaintingMapper {
     }
 
     @Nonnull
-    public static PaintingsGrpcResponse toPageGrpc(Page<PaintingEntity> page, Map<UUID, ArtistGrpcResponse> artists, Map<UUID, MuseumGrpcResponse> museums, Map<UUID, String> photos) {
+    public static PaintingsGrpcResponse toPageGrpc(Page<PaintingEntity> page,
+                                                   Map<UUID, ArtistGrpcResponse> artists,
+                                                   Map<UUID, MuseumGrpcResponse> museums,
+                                                   Map<UUID, ImageGrpcResponse> photos,
+                                                   boolean legacyPhoto) {
         return PaintingsGrpcResponse.newBuilder()
                 .setCurrentPage(page.getPageable().getPageNumber())
                 .setItemsPerPage(page.getSize())
                 .setTotalItems(page.getTotalElements())
                 .setTotalPages(page.getTotalPages())
                 .addAllData(page.getContent().stream()
-                        .map(painting -> PaintingMapper.toGrpcResponse(painting, artists.get(painting.getArtistId()), museums.get(painting.getMuseumId()), photos.get(painting.getId())))
+                        .map(painting -> PaintingMapper.toGrpcResponse(painting, artists.get(painting.getArtistId()), museums.get(painting.getMuseumId()), photos.get(painting.getId()), legacyPhoto))
                         .toList())
                 .build();
     }
 
+    @Nonnull
+    private static String toDataUri(ImageGrpcResponse photo) {
+        return DATA_URI_PREFIX.formatted(photo.getFormat())
+                + Base64.getEncoder().encodeToString(photo.getContent().toByteArray());
+    }
+
+    @Nonnull
+    private static ImageGrpcResponse toPhoto(ByteString content, String format, String dataUri) {
+        return content.isEmpty()
+                ? ImageGrpcResponse.newBuilder()
+                .setContent(ByteString.copyFromUtf8(dataUri))
+                .build()
+                : ImageGrpcResponse.newBuilder()
+                .setContent(content)
+                .setFormat(format)
+                .build();
+    }
+
 }
@@ -0,0 +1,150 @@
+package org.rococo.paintings.mapper;
+
+import org.rococo.grpc.artists.ArtistGrpcResponse;
+import org.rococo.grpc.countries.CountryGrpcResponse;
+import org.rococo.grpc.files.ImageGrpcResponse;
+import org.rococo.grpc.museums.MuseumGrpcResponse;
+import org.rococo.grpc.paintings.PaintingGrpcResponse;
+import org.rococo.grpc.paintings.PaintingsGrpcResponse;
+import org.rococo.paintings.data.PaintingEntity;
+import org.rococo.paintings.data.PaintingViewEntity;
+import org.springframework.data.domain.Page;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+@ParametersAreNonnullByDefault
+public class PaintingViewMapper {
+
+    private PaintingViewMapper() {
+    }
+
+    /**
+     * @param artist    default instance if artist is not found
+     * @param museum    default instance if museum is not found
+     * @param imageHash content hash of painting image, null if not known
+     */
+    @Nonnull
+    public static PaintingViewEntity toEntity(PaintingEntity painting,
+                                              ArtistGrpcResponse artist,
+                                              MuseumGrpcResponse museum,
+                                              @Nullable String imageHash) {
+        final var country = museum.getCountry();
+        return PaintingViewEntity.builder()
+                .id(painting.getId())
+                .title(painting.getTitle())
+                .description(painting.getDescription())
+                .artistId(painting.getArtistId())
+                .artistName(emptyToNull(artist.getName()))
+                .artistBiography(emptyToNull(artist.getBiography()))
+                .museumId(painting.getMuseumId())
+                .museumTitle(emptyToNull(museum.getTitle()))
+                .museumDescription(emptyToNull(museum.getDescription()))
+                .museumCity(emptyToNull(museum.getCity()))
+                .countryId(country.getId().isEmpty()
+                        ? null
+                        : UUID.fromString(country.getId()))
+                .countryName(emptyToNull(country.getName()))
+                .countryCode(emptyToNull(country.getCode()))
+                .imageHash(imageHash)
+                .createdDate(painting.getCreatedDate())
+                .syncedDate(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Compares data of painting, artist and museum: image hash is refreshed by reads and is not compared.
+     */
+    public static boolean hasSameData(PaintingViewEntity row, PaintingViewEntity expected) {
+        return Objects.equals(row.getTitle(), expected.getTitle())
+                && Objects.equals(row.getDescription(), expected.getDescription())
+                && Objects.equals(row.getArtistId(), expected.getArtistId())
+                && Objects.equals(row.getArtistName(), expected.getArtistName())
+                && Objects.equals(row.getArtistBiography(), expected.getArtistBiography())
+                && Objects.equals(row.getMuseumId(), expected.getMuseumId())
+                && Objects.equals(row.getMuseumTitle(), expected.getMuseumTitle())
+                && Objects.equals(row.getMuseumDescription(), expected.getMuseumDescription())
+                && Objects.equals(row.getMuseumCity(), expected.getMuseumCity())
+                && Objects.equals(row.getCountryId(), expected.getCountryId())
+                && Objects.equals(row.getCountryName(), expected.getCountryName())
+                && Objects.equals(row.getCountryCode(), expected.getCountryCode());
+    }
+
+    @Nonnull
+    public static PaintingGrpcResponse toGrpcResponse(PaintingViewEntity row,
+                                                      @Nullable ImageGrpcResponse photo,
+                                                      boolean legacyPhoto) {
+        return PaintingMapper.toGrpcResponse(toPainting(row), toArtist(row), toMuseum(row), photo, legacyPhoto);
+    }
+
+    @Nonnull
+    public static PaintingsGrpcResponse toPageGrpc(Page<PaintingViewEntity> page,
+                                                   Map<UUID, ImageGrpcResponse> photos,
+                                                   boolean legacyPhoto) {
+        return PaintingsGrpcResponse.newBuilder()
+                .setCurrentPage(page.getPageable().getPageNumber())
+                .setItemsPerPage(page.getSize())
+                .setTotalItems(page.getTotalElements())
+                .setTotalPages(page.getTotalPages())
+                .addAllData(page.getContent().stream()
+                        .map(row -> toGrpcResponse(row, photos.get(row.getId()), legacyPhoto))
+                        .toList())
+                .build();
+    }
+
+    @Nonnull
+    private static PaintingEntity toPainting(PaintingViewEntity row) {
+        return PaintingEntity.builder()
+                .id(row.getId())
+                .title(row.getTitle())
+                .description(row.getDescription())
+                .artistId(row.getArtistId())
+                .museumId(row.getMuseumId())
+                .createdDate(row.getCreatedDate())
+                .build();
+    }
+
+    @Nonnull
+    private static ArtistGrpcResponse toArtist(PaintingViewEntity row) {
+        return ArtistGrpcResponse.newBuilder()
+                .setId(row.getArtistId().toString())
+                .setName(nullToEmpty(row.getArtistName()))
+                .setBiography(nullToEmpty(row.getArtistBiography()))
+                .build();
+    }
+
+    @Nonnull
+    private static MuseumGrpcResponse toMuseum(PaintingViewEntity row) {
+        return MuseumGrpcResponse.newBuilder()
+                .setId(row.getMuseumId().toString())
+                .setTitle(nullToEmpty(row.getMuseumTitle()))
+                .setDescription(nullToEmpty(row.getMuseumDescription()))
+                .setCity(nullToEmpty(row.getMuseumCity()))
+                .setCountry(row.getCountryId() == null
+                        ? CountryGrpcResponse.getDefaultInstance()
+                        : CountryGrpcResponse.newBuilder()
+                        .setId(row.getCountryId().toString())
+                        .setName(nullToEmpty(row.getCountryName()))
+                        .setCode(nullToEmpty(row.getCountryCode()))
+                        .build())
+                .build();
+    }
+
+    @Nullable
+    private static String emptyToNull(String value) {
+        return value.isEmpty()
+                ? null
+                : value;
+    }
+
+    @Nonnull
+    private static String nullToEmpty(@Nullable String value) {
+        return Objects.requireNonNullElse(value, "");
+    }
+
+}
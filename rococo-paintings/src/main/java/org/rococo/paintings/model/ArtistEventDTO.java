@@ -0,0 +1,30 @@
+package org.rococo.paintings.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Event of topic {@code artists} published by rococo-artists. Event of deleted artist has id only.
+ */
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ArtistEventDTO(
+
+        @JsonProperty("type")
+        EventType type,
+
+        @JsonProperty("id")
+        UUID id,
+
+        @JsonProperty("name")
+        String name,
+
+        @JsonProperty("biography")
+        String biography
+
+) implements Serializable {
+}
@@ -0,0 +1,14 @@
+package org.rococo.paintings.model;
+
+/**
+ * Change of artist or museum read from Kafka
+ */
+public enum EventType {
+
+    ADDED,
+
+    UPDATED,
+
+    DELETED
+
+}
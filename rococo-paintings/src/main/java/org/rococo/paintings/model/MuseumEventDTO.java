@@ -0,0 +1,42 @@
+package org.rococo.paintings.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Event of topic {@code museums} published by rococo-museums. Event of deleted museum has id only.
+ */
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record MuseumEventDTO(
+
+        @JsonProperty("type")
+        EventType type,
+
+        @JsonProperty("id")
+        UUID id,
+
+        @JsonProperty("title")
+        String title,
+
+        @JsonProperty("description")
+        String description,
+
+        @JsonProperty("city")
+        String city,
+
+        @JsonProperty("countryId")
+        UUID countryId,
+
+        @JsonProperty("countryName")
+        String countryName,
+
+        @JsonProperty("countryCode")
+        String countryCode
+
+) implements Serializable {
+}
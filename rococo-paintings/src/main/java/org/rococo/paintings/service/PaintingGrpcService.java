@@ -5,9 +5,14 @@ import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.rococo.common.budget.LatencyBudgets;
+import org.rococo.common.loader.ConcurrentLookups;
 import org.rococo.grpc.artists.ArtistGrpcResponse;
+import org.rococo.grpc.common.page.IdsPageGrpcRequest;
 import org.rococo.grpc.common.type.IdType;
+import org.rococo.grpc.common.type.IdsType;
 import org.rococo.grpc.common.type.NameType;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.files.ImageGrpcResponse;
 import org.rococo.grpc.museums.MuseumGrpcResponse;
 import org.rococo.grpc.paintings.*;
@@ -16,19 +21,31 @@ import org.rococo.paintings.client.FilesGrpcClient;
 import org.rococo.paintings.client.MuseumsGrpcClient;
 import org.rococo.paintings.data.PaintingEntity;
 import org.rococo.paintings.data.PaintingRepository;
+import org.rococo.paintings.data.PaintingViewEntity;
+import org.rococo.paintings.data.PaintingViewRepository;
 import org.rococo.paintings.ex.ArtistNotFoundException;
 import org.rococo.paintings.ex.MuseumNotFoundException;
 import org.rococo.paintings.ex.PaintingAlreadyExistsException;
 import org.rococo.paintings.ex.PaintingNotFoundException;
 import org.rococo.paintings.mapper.PageableMapper;
 import org.rococo.paintings.mapper.PaintingMapper;
-import org.rococo.paintings.specs.PaintingSpecs;
+import org.rococo.paintings.mapper.PaintingViewMapper;
+import org.rococo.paintings.specs.PaintingViewSpecs;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static org.rococo.common.tx.Compensations.runOrCompensate;
+
 @Slf4j
 @GrpcService
 @RequiredArgsConstructor
@@ -37,48 +54,78 @@ public class PaintingGrpcService extends PaintingsServiceGrpc.PaintingsServiceIm
     private final ArtistsGrpcClient artistsClient;
     private final MuseumsGrpcClient museumsClient;
     private final FilesGrpcClient filesClient;
+    private final ConcurrentLookups lookups;
 
     private final PaintingRepository paintingRepository;
-    private final PaintingSpecs paintingSpecs;
-
+    private final PaintingViewRepository paintingViewRepository;
+    private final PaintingViewSpecs paintingViewSpecs;
+    private final TransactionTemplate transactionTemplate;
+    private final LatencyBudgets latencyBudgets;
+
+    @Value("${rococo-paintings.legacy-photo:false}")
+    private boolean legacyPhoto;
+
+    /**
+     * Artist and museum are looked up before short transaction, photo is sent to rococo-files after commit.
+     * Painting is removed if photo is not saved.
+     */
     @Override
-    @Transactional
     public void add(AddPaintingGrpcRequest request, StreamObserver<PaintingGrpcResponse> responseObserver) {
 
         log.info("Add new painting: {}", request);
 
         paintingRepository.findByTitle(request.getTitle())
-                .ifPresentOrElse(
-                        museum -> {
-                            throw new PaintingAlreadyExistsException(request.getTitle());
-                        },
-                        () -> {
-                            var artistId = UUID.fromString(request.getArtistId());
-                            var artist = artistsClient.findById(artistId)
-                                    .orElseThrow(() -> new ArtistNotFoundException(artistId));
-                            var museumId = UUID.fromString(request.getMuseumId());
-                            var museum = museumsClient.findById(museumId)
-                                    .orElseThrow(() -> new MuseumNotFoundException(museumId));
-
-                            var painting = paintingRepository.save(
-                                    PaintingMapper.fromGrpcRequest(request)
-                                            .setCreatedDate(LocalDateTime.now()));
-                            filesClient.add(painting.getId(), request.getPhoto());
-
-                            responseObserver.onNext(
-                                    PaintingMapper.toGrpcResponse(
-                                            painting,
-                                            artist,
-                                            museum,
-                                            request.getPhoto()));
-                            responseObserver.onCompleted();
-                        });
+                .ifPresent(painting -> {
+                    throw new PaintingAlreadyExistsException(request.getTitle());
+                });
+        var artistId = UUID.fromString(request.getArtistId());
+        var artist = artistsClient.findById(artistId)
+                .orElseThrow(() -> new ArtistNotFoundException(artistId));
+        var museumId = UUID.fromString(request.getMuseumId());
+        var museum = museumsClient.findById(museumId)
+                .orElseThrow(() -> new MuseumNotFoundException(museumId));
+
+        var painting = transactionTemplate.execute(status -> {
+            var savedPainting = paintingRepository.save(
+                    PaintingMapper.fromGrpcRequest(request)
+                            .setCreatedDate(LocalDateTime.now()));
+            paintingViewRepository.save(PaintingViewMapper.toEntity(savedPainting, artist, museum, null));
+            return savedPainting;
+        });
+
+        var photo = PaintingMapper.toPhoto(request);
+        runOrCompensate(
+                () -> filesClient.add(painting.getId(), photo.getContent(), photo.getFormat()),
+                () -> transactionTemplate.execute(status -> {
+                    paintingRepository.deleteById(painting.getId());
+                    return null;
+                }));
 
+        responseObserver.onNext(
+                PaintingMapper.toGrpcResponse(
+                        painting,
+                        artist,
+                        museum,
+                        photo,
+                        legacyPhoto));
+        responseObserver.onCompleted();
 
     }
 
     @Override
     @Transactional(readOnly = true)
+    public void existsById(IdType request, StreamObserver<StatusType> responseObserver) {
+
+        log.info("Check painting exists by id: {}", request.getId());
+
+        responseObserver.onNext(StatusType.newBuilder()
+                .setStatus(paintingRepository.existsById(UUID.fromString(request.getId())))
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    @Override
     public void findById(IdType request, StreamObserver<PaintingGrpcResponse> responseObserver) {
 
         log.info("Find painting by id: {}", request.getId());
@@ -86,10 +133,7 @@ public class PaintingGrpcService extends PaintingsServiceGrpc.PaintingsServiceIm
         paintingRepository.findById(UUID.fromString(request.getId()))
                 .ifPresentOrElse(
                         painting -> {
-                            var artist = artistsClient.findById(painting.getArtistId()).orElse(ArtistGrpcResponse.getDefaultInstance());
-                            var museum = museumsClient.findById(painting.getMuseumId()).orElse(MuseumGrpcResponse.getDefaultInstance());
-                            var photo = filesClient.findImage(painting.getId()).orElse(ImageGrpcResponse.getDefaultInstance());
-                            responseObserver.onNext(PaintingMapper.toGrpcResponse(painting, artist, museum, photo.getContent().toStringUtf8()));
+                            responseObserver.onNext(toGrpcResponse(painting));
                             responseObserver.onCompleted();
                         },
                         () -> {
@@ -100,7 +144,6 @@ public class PaintingGrpcService extends PaintingsServiceGrpc.PaintingsServiceIm
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void findByTitle(NameType request, StreamObserver<PaintingGrpcResponse> responseObserver) {
 
         log.info("Find painting by title: {}", request.getName());
@@ -108,10 +151,7 @@ public class PaintingGrpcService extends PaintingsServiceGrpc.PaintingsServiceIm
         paintingRepository.findByTitle(request.getName())
                 .ifPresentOrElse(
                         painting -> {
-                            var artist = artistsClient.findById(painting.getArtistId()).orElse(ArtistGrpcResponse.getDefaultInstance());
-                            var museum = museumsClient.findById(painting.getMuseumId()).orElse(MuseumGrpcResponse.getDefaultInstance());
-                            var photo = filesClient.findImage(painting.getId()).orElse(ImageGrpcResponse.getDefaultInstance());
-                            responseObserver.onNext(PaintingMapper.toGrpcResponse(painting, artist, museum, photo.getContent().toStringUtf8()));
+                            responseObserver.onNext(toGrpcResponse(painting));
                             responseObserver.onCompleted();
                         },
                         () -> {
@@ -121,125 +161,188 @@ public class PaintingGrpcService extends PaintingsServiceGrpc.PaintingsServiceIm
 
     }
 
+    /**
+     * Page is read from painting read model by one query, images are taken from local copies
+     * if their content hashes kept in read model are current. Other images are waited for within budget
+     * of rococo-files, page is returned without them if it is spent.
+     */
     @Override
-    @Transactional(readOnly = true)
     public void findAll(PaintingsFilterGrpcRequest request, StreamObserver<PaintingsGrpcResponse> responseObserver) {
 
-        var isOriginalText = request.getOriginalPhoto()
-                ? "original"
-                : "thumbnail";
+        var isOriginalText = request.getPlaceholderPhoto()
+                ? "placeholder"
+                : request.getOriginalPhoto() ? "original" : "thumbnail";
         log.info("Find all paintings with {} photos by params: {}", isOriginalText, request);
 
-        var paintingEntities = paintingRepository.findAll(
-                paintingSpecs.findByCriteria(
+        var paintings = paintingViewRepository.findAll(
+                paintingViewSpecs.findByCriteria(
                         PaintingMapper.fromGrpcFilter(request)),
                 PageableMapper.fromPageableGrpc(request.getPageable()));
 
-        var paintingIds = paintingEntities.stream()
-                .map(PaintingEntity::getId)
-                .distinct()
-                .toList();
-
-        var artistIds = paintingEntities.stream()
-                .map(PaintingEntity::getArtistId)
-                .distinct()
-                .toList();
-
-        var museumIds = paintingEntities.stream()
-                .map(PaintingEntity::getMuseumId)
-                .distinct()
-                .toList();
-
-        var artistMap = artistsClient.findAllByIds(artistIds).stream()
-                .collect(Collectors.toMap(
-                        artist -> UUID.fromString(artist.getId()),
-                        artist -> artist));
-
-        var museumMap = museumsClient.findAllByIds(museumIds).stream()
-                .collect(Collectors.toMap(
-                        artist -> UUID.fromString(artist.getId()),
-                        artist -> artist));
-
-        var photoMap = filesClient.findAllByIds(paintingIds, request.getOriginalPhoto()).stream()
+        Map<UUID, String> imageHashes = new LinkedHashMap<>();
+        paintings.forEach(painting -> imageHashes.put(painting.getId(), painting.getImageHash()));
+
+        var budget = latencyBudgets.start();
+        var photos = budget.call(
+                "files",
+                () -> request.getPlaceholderPhoto()
+                        ? filesClient.findAllPlaceholders(List.copyOf(imageHashes.keySet()))
+                        : filesClient.findAllByIds(imageHashes, request.getOriginalPhoto()),
+                List.<ImageGrpcResponse>of());
+        var photoMap = photos.stream()
                 .collect(Collectors.toMap(
                         photo -> UUID.fromString(photo.getEntityId()),
-                        photo -> photo.getContent().toStringUtf8()));
+                        photo -> photo));
 
-        responseObserver.onNext(
-                PaintingMapper.toPageGrpc(
-                        paintingEntities,
-                        artistMap,
-                        museumMap,
-                        photoMap
-                ));
+        rememberImageHashes(paintings, photoMap);
 
+        responseObserver.onNext(
+                PaintingViewMapper.toPageGrpc(
+                                paintings,
+                                photoMap,
+                                legacyPhoto
+                        ).toBuilder()
+                        .setDegraded(budget.finish())
+                        .build());
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Remote lookups are done before short transaction, photo is sent to rococo-files after commit.
+     * Previous painting data is restored if photo is not saved.
+     */
     @Override
-    @Transactional
     public void update(UpdatePaintingGrpcRequest request, StreamObserver<PaintingGrpcResponse> responseObserver) {
 
         log.info("Update painting: {}", request);
 
-        paintingRepository.findById(UUID.fromString(request.getId()))
-                .ifPresentOrElse(
-                        painting -> {
-                            paintingRepository.findByTitle(request.getTitle())
-                                    .ifPresent(m -> {
-                                        if (!m.getId().equals(painting.getId()))
-                                            throw new PaintingAlreadyExistsException(request.getTitle());
-                                    });
-
-                            var artistId = UUID.fromString(request.getArtistId());
-                            var museumId = UUID.fromString(request.getMuseumId());
-                            var artist = artistsClient.findById(artistId)
-                                    .orElseThrow(() -> new ArtistNotFoundException(artistId));
-                            var museum = museumsClient.findById(museumId)
-                                    .orElseThrow(() -> new MuseumNotFoundException(museumId));
-
-                            var updatedPainting = paintingRepository.save(
-                                    PaintingMapper.updateFromGrpcRequest(painting, request));
-
-                            var existPhoto = filesClient.findImage(painting.getId());
-                            if (existPhoto.isPresent() && !request.getPhoto().isEmpty()) {
-                                filesClient.update(painting.getId(), request.getPhoto());
-                            } else if (existPhoto.isPresent() && request.getPhoto().isEmpty()) {
-                                filesClient.delete(painting.getId());
-                            } else if (existPhoto.isEmpty() && !request.getPhoto().isEmpty()) {
-                                filesClient.add(painting.getId(), request.getPhoto());
-                            }
-
-                            responseObserver.onNext(
-                                    PaintingMapper.toGrpcResponse(
-                                            updatedPainting,
-                                            artist,
-                                            museum,
-                                            request.getPhoto()
-                                    ));
-                            responseObserver.onCompleted();
-                        },
-                        () -> {
-                            throw new PaintingNotFoundException(UUID.fromString(request.getId()));
-                        }
-                );
+        var id = UUID.fromString(request.getId());
+        var painting = paintingRepository.findById(id)
+                .orElseThrow(() -> new PaintingNotFoundException(id));
+        paintingRepository.findByTitle(request.getTitle())
+                .ifPresent(m -> {
+                    if (!m.getId().equals(painting.getId()))
+                        throw new PaintingAlreadyExistsException(request.getTitle());
+                });
+
+        var artistId = UUID.fromString(request.getArtistId());
+        var museumId = UUID.fromString(request.getMuseumId());
+        var artist = artistsClient.findById(artistId)
+                .orElseThrow(() -> new ArtistNotFoundException(artistId));
+        var museum = museumsClient.findById(museumId)
+                .orElseThrow(() -> new MuseumNotFoundException(museumId));
+        var photo = PaintingMapper.toPhoto(request);
+        var hasPhoto = filesClient.exists(painting.getId());
+        var previousRow = paintingViewRepository.findById(painting.getId());
+
+        var updatedPainting = transactionTemplate.execute(status -> {
+            var savedPainting = paintingRepository.save(
+                    PaintingMapper.updateFromGrpcRequest(painting, request));
+            paintingViewRepository.save(PaintingViewMapper.toEntity(savedPainting, artist, museum, null));
+            return savedPainting;
+        });
+        runOrCompensate(
+                () -> {
+                    if (hasPhoto && !photo.getContent().isEmpty()) {
+                        filesClient.update(painting.getId(), photo.getContent(), photo.getFormat());
+                    } else if (hasPhoto && photo.getContent().isEmpty()) {
+                        filesClient.delete(painting.getId());
+                    } else if (!hasPhoto && !photo.getContent().isEmpty()) {
+                        filesClient.add(painting.getId(), photo.getContent(), photo.getFormat());
+                    }
+                },
+                () -> transactionTemplate.execute(status -> {
+                    paintingRepository.save(painting);
+                    previousRow.ifPresent(paintingViewRepository::save);
+                    return null;
+                }));
+
+        responseObserver.onNext(
+                PaintingMapper.toGrpcResponse(
+                        updatedPainting,
+                        artist,
+                        museum,
+                        photo,
+                        legacyPhoto
+                ));
+        responseObserver.onCompleted();
 
     }
 
+    /**
+     * Photo is deleted after commit. Photo left by failed call is collected by rococo-files later.
+     */
     @Override
-    @Transactional
     public void removeById(IdType request, StreamObserver<Empty> responseObserver) {
 
         log.info("Delete painting by id: {}", request.getId());
 
         var id = UUID.fromString(request.getId());
-        paintingRepository.deleteById(id);
-        filesClient.delete(id);
+        transactionTemplate.execute(status -> {
+            paintingRepository.deleteById(id);
+            return null;
+        });
+        try {
+            filesClient.delete(id);
+        } catch (RuntimeException ex) {
+            log.warn("Photo of deleted painting [{}] is not deleted, it is left for collector", id, ex);
+        }
 
         responseObserver.onNext(Empty.newBuilder().build());
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Ids of all paintings page by page, images of entities missing here are collected by rococo-files.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void findIdsPage(IdsPageGrpcRequest request, StreamObserver<IdsType> responseObserver) {
+
+        log.info("Find painting ids after: [{}]", request.getAfter());
+
+        var after = request.getAfter().isEmpty()
+                ? new UUID(0, 0)
+                : UUID.fromString(request.getAfter());
+        var ids = paintingRepository.findIdsAfter(after, Limit.of(Math.max(request.getSize(), 1))).stream()
+                .map(UUID::toString)
+                .toList();
+
+        responseObserver.onNext(IdsType.newBuilder()
+                .addAllId(ids)
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    /**
+     * Keeps content hashes of found images in read model, so next pages take unchanged images from local copies
+     */
+    private void rememberImageHashes(Page<PaintingViewEntity> paintings, Map<UUID, ImageGrpcResponse> photos) {
+        paintings.forEach(painting -> {
+            var photo = photos.get(painting.getId());
+            if (photo != null && !photo.getContentHash().isEmpty()
+                    && !photo.getContentHash().equals(painting.getImageHash()) && painting.getSyncedDate() != null)
+                paintingViewRepository.updateImageHash(painting.getId(), photo.getContentHash(), painting.getSyncedDate());
+        });
+    }
+
+    private PaintingGrpcResponse toGrpcResponse(PaintingEntity painting) {
+        try (var batch = lookups.start()) {
+            var artist = batch.submit(() -> artistsClient.findById(painting.getArtistId())
+                    .orElse(ArtistGrpcResponse.getDefaultInstance()));
+            var museum = batch.submit(() -> museumsClient.findById(painting.getMuseumId())
+                    .orElse(MuseumGrpcResponse.getDefaultInstance()));
+            var photo = batch.submit(() -> filesClient.findImage(painting.getId()).orElse(null));
+            return PaintingMapper.toGrpcResponse(
+                    painting,
+                    batch.join(artist),
+                    batch.join(museum),
+                    batch.join(photo),
+                    legacyPhoto);
+        }
+    }
+
 }
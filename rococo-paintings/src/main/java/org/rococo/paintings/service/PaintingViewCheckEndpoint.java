@@ -0,0 +1,24 @@
+package org.rococo.paintings.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code paintingviewcheck} of {@link PaintingViewChecker}: read checks the whole read model
+ * and returns report. Exposed through JMX like {@link PaintingViewEndpoint}.
+ */
+@Component
+@Endpoint(id = "paintingviewcheck")
+@RequiredArgsConstructor
+public class PaintingViewCheckEndpoint {
+
+    private final PaintingViewChecker checker;
+
+    @ReadOperation
+    public PaintingViewChecker.Report check() {
+        return checker.check();
+    }
+
+}
@@ -0,0 +1,118 @@
+package org.rococo.paintings.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.paintings.data.PaintingEntity;
+import org.rococo.paintings.data.PaintingRepository;
+import org.rococo.paintings.data.PaintingViewEntity;
+import org.rococo.paintings.data.PaintingViewRepository;
+import org.rococo.paintings.mapper.PaintingViewMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Compares painting read model with paintings and current data of their artists and museums, see
+ * {@link PaintingViewCheckEndpoint}. Reports paintings missing in read model and rows whose data differs,
+ * both are fixed by {@link PaintingViewRebuildJob}. Image hashes are not compared: they are refreshed by reads.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+public class PaintingViewChecker {
+
+    private static final UUID FIRST_PAINTING_ID = new UUID(0, 0);
+
+    private static final int MAX_REPORTED_IDS = 20;
+
+    private final PaintingRepository paintingRepository;
+
+    private final PaintingViewRepository paintingViewRepository;
+
+    private final PaintingViewRebuildJob rebuildJob;
+
+    private final int batchSize;
+
+    public PaintingViewChecker(PaintingRepository paintingRepository,
+                               PaintingViewRepository paintingViewRepository,
+                               PaintingViewRebuildJob rebuildJob,
+                               @Value("${rococo-paintings.view.batch-size:100}") int batchSize
+    ) {
+        this.paintingRepository = paintingRepository;
+        this.paintingViewRepository = paintingViewRepository;
+        this.rebuildJob = rebuildJob;
+        this.batchSize = batchSize;
+    }
+
+    @Nonnull
+    public Report check() {
+
+        final var missingIds = paintingViewRepository.findMissingIds(Limit.of(MAX_REPORTED_IDS));
+        final var missing = Math.max(paintingRepository.count() - paintingViewRepository.count(), missingIds.size());
+
+        long checked = 0;
+        long stale = 0;
+        final List<UUID> staleIds = new ArrayList<>();
+        var after = FIRST_PAINTING_ID;
+        List<PaintingViewEntity> rows;
+        do {
+            rows = paintingViewRepository.findAllAfter(after, Limit.of(batchSize));
+            if (rows.isEmpty())
+                break;
+
+            final var paintings = paintingRepository.findAllById(rows.stream()
+                    .map(PaintingViewEntity::getId)
+                    .toList());
+            final var expectedRows = rebuildJob.toRows(paintings, false).stream()
+                    .collect(Collectors.toMap(PaintingViewEntity::getId, Function.identity()));
+            for (var row : rows) {
+                final var expected = expectedRows.get(row.getId());
+                // painting deleted after its row was read
+                if (expected == null)
+                    continue;
+                checked++;
+                if (!PaintingViewMapper.hasSameData(row, expected)) {
+                    stale++;
+                    if (staleIds.size() < MAX_REPORTED_IDS)
+                        staleIds.add(row.getId());
+                }
+            }
+            after = rows.getLast().getId();
+        } while (rows.size() == batchSize);
+
+        final var report = new Report(checked, missing, stale, missingIds, staleIds);
+        if (missing > 0 || stale > 0)
+            log.warn("Painting read model is out of sync, it must be rebuilt: {}", report);
+        else
+            log.info("Painting read model is in sync: checked = [{}]", checked);
+        return report;
+
+    }
+
+    /**
+     * @param missingIds up to 20 ids of paintings missing in read model
+     * @param staleIds   up to 20 ids of rows whose data differs
+     */
+    public record Report(
+
+            long checked,
+
+            long missing,
+
+            long stale,
+
+            List<UUID> missingIds,
+
+            List<UUID> staleIds
+
+    ) {
+    }
+
+}
@@ -0,0 +1,36 @@
+package org.rococo.paintings.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code paintingview} of {@link PaintingViewRebuildJob}: read returns progress,
+ * write starts rebuild, delete stops it. Service has no web server, endpoint is exposed through JMX.
+ */
+@Component
+@Endpoint(id = "paintingview")
+@RequiredArgsConstructor
+public class PaintingViewEndpoint {
+
+    private final PaintingViewRebuildJob rebuildJob;
+
+    @ReadOperation
+    public PaintingViewRebuildJob.Status status() {
+        return rebuildJob.status();
+    }
+
+    @WriteOperation
+    public PaintingViewRebuildJob.Status start() {
+        return rebuildJob.start();
+    }
+
+    @DeleteOperation
+    public PaintingViewRebuildJob.Status stop() {
+        return rebuildJob.stop();
+    }
+
+}
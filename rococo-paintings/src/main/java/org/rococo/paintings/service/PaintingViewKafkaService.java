@@ -0,0 +1,54 @@
+package org.rococo.paintings.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.paintings.data.PaintingViewRepository;
+import org.rococo.paintings.model.ArtistEventDTO;
+import org.rococo.paintings.model.MuseumEventDTO;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Keeps painting read model in sync with artists and museums. Events of deleted artist or museum have no data,
+ * so it is cleared in rows of their paintings. Events lost on the way are found by {@link PaintingViewChecker}
+ * and fixed by {@link PaintingViewRebuildJob}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaintingViewKafkaService {
+
+    private static final String GROUP_ID = "painting-view";
+
+    private final PaintingViewRepository paintingViewRepository;
+
+    @KafkaListener(topics = "artists", groupId = GROUP_ID, containerFactory = "artistEventsContainerFactory")
+    public void applyArtistEvent(@Payload ArtistEventDTO event) {
+        log.info("Apply artist event: {}", event);
+        final var updated = paintingViewRepository.updateArtist(
+                event.id(),
+                event.name(),
+                event.biography(),
+                LocalDateTime.now());
+        log.info("Paintings of artist [{}] updated: {}", event.id(), updated);
+    }
+
+    @KafkaListener(topics = "museums", groupId = GROUP_ID, containerFactory = "museumEventsContainerFactory")
+    public void applyMuseumEvent(@Payload MuseumEventDTO event) {
+        log.info("Apply museum event: {}", event);
+        final var updated = paintingViewRepository.updateMuseum(
+                event.id(),
+                event.title(),
+                event.description(),
+                event.city(),
+                event.countryId(),
+                event.countryName(),
+                event.countryCode(),
+                LocalDateTime.now());
+        log.info("Paintings of museum [{}] updated: {}", event.id(), updated);
+    }
+
+}
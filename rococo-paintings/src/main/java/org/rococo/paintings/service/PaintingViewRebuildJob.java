@@ -0,0 +1,237 @@
+package org.rococo.paintings.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.rococo.grpc.artists.ArtistGrpcResponse;
+import org.rococo.grpc.files.ImageMetadataGrpcResponse;
+import org.rococo.grpc.museums.MuseumGrpcResponse;
+import org.rococo.paintings.client.ArtistsGrpcClient;
+import org.rococo.paintings.client.FilesGrpcClient;
+import org.rococo.paintings.client.MuseumsGrpcClient;
+import org.rococo.paintings.data.PaintingEntity;
+import org.rococo.paintings.data.PaintingRepository;
+import org.rococo.paintings.data.PaintingViewEntity;
+import org.rococo.paintings.data.PaintingViewRepository;
+import org.rococo.paintings.mapper.PaintingViewMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Fills painting read model from paintings and current data of their artists, museums and images.
+ * Started, stopped and watched through actuator endpoint, see {@link PaintingViewEndpoint}. Started on startup
+ * while read model has rows not synced yet, e.g. rows copied by migration.
+ * <p>
+ * Paintings are read in batches in order of their ids, artists, museums and image metadata of a batch are found
+ * by one call to each service. Content hashes of images are taken from their metadata, image bytes are not transferred.
+ * Rows are saved whole: event applied while batch is built may be overwritten with data found
+ * a moment earlier, {@link PaintingViewChecker} shows such rows.
+ */
+@Slf4j
+@Component
+@ParametersAreNonnullByDefault
+public class PaintingViewRebuildJob {
+
+    private static final UUID FIRST_PAINTING_ID = new UUID(0, 0);
+
+    private final PaintingRepository paintingRepository;
+
+    private final PaintingViewRepository paintingViewRepository;
+
+    private final ArtistsGrpcClient artistsClient;
+
+    private final MuseumsGrpcClient museumsClient;
+
+    private final FilesGrpcClient filesClient;
+
+    private final int batchSize;
+
+    private final Duration batchDelay;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("painting-view-rebuild-"));
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong rebuilt = new AtomicLong();
+
+    private final Counter rebuiltCounter;
+
+    private volatile boolean stopRequested;
+
+    public PaintingViewRebuildJob(PaintingRepository paintingRepository,
+                                  PaintingViewRepository paintingViewRepository,
+                                  ArtistsGrpcClient artistsClient,
+                                  MuseumsGrpcClient museumsClient,
+                                  FilesGrpcClient filesClient,
+                                  @Value("${rococo-paintings.view.batch-size:100}") int batchSize,
+                                  @Value("${rococo-paintings.view.batch-delay:200ms}") Duration batchDelay,
+                                  MeterRegistry meterRegistry
+    ) {
+        this.paintingRepository = paintingRepository;
+        this.paintingViewRepository = paintingViewRepository;
+        this.artistsClient = artistsClient;
+        this.museumsClient = museumsClient;
+        this.filesClient = filesClient;
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+        this.rebuiltCounter = Counter.builder("rococo.paintings.view.rebuilt")
+                .description("Rows of painting read model saved by rebuild")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void startIfNotSynced() {
+        if (paintingViewRepository.existsBySyncedDateIsNull()) {
+            log.info("Painting read model has rows not synced yet, rebuild is started");
+            start();
+        }
+    }
+
+    @Nonnull
+    public synchronized Status start() {
+        if (running.compareAndSet(false, true)) {
+            stopRequested = false;
+            rebuilt.set(0);
+            runner.execute(() -> {
+                try {
+                    rebuild();
+                    log.info("Painting read model is rebuilt: rows = [{}]", rebuilt.get());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception ex) {
+                    log.error("Painting read model rebuild failed, it must be started again", ex);
+                } finally {
+                    running.set(false);
+                }
+            });
+        }
+        return status();
+    }
+
+    /**
+     * Current batch is finished
+     */
+    @Nonnull
+    public Status stop() {
+        stopRequested = true;
+        return status();
+    }
+
+    @Nonnull
+    public Status status() {
+        return new Status(running.get(), rebuilt.get());
+    }
+
+    void rebuild() throws InterruptedException {
+
+        var after = FIRST_PAINTING_ID;
+        List<UUID> ids;
+        do {
+            if (stopRequested)
+                break;
+
+            ids = paintingRepository.findIdsAfter(after, Limit.of(batchSize));
+            if (!ids.isEmpty()) {
+                save(toRows(paintingRepository.findAllById(ids), true));
+                after = ids.getLast();
+                Thread.sleep(batchDelay);
+            }
+        } while (ids.size() == batchSize);
+
+    }
+
+    /**
+     * Rows of paintings with current data of their artists and museums
+     *
+     * @param withImageHashes image metadata is found to take content hashes, otherwise hashes are null
+     */
+    @Nonnull
+    List<PaintingViewEntity> toRows(List<PaintingEntity> paintings, boolean withImageHashes) {
+
+        final var artists = artistsClient.findAllByIds(paintings.stream()
+                        .map(PaintingEntity::getArtistId)
+                        .distinct()
+                        .toList()).stream()
+                .collect(Collectors.toMap(artist -> UUID.fromString(artist.getId()), Function.identity()));
+        final var museums = museumsClient.findAllByIds(paintings.stream()
+                        .map(PaintingEntity::getMuseumId)
+                        .distinct()
+                        .toList()).stream()
+                .collect(Collectors.toMap(museum -> UUID.fromString(museum.getId()), Function.identity()));
+        final Map<UUID, String> imageHashes = withImageHashes
+                ? findImageHashes(paintings)
+                : Map.of();
+
+        return paintings.stream()
+                .map(painting -> PaintingViewMapper.toEntity(
+                        painting,
+                        artists.getOrDefault(painting.getArtistId(), ArtistGrpcResponse.getDefaultInstance()),
+                        museums.getOrDefault(painting.getMuseumId(), MuseumGrpcResponse.getDefaultInstance()),
+                        imageHashes.get(painting.getId())))
+                .toList();
+
+    }
+
+    /**
+     * @return painting id -> content hash of its image, paintings without image are absent
+     */
+    private Map<UUID, String> findImageHashes(List<PaintingEntity> paintings) {
+        return filesClient.findAllMetadata(paintings.stream()
+                        .map(PaintingEntity::getId)
+                        .toList()).stream()
+                .collect(Collectors.toMap(metadata -> UUID.fromString(metadata.getEntityId()),
+                        ImageMetadataGrpcResponse::getContentHash));
+    }
+
+    private void save(List<PaintingViewEntity> rows) {
+        try {
+            paintingViewRepository.saveAll(rows);
+        } catch (DataIntegrityViolationException ex) {
+            // painting deleted while batch was built has no row to save, the rest are saved one by one
+            rows.forEach(row -> {
+                try {
+                    paintingViewRepository.save(row);
+                } catch (DataIntegrityViolationException rowEx) {
+                    log.info("Painting [{}] is deleted, its row is not saved", row.getId());
+                }
+            });
+        }
+        rebuilt.addAndGet(rows.size());
+        rebuiltCounter.increment(rows.size());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+    }
+
+    public record Status(
+
+            boolean running,
+
+            long rebuilt
+
+    ) {
+    }
+
+}
@@ -0,0 +1,38 @@
+-- Read model of paintings: painting with data of its artist, museum and image, so a page of paintings is read
+-- by one query. Kept in sync from events of rococo-artists and rococo-museums, rows not synced yet are filled
+-- by rebuild job
+create extension if not exists pg_trgm;
+
+create table if not exists rococo.painting_view
+(
+    id                 uuid          not null,
+    title              varchar(255)  not null,
+    description        varchar(2000),
+    artist_id          uuid          not null,
+    artist_name        varchar(255),
+    artist_biography   varchar(2000),
+    museum_id          uuid          not null,
+    museum_title       varchar(255),
+    museum_description varchar(2000),
+    museum_city        varchar(255),
+    country_id         uuid,
+    country_name       varchar(255),
+    country_code       varchar(50),
+    image_hash         varchar(64),
+    created_date       timestamp     not null,
+    synced_date        timestamp,
+    primary key (id)
+);
+
+alter table rococo.painting_view
+    add constraint fk__painting_view__paintings foreign key (id)
+        references rococo.paintings (id) on delete cascade;
+
+create index if not exists idx__painting_view__artist_id on rococo.painting_view (artist_id);
+create index if not exists idx__painting_view__museum_id on rococo.painting_view (museum_id);
+create index if not exists idx__painting_view__title on rococo.painting_view using gin (lower(title) gin_trgm_ops);
+
+insert into rococo.painting_view (id, title, description, artist_id, museum_id, created_date)
+select id, title, description, artist_id, museum_id, created_date
+from rococo.paintings
+on conflict do nothing;
@@ -2,7 +2,10 @@ package org.rococo.paintings.tests.service;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
+import io.grpc.Context;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,7 +13,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.rococo.common.budget.LatencyBudgets;
+import org.rococo.common.loader.ConcurrentLookups;
 import org.rococo.grpc.artists.ArtistGrpcResponse;
 import org.rococo.grpc.artists.ArtistShortGrpcResponse;
 import org.rococo.grpc.common.page.DirectionGrpc;
@@ -18,6 +25,7 @@ import org.rococo.grpc.common.page.PageableGrpc;
 import org.rococo.grpc.common.page.SortGrpc;
 import org.rococo.grpc.common.type.IdType;
 import org.rococo.grpc.common.type.NameType;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.countries.CountryGrpcResponse;
 import org.rococo.grpc.files.ImageGrpcResponse;
 import org.rococo.grpc.museums.MuseumGrpcResponse;
@@ -28,23 +36,33 @@ import org.rococo.paintings.client.FilesGrpcClient;
 import org.rococo.paintings.client.MuseumsGrpcClient;
 import org.rococo.paintings.data.PaintingEntity;
 import org.rococo.paintings.data.PaintingRepository;
+import org.rococo.paintings.data.PaintingViewEntity;
+import org.rococo.paintings.data.PaintingViewRepository;
 import org.rococo.paintings.ex.ArtistNotFoundException;
 import org.rococo.paintings.ex.MuseumNotFoundException;
 import org.rococo.paintings.ex.PaintingAlreadyExistsException;
 import org.rococo.paintings.ex.PaintingNotFoundException;
 import org.rococo.paintings.service.PaintingGrpcService;
-import org.rococo.paintings.specs.PaintingSpecs;
+import org.rococo.paintings.specs.PaintingViewSpecs;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -61,11 +79,23 @@ class PaintingGrpcServiceTests {
     @Mock
     private FilesGrpcClient filesClient;
 
+    @Spy
+    private ConcurrentLookups lookups = new ConcurrentLookups(Duration.ofSeconds(5), 4);
+
     @Mock
     private PaintingRepository paintingRepository;
 
     @Mock
-    private PaintingSpecs paintingSpecs;
+    private PaintingViewRepository paintingViewRepository;
+
+    @Mock
+    private PaintingViewSpecs paintingViewSpecs;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private LatencyBudgets latencyBudgets = new LatencyBudgets(new SimpleMeterRegistry(), Map.of("files", Duration.ofSeconds(1)));
 
     @Mock
     private StreamObserver<PaintingGrpcResponse> paintingResponseObserver;
@@ -76,10 +106,14 @@ class PaintingGrpcServiceTests {
     @Mock
     private StreamObserver<Empty> emptyResponseObserver;
 
+    @Mock
+    private StreamObserver<StatusType> statusResponseObserver;
+
     @InjectMocks
     private PaintingGrpcService paintingGrpcService;
 
     private PaintingEntity paintingEntity;
+    private PaintingViewEntity paintingViewEntity;
     private PaintingGrpcResponse paintingResponse;
     private ArtistGrpcResponse artistResponse;
     private MuseumGrpcResponse museumResponse;
@@ -93,6 +127,10 @@ class PaintingGrpcServiceTests {
     @BeforeEach
     void setUp() {
 
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(new SimpleTransactionStatus()));
+
         paintingId = UUID.randomUUID();
         artistId = UUID.randomUUID();
         museumId = UUID.randomUUID();
@@ -134,6 +172,25 @@ class PaintingGrpcServiceTests {
                 .setContent(ByteString.copyFromUtf8("painting-image-1"))
                 .build();
 
+        paintingViewEntity = PaintingViewEntity.builder()
+                .id(paintingId)
+                .title(paintingEntity.getTitle())
+                .description(paintingEntity.getDescription())
+                .artistId(artistId)
+                .artistName(artistResponse.getName())
+                .artistBiography(artistResponse.getBiography())
+                .museumId(museumId)
+                .museumTitle(museumResponse.getTitle())
+                .museumDescription(museumResponse.getDescription())
+                .museumCity(museumResponse.getCity())
+                .countryId(UUID.fromString(museumResponse.getCountry().getId()))
+                .countryName(museumResponse.getCountry().getName())
+                .countryCode(museumResponse.getCountry().getCode())
+                .imageHash("painting-image-hash")
+                .createdDate(paintingEntity.getCreatedDate())
+                .syncedDate(LocalDateTime.now())
+                .build();
+
         paintingResponse = PaintingGrpcResponse.newBuilder()
                 .setId(paintingId.toString())
                 .setTitle(paintingEntity.getTitle())
@@ -184,12 +241,53 @@ class PaintingGrpcServiceTests {
 
         // Assertions
         verify(paintingRepository).save(any(PaintingEntity.class));
-        verify(filesClient).add(paintingId, "painting-image-1");
+        verify(filesClient).add(paintingId, ByteString.copyFromUtf8("painting-image-1"), "");
+        verify(paintingViewRepository).save(argThat((PaintingViewEntity row) ->
+                row.getId().equals(paintingId) && row.getArtistName().equals(artistResponse.getName())));
         verify(paintingResponseObserver).onNext(paintingResponse);
         verify(paintingResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("Add: removes saved painting when rococo-files did not save photo")
+    void add_RemovesPainting_IfPhotoNotSaved() {
+
+        // Data
+        final var request = AddPaintingGrpcRequest.newBuilder()
+                .setTitle(paintingEntity.getTitle())
+                .setDescription(paintingEntity.getDescription())
+                .setArtistId(artistId.toString())
+                .setMuseumId(museumId.toString())
+                .setPhoto("painting-image-1")
+                .build();
+
+        // Stubs
+        when(paintingRepository.findByTitle(paintingEntity.getTitle()))
+                .thenReturn(Optional.empty());
+        when(artistsClient.findById(artistId))
+                .thenReturn(Optional.of(artistResponse));
+        when(museumsClient.findById(museumId))
+                .thenReturn(Optional.of(museumResponse));
+        when(paintingRepository.save(any(PaintingEntity.class)))
+                .thenReturn(paintingEntity);
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).add(any(), any(), any());
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () ->
+                paintingGrpcService.add(request, paintingResponseObserver));
+
+        final var inOrder = inOrder(artistsClient, museumsClient, paintingRepository, filesClient);
+        inOrder.verify(artistsClient).findById(artistId);
+        inOrder.verify(museumsClient).findById(museumId);
+        inOrder.verify(paintingRepository).save(any(PaintingEntity.class));
+        inOrder.verify(filesClient).add(any(), any(), any());
+        inOrder.verify(paintingRepository).deleteById(paintingId);
+        verify(paintingResponseObserver, never()).onNext(any());
+
+    }
+
     @Test
     @DisplayName("Add: throws PaintingAlreadyExistsException when painting exists")
     void add_ThrowsPaintingAlreadyExistsException_IfExistPaintingWithSameTitle() {
@@ -212,7 +310,7 @@ class PaintingGrpcServiceTests {
                 paintingGrpcService.add(request, paintingResponseObserver));
 
         verify(paintingRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(paintingResponseObserver, never()).onNext(any());
 
     }
@@ -241,7 +339,7 @@ class PaintingGrpcServiceTests {
                 paintingGrpcService.add(request, paintingResponseObserver));
 
         verify(paintingRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(paintingResponseObserver, never()).onNext(any());
 
     }
@@ -272,11 +370,29 @@ class PaintingGrpcServiceTests {
                 paintingGrpcService.add(request, paintingResponseObserver));
 
         verify(paintingRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(paintingResponseObserver, never()).onNext(any());
 
     }
 
+    @Test
+    @DisplayName("ExistsById: returns whether painting exists without loading photo")
+    void existsById_ReturnsStatus() {
+
+        // Stubs
+        when(paintingRepository.existsById(paintingId))
+                .thenReturn(true);
+
+        // Steps
+        paintingGrpcService.existsById(idRequest, statusResponseObserver);
+
+        // Assertions
+        verify(statusResponseObserver).onNext(StatusType.newBuilder().setStatus(true).build());
+        verify(statusResponseObserver).onCompleted();
+        verifyNoInteractions(filesClient);
+
+    }
+
     @Test
     @DisplayName("FindById: returns painting")
     void findById_Success() {
@@ -305,6 +421,66 @@ class PaintingGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("FindById: looks up artist, museum and photo concurrently within budget")
+    void findById_LooksUpArtistMuseumAndPhotoConcurrently() {
+
+        // Data
+        final var started = new CountDownLatch(3);
+
+        // Stubs
+        when(paintingRepository.findById(paintingId))
+                .thenReturn(Optional.of(paintingEntity));
+        when(artistsClient.findById(artistId))
+                .then(afterAllStarted(started, Optional.of(artistResponse)));
+        when(museumsClient.findById(museumId))
+                .then(afterAllStarted(started, Optional.of(museumResponse)));
+        when(filesClient.findImage(paintingId))
+                .then(afterAllStarted(started, Optional.of(imageResponse)));
+
+        // Steps
+        paintingGrpcService.findById(idRequest, paintingResponseObserver);
+
+        // Assertions
+        verify(paintingResponseObserver).onNext(paintingResponse);
+        verify(paintingResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindById: returns raw photo of rococo-files without data-URI")
+    void findById_ReturnsRawPhoto() {
+
+        // Data
+        final var request = IdType.newBuilder()
+                .setId(paintingId.toString())
+                .build();
+        final var rawImage = imageResponse.toBuilder()
+                .setFormat("png")
+                .build();
+
+        // Stubs
+        when(paintingRepository.findById(paintingId))
+                .thenReturn(Optional.of(paintingEntity));
+        when(artistsClient.findById(artistId))
+                .thenReturn(Optional.of(artistResponse));
+        when(museumsClient.findById(museumId))
+                .thenReturn(Optional.of(museumResponse));
+        when(filesClient.findImage(paintingId))
+                .thenReturn(Optional.of(rawImage));
+
+        // Steps
+        paintingGrpcService.findById(request, paintingResponseObserver);
+
+        // Assertions
+        verify(paintingResponseObserver).onNext(paintingResponse.toBuilder()
+                .clearPhoto()
+                .setPhotoContent(rawImage.getContent())
+                .setPhotoFormat("png")
+                .build());
+
+    }
+
     @Test
     @DisplayName("FindById: throws PaintingNotFoundException when painting not found")
     void findById_ThrowsPaintingNotFoundException_IfPaintingNotFound() {
@@ -376,12 +552,12 @@ class PaintingGrpcServiceTests {
     }
 
     @Test
-    @DisplayName("FindAll returns paintings")
+    @DisplayName("FindAll returns paintings from read model without asking artists and museums")
     void findAll_Success() {
 
         // Data
         final var isOriginalPhoto = false;
-        final var paintings = List.of(paintingEntity);
+        final var paintings = List.of(paintingViewEntity);
         final var page = new PageImpl<>(paintings, PageRequest.of(0, 10), paintings.size());
         final var request = PaintingsFilterGrpcRequest.newBuilder()
                 .setOriginalPhoto(isOriginalPhoto)
@@ -394,20 +570,95 @@ class PaintingGrpcServiceTests {
                                 .build())
                         .build())
                 .build();
+        final var expectedResponse = PaintingsGrpcResponse.newBuilder()
+                .setCurrentPage(0)
+                .setItemsPerPage(10)
+                .setTotalItems(1)
+                .setTotalPages(1)
+                .addData(paintingResponse)
+                .build();
 
         // Stubs
-        when(paintingRepository.findAll(ArgumentMatchers.<Specification<PaintingEntity>>any(), any(Pageable.class)))
+        when(paintingViewRepository.findAll(ArgumentMatchers.<Specification<PaintingViewEntity>>any(), any(Pageable.class)))
                 .thenReturn(page);
-        when(artistsClient.findAllByIds(List.of(artistId)))
-                .thenReturn(List.of(artistResponse));
-        when(museumsClient.findAllByIds(List.of(museumId)))
-                .thenReturn(List.of(museumResponse));
-        when(filesClient.findAllByIds(List.of(paintingId), isOriginalPhoto))
+        when(filesClient.findAllByIds(Map.of(paintingId, "painting-image-hash"), isOriginalPhoto))
                 .thenReturn(List.of(imageResponse));
 
+        // Steps
+        paintingGrpcService.findAll(request, paintingsResponseObserver);
+
+        // Assertions
+        verify(paintingsResponseObserver).onNext(expectedResponse);
+        verify(paintingsResponseObserver).onCompleted();
+        verifyNoInteractions(artistsClient, museumsClient, paintingRepository);
+
+    }
+
+    @Test
+    @DisplayName("FindAll keeps content hash of found image in read model")
+    void findAll_RemembersChangedImageHash() {
+
+        // Data
+        final var page = new PageImpl<>(List.of(paintingViewEntity), PageRequest.of(0, 10), 1);
+        final var request = PaintingsFilterGrpcRequest.newBuilder()
+                .setPageable(PageableGrpc.newBuilder()
+                        .setPage(0)
+                        .setSize(10)
+                        .build())
+                .build();
+        final var changedImage = imageResponse.toBuilder()
+                .setContentHash("changed-image-hash")
+                .build();
+
+        // Stubs
+        when(paintingViewRepository.findAll(ArgumentMatchers.<Specification<PaintingViewEntity>>any(), any(Pageable.class)))
+                .thenReturn(page);
+        when(filesClient.findAllByIds(Map.of(paintingId, "painting-image-hash"), false))
+                .thenReturn(List.of(changedImage));
+
+        // Steps
+        paintingGrpcService.findAll(request, paintingsResponseObserver);
+
+        // Assertions
+        verify(paintingViewRepository).updateImageHash(paintingId, "changed-image-hash", paintingViewEntity.getSyncedDate());
+        verify(paintingsResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindAll: returns degraded page without photos when rococo-files did not answer within budget")
+    void findAll_ReturnsDegradedPage_IfFilesBudgetSpent() {
+
+        // Data
+        final var page = new PageImpl<>(List.of(paintingViewEntity), PageRequest.of(0, 10), 1);
+        final var request = PaintingsFilterGrpcRequest.newBuilder()
+                .setPageable(PageableGrpc.newBuilder()
+                        .setPage(0)
+                        .setSize(10)
+                        .build())
+                .build();
+
+        // Stubs
+        when(paintingViewRepository.findAll(ArgumentMatchers.<Specification<PaintingViewEntity>>any(), any(Pageable.class)))
+                .thenReturn(page);
+        when(filesClient.findAllByIds(Map.of(paintingId, "painting-image-hash"), false))
+                .thenAnswer(invocation -> {
+                    final var cancelled = new CountDownLatch(1);
+                    Context.current().addListener(context -> cancelled.countDown(), Runnable::run);
+                    assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+                    throw Status.DEADLINE_EXCEEDED.asRuntimeException();
+                });
+
+        // Steps
         paintingGrpcService.findAll(request, paintingsResponseObserver);
 
-        verify(paintingsResponseObserver).onNext(any(PaintingsGrpcResponse.class));
+        // Assertions
+        verify(paintingsResponseObserver).onNext(argThat(response ->
+                response.getDegraded()
+                        && response.getData(0).getTitle().equals(paintingViewEntity.getTitle())
+                        && response.getData(0).getPhoto().isEmpty()
+                        && response.getData(0).getPhotoContent().isEmpty()));
+        verify(paintingViewRepository, never()).updateImageHash(any(), any(), any());
         verify(paintingsResponseObserver).onCompleted();
 
     }
@@ -482,8 +733,8 @@ class PaintingGrpcServiceTests {
                 .thenReturn(Optional.of(newArtist));
         when(museumsClient.findById(UUID.fromString(newMuseum.getId())))
                 .thenReturn(Optional.of(newMuseum));
-        when(filesClient.findImage(paintingId))
-                .thenReturn(Optional.of(imageResponse));
+        when(filesClient.exists(paintingId))
+                .thenReturn(true);
         when(paintingRepository.save(any(PaintingEntity.class)))
                 .thenReturn(updatedPaintingEntity);
 
@@ -491,7 +742,7 @@ class PaintingGrpcServiceTests {
         paintingGrpcService.update(updatePaintingRequest, paintingResponseObserver);
 
         // Assertions
-        verify(filesClient).update(paintingId, "updated-image");
+        verify(filesClient).update(paintingId, ByteString.copyFromUtf8("updated-image"), "");
         verify(paintingRepository).save(any(PaintingEntity.class));
         verify(paintingResponseObserver).onNext(updatedPaintingResponse);
         verify(paintingResponseObserver).onCompleted();
@@ -568,8 +819,8 @@ class PaintingGrpcServiceTests {
                 .thenReturn(Optional.of(newArtist));
         when(museumsClient.findById(UUID.fromString(newMuseum.getId())))
                 .thenReturn(Optional.of(newMuseum));
-        when(filesClient.findImage(paintingId))
-                .thenReturn(Optional.of(imageResponse));
+        when(filesClient.exists(paintingId))
+                .thenReturn(true);
         when(paintingRepository.save(any(PaintingEntity.class)))
                 .thenReturn(updatedPaintingEntity);
 
@@ -654,8 +905,8 @@ class PaintingGrpcServiceTests {
                 .thenReturn(Optional.of(newArtist));
         when(museumsClient.findById(UUID.fromString(newMuseum.getId())))
                 .thenReturn(Optional.of(newMuseum));
-        when(filesClient.findImage(paintingId))
-                .thenReturn(Optional.empty());
+        when(filesClient.exists(paintingId))
+                .thenReturn(false);
         when(paintingRepository.save(any(PaintingEntity.class)))
                 .thenReturn(updatedPaintingEntity);
 
@@ -663,13 +914,57 @@ class PaintingGrpcServiceTests {
         paintingGrpcService.update(updatePaintingRequest, paintingResponseObserver);
 
         // Assertions
-        verify(filesClient).add(paintingId, updatePaintingRequest.getPhoto());
+        verify(filesClient).add(paintingId, ByteString.copyFromUtf8(updatePaintingRequest.getPhoto()), "");
         verify(paintingRepository).save(any(PaintingEntity.class));
         verify(paintingResponseObserver).onNext(updatedPaintingResponse);
         verify(paintingResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("Update: restores previous painting data when rococo-files did not save photo")
+    void update_RestoresPainting_IfPhotoNotSaved() {
+
+        // Data
+        final var request = UpdatePaintingGrpcRequest.newBuilder()
+                .setId(paintingId.toString())
+                .setTitle("Girl in a Chemise")
+                .setDescription(paintingEntity.getDescription())
+                .setArtistId(artistId.toString())
+                .setMuseumId(museumId.toString())
+                .setPhoto("updated-image")
+                .build();
+
+        // Stubs
+        when(paintingRepository.findById(paintingId))
+                .thenReturn(Optional.of(paintingEntity));
+        when(paintingRepository.findByTitle(request.getTitle()))
+                .thenReturn(Optional.empty());
+        when(artistsClient.findById(artistId))
+                .thenReturn(Optional.of(artistResponse));
+        when(museumsClient.findById(museumId))
+                .thenReturn(Optional.of(museumResponse));
+        when(filesClient.exists(paintingId))
+                .thenReturn(true);
+        when(paintingViewRepository.findById(paintingId))
+                .thenReturn(Optional.of(paintingViewEntity));
+        when(paintingRepository.save(any(PaintingEntity.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).update(any(), any(), any());
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () ->
+                paintingGrpcService.update(request, paintingResponseObserver));
+
+        final var inOrder = inOrder(paintingRepository, paintingViewRepository);
+        inOrder.verify(paintingRepository).save(argThat((PaintingEntity painting) -> painting.getTitle().equals("Girl in a Chemise")));
+        inOrder.verify(paintingRepository).save(same(paintingEntity));
+        inOrder.verify(paintingViewRepository).save(same(paintingViewEntity));
+        verify(paintingResponseObserver, never()).onNext(any());
+
+    }
+
     @Test
     @DisplayName("Update: throws PaintingNotFoundException when painting not found")
     void update_ThrowsPaintingNotFoundException_IfPaintingNotFound() {
@@ -723,7 +1018,7 @@ class PaintingGrpcServiceTests {
                 paintingGrpcService.update(request, paintingResponseObserver));
 
         verify(paintingRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(paintingResponseObserver, never()).onNext(any());
 
     }
@@ -755,7 +1050,7 @@ class PaintingGrpcServiceTests {
                 paintingGrpcService.update(request, paintingResponseObserver));
 
         verify(paintingRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(paintingResponseObserver, never()).onNext(any());
 
     }
@@ -790,7 +1085,7 @@ class PaintingGrpcServiceTests {
                 paintingGrpcService.update(request, paintingResponseObserver));
 
         verify(paintingRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(paintingResponseObserver, never()).onNext(any());
 
     }
@@ -811,4 +1106,35 @@ class PaintingGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("RemoveById: deletes painting when rococo-files did not delete photo")
+    void removeById_Success_IfPhotoNotDeleted() {
+
+        // Stubs
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).delete(paintingId);
+
+        // Steps
+        paintingGrpcService.removeById(idRequest, emptyResponseObserver);
+
+        // Assertions
+        verify(paintingRepository).deleteById(paintingId);
+        verify(emptyResponseObserver).onNext(Empty.newBuilder().build());
+        verify(emptyResponseObserver).onCompleted();
+
+    }
+
+    /**
+     * Lookup finishes only when all lookups are started: sequential lookups time out
+     */
+    private static <T> Answer<T> afterAllStarted(CountDownLatch started, T result) {
+        return invocation -> {
+            assertTrue(Context.current().getDeadline() != null, "Lookup has no deadline");
+            started.countDown();
+            if (!started.await(5, TimeUnit.SECONDS))
+                throw new IllegalStateException("Lookups are not concurrent");
+            return result;
+        };
+    }
+
 }
@@ -0,0 +1,72 @@
+package org.rococo.paintings.tests.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.rococo.paintings.data.PaintingViewRepository;
+import org.rococo.paintings.model.ArtistEventDTO;
+import org.rococo.paintings.model.EventType;
+import org.rococo.paintings.model.MuseumEventDTO;
+import org.rococo.paintings.service.PaintingViewKafkaService;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PaintingViewKafkaService: Module tests")
+class PaintingViewKafkaServiceTests {
+
+    @Mock
+    private PaintingViewRepository paintingViewRepository;
+
+    @InjectMocks
+    private PaintingViewKafkaService paintingViewKafkaService;
+
+    @Test
+    @DisplayName("ApplyArtistEvent: updates artist in rows of its paintings")
+    void applyArtistEvent_UpdatesArtistOfPaintings() {
+
+        // Data
+        final var artistId = UUID.randomUUID();
+        final var event = ArtistEventDTO.builder()
+                .type(EventType.UPDATED)
+                .id(artistId)
+                .name("Claude Monet")
+                .biography("French painter")
+                .build();
+
+        // Steps
+        paintingViewKafkaService.applyArtistEvent(event);
+
+        // Assertions
+        verify(paintingViewRepository).updateArtist(eq(artistId), eq("Claude Monet"), eq("French painter"), any(LocalDateTime.class));
+
+    }
+
+    @Test
+    @DisplayName("ApplyMuseumEvent: clears museum in rows of its paintings when museum is deleted")
+    void applyMuseumEvent_ClearsMuseumOfPaintings_IfMuseumDeleted() {
+
+        // Data
+        final var museumId = UUID.randomUUID();
+        final var event = MuseumEventDTO.builder()
+                .type(EventType.DELETED)
+                .id(museumId)
+                .build();
+
+        // Steps
+        paintingViewKafkaService.applyMuseumEvent(event);
+
+        // Assertions
+        verify(paintingViewRepository).updateMuseum(eq(museumId), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), any(LocalDateTime.class));
+
+    }
+
+}
@@ -6,6 +6,8 @@ import org.rococo.tests.data.dao.ImageContentDao;
 import org.rococo.tests.data.entity.ImageContentEntity;
 import org.rococo.tests.data.rowMapper.ImageContentRowMapper;
 import org.rococo.tests.data.tpl.DataSources;
+import org.rococo.tests.util.HashUtil;
+import org.rococo.tests.util.ImageUtil;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
@@ -31,14 +33,18 @@ public class ImageContentDaoSpringJdbc implements ImageContentDao {
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
                     PreparedStatement ps = connection.prepareStatement("""
-                                    INSERT INTO rococo.image_content
-                                        (data, thumbnail_data)
+                                    INSERT INTO rococo.image_content AS c
+                                        (content_hash, ref_count, data, thumbnail_data)
                                     VALUES
-                                        (?, ?)""",
+                                        (?, 1, ?, ?)
+                                    ON CONFLICT (content_hash) DO UPDATE
+                                        SET ref_count = c.ref_count + 1""",
                             Statement.RETURN_GENERATED_KEYS
                     );
-                    ps.setBytes(1, artist.getData());
-                    ps.setBytes(2, artist.getThumbnailData());
+                    final byte[] data = ImageUtil.decodeDataUri(artist.getData());
+                    ps.setString(1, HashUtil.getHash(data));
+                    ps.setBytes(2, data);
+                    ps.setBytes(3, ImageUtil.decodeDataUri(artist.getThumbnailData()));
                     return ps;
                 },
                 keyHolder
@@ -94,8 +100,8 @@ public class ImageContentDaoSpringJdbc implements ImageContentDao {
                             WHERE
                                 id = ?"""
                     );
-                    ps.setBytes(1, artist.getData());
-                    ps.setBytes(2, artist.getThumbnailData());
+                    ps.setBytes(1, ImageUtil.decodeDataUri(artist.getData()));
+                    ps.setBytes(2, ImageUtil.decodeDataUri(artist.getThumbnailData()));
                     ps.setObject(3, artist.getId());
                     return ps;
                 }
@@ -3,6 +3,7 @@ package org.rococo.tests.data.rowMapper;
 import org.rococo.tests.data.entity.ImageContentEntity;
 import org.rococo.tests.data.entity.ImageMetadataEntity;
 import org.rococo.tests.enums.EntityType;
+import org.rococo.tests.util.ImageUtil;
 import org.springframework.jdbc.core.RowMapper;
 
 import javax.annotation.Nonnull;
@@ -23,16 +24,17 @@ public class ImageMetadataRowMapper implements RowMapper<ImageMetadataEntity> {
     @Nonnull
     @Override
     public ImageMetadataEntity mapRow(ResultSet rs, int rowNum) throws SQLException {
+        final var format = rs.getString("format");
         return ImageMetadataEntity.builder()
                 .id(rs.getObject("metadata_id", UUID.class))
                 .entityType(EntityType.valueOf(rs.getString("entity_type")))
                 .entityId(rs.getObject("entity_id", UUID.class))
-                .format(rs.getString("data"))
+                .format(format)
                 .contentHash(rs.getString("hash"))
                 .content(ImageContentEntity.builder()
                         .id(rs.getObject("content_id", UUID.class))
-                        .data(rs.getBytes("data"))
-                        .thumbnailData(rs.getBytes("thumbnail_data"))
+                        .data(ImageUtil.toDataUri(format, rs.getBytes("data")))
+                        .thumbnailData(ImageUtil.toDataUri(format, rs.getBytes("thumbnail_data")))
                         .build())
                 .createdDate(rs.getObject("created_date", LocalDateTime.class))
                 .build();
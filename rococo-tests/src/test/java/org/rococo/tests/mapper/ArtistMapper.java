@@ -128,9 +128,10 @@ public class ArtistMapper {
                 .biography(grpcResponse.getBiography().isEmpty()
                         ? null
                         : grpcResponse.getBiography())
-                .photo(grpcResponse.getPhoto().isEmpty()
-                        ? null
-                        : grpcResponse.getPhoto())
+                .photo(ImageMapper.toDataUri(
+                        grpcResponse.getPhotoContent(),
+                        grpcResponse.getPhotoFormat(),
+                        grpcResponse.getPhoto()))
                 .build();
     }
 
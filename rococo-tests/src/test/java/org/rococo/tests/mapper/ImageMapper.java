@@ -13,6 +13,7 @@ import org.rococo.tests.util.HashUtil;
 import org.rococo.tests.util.ImageUtil;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -50,6 +51,19 @@ public class ImageMapper {
                 .build();
     }
 
+    /**
+     * Photo of domain service response as data-URI: raw photo_content with photo_format,
+     * or legacy photo of service which does not send photo_content
+     */
+    @Nullable
+    public static String toDataUri(ByteString content, String format, String legacyPhoto) {
+        if (content.isEmpty())
+            return legacyPhoto.isEmpty()
+                    ? null
+                    : legacyPhoto;
+        return new String(ImageUtil.toDataUri(format, content.toByteArray()), StandardCharsets.UTF_8);
+    }
+
     @Nonnull
     public static ImageMetadataEntity fromBase64Image(EntityType entityType,
                                                       UUID entityId,
@@ -154,9 +154,10 @@ public class MuseumMapper {
                 .location(new LocationDTO(
                         grpcResponse.getCity(),
                         CountryMapper.toDTO(grpcResponse.getCountry())))
-                .photo(grpcResponse.getPhoto().isEmpty()
-                        ? null
-                        : grpcResponse.getPhoto())
+                .photo(ImageMapper.toDataUri(
+                        grpcResponse.getPhotoContent(),
+                        grpcResponse.getPhotoFormat(),
+                        grpcResponse.getPhoto()))
                 .build();
 
     }
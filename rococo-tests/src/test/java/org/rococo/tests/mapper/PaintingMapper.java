@@ -141,9 +141,10 @@ public class PaintingMapper {
                                 .country(CountryMapper.toDTO(grpcResponse.getMuseum().getCountry()))
                                 .build())
                         .build())
-                .photo(grpcResponse.getPhoto().isEmpty()
-                        ? null
-                        : grpcResponse.getPhoto())
+                .photo(ImageMapper.toDataUri(
+                        grpcResponse.getPhotoContent(),
+                        grpcResponse.getPhotoFormat(),
+                        grpcResponse.getPhoto()))
                 .build();
     }
 
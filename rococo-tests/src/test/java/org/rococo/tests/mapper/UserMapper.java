@@ -16,6 +16,7 @@ import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Objects;
 import java.util.UUID;
 
 @ParametersAreNonnullByDefault
@@ -83,9 +84,12 @@ public class UserMapper {
                 .lastName(grpcResponse.getLastName().isEmpty()
                         ? null
                         : grpcResponse.getLastName())
-                .photo(grpcResponse.getPhoto().isEmpty()
-                        ? ""
-                        : grpcResponse.getPhoto())
+                .photo(Objects.requireNonNullElse(
+                        ImageMapper.toDataUri(
+                                grpcResponse.getPhotoContent(),
+                                grpcResponse.getPhotoFormat(),
+                                grpcResponse.getPhoto()),
+                        ""))
                 .build();
     }
 
@@ -10,10 +10,17 @@ public class HashUtil {
     private HashUtil() {
     }
 
+    /**
+     * Hash of decoded image bytes, same as rococo-files uses for content deduplication.
+     */
     public static String getHash(String image) {
+        return getHash(ImageUtil.decodeDataUri(image.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String getHash(byte[] data) {
         try {
             MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-            messageDigest.update(image.getBytes(StandardCharsets.UTF_8));
+            messageDigest.update(data);
             return encodeText(messageDigest.digest());
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
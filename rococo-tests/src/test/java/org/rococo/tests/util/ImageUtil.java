@@ -165,6 +165,25 @@ public class ImageUtil {
         return result;
     }
 
+    /**
+     * rococo-files stores raw image bytes, decode data-URI ({@code data:image/png;base64,...}) before writing into DB
+     */
+    @Nonnull
+    public static byte[] decodeDataUri(byte[] imageData) {
+        if (imageData.length == 0)
+            return imageData;
+        var dataUri = new String(imageData, StandardCharsets.UTF_8);
+        return Base64.getDecoder().decode(dataUri.substring(dataUri.indexOf(",") + 1));
+    }
+
+    @Nonnull
+    public static byte[] toDataUri(String format, byte[] data) {
+        return concatArrays(
+                "data:image/%s;base64,".formatted(format)
+                        .getBytes(StandardCharsets.UTF_8),
+                Base64.getEncoder().encode(data));
+    }
+
     @Nonnull
     public static String getFormatName(final String imageData) {
         return imageData.substring(0, imageData.indexOf(";"))
@@ -1,9 +1,12 @@
 package org.rococo.users;
 
+import org.rococo.common.db.DataSourceMetricsConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
+@Import(DataSourceMetricsConfig.class)
 public class RococoUsersApplication {
 
     public static void main(String[] args) {
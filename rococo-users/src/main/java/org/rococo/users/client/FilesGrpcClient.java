@@ -6,15 +6,20 @@ import io.grpc.StatusRuntimeException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.rococo.common.files.ImageCache;
+import org.rococo.common.files.ImageUploader;
 import org.rococo.grpc.files.*;
 import org.rococo.users.ex.ImageNotFoundException;
 import org.rococo.users.ex.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.ParametersAreNonnullByDefault;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -32,26 +37,41 @@ public class FilesGrpcClient {
     @GrpcClient("grpcFilesClient")
     private FilesServiceGrpc.FilesServiceBlockingStub filesServiceStub;
 
-    public void add(UUID entityId, String image) {
+    @GrpcClient("grpcFilesClient")
+    private FilesServiceGrpc.FilesServiceStub filesServiceAsyncStub;
+
+    @Value("${rococo-users.files.upload-timeout:30s}")
+    private Duration uploadTimeout;
+
+    private final ImageCache<UUID> imageCache;
+
+    /**
+     * @param format format of raw image bytes, empty if content is data-URI
+     */
+    public void add(UUID entityId, ByteString content, String format) {
         try {
-            var request = ImageGrpcRequest.newBuilder()
-                    .setEntityType(USER)
-                    .setEntityId(entityId.toString())
-                    .setContent(ByteString.copyFromUtf8(image))
-                    .build();
-            filesServiceStub.addImage(request);
+            upload(entityId, content, format, false);
         } catch (StatusRuntimeException ex) {
             throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
         }
     }
 
+    /**
+     * Downloads original image, unless local copy is still current.
+     */
     public Optional<ImageGrpcResponse> findImage(UUID entityId) {
         try {
-            var request = FindImageGrpcRequest.newBuilder()
-                    .setEntityType(USER)
-                    .setEntityId(entityId.toString())
-                    .build();
-            return Optional.of(filesServiceStub.findByEntityTypeAndId(request));
+            final var cached = imageCache.get(entityId, RenditionGrpc.ORIGINAL);
+            final var chunks = filesServiceStub.downloadImage(
+                    DownloadImageGrpcRequest.newBuilder()
+                            .setEntityType(USER)
+                            .setEntityId(entityId.toString())
+                            .setKnownHash(cached.map(ImageGrpcResponse::getContentHash).orElse(""))
+                            .build());
+            final var header = chunks.next().getHeader();
+            if (header.getNotModified() && cached.isPresent())
+                return cached;
+            return Optional.of(imageCache.put(entityId, toImageResponse(header, chunks), RenditionGrpc.ORIGINAL));
         } catch (StatusRuntimeException ex) {
             if (ex.getStatus().getCode() == Status.Code.NOT_FOUND)
                 return Optional.empty();
@@ -59,22 +79,45 @@ public class FilesGrpcClient {
         }
     }
 
+    /**
+     * Checks image metadata only, image itself is not transferred.
+     */
+    public boolean exists(UUID entityId) {
+        try {
+            return filesServiceStub.existsImage(
+                            FindImageGrpcRequest.newBuilder()
+                                    .setEntityType(USER)
+                                    .setEntityId(entityId.toString())
+                                    .build())
+                    .getStatus();
+        } catch (StatusRuntimeException ex) {
+            throw new ServiceUnavailableException(SERVICE_NAME, ex.getStatus());
+        }
+    }
+
+    /**
+     * Finds images sending content hashes of local copies: images not modified since are taken from local copies,
+     * ones evicted meanwhile are requested again without hashes.
+     */
     public List<ImageGrpcResponse> findAllByIds(final List<UUID> entityIds, boolean isOriginal) {
 
+        final var rendition = isOriginal ? RenditionGrpc.ORIGINAL : RenditionGrpc.THUMBNAIL;
         try {
-            final var grpcImagesStream = filesServiceStub.findAllByEntityTypeAndIds(
-                    FindImagesGrpcRequest.newBuilder()
-                            .setEntityType(USER)
-                            .addAllEntityIds(entityIds.stream()
-                                    .map(UUID::toString)
-                                    .toList())
-                            .setIsOriginal(isOriginal)
-                            .build());
-
-            List<ImageGrpcResponse> response = new ArrayList<>();
-            while (grpcImagesStream.hasNext()) {
-                response.add(grpcImagesStream.next());
-            }
+            final List<ImageGrpcResponse> response = new ArrayList<>();
+            final List<UUID> evictedIds = new ArrayList<>();
+            findAllByIds(entityIds, rendition, imageCache.knownHashes(entityIds, rendition))
+                    .forEachRemaining(image -> {
+                        final var entityId = UUID.fromString(image.getEntityId());
+                        if (!image.getNotModified()) {
+                            response.add(imageCache.put(entityId, image, rendition));
+                            return;
+                        }
+                        imageCache.get(entityId, rendition)
+                                .ifPresentOrElse(response::add, () -> evictedIds.add(entityId));
+                    });
+            if (!evictedIds.isEmpty())
+                findAllByIds(evictedIds, rendition, Map.of())
+                        .forEachRemaining(image -> response.add(imageCache.put(UUID.fromString(image.getEntityId()), image, rendition)));
             return response;
         } catch (StatusRuntimeException ex) {
             log.info(ex.getMessage());
@@ -83,14 +126,12 @@ public class FilesGrpcClient {
 
     }
 
-    public void update(UUID entityId, String image) {
+    /**
+     * @param format format of raw image bytes, empty if content is data-URI
+     */
+    public void update(UUID entityId, ByteString content, String format) {
         try {
-            filesServiceStub.updateImage(
-                    ImageGrpcRequest.newBuilder()
-                            .setEntityType(USER)
-                            .setEntityId(entityId.toString())
-                            .setContent(ByteString.copyFrom(image, StandardCharsets.UTF_8))
-                            .build());
+            upload(entityId, content, format, true);
         } catch (StatusRuntimeException ex) {
             throw (ex.getStatus().getCode() == Status.Code.NOT_FOUND)
                     ? new ImageNotFoundException(entityId)
@@ -112,4 +153,50 @@ public class FilesGrpcClient {
         }
     }
 
-}
\ No newline at end of file
+    private Iterator<ImageGrpcResponse> findAllByIds(List<UUID> entityIds,
+                                                     RenditionGrpc rendition,
+                                                     Map<String, String> knownHashes) {
+        return filesServiceStub.findAllByEntityTypeAndIds(
+                FindImagesGrpcRequest.newBuilder()
+                        .setEntityType(USER)
+                        .addAllEntityIds(entityIds.stream()
+                                .map(UUID::toString)
+                                .toList())
+                        .setRendition(rendition)
+                        .putAllKnownHashes(knownHashes)
+                        .setRawContent(true)
+                        .build());
+    }
+
+    /**
+     * Assembles downloaded image into response with raw content, chunks following the header are joined
+     * without copying.
+     */
+    private static ImageGrpcResponse toImageResponse(ImageDownloadHeader header, Iterator<ImageDownloadChunk> chunks) {
+
+        var content = ByteString.empty();
+        while (chunks.hasNext())
+            content = content.concat(chunks.next().getData());
+
+        return ImageGrpcResponse.newBuilder()
+                .setEntityId(header.getEntityId())
+                .setContent(content)
+                .setContentHash(header.getContentHash())
+                .setFormat(header.getFormat())
+                .build();
+
+    }
+
+    private void upload(UUID entityId, ByteString content, String format, boolean isUpdate) {
+        ImageUploader.upload(filesServiceAsyncStub,
+                ImageUploadHeader.newBuilder()
+                        .setEntityType(USER)
+                        .setEntityId(entityId.toString())
+                        .setIsUpdate(isUpdate)
+                        .setFormat(format)
+                        .build(),
+                content,
+                uploadTimeout);
+    }
+
+}
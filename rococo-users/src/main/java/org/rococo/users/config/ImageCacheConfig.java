@@ -0,0 +1,19 @@
+package org.rococo.users.config;
+
+import org.rococo.common.files.ImageCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.util.UUID;
+
+@Configuration
+public class ImageCacheConfig {
+
+    @Bean
+    public ImageCache<UUID> imageCache(@Value("${rococo-users.files.image-cache.max-size:32MB}") DataSize maxSize) {
+        return new ImageCache<>(maxSize.toBytes());
+    }
+
+}
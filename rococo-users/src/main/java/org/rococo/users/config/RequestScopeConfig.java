@@ -0,0 +1,17 @@
+package org.rococo.users.config;
+
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.rococo.common.loader.RequestScopeInterceptor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class RequestScopeConfig {
+
+    @Bean
+    @GrpcGlobalServerInterceptor
+    public RequestScopeInterceptor requestScopeInterceptor() {
+        return new RequestScopeInterceptor();
+    }
+
+}
@@ -1,9 +1,13 @@
 package org.rococo.users.data;
 
 import jakarta.annotation.Nonnull;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -16,4 +20,11 @@ public interface UserRepository extends JpaRepository<UserEntity, UUID> {
     @Nonnull
     Optional<UserEntity> findByUsername(String username);
 
+    /**
+     * Next page of ids in ascending order, keyset pagination does not slow down with offset.
+     */
+    @Nonnull
+    @Query("SELECT u.id FROM UserEntity u WHERE u.id > :after ORDER BY u.id")
+    List<UUID> findIdsAfter(@Param("after") UUID after, Limit limit);
+
 }
@@ -1,5 +1,7 @@
 package org.rococo.users.mapper;
 
+import com.google.protobuf.ByteString;
+import org.rococo.grpc.files.ImageGrpcResponse;
 import org.rococo.grpc.users.CreateUserGrpcRequest;
 import org.rococo.grpc.users.UpdateUserGrpcRequest;
 import org.rococo.grpc.users.UserGrpcResponse;
@@ -10,12 +12,15 @@ import org.springframework.data.domain.Page;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Base64;
 import java.util.Map;
 import java.util.UUID;
 
 @ParametersAreNonnullByDefault
 public class UserMapper {
 
+    private static final String DATA_URI_PREFIX = "data:image/%s;base64,";
+
     private UserMapper() {
     }
 
@@ -47,9 +52,13 @@ public class UserMapper {
                 .build();
     }
 
+    /**
+     * @param photo       raw image with its format, or data-URI without format sent by old client
+     * @param legacyPhoto raw photo is also set as data-URI for clients not reading photo_content yet
+     */
     @Nonnull
-    public static UserGrpcResponse toGrpcResponse(UserEntity entity, @Nullable String photo) {
-        return UserGrpcResponse.newBuilder()
+    public static UserGrpcResponse toGrpcResponse(UserEntity entity, @Nullable ImageGrpcResponse photo, boolean legacyPhoto) {
+        final var response = UserGrpcResponse.newBuilder()
                 .setId(entity.getId().toString())
                 .setUsername(entity.getUsername())
                 .setFirstName(entity.getFirstName() == null
@@ -57,24 +66,63 @@ public class UserMapper {
                         : entity.getFirstName())
                 .setLastName(entity.getLastName() == null
                         ? ""
-                        : entity.getLastName())
-                .setPhoto(photo == null
-                        ? ""
-                        : photo)
-                .build();
+                        : entity.getLastName());
+
+        if (photo == null || photo.getContent().isEmpty())
+            return response.build();
+        if (photo.getFormat().isEmpty())
+            return response.setPhoto(photo.getContent().toStringUtf8()).build();
+
+        response.setPhotoContent(photo.getContent())
+                .setPhotoFormat(photo.getFormat());
+        if (legacyPhoto)
+            response.setPhoto(toDataUri(photo));
+        return response.build();
+    }
+
+    /**
+     * Photo of request as it is sent to rococo-files: raw image with its format,
+     * or data-URI without format if client does not use photo_content yet.
+     */
+    @Nonnull
+    public static ImageGrpcResponse toPhoto(CreateUserGrpcRequest request) {
+        return toPhoto(request.getPhotoContent(), request.getPhotoFormat(), request.getPhoto());
+    }
+
+    @Nonnull
+    public static ImageGrpcResponse toPhoto(UpdateUserGrpcRequest request) {
+        return toPhoto(request.getPhotoContent(), request.getPhotoFormat(), request.getPhoto());
     }
 
     @Nonnull
-    public static UsersGrpcResponse toPageGrpc(Page<UserEntity> page, Map<UUID, String> photos) {
+    public static UsersGrpcResponse toPageGrpc(Page<UserEntity> page, Map<UUID, ImageGrpcResponse> photos, boolean legacyPhoto) {
         return UsersGrpcResponse.newBuilder()
                 .setCurrentPage(page.getPageable().getPageNumber())
                 .setItemsPerPage(page.getSize())
                 .setTotalItems(page.getTotalElements())
                 .setTotalPages(page.getTotalPages())
                 .addAllData(page.getContent().stream()
-                        .map(user -> UserMapper.toGrpcResponse(user, photos.get(user.getId())))
+                        .map(user -> UserMapper.toGrpcResponse(user, photos.get(user.getId()), legacyPhoto))
                         .toList())
                 .build();
     }
 
+    @Nonnull
+    private static String toDataUri(ImageGrpcResponse photo) {
+        return DATA_URI_PREFIX.formatted(photo.getFormat())
+                + Base64.getEncoder().encodeToString(photo.getContent().toByteArray());
+    }
+
+    @Nonnull
+    private static ImageGrpcResponse toPhoto(ByteString content, String format, String dataUri) {
+        return content.isEmpty()
+                ? ImageGrpcResponse.newBuilder()
+                .setContent(ByteString.copyFromUtf8(dataUri))
+                .build()
+                : ImageGrpcResponse.newBuilder()
+                .setContent(content)
+                .setFormat(format)
+                .build();
+    }
+
 }
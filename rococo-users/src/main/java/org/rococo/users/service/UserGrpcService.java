@@ -5,9 +5,11 @@ import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.rococo.grpc.common.page.IdsPageGrpcRequest;
 import org.rococo.grpc.common.type.IdType;
+import org.rococo.grpc.common.type.IdsType;
 import org.rococo.grpc.common.type.NameType;
-import org.rococo.grpc.files.ImageGrpcResponse;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.users.*;
 import org.rococo.users.client.FilesGrpcClient;
 import org.rococo.users.data.UserEntity;
@@ -16,13 +18,18 @@ import org.rococo.users.ex.UserAlreadyExistsException;
 import org.rococo.users.ex.UserNotFoundException;
 import org.rococo.users.mapper.PageableMapper;
 import org.rococo.users.mapper.UserMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.time.LocalDateTime;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import static org.rococo.common.tx.Compensations.runOrCompensate;
+
 @Slf4j
 @GrpcService
 @RequiredArgsConstructor
@@ -31,9 +38,16 @@ public class UserGrpcService extends UsersServiceGrpc.UsersServiceImplBase {
 
     private final UserRepository userRepository;
     private final FilesGrpcClient filesClient;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${rococo-users.legacy-photo:false}")
+    private boolean legacyPhoto;
 
+    /**
+     * User is saved by short transaction, photo is sent to rococo-files after commit.
+     * User is removed if photo is not saved.
+     */
     @Override
-    @Transactional
     public void create(CreateUserGrpcRequest request,
                        StreamObserver<UserGrpcResponse> responseObserver
     ) {
@@ -41,24 +55,38 @@ public class UserGrpcService extends UsersServiceGrpc.UsersServiceImplBase {
         log.info("Add new user with username: {}", request.getUsername());
 
         userRepository.findByUsername(request.getUsername())
-                .ifPresentOrElse(
-                        user -> {
-                            throw new UserAlreadyExistsException(request.getUsername());
-                        },
-                        () -> {
-                            var savedUser = userRepository.save(UserMapper.fromGrpcRequest(request)
-                                    .setCreatedDate(LocalDateTime.now()));
-                            filesClient.add(savedUser.getId(), request.getPhoto());
-                            responseObserver.onNext(
-                                    UserMapper.toGrpcResponse(savedUser, request.getPhoto()));
-                        });
+                .ifPresent(user -> {
+                    throw new UserAlreadyExistsException(request.getUsername());
+                });
 
+        var savedUser = save(UserMapper.fromGrpcRequest(request)
+                .setCreatedDate(LocalDateTime.now()));
+
+        var photo = UserMapper.toPhoto(request);
+        runOrCompensate(
+                () -> filesClient.add(savedUser.getId(), photo.getContent(), photo.getFormat()),
+                () -> delete(savedUser.getId()));
+
+        responseObserver.onNext(
+                UserMapper.toGrpcResponse(savedUser, photo, legacyPhoto));
         responseObserver.onCompleted();
 
     }
 
     @Override
     @Transactional(readOnly = true)
+    public void existsById(IdType request, StreamObserver<StatusType> responseObserver) {
+
+        log.info("Check user exists by id: {}", request.getId());
+
+        responseObserver.onNext(StatusType.newBuilder()
+                .setStatus(userRepository.existsById(UUID.fromString(request.getId())))
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    @Override
     public void findById(IdType request,
                          StreamObserver<UserGrpcResponse> responseObserver
     ) {
@@ -67,9 +95,8 @@ public class UserGrpcService extends UsersServiceGrpc.UsersServiceImplBase {
 
         userRepository.findById(UUID.fromString(request.getId()))
                 .ifPresentOrElse(user -> {
-                            var photo = filesClient.findImage(user.getId())
-                                    .orElse(ImageGrpcResponse.getDefaultInstance());
-                            responseObserver.onNext(UserMapper.toGrpcResponse(user, photo.getContent().toStringUtf8()));
+                            responseObserver.onNext(
+                                    UserMapper.toGrpcResponse(user, filesClient.findImage(user.getId()).orElse(null), legacyPhoto));
                             responseObserver.onCompleted();
                         },
                         () -> {
@@ -80,7 +107,6 @@ public class UserGrpcService extends UsersServiceGrpc.UsersServiceImplBase {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void findByUsername(NameType request,
                                StreamObserver<UserGrpcResponse> responseObserver
     ) {
@@ -89,9 +115,8 @@ public class UserGrpcService extends UsersServiceGrpc.UsersServiceImplBase {
 
         userRepository.findByUsername(request.getName())
                 .ifPresentOrElse(user -> {
-                            var photo = filesClient.findImage(user.getId())
-                                    .orElse(ImageGrpcResponse.getDefaultInstance());
-                            responseObserver.onNext(UserMapper.toGrpcResponse(user, photo.getContent().toStringUtf8()));
+                            responseObserver.onNext(
+                                    UserMapper.toGrpcResponse(user, filesClient.findImage(user.getId()).orElse(null), legacyPhoto));
                             responseObserver.onCompleted();
                         },
                         () -> {
@@ -101,7 +126,6 @@ public class UserGrpcService extends UsersServiceGrpc.UsersServiceImplBase {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public void findAll(UsersFilterGrpcRequest request,
                         StreamObserver<UsersGrpcResponse> responseObserver
     ) {
@@ -123,55 +147,56 @@ public class UserGrpcService extends UsersServiceGrpc.UsersServiceImplBase {
         var photoMap = filesClient.findAllByIds(userIds, request.getOriginalPhoto()).stream()
                 .collect(Collectors.toMap(
                         photo -> UUID.fromString(photo.getEntityId()),
-                        photo -> photo.getContent().toStringUtf8()));
+                        photo -> photo));
 
         responseObserver.onNext(
-                UserMapper.toPageGrpc(userEntities, photoMap));
+                UserMapper.toPageGrpc(userEntities, photoMap, legacyPhoto));
 
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Remote lookups are done before short transaction, photo is sent to rococo-files after commit.
+     * Previous user data is restored if photo is not saved.
+     */
     @Override
-    @Transactional
     public void update(UpdateUserGrpcRequest request,
                        StreamObserver<UserGrpcResponse> responseObserver
     ) {
 
         log.info("Update user: {}", request);
 
-        userRepository.findById(UUID.fromString(request.getId()))
-                .ifPresentOrElse(
-                        user -> {
-                            var updatedUser = userRepository.save(
-                                    UserMapper.updateFromGrpcRequest(user, request));
-
-                            var existPhoto = filesClient.findImage(user.getId());
-                            if (existPhoto.isPresent() && !request.getPhoto().isEmpty()) {
-                                filesClient.update(user.getId(), request.getPhoto());
-                            } else if (existPhoto.isPresent() && request.getPhoto().isEmpty()) {
-                                filesClient.delete(user.getId());
-                            } else if (existPhoto.isEmpty() && !request.getPhoto().isEmpty()) {
-                                filesClient.add(user.getId(), request.getPhoto());
-                            }
+        var id = UUID.fromString(request.getId());
+        var user = userRepository.findById(id)
+                .orElseThrow(() -> new UserNotFoundException(id));
+
+        var photo = UserMapper.toPhoto(request);
+        var hasPhoto = filesClient.exists(user.getId());
+
+        var updatedUser = save(UserMapper.updateFromGrpcRequest(user, request));
+        runOrCompensate(
+                () -> {
+                    if (hasPhoto && !photo.getContent().isEmpty()) {
+                        filesClient.update(user.getId(), photo.getContent(), photo.getFormat());
+                    } else if (hasPhoto && photo.getContent().isEmpty()) {
+                        filesClient.delete(user.getId());
+                    } else if (!hasPhoto && !photo.getContent().isEmpty()) {
+                        filesClient.add(user.getId(), photo.getContent(), photo.getFormat());
+                    }
+                },
+                () -> save(user));
 
-                            responseObserver.onNext(
-                                    UserMapper.toGrpcResponse(
-                                            updatedUser,
-                                            request.getPhoto()
-                                    ));
-                            responseObserver.onCompleted();
-
-                        },
-                        () -> {
-                            throw new UserNotFoundException(UUID.fromString(request.getId()));
-                        }
-                );
+        responseObserver.onNext(
+                UserMapper.toGrpcResponse(updatedUser, photo, legacyPhoto));
+        responseObserver.onCompleted();
 
     }
 
+    /**
+     * Photo is deleted after commit. Photo left by failed call is collected by rococo-files later.
+     */
     @Override
-    @Transactional
     public void removeById(IdType request,
                            StreamObserver<Empty> responseObserver
     ) {
@@ -179,12 +204,50 @@ public class UserGrpcService extends UsersServiceGrpc.UsersServiceImplBase {
         log.info("Delete user by id: {}", request.getId());
 
         var userId = UUID.fromString(request.getId());
-        userRepository.deleteById(userId);
-        filesClient.delete(userId);
+        delete(userId);
+        try {
+            filesClient.delete(userId);
+        } catch (RuntimeException ex) {
+            log.warn("Photo of deleted user [{}] is not deleted, it is left for collector", userId, ex);
+        }
 
         responseObserver.onNext(Empty.newBuilder().build());
         responseObserver.onCompleted();
 
     }
 
+    /**
+     * Ids of all users page by page, images of entities missing here are collected by rococo-files.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void findIdsPage(IdsPageGrpcRequest request, StreamObserver<IdsType> responseObserver) {
+
+        log.info("Find user ids after: [{}]", request.getAfter());
+
+        var after = request.getAfter().isEmpty()
+                ? new UUID(0, 0)
+                : UUID.fromString(request.getAfter());
+        var ids = userRepository.findIdsAfter(after, Limit.of(Math.max(request.getSize(), 1))).stream()
+                .map(UUID::toString)
+                .toList();
+
+        responseObserver.onNext(IdsType.newBuilder()
+                .addAllId(ids)
+                .build());
+        responseObserver.onCompleted();
+
+    }
+
+    private UserEntity save(UserEntity user) {
+        return transactionTemplate.execute(status -> userRepository.save(user));
+    }
+
+    private void delete(UUID id) {
+        transactionTemplate.execute(status -> {
+            userRepository.deleteById(id);
+            return null;
+        });
+    }
+
 }
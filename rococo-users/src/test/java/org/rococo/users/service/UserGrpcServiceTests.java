@@ -11,10 +11,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.rococo.grpc.common.page.DirectionGrpc;
+import org.rococo.grpc.common.page.IdsPageGrpcRequest;
 import org.rococo.grpc.common.page.PageableGrpc;
 import org.rococo.grpc.common.page.SortGrpc;
 import org.rococo.grpc.common.type.IdType;
+import org.rococo.grpc.common.type.IdsType;
 import org.rococo.grpc.common.type.NameType;
+import org.rococo.grpc.common.type.StatusType;
 import org.rococo.grpc.files.ImageGrpcResponse;
 import org.rococo.grpc.users.*;
 import org.rococo.users.client.FilesGrpcClient;
@@ -22,9 +25,13 @@ import org.rococo.users.data.UserEntity;
 import org.rococo.users.data.UserRepository;
 import org.rococo.users.ex.UserAlreadyExistsException;
 import org.rococo.users.ex.UserNotFoundException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -33,6 +40,8 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -45,6 +54,9 @@ class UserGrpcServiceTests {
     @Mock
     private FilesGrpcClient filesClient;
 
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
     @Mock
     private StreamObserver<UserGrpcResponse> userResponseObserver;
 
@@ -54,6 +66,12 @@ class UserGrpcServiceTests {
     @Mock
     private StreamObserver<Empty> emptyResponseObserver;
 
+    @Mock
+    private StreamObserver<StatusType> statusResponseObserver;
+
+    @Mock
+    private StreamObserver<IdsType> idsResponseObserver;
+
     @InjectMocks
     private UserGrpcService userGrpcService;
 
@@ -69,6 +87,10 @@ class UserGrpcServiceTests {
     @BeforeEach
     void setUp() {
 
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0)
+                        .doInTransaction(new SimpleTransactionStatus()));
+
         userId = UUID.randomUUID();
 
         userEntity = UserEntity.builder()
@@ -120,6 +142,30 @@ class UserGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("Create: removes saved user when rococo-files did not save photo")
+    void create_RemovesUser_IfPhotoNotSaved() {
+
+        // Stubs
+        when(userRepository.findByUsername(userEntity.getUsername()))
+                .thenReturn(Optional.empty());
+        when(userRepository.save(any(UserEntity.class)))
+                .thenReturn(userEntity);
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).add(any(), any(), any());
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () ->
+                userGrpcService.create(createRequest, userResponseObserver));
+
+        final var inOrder = inOrder(userRepository, filesClient);
+        inOrder.verify(userRepository).save(any(UserEntity.class));
+        inOrder.verify(filesClient).add(any(), any(), any());
+        inOrder.verify(userRepository).deleteById(userId);
+        verify(userResponseObserver, never()).onNext(any());
+
+    }
+
     @Test
     @DisplayName("Create: create user")
     void create_Success() {
@@ -135,12 +181,42 @@ class UserGrpcServiceTests {
 
         // Assertions
         verify(userRepository).save(any(UserEntity.class));
-        verify(filesClient).add(userId, image.getContent().toStringUtf8());
+        verify(filesClient).add(userId, image.getContent(), "");
         verify(userResponseObserver).onNext(any(UserGrpcResponse.class));
         verify(userResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("Create: passes raw photo to rococo-files and back unchanged")
+    void create_PassesRawPhotoUnchanged() {
+
+        // Data
+        final var content = ByteString.copyFrom(new byte[]{1, 2, 3});
+        final var rawPhotoRequest = createRequest.toBuilder()
+                .clearPhoto()
+                .setPhotoContent(content)
+                .setPhotoFormat("png")
+                .build();
+
+        // Stubs
+        when(userRepository.findByUsername(userEntity.getUsername()))
+                .thenReturn(Optional.empty());
+        when(userRepository.save(any(UserEntity.class)))
+                .thenReturn(userEntity);
+
+        // Steps
+        userGrpcService.create(rawPhotoRequest, userResponseObserver);
+
+        // Assertions
+        verify(filesClient).add(userId, content, "png");
+        verify(userResponseObserver).onNext(argThat(response ->
+                response.getPhotoContent() == content
+                        && response.getPhotoFormat().equals("png")
+                        && response.getPhoto().isEmpty()));
+
+    }
+
     @Test
     @DisplayName("Create: throws UserAlreadyExistsException if username exists")
     void create_ThrowUserAlreadyExistsException_IfUserWithSameUsernameExists() {
@@ -154,12 +230,30 @@ class UserGrpcServiceTests {
                 userGrpcService.create(createRequest, userResponseObserver));
 
         verify(userRepository, never()).save(any());
-        verify(filesClient, never()).add(any(), any());
+        verify(filesClient, never()).add(any(), any(), any());
         verify(userResponseObserver, never()).onNext(any());
         verify(userResponseObserver, never()).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("ExistsById: returns whether user exists without loading photo")
+    void existsById_ReturnsStatus() {
+
+        // Stubs
+        when(userRepository.existsById(userId))
+                .thenReturn(true);
+
+        // Steps
+        userGrpcService.existsById(idRequest, statusResponseObserver);
+
+        // Assertions
+        verify(statusResponseObserver).onNext(StatusType.newBuilder().setStatus(true).build());
+        verify(statusResponseObserver).onCompleted();
+        verifyNoInteractions(filesClient);
+
+    }
+
     @Test
     @DisplayName("FindById: returns user")
     void findById_Success() {
@@ -262,14 +356,14 @@ class UserGrpcServiceTests {
                 .thenReturn(Optional.of(userEntity));
         when(userRepository.save(any(UserEntity.class)))
                 .thenReturn(userEntity);
-        when(filesClient.findImage(userId))
-                .thenReturn(Optional.of(image));
+        when(filesClient.exists(userId))
+                .thenReturn(true);
 
         // Steps
         userGrpcService.update(updateRequest, userResponseObserver);
 
         verify(userRepository).save(any(UserEntity.class));
-        verify(filesClient).update(userId, "updated-image");
+        verify(filesClient).update(userId, ByteString.copyFromUtf8("updated-image"), "");
         verify(userResponseObserver).onNext(any(UserGrpcResponse.class));
         verify(userResponseObserver).onCompleted();
 
@@ -307,8 +401,8 @@ class UserGrpcServiceTests {
                 .thenReturn(Optional.of(userEntity));
         when(userRepository.save(any(UserEntity.class)))
                 .thenReturn(savedUserEntity);
-        when(filesClient.findImage(userId))
-                .thenReturn(Optional.of(image));
+        when(filesClient.exists(userId))
+                .thenReturn(true);
 
         // Steps
         userGrpcService.update(userRequest, userResponseObserver);
@@ -352,20 +446,47 @@ class UserGrpcServiceTests {
                 .thenReturn(Optional.of(userEntity));
         when(userRepository.save(any(UserEntity.class)))
                 .thenReturn(savedUserEntity);
-        when(filesClient.findImage(userId))
-                .thenReturn(Optional.empty());
+        when(filesClient.exists(userId))
+                .thenReturn(false);
 
         // Steps
         userGrpcService.update(userRequest, userResponseObserver);
 
         // Assertions
         verify(userRepository).save(any(UserEntity.class));
-        verify(filesClient).add(userId, userRequest.getPhoto());
+        verify(filesClient).add(userId, ByteString.copyFromUtf8(userRequest.getPhoto()), "");
         verify(userResponseObserver).onNext(userResponse);
         verify(userResponseObserver).onCompleted();
 
     }
 
+    @Test
+    @DisplayName("Update: restores previous user data when rococo-files did not save photo")
+    void update_RestoresUser_IfPhotoNotSaved() {
+
+        // Stubs
+        when(userRepository.findById(userId))
+                .thenReturn(Optional.of(userEntity));
+        when(userRepository.save(any(UserEntity.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(filesClient.exists(userId))
+                .thenReturn(true);
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).update(any(), any(), any());
+
+        // Steps & Assertions
+        assertThrows(IllegalStateException.class, () ->
+                userGrpcService.update(updateRequest, userResponseObserver));
+
+        final var inOrder = inOrder(userRepository, filesClient);
+        inOrder.verify(filesClient).exists(userId);
+        inOrder.verify(userRepository).save(argThat((UserEntity user) -> "Jane".equals(user.getFirstName())));
+        inOrder.verify(filesClient).update(any(), any(), any());
+        inOrder.verify(userRepository).save(same(userEntity));
+        verify(userResponseObserver, never()).onNext(any());
+
+    }
+
     @Test
     @DisplayName("Update: throws UserNotFoundException when user not found")
     void update_ThrowsUserNotFoundException_IfUserNotFound() {
@@ -379,7 +500,7 @@ class UserGrpcServiceTests {
                 userGrpcService.update(updateRequest, userResponseObserver));
 
         verify(userRepository, never()).save(any());
-        verify(filesClient, never()).update(any(), any());
+        verify(filesClient, never()).update(any(), any(), any());
         verify(userResponseObserver, never()).onNext(any());
         verify(userResponseObserver, never()).onCompleted();
 
@@ -399,4 +520,67 @@ class UserGrpcServiceTests {
 
     }
 
+    @Test
+    @DisplayName("RemoveById: deletes user when rococo-files did not delete photo")
+    void removeById_Success_IfPhotoNotDeleted() {
+
+        // Stubs
+        doThrow(new IllegalStateException("rococo-files is not available"))
+                .when(filesClient).delete(userId);
+
+        // Steps
+        userGrpcService.removeById(idRequest, emptyResponseObserver);
+
+        // Assertions
+        verify(userRepository).deleteById(userId);
+        verify(userRepository, never()).save(any());
+        verify(emptyResponseObserver).onNext(Empty.newBuilder().build());
+        verify(emptyResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindIdsPage: returns ids after given id")
+    void findIdsPage_ReturnsIdsAfterGivenId() {
+
+        // Data
+        final var after = UUID.randomUUID();
+        final var nextId = UUID.randomUUID();
+        final var request = IdsPageGrpcRequest.newBuilder()
+                .setAfter(after.toString())
+                .setSize(100)
+                .build();
+
+        // Stubs
+        when(userRepository.findIdsAfter(after, Limit.of(100)))
+                .thenReturn(List.of(nextId));
+
+        // Steps
+        userGrpcService.findIdsPage(request, idsResponseObserver);
+
+        // Assertions
+        verify(idsResponseObserver).onNext(IdsType.newBuilder()
+                .addId(nextId.toString())
+                .build());
+        verify(idsResponseObserver).onCompleted();
+
+    }
+
+    @Test
+    @DisplayName("FindIdsPage: returns first ids when after is empty")
+    void findIdsPage_ReturnsFirstIds_IfAfterIsEmpty() {
+
+        // Stubs
+        when(userRepository.findIdsAfter(new UUID(0, 0), Limit.of(100)))
+                .thenReturn(List.of());
+
+        // Steps
+        userGrpcService.findIdsPage(IdsPageGrpcRequest.newBuilder().setSize(100).build(), idsResponseObserver);
+
+        // Assertions
+        verify(idsResponseObserver).onNext(IdsType.getDefaultInstance());
+        verify(idsResponseObserver).onCompleted();
+
+    }
+
 }